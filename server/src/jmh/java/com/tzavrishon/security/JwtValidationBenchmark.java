@@ -0,0 +1,73 @@
+package com.tzavrishon.security;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares validating the same auth cookie repeatedly: a full HMAC verify and decode per call
+ * against {@link JwtService#validateToken} with the verified-token cache warm.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtValidationBenchmark {
+  private JwtParser parser;
+  private JwtService cachingService;
+  private JwtService uncachedService;
+  private String token;
+
+  @Setup
+  public void setUp() {
+    byte[] secret = new byte[32];
+    new Random(1).nextBytes(secret);
+
+    cachingService = new JwtService(properties(secret, 10_000));
+    uncachedService = new JwtService(properties(secret, 0));
+    parser = Jwts.parser().verifyWith(Keys.hmacShaKeyFor(secret)).build();
+
+    User user = new User();
+    user.setId(UUID.randomUUID());
+    user.setEmail("student@example.com");
+    user.setDisplayName("Student");
+    token = cachingService.generateToken(user);
+  }
+
+  @Benchmark
+  public Claims parseSignedClaims() {
+    return parser.parseSignedClaims(token).getPayload();
+  }
+
+  @Benchmark
+  public Optional<Claims> validateUncached() {
+    return uncachedService.validateToken(token);
+  }
+
+  @Benchmark
+  public Optional<Claims> validateCached() {
+    return cachingService.validateToken(token);
+  }
+
+  private static AppProperties properties(byte[] secret, int cacheSize) {
+    AppProperties properties = new AppProperties();
+    properties.getJwt().setSecret(Base64.getEncoder().encodeToString(secret));
+    properties.getJwt().setExpiration(3_600_000);
+    properties.getJwt().setCookieName("tzav_auth");
+    properties.getJwt().setVerifiedTokenCacheSize(cacheSize);
+    return properties;
+  }
+}
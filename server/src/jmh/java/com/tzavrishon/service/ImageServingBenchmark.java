@@ -0,0 +1,84 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.service.ImageCache.CachedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of writing one cached image to a response stream from the heap tier versus the
+ * memory-mapped disk tier.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageServingBenchmark {
+  @Param({"20000", "200000"})
+  public int imageBytes;
+
+  private Path directory;
+  private CachedImage heapImage;
+  private ImageSource diskImage;
+  private OutputStream sink;
+
+  @Setup
+  public void setUp(Blackhole blackhole) throws IOException {
+    byte[] data = new byte[imageBytes];
+    new Random(1).nextBytes(data);
+    heapImage = new CachedImage(data, "image/png", System.currentTimeMillis());
+
+    directory = Files.createTempDirectory("image-bench");
+    ImageDiskCache diskCache = new ImageDiskCache(directory, Long.MAX_VALUE, Long.MAX_VALUE);
+    diskImage = diskCache.put("https://example.com/bench.png", heapImage);
+
+    // Stands in for the servlet output stream: copies through a socket-sized buffer
+    byte[] buffer = new byte[8192];
+    sink =
+        new OutputStream() {
+          @Override
+          public void write(int b) {
+            buffer[0] = (byte) b;
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+              int chunk = Math.min(len, buffer.length);
+              System.arraycopy(b, off, buffer, 0, chunk);
+              off += chunk;
+              len -= chunk;
+            }
+            blackhole.consume(buffer);
+          }
+        };
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public void heap() throws IOException {
+    heapImage.writeTo(sink);
+  }
+
+  @Benchmark
+  public void mapped() throws IOException {
+    diskImage.writeTo(sink);
+  }
+}
@@ -0,0 +1,70 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Steady-state cost of one selection of ten practice questions from a pool of {@code poolSize}
+ * questions, per selector. Add {@code -prof gc} for allocation per call; {@link SelectionReplay}
+ * compares the selectors over whole learner histories.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuestionSelectorBenchmark {
+  @Param({"uniform", "no-repeat", "adaptive", "exam-form"})
+  public String selector;
+
+  @Param({"500", "20000"})
+  public int poolSize;
+
+  private QuestionSelector questionSelector;
+  private QuestionSelector.Request request;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    List<QuestionPool.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < poolSize; i++) {
+      entries.add(
+          new QuestionPool.Entry(
+              UUID.randomUUID(), QuestionType.QUANTITATIVE, false, random.nextGaussian() * 1.5));
+    }
+    QuestionPool pool = new QuestionPool(null);
+    pool.load(entries);
+
+    AppProperties properties = new AppProperties();
+    AbilityService abilityService = new AbilityService(new JdbcTemplate(), properties);
+    UUID userId = UUID.randomUUID();
+    abilityService.track(userId);
+    NoRepeatSelector noRepeat = new NoRepeatSelector(pool);
+    questionSelector =
+        new QuestionSelectors(
+                List.of(
+                    new UniformSelector(pool),
+                    noRepeat,
+                    new AdaptiveSelector(pool, abilityService, noRepeat),
+                    new ExamFormSelector(pool)),
+                properties)
+            .get(selector);
+    List<UUID> recent = entries.subList(0, 5).stream().map(QuestionPool.Entry::id).toList();
+    request = new QuestionSelector.Request(QuestionType.QUANTITATIVE, false, userId, recent, 10);
+  }
+
+  @Benchmark
+  public List<UUID> select() {
+    return questionSelector.select(request);
+  }
+}
@@ -0,0 +1,276 @@
+package com.tzavrishon.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.util.TDigest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Offline comparison of the {@link QuestionSelector}s. Learners are replayed through each selector
+ * against the same question pool, and per selector it reports selection latency (p50, p99, max),
+ * bytes allocated per selection, the share of the pool served at least once and, for synthetic
+ * learners, how often the served questions were answered right.
+ *
+ * <p>Learners are either synthetic, with standard normal abilities answering by the Rasch model,
+ * or replayed from NDJSON exports of the admin export endpoints: each practice session in the
+ * answer log becomes one learner whose logged answers update its ability in order, while the
+ * questions it is served are the selector's own.
+ *
+ * <p>Run with {@code ./gradlew selectionReplay --args="..."}; options:
+ *
+ * <pre>
+ *   --questions FILE        question export (NDJSON); default a synthetic catalog
+ *   --answers FILE          practice answer export (NDJSON); default synthetic learners
+ *   --users N               synthetic learners (500)
+ *   --sessions N            sessions per synthetic learner (6)
+ *   --count N               questions per selection (10)
+ *   --questions-per-type N  synthetic catalog size per type (2000)
+ *   --seed N                random seed (1)
+ * </pre>
+ */
+public final class SelectionReplay {
+  private static final int RECENT = 5;
+
+  private final Map<String, String> options;
+  private final Random random;
+  private final int count;
+
+  /** One learner: synthetic with an ability, or replayed with its logged sessions. */
+  private record Learner(UUID id, QuestionType type, double ability, List<List<Answer>> sessions) {}
+
+  private record Answer(UUID questionId, boolean correct) {}
+
+  private SelectionReplay(Map<String, String> options) {
+    this.options = options;
+    this.random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+    this.count = intOption("count", 10);
+  }
+
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+    }
+    new SelectionReplay(options).run();
+  }
+
+  private void run() throws IOException {
+    List<QuestionPool.Entry> catalog =
+        options.containsKey("questions")
+            ? readQuestions(Path.of(options.get("questions")))
+            : syntheticCatalog(intOption("questions-per-type", 2000));
+    Map<UUID, QuestionPool.Entry> byId = new HashMap<>();
+    catalog.forEach(entry -> byId.put(entry.id(), entry));
+    List<Learner> learners =
+        options.containsKey("answers")
+            ? readLearners(Path.of(options.get("answers")), byId)
+            : syntheticLearners(intOption("users", 500), intOption("sessions", 6));
+
+    System.out.printf(
+        "%d questions, %d learners, %d questions per selection%n%n",
+        catalog.size(), learners.size(), count);
+    System.out.printf(
+        "%-10s %9s %9s %9s %9s %12s %9s %9s%n",
+        "selector", "calls", "p50 us", "p99 us", "max us", "bytes/call", "coverage", "success");
+    for (String name : List.of("uniform", "no-repeat", "adaptive", "exam-form")) {
+      replay(name, catalog, byId, learners.subList(0, Math.min(100, learners.size())), false);
+      replay(name, catalog, byId, learners, true);
+    }
+  }
+
+  /** Replay every learner through a fresh selector; with {@code report} false it only warms up. */
+  private void replay(
+      String name,
+      List<QuestionPool.Entry> catalog,
+      Map<UUID, QuestionPool.Entry> byId,
+      List<Learner> learners,
+      boolean report) {
+    AppProperties properties = new AppProperties();
+    properties.getPractice().setAbilityCacheSize(Integer.MAX_VALUE);
+    QuestionPool pool = new QuestionPool(null);
+    pool.load(catalog);
+    AbilityService abilityService = new AbilityService(new JdbcTemplate(), properties);
+    NoRepeatSelector noRepeat = new NoRepeatSelector(pool);
+    QuestionSelector selector =
+        new QuestionSelectors(
+                List.of(
+                    new UniformSelector(pool),
+                    noRepeat,
+                    new AdaptiveSelector(pool, abilityService, noRepeat),
+                    new ExamFormSelector(pool)),
+                properties)
+            .get(name);
+
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    TDigest latencies = new TDigest(100);
+    long calls = 0;
+    long allocated = 0;
+    long maxNanos = 0;
+    long answered = 0;
+    long correct = 0;
+    Set<UUID> served = new HashSet<>();
+    Set<QuestionType> types = new HashSet<>();
+
+    for (Learner learner : learners) {
+      abilityService.track(learner.id());
+      types.add(learner.type());
+      ArrayDeque<UUID> recent = new ArrayDeque<>();
+      for (List<Answer> logged : learner.sessions()) {
+        QuestionSelector.Request request =
+            new QuestionSelector.Request(
+                learner.type(), false, learner.id(), List.copyOf(recent), count);
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        List<UUID> picks = selector.select(request);
+        long nanos = System.nanoTime() - start;
+        allocated += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        latencies.add(nanos);
+        maxNanos = Math.max(maxNanos, nanos);
+        calls++;
+        served.addAll(picks);
+
+        List<Answer> answers = logged;
+        if (answers == null) {
+          answers = new ArrayList<>();
+          for (UUID id : picks) {
+            double expected = 1 / (1 + Math.exp(byId.get(id).difficulty() - learner.ability()));
+            boolean right = random.nextDouble() < expected;
+            answers.add(new Answer(id, right));
+            answered++;
+            correct += right ? 1 : 0;
+          }
+        }
+        for (Answer answer : answers) {
+          QuestionPool.Entry entry = byId.get(answer.questionId());
+          if (entry != null) {
+            abilityService.record(
+                learner.id(), learner.type(), entry.difficulty(), answer.correct());
+          }
+        }
+        for (UUID id : picks) {
+          recent.addFirst(id);
+          if (recent.size() > RECENT) {
+            recent.removeLast();
+          }
+        }
+      }
+    }
+
+    if (report) {
+      long poolSize =
+          types.stream().mapToLong(type -> pool.candidates(type, false).size()).sum();
+      System.out.printf(
+          "%-10s %9d %9.1f %9.1f %9.1f %12d %8.1f%% %9s%n",
+          name,
+          calls,
+          latencies.quantile(0.5) / 1000,
+          latencies.quantile(0.99) / 1000,
+          maxNanos / 1000.0,
+          calls > 0 ? allocated / calls : 0,
+          poolSize > 0 ? 100.0 * served.size() / poolSize : 0,
+          answered > 0 ? String.format("%.1f%%", 100.0 * correct / answered) : "-");
+    }
+  }
+
+  private List<QuestionPool.Entry> syntheticCatalog(int perType) {
+    List<QuestionPool.Entry> catalog = new ArrayList<>();
+    for (QuestionType type : QuestionType.values()) {
+      for (int i = 0; i < perType; i++) {
+        catalog.add(
+            new QuestionPool.Entry(UUID.randomUUID(), type, false, random.nextGaussian() * 1.5));
+      }
+    }
+    return catalog;
+  }
+
+  private List<Learner> syntheticLearners(int users, int sessions) {
+    QuestionType[] types = QuestionType.values();
+    List<Learner> learners = new ArrayList<>();
+    for (int i = 0; i < users; i++) {
+      List<List<Answer>> unscripted = new ArrayList<>();
+      for (int s = 0; s < sessions; s++) {
+        unscripted.add(null);
+      }
+      learners.add(
+          new Learner(
+              UUID.randomUUID(),
+              types[random.nextInt(types.length)],
+              random.nextGaussian(),
+              unscripted));
+    }
+    return learners;
+  }
+
+  private static List<QuestionPool.Entry> readQuestions(Path file) throws IOException {
+    List<QuestionPool.Entry> catalog = new ArrayList<>();
+    for (JsonNode row : readNdjson(file)) {
+      catalog.add(
+          new QuestionPool.Entry(
+              UUID.fromString(row.get("id").asText()),
+              QuestionType.valueOf(row.get("type").asText()),
+              row.get("is_exam_question").asBoolean(),
+              QuestionPool.ratingToLogits(row.path("difficulty").asInt(3))));
+    }
+    return catalog;
+  }
+
+  /** Each session of the log is a learner with a single session of its answers, in order. */
+  private static List<Learner> readLearners(Path file, Map<UUID, QuestionPool.Entry> byId)
+      throws IOException {
+    Map<UUID, List<Answer>> bySession = new LinkedHashMap<>();
+    Map<UUID, QuestionType> sessionTypes = new HashMap<>();
+    for (JsonNode row : readNdjson(file)) {
+      UUID sessionId = UUID.fromString(row.get("session_id").asText());
+      UUID questionId = UUID.fromString(row.get("question_id").asText());
+      if (!byId.containsKey(questionId)) {
+        continue;
+      }
+      bySession
+          .computeIfAbsent(sessionId, id -> new ArrayList<>())
+          .add(new Answer(questionId, row.get("is_correct").asBoolean()));
+      sessionTypes.putIfAbsent(sessionId, QuestionType.valueOf(row.get("question_type").asText()));
+    }
+    List<Learner> learners = new ArrayList<>();
+    bySession.forEach(
+        (sessionId, answers) ->
+            learners.add(
+                new Learner(sessionId, sessionTypes.get(sessionId), Double.NaN, List.of(answers))));
+    return learners;
+  }
+
+  private static List<JsonNode> readNdjson(Path file) throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    List<JsonNode> rows = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(file)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isBlank()) {
+          rows.add(mapper.readTree(line));
+        }
+      }
+    }
+    return rows;
+  }
+
+  private int intOption(String name, int defaultValue) {
+    return Integer.parseInt(options.getOrDefault(name, String.valueOf(defaultValue)));
+  }
+}
@@ -9,28 +9,134 @@ import org.springframework.context.annotation.Configuration;
 @Data
 public class AppProperties {
   private String frontendUrl;
+  private Admin admin = new Admin();
   private Jwt jwt = new Jwt();
   private Guest guest = new Guest();
   private Exam exam = new Exam();
+  private Partitions partitions = new Partitions();
+  private ImageProxy imageProxy = new ImageProxy();
+  private Assets assets = new Assets();
+  private QuestionImport questionImport = new QuestionImport();
+  private Export export = new Export();
+  private ItemStats itemStats = new ItemStats();
+  private Calibration calibration = new Calibration();
+  private Practice practice = new Practice();
+  private Review review = new Review();
   private Adsense adsense = new Adsense();
 
+  @Data
+  public static class Admin {
+    private String emails = ""; // comma-separated; only these signed-in users reach /api/v1/admin
+  }
+
   @Data
   public static class Jwt {
     private String secret;
     private long expiration;
     private String cookieName;
+    private int principalCacheTtlSeconds = 300;
+    private int principalCacheSize = 10_000;
+    private boolean principalFromClaims = false; // trust name/premium claims, skip the user lookup
+    private int verifiedTokenCacheSize = 10_000; // 0 verifies every request
   }
 
   @Data
   public static class Guest {
     private int practiceLimitPerType;
     private int recentQuestionsCacheSize;
+    private String quotaMode = "memory"; // "memory" or "database" (for multi-node deployments)
+    private int quotaCacheSize = 100_000; // max (guest, type) windows held in memory
+    private boolean stateless = false; // carry guest practice in a signed cookie, no DB writes
+    private int stateTokenTtlHours = 168;
+    private String selection = "no-repeat"; // question selector, see QuestionSelectors
   }
 
   @Data
   public static class Exam {
     private String sectionCounts; // e.g., "VERBAL_ANALOGY:10,SHAPE_ANALOGY:10,..."
     private String sectionDurations; // e.g., "VERBAL_ANALOGY:480,..."
+    private int archiveAfterDays = 90; // completed attempts older than this are compacted
+    private int archiveBatchSize = 200;
+    private String selection = "exam-form";
+  }
+
+  @Data
+  public static class Partitions {
+    private int monthsAhead = 3; // monthly partitions created beyond the current month
+    private int guestRetentionDays = 90; // guest partitions entirely older than this are dropped
+  }
+
+  @Data
+  public static class ImageProxy {
+    private long maxCacheBytes = 64L * 1024 * 1024; // total size of cached images in memory
+    private int cacheTtlSeconds = 3600;
+    private String diskCacheDir; // unset keeps images on the heap only
+    private long diskCacheMaxBytes = 1024L * 1024 * 1024;
+    private int diskCacheTtlHours = 168;
+    private long maxObjectBytes = 8L * 1024 * 1024; // larger images are refused
+    private long maxPixels = 25_000_000; // larger images are not decoded for resizing or atlases
+    private int maxConnectionsPerHost = 8;
+    private int connectTimeoutMs = 5000;
+    private int readTimeoutMs = 10000;
+    private int browserMaxAgeSeconds = 604800; // Cache-Control max-age on proxied images
+    private int negativeCacheTtlSeconds = 60; // how long a failed URL is answered from memory
+    private int breakerWindowSize = 20; // recent calls per host the failure rate is taken over
+    private int breakerMinimumCalls = 5;
+    private double breakerFailureRate = 0.5;
+    private int breakerOpenSeconds = 30;
+    private boolean warmupOnStartup = true; // fetch every catalog image once the app is up
+    private int warmupParallelism = 4;
+    private boolean prefetch = true; // fetch images of questions about to be shown
+  }
+
+  @Data
+  public static class Assets {
+    private String dir; // unset disables the local asset store
+    private String baseUrl = "/api/v1/assets"; // absolute when the API has its own origin
+    private boolean ingestOnImport = true; // copy remote question images into the store on import
+    private boolean atlasEnabled = true; // compose each question's images into one atlas image
+  }
+
+  @Data
+  public static class QuestionImport {
+    private int batchSize = 1000; // questions per insert batch and transaction
+  }
+
+  @Data
+  public static class Export {
+    private int pageSize = 5000; // rows read per query; bounds heap use of a running export
+  }
+
+  @Data
+  public static class ItemStats {
+    private long flushIntervalMs = 10000; // how often counted answers are written to question_stats
+    private double digestCompression = 100; // t-digest size/accuracy trade-off for answer times
+  }
+
+  @Data
+  public static class Calibration {
+    private int minAttempts = 20; // questions with fewer answers keep their hand-set difficulty
+    private double priorSd = 1.0; // logits; smaller trusts the hand-set rating longer
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+  }
+
+  @Data
+  public static class Practice {
+    private String selection = "adaptive"; // uniform, no-repeat, adaptive or exam-form
+    private double targetSuccessRate = 0.7; // adaptive draws aim for this chance of a right answer
+    private double abilityK = 0.4; // Elo step size for a new learner, in logits
+    private double abilityMinK = 0.05; // step size floor once many answers are in
+    private long abilityFlushIntervalMs = 10000; // how often user_abilities is written
+    private int abilityCacheSize = 100_000; // learners whose abilities are held in memory
+    private String mixedProportions = // relative weight of each type in a mixed session
+        "VERBAL_ANALOGY:1,SHAPE_ANALOGY:1,INSTRUCTIONS_DIRECTIONS:1,QUANTITATIVE:1";
+    private int mixedSize = 20; // questions per mixed session
+  }
+
+  @Data
+  public static class Review {
+    private int slowAnswerMs = 30000; // right answers slower than this are scheduled for review
+    private int sessionSize = 10; // due questions served per review session
   }
 
   @Data
@@ -0,0 +1,38 @@
+package com.tzavrishon.config;
+
+import com.tzavrishon.service.PartitionMigration;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.UncategorizedScriptException;
+
+@Configuration
+public class DatabaseConfig {
+
+  /**
+   * Spring Boot's schema.sql initializer, preceded by the {@link PartitionMigration} of databases
+   * created before partitioning, which schema.sql alone cannot bring up to date.
+   */
+  @Bean
+  public SqlDataSourceScriptDatabaseInitializer dataSourceScriptDatabaseInitializer(
+      DataSource dataSource, SqlInitializationProperties properties) {
+    return new SqlDataSourceScriptDatabaseInitializer(dataSource, properties) {
+      @Override
+      public boolean initializeDatabase() {
+        if (properties.getMode() == DatabaseInitializationMode.ALWAYS) {
+          try {
+            new PartitionMigration(dataSource, new ClassPathResource("schema.sql")).migrate();
+          } catch (SQLException e) {
+            throw new UncategorizedScriptException("Partition migration failed", e);
+          }
+        }
+        return super.initializeDatabase();
+      }
+    };
+  }
+}
@@ -2,12 +2,18 @@ package com.tzavrishon.config;
 
 import com.tzavrishon.security.JwtAuthenticationFilter;
 import com.tzavrishon.security.OAuth2AuthenticationSuccessHandler;
+import com.tzavrishon.security.UserPrincipal;
 import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -45,7 +51,16 @@ public class SecurityConfig {
                         "/actuator/**",
                         "/error")
                     .permitAll()
-                    .requestMatchers("/api/v1/exam/**", "/api/v1/progress/**")
+                    .requestMatchers("/api/v1/admin/**")
+                    .access(
+                        (authentication, context) ->
+                            new AuthorizationDecision(isAdmin(authentication.get())))
+                    .requestMatchers(
+                        "/api/v1/exam/**",
+                        "/api/v1/progress/**",
+                        "/api/v1/practice/guest/claim",
+                        "/api/v1/practice/review",
+                        "/api/v1/practice/mixed")
                     .authenticated()
                     .anyRequest()
                     .permitAll())
@@ -61,6 +76,19 @@ public class SecurityConfig {
     return http.build();
   }
 
+  /** Signed in with one of the {@code app.admin.emails} addresses. */
+  boolean isAdmin(Authentication authentication) {
+    if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal user)) {
+      return false;
+    }
+    Set<String> admins =
+        Arrays.stream(appProperties.getAdmin().getEmails().split(","))
+            .map(email -> email.trim().toLowerCase(Locale.ROOT))
+            .filter(email -> !email.isEmpty())
+            .collect(Collectors.toSet());
+    return user.getEmail() != null && admins.contains(user.getEmail().toLowerCase(Locale.ROOT));
+  }
+
   @Bean
   public CorsConfigurationSource corsConfigurationSource() {
     CorsConfiguration configuration = new CorsConfiguration();
@@ -1,91 +1,220 @@
 package com.tzavrishon.controller;
 
+import com.tzavrishon.config.AppProperties;
 import com.tzavrishon.domain.*;
+import com.tzavrishon.dto.AssetResponse;
+import com.tzavrishon.dto.ImageCacheStats;
 import com.tzavrishon.dto.ImportQuestionRequest;
-import com.tzavrishon.dto.OptionData;
+import com.tzavrishon.dto.ImportReport;
+import com.tzavrishon.dto.QuestionStatsResponse;
 import com.tzavrishon.repository.*;
+import com.tzavrishon.service.AssetStore;
+import com.tzavrishon.service.AssetStore.Asset;
+import com.tzavrishon.service.AtlasService;
+import com.tzavrishon.service.DifficultyCalibrationService;
+import com.tzavrishon.service.ImageProxyService;
+import com.tzavrishon.service.ImageWarmupService;
+import com.tzavrishon.service.ItemStatsService;
+import com.tzavrishon.service.QuestionImportService;
+import com.tzavrishon.service.QuestionPool;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 @RestController
 @RequestMapping("/api/v1/admin")
 public class AdminController {
+  private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
   private final QuestionRepository questionRepository;
   private final QuestionOptionRepository optionRepository;
+  private final ImageProxyService imageProxyService;
+  private final ImageWarmupService imageWarmupService;
+  private final AssetStore assetStore;
+  private final AtlasService atlasService;
+  private final QuestionImportService questionImportService;
+  private final ItemStatsService itemStatsService;
+  private final QuestionPool questionPool;
+  private final DifficultyCalibrationService difficultyCalibrationService;
+  private final AppProperties appProperties;
 
   public AdminController(
       QuestionRepository questionRepository,
-      QuestionOptionRepository optionRepository) {
+      QuestionOptionRepository optionRepository,
+      ImageProxyService imageProxyService,
+      ImageWarmupService imageWarmupService,
+      AssetStore assetStore,
+      AtlasService atlasService,
+      QuestionImportService questionImportService,
+      ItemStatsService itemStatsService,
+      QuestionPool questionPool,
+      DifficultyCalibrationService difficultyCalibrationService,
+      AppProperties appProperties) {
     this.questionRepository = questionRepository;
     this.optionRepository = optionRepository;
+    this.imageProxyService = imageProxyService;
+    this.imageWarmupService = imageWarmupService;
+    this.assetStore = assetStore;
+    this.atlasService = atlasService;
+    this.questionImportService = questionImportService;
+    this.itemStatsService = itemStatsService;
+    this.questionPool = questionPool;
+    this.difficultyCalibrationService = difficultyCalibrationService;
+    this.appProperties = appProperties;
+  }
+
+  @GetMapping("/image-cache")
+  public ResponseEntity<ImageCacheStats> getImageCacheStats() {
+    return ResponseEntity.ok(imageProxyService.getStats());
+  }
+
+  /** Item analysis: per-question correct rate, option picks and answer-time quantiles. */
+  @GetMapping("/question-stats")
+  public ResponseEntity<List<QuestionStatsResponse>> getQuestionStats(
+      @RequestParam(required = false) QuestionType type,
+      @RequestParam(defaultValue = "1") long minAttempts) {
+    return ResponseEntity.ok(itemStatsService.getStats(type, minAttempts));
+  }
+
+  /** Run difficulty calibration now instead of waiting for its schedule. */
+  @PostMapping("/calibrate")
+  public ResponseEntity<String> calibrate() {
+    int calibrated = difficultyCalibrationService.calibrate();
+    return ResponseEntity.ok("Calibrated " + calibrated + " questions");
+  }
+
+  /** Store an uploaded image in the asset store and return its immutable URL. */
+  @PostMapping("/assets")
+  public ResponseEntity<AssetResponse> uploadAsset(@RequestParam("file") MultipartFile file)
+      throws IOException {
+    Asset asset = assetStore.put(file.getBytes());
+    AssetResponse response = new AssetResponse();
+    response.setHash(asset.hash());
+    response.setUrl(assetStore.urlFor(asset));
+    response.setContentType(asset.contentType());
+    response.setSize(asset.length());
+    return ResponseEntity.ok(response);
   }
 
   @PostMapping("/import-questions")
   public ResponseEntity<String> importQuestions(
       @Valid @RequestBody List<ImportQuestionRequest> requests) {
     int imported = 0;
+    int updated = 0;
+    int unchanged = 0;
+    Set<String> imageUrls = new LinkedHashSet<>();
 
     for (ImportQuestionRequest req : requests) {
-      // Validate options for SINGLE_CHOICE_IMAGE format
-      if (req.getFormat() == QuestionFormat.SINGLE_CHOICE_IMAGE) {
-        validateSingleCorrectAnswer(req.getOptions());
+      QuestionImportService.validate(req);
+      String fingerprint = questionImportService.fingerprint(req);
+      switch (questionImportService.applyToExisting(req, fingerprint)) {
+        case UPDATED -> {
+          updated++;
+          continue;
+        }
+        case UNCHANGED -> {
+          unchanged++;
+          continue;
+        }
+        case CREATED -> {}
       }
 
       Question question = new Question();
       question.setType(req.getType());
       question.setFormat(req.getFormat());
       question.setPromptText(req.getPromptText());
-      question.setPromptImageUrl(req.getPromptImageUrl());
+      question.setPromptImageUrl(ingestImage(req.getPromptImageUrl()));
+      imageUrls.add(question.getPromptImageUrl());
       question.setExplanation(req.getExplanation());
       question.setDifficulty(req.getDifficulty() != null ? req.getDifficulty() : 3);
+      question.setContentHash(fingerprint);
       question = questionRepository.save(question);
 
+      List<QuestionOption> savedOptions = new ArrayList<>();
       if (req.getOptions() != null) {
         for (var optData : req.getOptions()) {
           QuestionOption option = new QuestionOption();
           option.setQuestion(question);
           option.setText(optData.getText());
-          option.setImageUrl(optData.getImageUrl());
+          option.setImageUrl(ingestImage(optData.getImageUrl()));
+          imageUrls.add(option.getImageUrl());
           option.setIsCorrect(optData.getIsCorrect());
           option.setOptionOrder(optData.getOptionOrder());
-          optionRepository.save(option);
+          savedOptions.add(optionRepository.save(option));
         }
       }
+      savedOptions.sort(
+          Comparator.comparing(
+              QuestionOption::getOptionOrder, Comparator.nullsLast(Comparator.naturalOrder())));
+      atlasService.buildInBackground(
+          question.getId(),
+          AtlasService.sources(
+              question.getPromptImageUrl(),
+              savedOptions.stream().map(QuestionOption::getImageUrl).toList()));
 
       imported++;
     }
 
-    return ResponseEntity.ok("Imported " + imported + " questions");
+    questionPool.reload();
+    imageWarmupService.warmInBackground(imageUrls);
+    return ResponseEntity.ok(
+        "Imported "
+            + imported
+            + " questions ("
+            + updated
+            + " updated, "
+            + unchanged
+            + " unchanged)");
   }
 
   /**
-   * Validates that exactly one option is marked as correct for SINGLE_CHOICE_IMAGE questions.
-   *
-   * @param options List of options to validate
-   * @throws IllegalArgumentException if validation fails
+   * Bulk import for large question files. The JSON array is read as it arrives and written in
+   * batches, so the upload never has to fit in memory. Images are not ingested and atlases are not
+   * built on this path; the images are warmed through the proxy afterwards.
    */
-  private void validateSingleCorrectAnswer(List<OptionData> options) {
-    if (options == null || options.isEmpty()) {
-      throw new IllegalArgumentException(
-          "SINGLE_CHOICE_IMAGE format requires at least one option");
+  @PostMapping(value = "/import-questions/stream", consumes = "application/json")
+  public ResponseEntity<ImportReport> importQuestionsStream(HttpServletRequest request)
+      throws IOException {
+    ImportReport report = questionImportService.importStream(request.getInputStream());
+    if (report.getImported() > 0 || report.getUpdated() > 0) {
+      questionPool.reload();
     }
-
-    long correctCount =
-        options.stream().filter(opt -> Boolean.TRUE.equals(opt.getIsCorrect())).count();
-
-    if (correctCount == 0) {
-      throw new IllegalArgumentException(
-          "SINGLE_CHOICE_IMAGE format requires exactly one correct answer. Found 0 correct answers.");
+    if (report.getImported() > 0) {
+      imageWarmupService.warmCatalogInBackground();
     }
+    return ResponseEntity.ok(report);
+  }
 
-    if (correctCount > 1) {
-      throw new IllegalArgumentException(
-          "SINGLE_CHOICE_IMAGE format requires exactly one correct answer. Found "
-              + correctCount
-              + " correct answers.");
+  /**
+   * Copy a remote image into the asset store and return its asset URL. The image is fetched
+   * through the proxy, so its size, type and host limits apply; on failure the original URL is
+   * kept and the image keeps being proxied.
+   */
+  private String ingestImage(String url) {
+    if (url == null
+        || !assetStore.isEnabled()
+        || !appProperties.getAssets().isIngestOnImport()
+        || !(url.startsWith("http://") || url.startsWith("https://"))) {
+      return url;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      imageProxyService.fetch(url).writeTo(bytes);
+      return assetStore.urlFor(assetStore.put(bytes.toByteArray()));
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Could not ingest image {}: {}", url, e.getMessage());
+      return url;
     }
   }
 }
-
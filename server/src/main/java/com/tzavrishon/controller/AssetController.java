@@ -0,0 +1,72 @@
+package com.tzavrishon.controller;
+
+import com.tzavrishon.service.AssetStore;
+import com.tzavrishon.service.AssetStore.Asset;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Serves question images from the {@link AssetStore}. The URL names the content, so responses are
+ * cacheable forever; bodies go out through the container's sendfile support when it has it.
+ */
+@RestController
+@RequestMapping("/api/v1/assets")
+public class AssetController {
+  private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private final AssetStore assetStore;
+
+  public AssetController(AssetStore assetStore) {
+    this.assetStore = assetStore;
+  }
+
+  @GetMapping("/{hash}")
+  public void getAsset(
+      @PathVariable String hash, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Optional<Asset> found = assetStore.get(hash);
+    if (found.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    Asset asset = found.get();
+    String etag = "\"" + asset.hash() + "\"";
+    response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+    response.setHeader(HttpHeaders.ETAG, etag);
+
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setContentType(asset.contentType());
+    response.setContentLengthLong(asset.length());
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      // Tomcat writes the file straight from the page cache to the socket after we return
+      request.setAttribute(SENDFILE_FILENAME, asset.path().toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, 0L);
+      request.setAttribute(SENDFILE_END, asset.length());
+      return;
+    }
+    try (FileChannel file = FileChannel.open(asset.path(), StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = 0;
+      while (position < asset.length()) {
+        position += file.transferTo(position, asset.length() - position, out);
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.tzavrishon.controller;
+
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.service.ExportService;
+import com.tzavrishon.service.ExportService.AnswerSource;
+import com.tzavrishon.service.ExportService.Format;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/** Admin downloads of the question bank and answer logs, streamed as they are read. */
+@RestController
+@RequestMapping("/api/v1/admin/export")
+public class ExportController {
+  private final ExportService exportService;
+
+  public ExportController(ExportService exportService) {
+    this.exportService = exportService;
+  }
+
+  @GetMapping("/questions")
+  public ResponseEntity<StreamingResponseBody> exportQuestions(
+      @RequestParam(required = false) QuestionType type,
+      @RequestParam(defaultValue = "NDJSON") Format format,
+      @RequestParam(defaultValue = "false") boolean gzip) {
+    return download(
+        "questions", format, gzip, out -> exportService.exportQuestions(type, format, out));
+  }
+
+  /** Answers given from {@code from} through {@code to} (UTC dates, inclusive). */
+  @GetMapping("/answers")
+  public ResponseEntity<StreamingResponseBody> exportAnswers(
+      @RequestParam(defaultValue = "PRACTICE") AnswerSource source,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(required = false) QuestionType type,
+      @RequestParam(defaultValue = "NDJSON") Format format,
+      @RequestParam(defaultValue = "false") boolean gzip) {
+    Instant start = from != null ? from.atStartOfDay(ZoneOffset.UTC).toInstant() : Instant.EPOCH;
+    Instant end =
+        to != null ? to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant() : Instant.now();
+    return download(
+        source.name().toLowerCase() + "-answers",
+        format,
+        gzip,
+        out -> exportService.exportAnswers(source, start, end, type, format, out));
+  }
+
+  private ResponseEntity<StreamingResponseBody> download(
+      String name, Format format, boolean gzip, StreamingResponseBody body) {
+    String extension = format == Format.CSV ? ".csv" : ".ndjson";
+    MediaType type =
+        format == Format.CSV
+            ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+            : new MediaType("application", "x-ndjson");
+    StreamingResponseBody stream = body;
+    if (gzip) {
+      extension += ".gz";
+      type = new MediaType("application", "gzip");
+      stream =
+          out -> {
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+            body.writeTo(compressed);
+            compressed.finish();
+          };
+    }
+    return ResponseEntity.ok()
+        .contentType(type)
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(name + extension).build().toString())
+        .body(stream);
+  }
+}
@@ -1,86 +1,174 @@
 package com.tzavrishon.controller;
 
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.service.ImageProxyService;
+import com.tzavrishon.service.ImageProxyService.ImageFetchException;
+import com.tzavrishon.service.ImageProxyService.ResponseSink;
+import com.tzavrishon.service.ImageSource;
+import com.tzavrishon.util.ByteRange;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/v1/proxy")
 public class ImageProxyController {
-  private static final List<String> ALLOWED_CONTENT_TYPES =
-      Arrays.asList("image/jpeg", "image/png", "image/gif", "image/webp");
-  private static final ConcurrentHashMap<String, CachedImage> cache = new ConcurrentHashMap<>();
-  private static final long CACHE_DURATION_MS = 3600000; // 1 hour
+  private final ImageProxyService imageProxyService;
+  private final AppProperties appProperties;
+
+  public ImageProxyController(ImageProxyService imageProxyService, AppProperties appProperties) {
+    this.imageProxyService = imageProxyService;
+    this.appProperties = appProperties;
+  }
 
   @GetMapping("/image")
-  public void proxyImage(@RequestParam String url, HttpServletResponse response) {
+  public void proxyImage(
+      @RequestParam String url,
+      @RequestParam(name = "w", required = false) Integer width,
+      @RequestParam(required = false) String format,
+      HttpServletRequest request,
+      HttpServletResponse response) {
     try {
-      // Validate URL
-      if (!url.startsWith("http://") && !url.startsWith("https://")) {
-        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid URL");
+      if (width != null || format != null) {
+        ImageSource variant =
+            imageProxyService.fetchVariant(
+                url, width, formatType(format), request.getHeader(HttpHeaders.ACCEPT));
+        if (format == null) {
+          response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        sendImage(variant, request, response);
         return;
       }
 
-      // Check cache
-      CachedImage cached = cache.get(url);
-      if (cached != null && (System.currentTimeMillis() - cached.timestamp < CACHE_DURATION_MS)) {
-        response.setContentType(cached.contentType);
-        response.setContentLength(cached.data.length);
-        response.getOutputStream().write(cached.data);
-        return;
-      }
+      imageProxyService.serve(
+          url,
+          new ResponseSink() {
+            @Override
+            public void send(ImageSource image) throws IOException {
+              sendImage(image, request, response);
+            }
 
-      // Fetch image
-      URLConnection connection = new URL(url).openConnection();
-      connection.setConnectTimeout(5000);
-      connection.setReadTimeout(10000);
-      connection.setRequestProperty(
-          "User-Agent",
-          "Mozilla/5.0 (Tzav Rishon Image Proxy)");
-
-      String contentType = connection.getContentType();
-      if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType)) {
-        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid content type");
-        return;
-      }
+            @Override
+            public OutputStream stream(String contentType, long length, long lastModified)
+                throws IOException {
+              // First fetch: the ETag is only known once the body is in, so revalidation of this
+              // copy goes by Last-Modified
+              setCacheHeaders(response, lastModified);
+              response.setContentType(contentType);
+              if (length >= 0) {
+                response.setContentLengthLong(length);
+              }
+              return response.getOutputStream();
+            }
+          });
 
-      // Read and cache
-      InputStream in = connection.getInputStream();
-      byte[] data = in.readAllBytes();
-      in.close();
+    } catch (ImageFetchException e) {
+      sendError(response, e.getMessage());
+    } catch (Exception e) {
+      sendError(response, "Failed to fetch image");
+    }
+  }
 
-      cache.put(url, new CachedImage(data, contentType, System.currentTimeMillis()));
+  private String formatType(String format) {
+    if (format == null) {
+      return null;
+    }
+    return switch (format.toLowerCase()) {
+      case "jpeg", "jpg" -> "image/jpeg";
+      case "png" -> "image/png";
+      case "webp" -> "image/webp";
+      default -> throw new ImageFetchException("Invalid format");
+    };
+  }
 
-      // Serve
-      response.setContentType(contentType);
-      response.setContentLength(data.length);
-      response.getOutputStream().write(data);
+  private void sendImage(
+      ImageSource image, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String etag = "\"" + image.hash() + "\"";
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    setCacheHeaders(response, image.lastModified());
 
-    } catch (Exception e) {
-      try {
-        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Failed to fetch image");
-      } catch (Exception ignored) {
+    if (isNotModified(request, etag, image.lastModified())) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setContentType(image.contentType());
+    long length = image.length();
+    ByteRange range =
+        rangeStillValid(request, etag, image.lastModified())
+            ? ByteRange.parse(request.getHeader(HttpHeaders.RANGE), length)
+            : null;
+    if (range == null) {
+      response.setContentLengthLong(length);
+      image.writeTo(response.getOutputStream());
+    } else if (!range.isSatisfiable(length)) {
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+      response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    } else {
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader(
+          HttpHeaders.CONTENT_RANGE,
+          "bytes " + range.start() + "-" + range.end() + "/" + length);
+      response.setContentLengthLong(range.length());
+      image.writeTo(response.getOutputStream(), range.start(), range.length());
+    }
+  }
+
+  private void setCacheHeaders(HttpServletResponse response, long lastModified) {
+    response.setHeader(
+        HttpHeaders.CACHE_CONTROL,
+        "public, max-age=" + appProperties.getImageProxy().getBrowserMaxAgeSeconds());
+    if (lastModified > 0) {
+      response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+    }
+  }
+
+  /** If-None-Match wins over If-Modified-Since, as RFC 9110 requires. */
+  private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      for (String candidate : ifNoneMatch.split(",")) {
+        String tag = candidate.trim();
+        if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+          return true;
+        }
       }
+      return false;
+    }
+    long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+    return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /** If-Range: only honour Range when the client's copy is still this one. */
+  private boolean rangeStillValid(HttpServletRequest request, String etag, long lastModified) {
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange == null) {
+      return true;
+    }
+    if (ifRange.startsWith("\"")) {
+      return ifRange.equals(etag);
     }
+    long date = dateHeader(request, HttpHeaders.IF_RANGE);
+    return date >= 0 && lastModified / 1000 == date / 1000;
   }
 
-  private static class CachedImage {
-    final byte[] data;
-    final String contentType;
-    final long timestamp;
+  private long dateHeader(HttpServletRequest request, String name) {
+    try {
+      return request.getDateHeader(name);
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+  }
 
-    CachedImage(byte[] data, String contentType, long timestamp) {
-      this.data = data;
-      this.contentType = contentType;
-      this.timestamp = timestamp;
+  private void sendError(HttpServletResponse response, String message) {
+    try {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, message);
+    } catch (Exception ignored) {
     }
   }
 }
-
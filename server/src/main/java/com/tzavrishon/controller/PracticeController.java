@@ -1,10 +1,16 @@
 package com.tzavrishon.controller;
 
+import com.tzavrishon.domain.GuestPracticeState;
 import com.tzavrishon.dto.*;
+import com.tzavrishon.security.GuestStateTokens;
+import com.tzavrishon.security.JwtService;
 import com.tzavrishon.security.UserPrincipal;
+import com.tzavrishon.service.GuestPracticeService;
 import com.tzavrishon.service.PracticeService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -14,16 +20,33 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/v1/practice")
 public class PracticeController {
   private final PracticeService practiceService;
+  private final GuestPracticeService guestPracticeService;
+  private final GuestStateTokens guestStateTokens;
 
-  public PracticeController(PracticeService practiceService) {
+  public PracticeController(
+      PracticeService practiceService,
+      GuestPracticeService guestPracticeService,
+      GuestStateTokens guestStateTokens) {
     this.practiceService = practiceService;
+    this.guestPracticeService = guestPracticeService;
+    this.guestStateTokens = guestStateTokens;
   }
 
   @PostMapping("/start")
   public ResponseEntity<PracticeSessionResponse> startSession(
       @Valid @RequestBody StartPracticeRequest request,
       @AuthenticationPrincipal UserPrincipal user,
-      @CookieValue(name = "guest_id", required = false) String guestIdStr) {
+      @CookieValue(name = "guest_id", required = false) String guestIdStr,
+      @CookieValue(name = JwtService.GUEST_STATE_COOKIE, required = false) String guestState,
+      HttpServletResponse servletResponse) {
+    if (user == null && guestPracticeService.isEnabled()) {
+      GuestPracticeState state =
+          guestStateTokens.read(guestState).orElseGet(GuestPracticeState::create);
+      PracticeSessionResponse response = guestPracticeService.startSession(request.getType(), state);
+      guestStateTokens.write(servletResponse, state);
+      return ResponseEntity.ok(response);
+    }
+
     UUID guestId = null;
     if (user == null) {
       if (guestIdStr == null) {
@@ -41,23 +64,82 @@ public class PracticeController {
     return ResponseEntity.ok(response);
   }
 
+  /** Start a session over the signed-in user's questions that are due for review. */
+  @PostMapping("/review")
+  public ResponseEntity<PracticeSessionResponse> startReviewSession(
+      @Valid @RequestBody StartPracticeRequest request,
+      @AuthenticationPrincipal UserPrincipal user) {
+    return ResponseEntity.ok(practiceService.startReviewSession(request.getType(), user));
+  }
+
+  /** Start a session mixing every question type; its questions come back in one response. */
+  @PostMapping("/mixed")
+  public ResponseEntity<PracticeSessionResponse> startMixedSession(
+      @AuthenticationPrincipal UserPrincipal user) {
+    return ResponseEntity.ok(practiceService.startMixedSession(user));
+  }
+
   @GetMapping("/{sessionId}/questions")
-  public ResponseEntity<List<QuestionResponse>> getQuestions(@PathVariable UUID sessionId) {
+  public ResponseEntity<List<QuestionResponse>> getQuestions(
+      @PathVariable UUID sessionId,
+      @CookieValue(name = JwtService.GUEST_STATE_COOKIE, required = false) String guestState) {
+    Optional<GuestPracticeState> state = statelessSession(sessionId, guestState);
+    if (state.isPresent()) {
+      return ResponseEntity.ok(guestPracticeService.getQuestions(state.get()));
+    }
     List<QuestionResponse> questions = practiceService.getQuestions(sessionId);
     return ResponseEntity.ok(questions);
   }
 
   @PostMapping("/{sessionId}/answer")
   public ResponseEntity<AnswerResponse> submitAnswer(
-      @PathVariable UUID sessionId, @Valid @RequestBody SubmitAnswerRequest request) {
+      @PathVariable UUID sessionId,
+      @Valid @RequestBody SubmitAnswerRequest request,
+      @CookieValue(name = JwtService.GUEST_STATE_COOKIE, required = false) String guestState,
+      HttpServletResponse servletResponse) {
+    Optional<GuestPracticeState> state = statelessSession(sessionId, guestState);
+    if (state.isPresent()) {
+      AnswerResponse response = guestPracticeService.submitAnswer(state.get(), request);
+      guestStateTokens.write(servletResponse, state.get());
+      return ResponseEntity.ok(response);
+    }
     AnswerResponse response = practiceService.submitAnswer(sessionId, request);
     return ResponseEntity.ok(response);
   }
 
   @PostMapping("/{sessionId}/finish")
-  public ResponseEntity<PracticeSummaryResponse> finishSession(@PathVariable UUID sessionId) {
+  public ResponseEntity<PracticeSummaryResponse> finishSession(
+      @PathVariable UUID sessionId,
+      @CookieValue(name = JwtService.GUEST_STATE_COOKIE, required = false) String guestState,
+      HttpServletResponse servletResponse) {
+    Optional<GuestPracticeState> state = statelessSession(sessionId, guestState);
+    if (state.isPresent()) {
+      PracticeSummaryResponse response = guestPracticeService.finishSession(state.get());
+      guestStateTokens.write(servletResponse, state.get());
+      return ResponseEntity.ok(response);
+    }
     PracticeSummaryResponse response = practiceService.finishSession(sessionId);
     return ResponseEntity.ok(response);
   }
-}
 
+  /** Save a stateless guest's practice to the signed-in user's history, then drop the cookie. */
+  @PostMapping("/guest/claim")
+  public ResponseEntity<Void> claimGuestPractice(
+      @AuthenticationPrincipal UserPrincipal user,
+      @CookieValue(name = JwtService.GUEST_STATE_COOKIE, required = false) String guestState,
+      HttpServletResponse servletResponse) {
+    Optional<GuestPracticeState> state = guestStateTokens.read(guestState);
+    if (state.isPresent()) {
+      guestPracticeService.claim(user, state.get());
+    }
+    guestStateTokens.clear(servletResponse);
+    return ResponseEntity.noContent().build();
+  }
+
+  /** The guest state, if the session is the stateless session it carries. */
+  private Optional<GuestPracticeState> statelessSession(UUID sessionId, String guestState) {
+    return guestStateTokens
+        .read(guestState)
+        .filter(state -> sessionId.equals(state.getActiveSessionId()));
+  }
+}
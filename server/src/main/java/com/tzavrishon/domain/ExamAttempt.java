@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.UUID;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 @Entity
 @Table(name = "exam_attempts")
@@ -29,6 +31,15 @@ public class ExamAttempt {
   @Column(name = "total_score_90")
   private Integer totalScore90;
 
+  /** Serialized {@link ExamAttemptSnapshot}; read and written through ExamAttemptSnapshots. */
+  @JdbcTypeCode(SqlTypes.JSON)
+  @Column(name = "snapshot", columnDefinition = "jsonb")
+  private String snapshot;
+
+  /** True once sections and answers have been compacted into exam_attempt_archives. */
+  @Column(nullable = false)
+  private Boolean archived = false;
+
   @OneToMany(mappedBy = "attempt", cascade = CascadeType.ALL)
   private List<ExamSection> sections;
 }
@@ -0,0 +1,30 @@
+package com.tzavrishon.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compacted form of a completed exam attempt. Replaces the attempt's exam_sections and
+ * exam_user_answers rows once it has been archived; see ExamArchiveCodec for the payload format.
+ */
+@Entity
+@Table(name = "exam_attempt_archives")
+@Data
+@NoArgsConstructor
+public class ExamAttemptArchive {
+  @Id
+  @Column(name = "attempt_id")
+  private UUID attemptId;
+
+  @Column(name = "format_version", nullable = false)
+  private Short formatVersion;
+
+  @Column(nullable = false)
+  private byte[] payload;
+
+  @Column(name = "archived_at")
+  private Instant archivedAt = Instant.now();
+}
@@ -0,0 +1,112 @@
+package com.tzavrishon.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact, denormalized view of an exam attempt stored in the exam_attempts.snapshot JSONB column.
+ * Holds everything needed to resume an attempt or render its summary, so those reads are a single
+ * primary-key lookup instead of joins over exam_sections and exam_user_answers.
+ */
+@Data
+@NoArgsConstructor
+public class ExamAttemptSnapshot {
+  private List<SectionState> sections = new ArrayList<>();
+
+  /** The first unlocked section in exam order, i.e. the one the user is currently taking. */
+  public Optional<SectionState> currentSection() {
+    return sections.stream()
+        .filter(s -> !s.isLocked())
+        .min(Comparator.comparingInt(SectionState::getOrderIndex));
+  }
+
+  public int totalAnswered() {
+    return sections.stream().mapToInt(SectionState::answeredCount).sum();
+  }
+
+  public int totalCorrect() {
+    return sections.stream().mapToInt(SectionState::correctCount).sum();
+  }
+
+  @Data
+  @NoArgsConstructor
+  public static class SectionState {
+    private UUID sectionId;
+    private QuestionType type;
+    private int orderIndex;
+    private int durationSeconds;
+    private Instant startedAt;
+    private Instant endedAt;
+    private boolean locked;
+    private int score;
+
+    /** Questions chosen for this section, in display order. Null until first served. */
+    private List<UUID> questionIds;
+
+    /** Answered question IDs in answer order; index i lines up with correctBits and timesMs. */
+    private List<UUID> answeredQuestionIds = new ArrayList<>();
+
+    /** Bitset of correct answers, one bit per entry in answeredQuestionIds. */
+    private long[] correctBits = new long[0];
+
+    private List<Integer> timesMs = new ArrayList<>();
+
+    /** Answers submitted without a selected option or text, i.e. skipped questions. */
+    private int skippedCount;
+
+    public boolean hasAnswered(UUID questionId) {
+      return answeredQuestionIds.contains(questionId);
+    }
+
+    public int answeredCount() {
+      return answeredQuestionIds.size();
+    }
+
+    public boolean isCorrect(int index) {
+      int word = index >>> 6;
+      return word < correctBits.length && (correctBits[word] & (1L << index)) != 0;
+    }
+
+    public int correctCount() {
+      int count = 0;
+      for (long word : correctBits) {
+        count += Long.bitCount(word);
+      }
+      return count;
+    }
+
+    public void recordAnswer(UUID questionId, boolean correct, Integer timeMs) {
+      int index = answeredQuestionIds.size();
+      answeredQuestionIds.add(questionId);
+      timesMs.add(timeMs);
+      if (correct) {
+        int word = index >>> 6;
+        if (word >= correctBits.length) {
+          correctBits = Arrays.copyOf(correctBits, word + 1);
+        }
+        correctBits[word] |= 1L << index;
+      }
+    }
+
+    public long totalTimeMs() {
+      long total = 0;
+      for (Integer time : timesMs) {
+        total += time != null ? time : 0;
+      }
+      return total;
+    }
+
+    public boolean isExpired(Instant now) {
+      return startedAt != null
+          && Duration.between(startedAt, now).getSeconds() >= durationSeconds;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.tzavrishon.domain;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Everything a stateless guest's practice needs, carried in a signed token instead of
+ * guest_identities / practice_sessions / practice_user_answers / recent_questions rows. Questions are
+ * referenced by catalog index to keep the token small.
+ */
+@Data
+@NoArgsConstructor
+public class GuestPracticeState {
+  /** Sessions older than the quota window are dropped, bounding the token size. */
+  public static final int MAX_SESSIONS = 20;
+
+  /** Answers beyond this many in one session are graded but not recorded. */
+  public static final int MAX_ANSWERS_PER_SESSION = 64;
+
+  private UUID guestId;
+  private UUID activeSessionId;
+  private List<Session> sessions = new ArrayList<>();
+  private Map<QuestionType, List<Integer>> recent = new EnumMap<>(QuestionType.class);
+
+  public static GuestPracticeState create() {
+    GuestPracticeState state = new GuestPracticeState();
+    state.setGuestId(UUID.randomUUID());
+    return state;
+  }
+
+  /** The session the active session ID refers to, which is always the newest one. */
+  public Optional<Session> activeSession() {
+    if (activeSessionId == null || sessions.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(sessions.get(sessions.size() - 1));
+  }
+
+  public long countStartsSince(QuestionType type, Instant since) {
+    return sessions.stream()
+        .filter(s -> s.getType() == type && s.getStartedAt().isAfter(since))
+        .count();
+  }
+
+  /** Start a new session, dropping sessions that started before the cutoff. */
+  public Session startSession(QuestionType type, Instant now, Instant cutoff) {
+    sessions.removeIf(s -> !s.getStartedAt().isAfter(cutoff));
+    while (sessions.size() >= MAX_SESSIONS) {
+      sessions.remove(0);
+    }
+    Session session = new Session();
+    session.setType(type);
+    session.setStartedAt(now);
+    sessions.add(session);
+    activeSessionId = UUID.randomUUID();
+    return session;
+  }
+
+  /** Remember a question as recently seen, most recent first, keeping at most {@code max}. */
+  public void addRecent(QuestionType type, int catalogIndex, int max) {
+    List<Integer> indices = recent.computeIfAbsent(type, t -> new ArrayList<>());
+    indices.remove(Integer.valueOf(catalogIndex));
+    indices.add(0, catalogIndex);
+    while (indices.size() > max) {
+      indices.remove(indices.size() - 1);
+    }
+  }
+
+  @Data
+  @NoArgsConstructor
+  public static class Session {
+    private QuestionType type;
+    private Instant startedAt;
+    private Instant endedAt;
+    private List<Integer> questionIndices = new ArrayList<>();
+    private long correctBits;
+    private List<Integer> timesMs = new ArrayList<>();
+
+    public void recordAnswer(int catalogIndex, boolean correct, Integer timeMs) {
+      int i = questionIndices.size();
+      if (i >= MAX_ANSWERS_PER_SESSION) {
+        return;
+      }
+      questionIndices.add(catalogIndex);
+      timesMs.add(timeMs);
+      if (correct) {
+        correctBits |= 1L << i;
+      }
+    }
+
+    public boolean isCorrect(int i) {
+      return (correctBits & (1L << i)) != 0;
+    }
+
+    public int answeredCount() {
+      return questionIndices.size();
+    }
+
+    public int correctCount() {
+      return Long.bitCount(correctBits);
+    }
+
+    public int totalTimeMs() {
+      return timesMs.stream().mapToInt(t -> t != null ? t : 0).sum();
+    }
+  }
+}
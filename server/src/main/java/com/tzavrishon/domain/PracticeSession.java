@@ -24,10 +24,17 @@ public class PracticeSession {
   @JoinColumn(name = "guest_id")
   private GuestIdentity guest;
 
+  /** Null for mixed sessions, which draw from every type. */
   @Enumerated(EnumType.STRING)
-  @Column(nullable = false)
   private QuestionType type;
 
+  /** Partition key: guest rows live in separate partitions so they can be expired wholesale. */
+  @Column(name = "is_guest", nullable = false)
+  private Boolean isGuest = false;
+
+  @Column(name = "is_review", nullable = false)
+  private Boolean isReview = false;
+
   @Column(name = "started_at")
   private Instant startedAt = Instant.now();
 
@@ -36,6 +36,10 @@ public class PracticeUserAnswer {
   @Column(name = "time_ms")
   private Integer timeMs;
 
+  /** Partition key: guest rows live in separate partitions so they can be expired wholesale. */
+  @Column(name = "is_guest", nullable = false)
+  private Boolean isGuest = false;
+
   @Column(name = "answered_at")
   private Instant answeredAt = Instant.now();
 }
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.UUID;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Generated;
 
 @Entity
 @Table(name = "questions")
@@ -36,12 +37,28 @@ public class Question {
   @Column(nullable = false)
   private Integer difficulty = 3;
 
+  /** Difficulty in logits fitted from answers by DifficultyCalibrationService; null until then. */
+  @Column(name = "calibrated_difficulty")
+  private Double calibratedDifficulty;
+
+  @Column(name = "calibrated_at")
+  private Instant calibratedAt;
+
   @Column(name = "is_exam_question", nullable = false)
   private Boolean isExamQuestion = false;
 
   @Column(name = "created_at")
   private Instant createdAt = Instant.now();
 
+  /** Dense integer assigned by the database; used as a compact question reference in archives. */
+  @Generated
+  @Column(name = "catalog_index", insertable = false, updatable = false)
+  private Integer catalogIndex;
+
+  /** Content fingerprint from the import that created the question; unique when set. */
+  @Column(name = "content_hash", length = 64)
+  private String contentHash;
+
   @OneToMany(mappedBy = "question", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
   private List<QuestionOption> options;
 }
@@ -31,6 +31,10 @@ public class RecentQuestion {
   @Column(name = "question_type", nullable = false)
   private QuestionType questionType;
 
+  /** Partition key: guest rows live in separate partitions so they can be expired wholesale. */
+  @Column(name = "is_guest", nullable = false)
+  private Boolean isGuest = false;
+
   @Column(name = "served_at")
   private Instant servedAt = Instant.now();
 }
@@ -1,5 +1,6 @@
 package com.tzavrishon.domain;
 
+import com.tzavrishon.security.UserChangeListener;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
@@ -8,6 +9,7 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserChangeListener.class)
 @Data
 @NoArgsConstructor
 public class User {
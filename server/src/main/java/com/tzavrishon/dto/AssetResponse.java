@@ -0,0 +1,11 @@
+package com.tzavrishon.dto;
+
+import lombok.Data;
+
+@Data
+public class AssetResponse {
+  private String hash;
+  private String url;
+  private String contentType;
+  private long size;
+}
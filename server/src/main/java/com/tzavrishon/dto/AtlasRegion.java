@@ -0,0 +1,16 @@
+package com.tzavrishon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Where one image sits inside a question's atlas, in atlas pixels. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AtlasRegion {
+  private int x;
+  private int y;
+  private int width;
+  private int height;
+}
@@ -0,0 +1,26 @@
+package com.tzavrishon.dto;
+
+import java.util.Map;
+import lombok.Data;
+
+@Data
+public class ImageCacheStats {
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long upstreamFetches;
+  private long coalescedRequests; // misses that waited on another request's fetch
+  private int entries;
+  private long bytes;
+  private long maxBytes;
+  private int diskEntries;
+  private long diskBytes;
+  private long variantsCreated; // resized / re-encoded images produced
+  private long negativeHits; // requests answered from remembered failures
+  private int negativeEntries;
+  private long circuitsOpened;
+  private long circuitsHalfOpened;
+  private long circuitsClosed;
+  private long circuitRejections; // requests failed fast because their host was open
+  private Map<String, String> openHosts; // host -> OPEN / HALF_OPEN
+}
@@ -0,0 +1,27 @@
+package com.tzavrishon.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+public class ImportReport {
+  private long received;
+  private long imported; // new questions
+  private long updated; // existing questions whose explanation, difficulty or answer changed
+  private long unchanged; // already in the bank as imported
+  private long rejected;
+  private int chunks; // committed transactions
+  private long elapsedMs;
+  private List<RecordError> errors = new ArrayList<>(); // the first 100; rejected has the count
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class RecordError {
+    private long index; // position in the uploaded array, from 0
+    private String message;
+  }
+}
@@ -9,5 +9,6 @@ public class QuestionOptionResponse {
   private String text;
   private String imageUrl;
   private Integer optionOrder;
+  private AtlasRegion atlasRegion; // this option's image within the question's atlas
 }
 
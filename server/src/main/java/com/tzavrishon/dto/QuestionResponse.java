@@ -12,5 +12,12 @@ public class QuestionResponse {
   private String promptText;
   private String promptImageUrl;
   private List<QuestionOptionResponse> options;
+
+  /** One image holding the prompt and option images; null until it has been built. */
+  private String atlasUrl;
+
+  private Integer atlasWidth;
+  private Integer atlasHeight;
+  private AtlasRegion promptAtlasRegion;
 }
 
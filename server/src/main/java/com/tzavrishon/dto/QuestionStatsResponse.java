@@ -0,0 +1,24 @@
+package com.tzavrishon.dto;
+
+import com.tzavrishon.domain.QuestionType;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import lombok.Data;
+
+@Data
+public class QuestionStatsResponse {
+  private UUID questionId;
+  private QuestionType type;
+  private Integer difficulty; // as authored, 1-5
+  private Double calibratedDifficulty; // logits, from the last calibration run
+  private long attempts;
+  private long correct;
+  private Double correctRate; // observed difficulty (item p-value)
+  private Map<UUID, Long> optionPicks; // option id -> times chosen
+  private Long timedAnswers;
+  private Long timeP10Ms;
+  private Long timeMedianMs;
+  private Long timeP90Ms;
+  private Instant updatedAt;
+}
@@ -0,0 +1,9 @@
+package com.tzavrishon.repository;
+
+import com.tzavrishon.domain.ExamAttemptArchive;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ExamAttemptArchiveRepository extends JpaRepository<ExamAttemptArchive, UUID> {}
@@ -1,13 +1,38 @@
 package com.tzavrishon.repository;
 
 import com.tzavrishon.domain.ExamAttempt;
+import jakarta.persistence.LockModeType;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ExamAttemptRepository extends JpaRepository<ExamAttempt, UUID> {
   List<ExamAttempt> findByUserIdOrderByCreatedAtDesc(UUID userId);
+
+  /**
+   * The attempt, with its row locked until the transaction ends. Requests that read, change and
+   * write back the attempt's snapshot load it through here so concurrent ones queue up instead
+   * of overwriting each other's changes.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT a FROM ExamAttempt a WHERE a.id = :id")
+  Optional<ExamAttempt> findByIdForUpdate(@Param("id") UUID id);
+
+  /**
+   * Completed attempts old enough to be compacted into exam_attempt_archives, oldest first.
+   */
+  @Query(
+      "SELECT a.id FROM ExamAttempt a "
+          + "WHERE a.archived = false AND a.completedAt < :cutoff "
+          + "ORDER BY a.completedAt")
+  List<UUID> findArchivableIds(@Param("cutoff") Instant cutoff, Pageable pageable);
 }
 
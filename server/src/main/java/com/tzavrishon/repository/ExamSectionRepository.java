@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -14,5 +15,8 @@ public interface ExamSectionRepository extends JpaRepository<ExamSection, UUID>
   List<ExamSection> findByAttemptIdOrderByOrderIndex(UUID attemptId);
 
   Optional<ExamSection> findFirstByAttemptIdAndLockedFalseOrderByOrderIndexAsc(UUID attemptId);
-}
 
+  @Modifying
+  @Query("DELETE FROM ExamSection es WHERE es.attempt.id = :attemptId")
+  int deleteByAttemptId(@Param("attemptId") UUID attemptId);
+}
@@ -4,6 +4,7 @@ import com.tzavrishon.domain.ExamUserAnswer;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,5 +19,10 @@ public interface ExamUserAnswerRepository extends JpaRepository<ExamUserAnswer,
           + "WHERE es.attempt.id = :attemptId "
           + "ORDER BY es.orderIndex, ea.orderIndex")
   List<ExamUserAnswer> findByAttemptIdOrderBySection(@Param("attemptId") UUID attemptId);
-}
 
+  @Modifying
+  @Query(
+      "DELETE FROM ExamUserAnswer ea "
+          + "WHERE ea.section.id IN (SELECT es.id FROM ExamSection es WHERE es.attempt.id = :attemptId)")
+  int deleteByAttemptId(@Param("attemptId") UUID attemptId);
+}
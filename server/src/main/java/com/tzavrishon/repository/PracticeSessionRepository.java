@@ -18,6 +18,16 @@ public interface PracticeSessionRepository extends JpaRepository<PracticeSession
   
   List<PracticeSession> findByUser_IdOrderByStartedAtDesc(UUID userId);
 
+  /**
+   * A user's sessions within a time window. The is_guest and started_at bounds let Postgres prune
+   * to the user partitions for the requested months.
+   */
+  @Query(
+      "SELECT s FROM PracticeSession s WHERE s.user.id = :userId AND s.isGuest = false "
+          + "AND s.startedAt >= :start AND s.startedAt <= :end ORDER BY s.startedAt DESC")
+  List<PracticeSession> findUserSessionsBetween(
+      @Param("userId") UUID userId, @Param("start") Instant start, @Param("end") Instant end);
+
   /**
    * Count practice sessions for a guest of a specific type within a time window.
    * Used to enforce guest limits.
@@ -25,11 +35,22 @@ public interface PracticeSessionRepository extends JpaRepository<PracticeSession
   @Query(
       value =
           "SELECT COUNT(*) FROM practice_sessions ps "
-              + "WHERE ps.guest_id = ?1 "
+              + "WHERE ps.is_guest = TRUE "
+              + "AND ps.guest_id = ?1 "
               + "AND ps.type = ?2 "
               + "AND ps.started_at >= ?3",
       nativeQuery = true)
   long countByGuestIdAndTypeAndStartedAtAfter(
       UUID guestId, String type, Instant since);
+
+  /** Start times of a guest's sessions of one type since the given instant, oldest first. */
+  @Query(
+      "SELECT s.startedAt FROM PracticeSession s WHERE s.isGuest = true "
+          + "AND s.guest.guestId = :guestId AND s.type = :type AND s.startedAt >= :since "
+          + "ORDER BY s.startedAt")
+  List<Instant> findGuestSessionStartsSince(
+      @Param("guestId") UUID guestId,
+      @Param("type") QuestionType type,
+      @Param("since") Instant since);
 }
 
@@ -1,9 +1,13 @@
 package com.tzavrishon.repository;
 
 import com.tzavrishon.domain.PracticeUserAnswer;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -11,5 +15,17 @@ public interface PracticeUserAnswerRepository extends JpaRepository<PracticeUser
   List<PracticeUserAnswer> findBySessionIdOrderByAnsweredAt(UUID sessionId);
 
   List<PracticeUserAnswer> findBySession_IdOrderByAnsweredAt(UUID sessionId);
+
+  /**
+   * Answers for a batch of user sessions, with their questions. Answers are never recorded before
+   * their session starts, so the earliest session start bounds answered_at and lets Postgres skip
+   * older monthly partitions.
+   */
+  @Query(
+      "SELECT a FROM PracticeUserAnswer a JOIN FETCH a.question "
+          + "WHERE a.session.id IN :sessionIds AND a.isGuest = false AND a.answeredAt >= :since "
+          + "ORDER BY a.answeredAt")
+  List<PracticeUserAnswer> findUserAnswersForSessions(
+      @Param("sessionIds") Collection<UUID> sessionIds, @Param("since") Instant since);
 }
 
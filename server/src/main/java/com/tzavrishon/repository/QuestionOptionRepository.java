@@ -1,13 +1,28 @@
 package com.tzavrishon.repository;
 
 import com.tzavrishon.domain.QuestionOption;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface QuestionOptionRepository extends JpaRepository<QuestionOption, UUID> {
   List<QuestionOption> findByQuestionIdOrderByOptionOrder(UUID questionId);
+
+  @Query(
+      "SELECT o FROM QuestionOption o WHERE o.question.id IN :questionIds ORDER BY o.optionOrder")
+  List<QuestionOption> findByQuestionIdIn(@Param("questionIds") Collection<UUID> questionIds);
+
+  @Query("SELECT DISTINCT o.imageUrl FROM QuestionOption o WHERE o.imageUrl IS NOT NULL")
+  List<String> findAllImageUrls();
+
+  @Query(
+      "SELECT o.imageUrl FROM QuestionOption o "
+          + "WHERE o.question.id IN :questionIds AND o.imageUrl IS NOT NULL")
+  List<String> findImageUrlsByQuestionIdIn(@Param("questionIds") Collection<UUID> questionIds);
 }
 
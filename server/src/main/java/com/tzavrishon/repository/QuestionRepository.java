@@ -2,6 +2,7 @@ package com.tzavrishon.repository;
 
 import com.tzavrishon.domain.Question;
 import com.tzavrishon.domain.QuestionType;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -92,5 +93,20 @@ public interface QuestionRepository extends JpaRepository<Question, UUID> {
   List<Question> findRandomQuestionsByType(@Param("type") String type, @Param("limit") int limit);
 
   List<Question> findByType(QuestionType type);
-}
 
+  /** Resolve question IDs to catalog indices, as [id, catalogIndex] pairs. */
+  @Query("SELECT q.id, q.catalogIndex FROM Question q WHERE q.id IN :ids")
+  List<Object[]> findCatalogIndicesByIdIn(@Param("ids") Collection<UUID> ids);
+
+  /** Resolve catalog indices back to question IDs, as [catalogIndex, id] pairs. */
+  @Query("SELECT q.catalogIndex, q.id FROM Question q WHERE q.catalogIndex IN :indices")
+  List<Object[]> findIdsByCatalogIndexIn(@Param("indices") Collection<Integer> indices);
+
+  @Query("SELECT DISTINCT q.promptImageUrl FROM Question q WHERE q.promptImageUrl IS NOT NULL")
+  List<String> findAllPromptImageUrls();
+
+  @Query(
+      "SELECT q.promptImageUrl FROM Question q "
+          + "WHERE q.id IN :ids AND q.promptImageUrl IS NOT NULL")
+  List<String> findPromptImageUrlsByIdIn(@Param("ids") Collection<UUID> ids);
+}
@@ -25,6 +25,20 @@ public interface RecentQuestionRepository extends JpaRepository<RecentQuestion,
   List<UUID> findRecentQuestionIdsByUserAndType(
       UUID userId, String type);
 
+  /**
+   * Get the {@code perType} most recent question IDs of every type for a user, as (question_id,
+   * question_type) rows.
+   */
+  @Query(
+      value =
+          "SELECT r.question_id, r.question_type FROM ("
+              + "SELECT rq.question_id, rq.question_type, ROW_NUMBER() OVER ("
+              + "PARTITION BY rq.question_type ORDER BY rq.served_at DESC) AS rn "
+              + "FROM recent_questions rq WHERE rq.user_id = ?1) r "
+              + "WHERE r.rn <= ?2",
+      nativeQuery = true)
+  List<Object[]> findRecentQuestionIdsByUserPerType(UUID userId, int perType);
+
   /**
    * Get recent question IDs for a guest and type.
    */
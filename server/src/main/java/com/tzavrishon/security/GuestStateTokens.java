@@ -0,0 +1,51 @@
+package com.tzavrishon.security;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.GuestPracticeState;
+import com.tzavrishon.util.GuestStateCodec;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.Base64;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+
+/** Reads and writes the signed guest_state cookie used by stateless guest practice. */
+@Component
+public class GuestStateTokens {
+  private final JwtService jwtService;
+  private final AppProperties appProperties;
+
+  public GuestStateTokens(JwtService jwtService, AppProperties appProperties) {
+    this.jwtService = jwtService;
+    this.appProperties = appProperties;
+  }
+
+  /** Decode a guest token; empty if missing, tampered with, expired or unreadable. */
+  public Optional<GuestPracticeState> read(String token) {
+    if (token == null || token.isEmpty()) {
+      return Optional.empty();
+    }
+    return jwtService
+        .validateGuestToken(token)
+        .flatMap(
+            state -> {
+              try {
+                return Optional.of(GuestStateCodec.decode(Base64.getUrlDecoder().decode(state)));
+              } catch (RuntimeException e) {
+                return Optional.empty();
+              }
+            });
+  }
+
+  /** Sign the state and set it as the guest_state cookie. */
+  public void write(HttpServletResponse response, GuestPracticeState state) {
+    long ttlMillis = appProperties.getGuest().getStateTokenTtlHours() * 3_600_000L;
+    String encoded =
+        Base64.getUrlEncoder().withoutPadding().encodeToString(GuestStateCodec.encode(state));
+    jwtService.setGuestStateCookie(
+        response, jwtService.generateGuestToken(state.getGuestId(), encoded, ttlMillis), ttlMillis);
+  }
+
+  public void clear(HttpServletResponse response) {
+    jwtService.clearGuestStateCookie(response);
+  }
+}
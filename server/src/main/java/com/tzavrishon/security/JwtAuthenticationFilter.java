@@ -1,5 +1,6 @@
 package com.tzavrishon.security;
 
+import com.tzavrishon.config.AppProperties;
 import com.tzavrishon.domain.User;
 import com.tzavrishon.repository.UserRepository;
 import io.jsonwebtoken.Claims;
@@ -8,6 +9,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -16,14 +18,26 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+/**
+ * Authenticates requests from the auth cookie. Principals are served from {@link
+ * UserPrincipalCache} when possible, so most requests cost a signature check and no query.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
   private final JwtService jwtService;
   private final UserRepository userRepository;
+  private final UserPrincipalCache principalCache;
+  private final boolean principalFromClaims;
 
-  public JwtAuthenticationFilter(JwtService jwtService, UserRepository userRepository) {
+  public JwtAuthenticationFilter(
+      JwtService jwtService,
+      UserRepository userRepository,
+      UserPrincipalCache principalCache,
+      AppProperties appProperties) {
     this.jwtService = jwtService;
     this.userRepository = userRepository;
+    this.principalCache = principalCache;
+    this.principalFromClaims = appProperties.getJwt().isPrincipalFromClaims();
   }
 
   @Override
@@ -36,11 +50,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String token = tokenOpt.get();
         Optional<Claims> claimsOpt = jwtService.validateToken(token);
         if (claimsOpt.isPresent()) {
-          UUID userId = jwtService.getUserIdFromClaims(claimsOpt.get());
-          Optional<User> userOpt = userRepository.findById(userId);
-          if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            UserPrincipal principal = new UserPrincipal(user);
+          UserPrincipal principal = resolvePrincipal(claimsOpt.get());
+          if (principal != null) {
             UsernamePasswordAuthenticationToken authentication =
                 new UsernamePasswordAuthenticationToken(
                     principal, null, principal.getAuthorities());
@@ -55,5 +66,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     filterChain.doFilter(request, response);
   }
-}
 
+  private UserPrincipal resolvePrincipal(Claims claims) {
+    UUID userId = jwtService.getUserIdFromClaims(claims);
+    Instant issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null;
+    UserPrincipal principal = principalCache.get(userId, issuedAt);
+    if (principal != null) {
+      return principal;
+    }
+
+    if (principalFromClaims) {
+      principal = jwtService.getPrincipalFromClaims(claims).orElse(null);
+    }
+    if (principal == null) {
+      Optional<User> userOpt = userRepository.findById(userId);
+      if (userOpt.isEmpty()) {
+        return null;
+      }
+      principal = new UserPrincipal(userOpt.get());
+    }
+    principalCache.put(issuedAt, principal);
+    return principal;
+  }
+}
@@ -1,7 +1,9 @@
 package com.tzavrishon.security;
 
 import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.servlet.http.Cookie;
@@ -17,7 +19,15 @@ import org.springframework.stereotype.Service;
 
 @Service
 public class JwtService {
+  /** Cookie carrying the signed stateless guest practice state. */
+  public static final String GUEST_STATE_COOKIE = "guest_state";
+
+  private static final String TOKEN_TYPE_CLAIM = "typ";
+  private static final String GUEST_TOKEN_TYPE = "guest";
+
   private final SecretKey key;
+  private final JwtParser parser;
+  private final VerifiedTokenCache verifiedTokens;
   private final long expiration;
   private final String cookieName;
   private final String frontendUrl;
@@ -26,6 +36,8 @@ public class JwtService {
     // Decode the base64-encoded secret key
     byte[] decodedKey = Base64.getDecoder().decode(appProperties.getJwt().getSecret());
     this.key = Keys.hmacShaKeyFor(decodedKey);
+    this.parser = Jwts.parser().verifyWith(key).build(); // immutable and thread-safe
+    this.verifiedTokens = new VerifiedTokenCache(appProperties.getJwt().getVerifiedTokenCacheSize());
     this.expiration = appProperties.getJwt().getExpiration();
     this.cookieName = appProperties.getJwt().getCookieName();
     this.frontendUrl = appProperties.getFrontendUrl();
@@ -39,15 +51,18 @@ public class JwtService {
   }
 
   /**
-   * Generate a JWT token for a user.
+   * Generate a JWT token for a user. Display name and premium flag ride along so the principal
+   * can be rebuilt without a user lookup.
    */
-  public String generateToken(UUID userId, String email) {
+  public String generateToken(User user) {
     Date now = new Date();
     Date expiryDate = new Date(now.getTime() + expiration);
 
     return Jwts.builder()
-        .subject(userId.toString())
-        .claim("email", email)
+        .subject(user.getId().toString())
+        .claim("email", user.getEmail())
+        .claim("name", user.getDisplayName())
+        .claim("premium", Boolean.TRUE.equals(user.getIsPremium()))
         .issuedAt(now)
         .expiration(expiryDate)
         .signWith(key)
@@ -55,12 +70,47 @@ public class JwtService {
   }
 
   /**
-   * Validate and parse a JWT token.
+   * Generate a token for a stateless guest. The opaque state travels in a single claim; the token
+   * type claim keeps it from ever being accepted as a user token.
+   */
+  public String generateGuestToken(UUID guestId, String state, long ttlMillis) {
+    Date now = new Date();
+    return Jwts.builder()
+        .subject(guestId.toString())
+        .claim(TOKEN_TYPE_CLAIM, GUEST_TOKEN_TYPE)
+        .claim("state", state)
+        .issuedAt(now)
+        .expiration(new Date(now.getTime() + ttlMillis))
+        .signWith(key)
+        .compact();
+  }
+
+  /**
+   * Validate and parse a user JWT token. Guest tokens are rejected.
    */
   public Optional<Claims> validateToken(String token) {
+    Claims cached = verifiedTokens.get(token);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    Optional<Claims> claims =
+        parse(token).filter(c -> !GUEST_TOKEN_TYPE.equals(c.get(TOKEN_TYPE_CLAIM)));
+    claims.ifPresent(c -> verifiedTokens.put(token, c));
+    return claims;
+  }
+
+  /**
+   * Validate a guest token and return its opaque state claim.
+   */
+  public Optional<String> validateGuestToken(String token) {
+    return parse(token)
+        .filter(claims -> GUEST_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM)))
+        .map(claims -> claims.get("state", String.class));
+  }
+
+  private Optional<Claims> parse(String token) {
     try {
-      Claims claims =
-          Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+      Claims claims = parser.parseSignedClaims(token).getPayload();
       return Optional.of(claims);
     } catch (Exception e) {
       return Optional.empty();
@@ -74,6 +124,21 @@ public class JwtService {
     return UUID.fromString(claims.getSubject());
   }
 
+  /**
+   * Build a principal from the claims alone; empty for tokens issued before the claims existed.
+   */
+  public Optional<UserPrincipal> getPrincipalFromClaims(Claims claims) {
+    if (!claims.containsKey("premium")) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new UserPrincipal(
+            getUserIdFromClaims(claims),
+            claims.get("email", String.class),
+            claims.get("name", String.class),
+            claims.get("premium", Boolean.class)));
+  }
+
   /**
    * Set JWT as HTTP-only cookie in response.
    * Automatically detects production (HTTPS) vs development (HTTP) based on frontend URL.
@@ -100,6 +165,31 @@ public class JwtService {
     response.addCookie(cookie);
   }
 
+  /**
+   * Set the guest state token as HTTP-only cookie in response.
+   */
+  public void setGuestStateCookie(HttpServletResponse response, String token, long ttlMillis) {
+    Cookie cookie = new Cookie(GUEST_STATE_COOKIE, token);
+    cookie.setHttpOnly(true);
+    cookie.setSecure(isProduction());
+    cookie.setPath("/");
+    cookie.setMaxAge((int) (ttlMillis / 1000));
+    cookie.setAttribute("SameSite", "Lax");
+    response.addCookie(cookie);
+  }
+
+  /**
+   * Clear guest state cookie, once its state has been claimed or discarded.
+   */
+  public void clearGuestStateCookie(HttpServletResponse response) {
+    Cookie cookie = new Cookie(GUEST_STATE_COOKIE, null);
+    cookie.setHttpOnly(true);
+    cookie.setSecure(isProduction());
+    cookie.setPath("/");
+    cookie.setMaxAge(0);
+    response.addCookie(cookie);
+  }
+
   /**
    * Extract JWT token from cookies in the request.
    */
@@ -61,7 +61,7 @@ public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationS
     }
 
     // Generate JWT and set cookie
-    String token = jwtService.generateToken(user.getId(), user.getEmail());
+    String token = jwtService.generateToken(user);
     jwtService.setAuthCookie(response, token);
 
     // Redirect to frontend
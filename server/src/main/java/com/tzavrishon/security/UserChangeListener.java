@@ -0,0 +1,22 @@
+package com.tzavrishon.security;
+
+import com.tzavrishon.domain.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+/** JPA listener on {@link User} that drops cached principals whenever a user row changes. */
+@Component
+public class UserChangeListener {
+  private final UserPrincipalCache principalCache;
+
+  public UserChangeListener(UserPrincipalCache principalCache) {
+    this.principalCache = principalCache;
+  }
+
+  @PostUpdate
+  @PostRemove
+  public void onChange(User user) {
+    principalCache.invalidate(user.getId());
+  }
+}
@@ -17,10 +17,14 @@ public class UserPrincipal implements UserDetails {
   private final Boolean isPremium;
 
   public UserPrincipal(User user) {
-    this.id = user.getId();
-    this.email = user.getEmail();
-    this.displayName = user.getDisplayName();
-    this.isPremium = user.getIsPremium();
+    this(user.getId(), user.getEmail(), user.getDisplayName(), user.getIsPremium());
+  }
+
+  public UserPrincipal(UUID id, String email, String displayName, Boolean isPremium) {
+    this.id = id;
+    this.email = email;
+    this.displayName = displayName;
+    this.isPremium = isPremium;
   }
 
   @Override
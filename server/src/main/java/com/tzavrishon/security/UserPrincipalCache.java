@@ -0,0 +1,80 @@
+package com.tzavrishon.security;
+
+import com.tzavrishon.config.AppProperties;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded TTL cache of authenticated principals, keyed by user ID and token issued-at so a fresh
+ * login always resolves a fresh principal. Entries are dropped when the user row changes (see
+ * {@link UserChangeListener}) and otherwise expire after {@code app.jwt.principal-cache-ttl-seconds}.
+ */
+@Component
+public class UserPrincipalCache {
+  private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+  private final long ttlMillis;
+  private final int maxSize;
+
+  public UserPrincipalCache(AppProperties appProperties) {
+    this.ttlMillis = appProperties.getJwt().getPrincipalCacheTtlSeconds() * 1000L;
+    this.maxSize = appProperties.getJwt().getPrincipalCacheSize();
+  }
+
+  public UserPrincipal get(UUID userId, Instant issuedAt) {
+    Key key = new Key(userId, issuedAt);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresAt() < System.currentTimeMillis()) {
+      entries.remove(key, entry);
+      return null;
+    }
+    return entry.principal();
+  }
+
+  public void put(Instant issuedAt, UserPrincipal principal) {
+    if (ttlMillis <= 0) {
+      return;
+    }
+    if (entries.size() >= maxSize) {
+      evict();
+    }
+    entries.put(
+        new Key(principal.getId(), issuedAt),
+        new Entry(principal, System.currentTimeMillis() + ttlMillis));
+  }
+
+  /** Forget every cached principal of the user, across all of their tokens. */
+  public void invalidate(UUID userId) {
+    entries.keySet().removeIf(key -> key.userId().equals(userId));
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Drop expired entries, then arbitrary ones down to 90% of the bound, so a full cache is swept
+   * once per tenth of its size in puts rather than on every put.
+   */
+  private void evict() {
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(entry -> entry.expiresAt() < now);
+    // Still near full: drop arbitrary entries, they are reloaded on the next request
+    int target = maxSize - Math.max(1, maxSize / 10);
+    Iterator<Key> keys = entries.keySet().iterator();
+    while (entries.size() > target && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+    }
+  }
+
+  private record Key(UUID userId, Instant issuedAt) {}
+
+  private record Entry(UserPrincipal principal, long expiresAt) {}
+}
@@ -0,0 +1,61 @@
+package com.tzavrishon.security;
+
+import io.jsonwebtoken.Claims;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Claims of tokens whose signature has already been verified, so a hot session's cookie is checked
+ * with HMAC once rather than on every request. Keyed by the full token string: its hash picks the
+ * bucket and the equality check guarantees a different (forged) token can never hit another
+ * token's entry. Each hit re-checks expiry.
+ */
+class VerifiedTokenCache {
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final int maxSize;
+
+  VerifiedTokenCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  Claims get(String token) {
+    Entry entry = entries.get(token);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresAt() <= System.currentTimeMillis()) {
+      entries.remove(token, entry);
+      return null;
+    }
+    return entry.claims();
+  }
+
+  void put(String token, Claims claims) {
+    if (maxSize <= 0 || claims.getExpiration() == null) {
+      return;
+    }
+    if (entries.size() >= maxSize) {
+      evict();
+    }
+    entries.put(token, new Entry(claims, claims.getExpiration().getTime()));
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /** Drop expired tokens, then arbitrary ones down to 90% of the bound so puts rarely sweep. */
+  private void evict() {
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(entry -> entry.expiresAt() <= now);
+    int target = maxSize - Math.max(1, maxSize / 10);
+    Iterator<String> tokens = entries.keySet().iterator();
+    while (entries.size() > target && tokens.hasNext()) {
+      tokens.next();
+      tokens.remove();
+    }
+  }
+
+  private record Entry(Claims claims, long expiresAt) {}
+}
@@ -0,0 +1,196 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Ability estimate per registered user and question type, in logits on the scale of {@link
+ * QuestionPool.Entry#difficulty()}. Each answer moves it by one Elo step, K * (correct -
+ * expected) with expected = 1 / (1 + e^-(ability - difficulty)), and K shrinking as the user
+ * answers more. Estimates are held in memory, loaded from {@code user_abilities} the first time a
+ * user is seen and written back every {@code app.practice.ability-flush-interval-ms}; the answer
+ * history is never read.
+ */
+@Service
+public class AbilityService {
+  private static final Logger logger = LoggerFactory.getLogger(AbilityService.class);
+  private static final double MAX_LOGITS = 6;
+  private static final int K_HALVING_ANSWERS = 10; // K is halved after this many answers
+
+  private final JdbcTemplate jdbcTemplate;
+  private final AppProperties appProperties;
+  private final Map<UUID, Abilities> abilities = new ConcurrentHashMap<>();
+  private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+  public AbilityService(JdbcTemplate jdbcTemplate, AppProperties appProperties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.appProperties = appProperties;
+  }
+
+  /** The user's current ability for a type; 0, the average learner, before any answers. */
+  public double ability(UUID userId, QuestionType type) {
+    return abilities(userId).ability(type);
+  }
+
+  /**
+   * The question difficulty at which the user's chance of a right answer is {@code
+   * app.practice.target-success-rate}.
+   */
+  public double targetDifficulty(UUID userId, QuestionType type) {
+    double rate = appProperties.getPractice().getTargetSuccessRate();
+    return ability(userId, type) - Math.log(rate / (1 - rate));
+  }
+
+  /**
+   * Update the user's ability with an answer to a question of the given difficulty. Inside a
+   * transaction the update happens once that transaction commits.
+   */
+  public void record(UUID userId, QuestionType type, double difficulty, boolean correct) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              update(userId, type, difficulty, correct);
+            }
+          });
+    } else {
+      update(userId, type, difficulty, correct);
+    }
+  }
+
+  private void update(UUID userId, QuestionType type, double difficulty, boolean correct) {
+    AppProperties.Practice config = appProperties.getPractice();
+    dirty.add(userId); // before, so the entry cannot be evicted under the update
+    abilities(userId)
+        .update(type, difficulty, correct, config.getAbilityK(), config.getAbilityMinK());
+    dirty.add(userId); // and after, in case a flush picked the user up in between
+  }
+
+  /** One Elo step: the new ability after an answer. */
+  static double step(
+      double ability, int answers, double difficulty, boolean correct, double k, double minK) {
+    double expected = 1 / (1 + Math.exp(difficulty - ability));
+    double stepSize = Math.max(minK, k * K_HALVING_ANSWERS / (K_HALVING_ANSWERS + answers));
+    double next = ability + stepSize * ((correct ? 1 : 0) - expected);
+    return Math.max(-MAX_LOGITS, Math.min(MAX_LOGITS, next));
+  }
+
+  private Abilities abilities(UUID userId) {
+    Abilities cached = abilities.get(userId);
+    if (cached != null) {
+      return cached;
+    }
+    Abilities loaded = new Abilities();
+    jdbcTemplate.query(
+        "SELECT type, ability, answers FROM user_abilities WHERE user_id = ?",
+        rs -> {
+          loaded.set(
+              QuestionType.valueOf(rs.getString("type")),
+              rs.getDouble("ability"),
+              rs.getInt("answers"));
+        },
+        userId);
+    if (abilities.size() >= appProperties.getPractice().getAbilityCacheSize()) {
+      evict();
+    }
+    Abilities raced = abilities.putIfAbsent(userId, loaded);
+    return raced != null ? raced : loaded;
+  }
+
+  /** Hold a user with no stored abilities without looking them up; for offline replays. */
+  void track(UUID userId) {
+    abilities.putIfAbsent(userId, new Abilities());
+  }
+
+  /**
+   * Drop users with nothing left to write, down to 90% of the bound so a full cache is swept once
+   * per tenth of its size in loads; they are reloaded when they next answer.
+   */
+  private void evict() {
+    int maxSize = appProperties.getPractice().getAbilityCacheSize();
+    int target = maxSize - Math.max(1, maxSize / 10);
+    Iterator<UUID> users = abilities.keySet().iterator();
+    while (abilities.size() > target && users.hasNext()) {
+      if (!dirty.contains(users.next())) {
+        users.remove();
+      }
+    }
+  }
+
+  /** Write the abilities changed since the last flush. */
+  @Scheduled(fixedDelayString = "${app.practice.ability-flush-interval-ms:10000}")
+  @PreDestroy
+  public synchronized void flush() {
+    List<UUID> users = new ArrayList<>(dirty);
+    if (users.isEmpty()) {
+      return;
+    }
+    List<Object[]> rows = new ArrayList<>();
+    for (UUID userId : users) {
+      // Read the entry while the user is still dirty, so evict() cannot drop it first; an
+      // answer arriving after the remove marks the user again
+      Abilities userAbilities = abilities.get(userId);
+      dirty.remove(userId);
+      if (userAbilities != null) {
+        userAbilities.collect(userId, rows);
+      }
+    }
+    try {
+      jdbcTemplate.batchUpdate(
+          "INSERT INTO user_abilities (user_id, type, ability, answers) VALUES (?, ?, ?, ?)"
+              + " ON CONFLICT (user_id, type) DO UPDATE SET ability = EXCLUDED.ability,"
+              + " answers = EXCLUDED.answers, updated_at = CURRENT_TIMESTAMP",
+          rows);
+    } catch (RuntimeException e) {
+      logger.warn("Could not write abilities of {} users; will retry", users.size(), e);
+      dirty.addAll(users);
+    }
+  }
+
+  /** One user's estimates, indexed by type ordinal. */
+  private static final class Abilities {
+    private final double[] ability = new double[QuestionType.values().length];
+    private final int[] answers = new int[QuestionType.values().length];
+
+    synchronized double ability(QuestionType type) {
+      return ability[type.ordinal()];
+    }
+
+    synchronized void set(QuestionType type, double value, int count) {
+      ability[type.ordinal()] = value;
+      answers[type.ordinal()] = count;
+    }
+
+    synchronized void update(
+        QuestionType type, double difficulty, boolean correct, double k, double minK) {
+      int i = type.ordinal();
+      ability[i] = step(ability[i], answers[i], difficulty, correct, k, minK);
+      answers[i]++;
+    }
+
+    synchronized void collect(UUID userId, List<Object[]> rows) {
+      for (QuestionType type : QuestionType.values()) {
+        if (answers[type.ordinal()] > 0) {
+          rows.add(
+              new Object[] {userId, type.name(), ability[type.ordinal()], answers[type.ordinal()]});
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package com.tzavrishon.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.springframework.stereotype.Component;
+
+/**
+ * Questions near the learner's level: the difficulty at which their chance of a right answer is
+ * {@code app.practice.target-success-rate}, from their {@link AbilityService} estimate. Recent
+ * questions are avoided; when too few are left around the level the rest are drawn as by {@link
+ * NoRepeatSelector}, which also serves guests. A set never holds the same question twice, so it
+ * comes up short when the pool is smaller than the count.
+ */
+@Component
+public class AdaptiveSelector implements QuestionSelector {
+  private final QuestionPool questionPool;
+  private final AbilityService abilityService;
+  private final NoRepeatSelector noRepeatSelector;
+
+  public AdaptiveSelector(
+      QuestionPool questionPool,
+      AbilityService abilityService,
+      NoRepeatSelector noRepeatSelector) {
+    this.questionPool = questionPool;
+    this.abilityService = abilityService;
+    this.noRepeatSelector = noRepeatSelector;
+  }
+
+  @Override
+  public String name() {
+    return "adaptive";
+  }
+
+  @Override
+  public List<UUID> select(Request request) {
+    if (request.userId() == null) {
+      return noRepeatSelector.select(request);
+    }
+    List<UUID> picks =
+        QuestionPool.nearDifficulty(
+            questionPool.candidates(request.type(), request.exam()),
+            abilityService.targetDifficulty(request.userId(), request.type()),
+            request.count(),
+            request.recent());
+    if (picks.size() < request.count()) {
+      Set<UUID> avoid = new HashSet<>(request.recent());
+      avoid.addAll(picks);
+      picks = new ArrayList<>(picks);
+      picks.addAll(
+          noRepeatSelector.select(
+              new Request(
+                  request.type(),
+                  request.exam(),
+                  null,
+                  avoid,
+                  request.count() - picks.size()),
+              Set.copyOf(picks)));
+    }
+    return picks;
+  }
+}
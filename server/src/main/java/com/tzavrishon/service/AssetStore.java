@@ -0,0 +1,160 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Local content-addressed store for question images ({@code app.assets.dir}). Each image is kept
+ * once, as {@code <sha-256>.<ext>}, and referenced by the immutable URL {@code
+ * <app.assets.base-url>/<sha-256>}, so identical images across questions share a file and clients
+ * may cache them forever. Disabled when no directory is configured.
+ */
+@Service
+public class AssetStore {
+  private static final Logger logger = LoggerFactory.getLogger(AssetStore.class);
+  private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+  private static final Map<String, String> EXTENSIONS =
+      Map.of("image/png", "png", "image/jpeg", "jpg", "image/gif", "gif", "image/webp", "webp");
+
+  private final Path directory;
+  private final String baseUrl;
+  private final Map<String, Asset> index = new ConcurrentHashMap<>();
+
+  public AssetStore(AppProperties appProperties) {
+    AppProperties.Assets config = appProperties.getAssets();
+    this.baseUrl = config.getBaseUrl();
+    this.directory =
+        config.getDir() == null || config.getDir().isBlank() ? null : Path.of(config.getDir());
+    if (directory != null) {
+      loadIndex();
+    }
+  }
+
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * Store the image and return its asset. The type is taken from the bytes, not from what the
+   * uploader claims.
+   *
+   * @throws RuntimeException if the store is disabled or the bytes are not a supported image
+   */
+  public Asset put(byte[] data) {
+    if (directory == null) {
+      throw new RuntimeException("Asset store is not configured");
+    }
+    String contentType = detectContentType(data);
+    if (contentType == null) {
+      throw new RuntimeException("Unsupported image type");
+    }
+
+    String hash = ImageDiskCache.sha256(data);
+    Asset existing = index.get(hash);
+    if (existing != null) {
+      return existing;
+    }
+    Path path = directory.resolve(hash + "." + EXTENSIONS.get(contentType));
+    try {
+      Path temp = Files.createTempFile(directory, "asset", ".tmp");
+      Files.write(temp, data);
+      Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not store asset " + hash, e);
+    }
+    Asset asset = new Asset(hash, contentType, path, data.length);
+    index.put(hash, asset);
+    return asset;
+  }
+
+  public Optional<Asset> get(String hash) {
+    return hash != null && HASH.matcher(hash).matches()
+        ? Optional.ofNullable(index.get(hash))
+        : Optional.empty();
+  }
+
+  public String urlFor(Asset asset) {
+    return baseUrl + "/" + asset.hash();
+  }
+
+  public boolean isAssetUrl(String url) {
+    return url != null && url.startsWith(baseUrl + "/");
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  private void loadIndex() {
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create asset directory " + directory, e);
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path path : (Iterable<Path>) files::iterator) {
+        String name = path.getFileName().toString();
+        int dot = name.indexOf('.');
+        String hash = dot > 0 ? name.substring(0, dot) : name;
+        String contentType =
+            EXTENSIONS.entrySet().stream()
+                .filter(e -> name.endsWith("." + e.getValue()))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(null);
+        if (!HASH.matcher(hash).matches() || contentType == null) {
+          Files.deleteIfExists(path); // interrupted write
+          continue;
+        }
+        index.put(hash, new Asset(hash, contentType, path, Files.size(path)));
+      }
+    } catch (IOException e) {
+      logger.warn("Asset index could not be fully loaded", e);
+    }
+    logger.info("Asset store loaded {} assets from {}", index.size(), directory);
+  }
+
+  /** Sniff the image type from its magic bytes. */
+  static String detectContentType(byte[] data) {
+    if (startsWith(data, 0, 0x89, 'P', 'N', 'G')) {
+      return "image/png";
+    }
+    if (startsWith(data, 0, 0xFF, 0xD8, 0xFF)) {
+      return "image/jpeg";
+    }
+    if (startsWith(data, 0, 'G', 'I', 'F', '8')) {
+      return "image/gif";
+    }
+    if (startsWith(data, 0, 'R', 'I', 'F', 'F') && startsWith(data, 8, 'W', 'E', 'B', 'P')) {
+      return "image/webp";
+    }
+    return null;
+  }
+
+  private static boolean startsWith(byte[] data, int offset, int... magic) {
+    if (data.length < offset + magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if ((data[offset + i] & 0xFF) != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** A stored image; {@code path} is the file holding its bytes. */
+  public record Asset(String hash, String contentType, Path path, long length) {}
+}
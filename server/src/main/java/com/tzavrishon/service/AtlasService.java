@@ -0,0 +1,197 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.dto.AtlasRegion;
+import com.tzavrishon.dto.QuestionOptionResponse;
+import com.tzavrishon.dto.QuestionResponse;
+import com.tzavrishon.service.AssetStore.Asset;
+import com.tzavrishon.util.ImageResizer;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Builds one image per question holding its prompt and option images (prompt on top, options in a
+ * row below), so a client can load a question with a single request and crop with the returned
+ * regions. Atlases are stored in the {@link AssetStore} and need it enabled.
+ *
+ * <p>Building fetches every source image, so it never happens on the request path: a question
+ * served without an atlas queues a background build and the next response carries it. An atlas is
+ * keyed by its question and source URLs, so it is rebuilt when those change, e.g. on re-import.
+ */
+@Service
+public class AtlasService {
+  private static final Logger logger = LoggerFactory.getLogger(AtlasService.class);
+  private static final int PADDING = 2;
+  private static final int MAX_DIMENSION = 4096;
+  private static final long RETRY_AFTER_MILLIS = 10 * 60 * 1000L;
+
+  private final ImageProxyService imageProxyService;
+  private final AssetStore assetStore;
+  private final AppProperties appProperties;
+  private final Map<UUID, Atlas> atlases = new ConcurrentHashMap<>();
+  private final Map<UUID, Long> failedAt = new ConcurrentHashMap<>();
+  private final Set<UUID> building = ConcurrentHashMap.newKeySet();
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  public AtlasService(
+      ImageProxyService imageProxyService, AssetStore assetStore, AppProperties appProperties) {
+    this.imageProxyService = imageProxyService;
+    this.assetStore = assetStore;
+    this.appProperties = appProperties;
+  }
+
+  public boolean isEnabled() {
+    return appProperties.getAssets().isAtlasEnabled() && assetStore.isEnabled();
+  }
+
+  /** Add atlas coordinates to a question response, or queue the atlas if it is not built yet. */
+  public void apply(QuestionResponse response) {
+    List<QuestionOptionResponse> options =
+        response.getOptions() != null ? response.getOptions() : List.of();
+    List<String> sources =
+        sources(
+            response.getPromptImageUrl(),
+            options.stream().map(QuestionOptionResponse::getImageUrl).toList());
+    if (!isEnabled() || sources.size() < 2) {
+      return;
+    }
+    Atlas atlas = atlases.get(response.getId());
+    if (atlas == null || !atlas.sources().equals(sources)) {
+      buildInBackground(response.getId(), sources);
+      return;
+    }
+
+    response.setAtlasUrl(atlas.url());
+    response.setAtlasWidth(atlas.width());
+    response.setAtlasHeight(atlas.height());
+    if (response.getPromptImageUrl() != null) {
+      response.setPromptAtlasRegion(atlas.regions().get(response.getPromptImageUrl()));
+    }
+    for (QuestionOptionResponse option : options) {
+      if (option.getImageUrl() != null) {
+        option.setAtlasRegion(atlas.regions().get(option.getImageUrl()));
+      }
+    }
+  }
+
+  /** Build (or rebuild) a question's atlas in the background, e.g. right after import. */
+  public void buildInBackground(UUID questionId, List<String> sources) {
+    if (!isEnabled() || sources.size() < 2) {
+      return;
+    }
+    Long failed = failedAt.get(questionId);
+    if (failed != null && System.currentTimeMillis() - failed < RETRY_AFTER_MILLIS) {
+      return;
+    }
+    if (!building.add(questionId)) {
+      return;
+    }
+    List<String> copy = List.copyOf(sources);
+    executor.execute(
+        () -> {
+          try {
+            atlases.put(questionId, build(copy));
+            failedAt.remove(questionId);
+          } catch (IOException | RuntimeException e) {
+            logger.warn("Could not build atlas for question {}: {}", questionId, e.getMessage());
+            failedAt.put(questionId, System.currentTimeMillis());
+          } finally {
+            building.remove(questionId);
+          }
+        });
+  }
+
+  /** The image URLs of a question in atlas order: prompt first, then options, without repeats. */
+  public static List<String> sources(String promptImageUrl, List<String> optionImageUrls) {
+    List<String> sources = new ArrayList<>();
+    if (promptImageUrl != null) {
+      sources.add(promptImageUrl);
+    }
+    optionImageUrls.stream()
+        .filter(Objects::nonNull)
+        .filter(url -> !sources.contains(url))
+        .forEach(sources::add);
+    return sources;
+  }
+
+  /** Compose the images: the first on its own row, the rest side by side below it. */
+  Atlas build(List<String> sources) throws IOException {
+    Map<String, BufferedImage> images = new LinkedHashMap<>();
+    for (String url : sources) {
+      BufferedImage image =
+          ImageResizer.decode(load(url), appProperties.getImageProxy().getMaxPixels());
+      if (image == null) {
+        throw new IOException("Cannot decode " + url);
+      }
+      images.put(url, image);
+    }
+
+    Map<String, AtlasRegion> regions = new LinkedHashMap<>();
+    List<BufferedImage> ordered = new ArrayList<>(images.values());
+    BufferedImage first = ordered.get(0);
+    regions.put(sources.get(0), new AtlasRegion(0, 0, first.getWidth(), first.getHeight()));
+    int x = 0;
+    int y = first.getHeight() + PADDING;
+    int rowHeight = 0;
+    for (int i = 1; i < ordered.size(); i++) {
+      BufferedImage image = ordered.get(i);
+      regions.put(sources.get(i), new AtlasRegion(x, y, image.getWidth(), image.getHeight()));
+      x += image.getWidth() + PADDING;
+      rowHeight = Math.max(rowHeight, image.getHeight());
+    }
+    int width = Math.max(first.getWidth(), x - PADDING);
+    int height = y + rowHeight;
+    if (width > MAX_DIMENSION || height > MAX_DIMENSION) {
+      throw new IOException("Atlas would be " + width + "x" + height);
+    }
+
+    BufferedImage atlas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = atlas.createGraphics();
+    try {
+      for (Map.Entry<String, AtlasRegion> entry : regions.entrySet()) {
+        AtlasRegion region = entry.getValue();
+        g.drawImage(images.get(entry.getKey()), region.getX(), region.getY(), null);
+      }
+    } finally {
+      g.dispose();
+    }
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(atlas, "png", png);
+    Asset asset = assetStore.put(png.toByteArray());
+    return new Atlas(assetStore.urlFor(asset), width, height, sources, regions);
+  }
+
+  private byte[] load(String url) throws IOException {
+    if (assetStore.isAssetUrl(url)) {
+      Asset asset =
+          assetStore
+              .get(url.substring(url.lastIndexOf('/') + 1))
+              .orElseThrow(() -> new IOException("Missing asset " + url));
+      return Files.readAllBytes(asset.path());
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    imageProxyService.fetch(url).writeTo(bytes);
+    return bytes.toByteArray();
+  }
+
+  /** A built atlas: where it is, what it was built from and where each source landed. */
+  record Atlas(
+      String url, int width, int height, List<String> sources, Map<String, AtlasRegion> regions) {}
+}
@@ -0,0 +1,128 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Estimates an empirical difficulty for each question from its item statistics and stores it in
+ * {@code questions.calibrated_difficulty}, in logits.
+ *
+ * <p>The model is the Rasch (1PL) model, P(correct) = 1 / (1 + e^-(ability - difficulty)), with
+ * learner ability taken as standard normal. Answers are only kept as per-question totals, so
+ * ability is integrated out rather than estimated per learner, which gives approximately
+ * P(correct) = logistic(-difficulty / s) with s = sqrt(1 + pi/8). Each question's difficulty is
+ * the maximum a posteriori estimate under a normal prior centred on its hand-set rating, so lightly
+ * answered questions stay close to that rating and move to their observed difficulty as answers
+ * accumulate. Questions are independent given the totals and are fitted in parallel on a
+ * fork-join pool.
+ */
+@Service
+public class DifficultyCalibrationService {
+  private static final Logger logger = LoggerFactory.getLogger(DifficultyCalibrationService.class);
+  private static final double ABILITY_SCALE = Math.sqrt(1 + Math.PI / 8);
+  private static final double MAX_LOGITS = 6;
+  private static final int MAX_ITERATIONS = 50;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ItemStatsService itemStatsService;
+  private final QuestionPool questionPool;
+  private final AppProperties appProperties;
+
+  public DifficultyCalibrationService(
+      JdbcTemplate jdbcTemplate,
+      ItemStatsService itemStatsService,
+      QuestionPool questionPool,
+      AppProperties appProperties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.itemStatsService = itemStatsService;
+    this.questionPool = questionPool;
+    this.appProperties = appProperties;
+  }
+
+  record Item(UUID questionId, int rating, long attempts, long correct) {}
+
+  /**
+   * Recalibrate every question with at least {@code app.calibration.min-attempts} answers, then
+   * reload the question pool.
+   *
+   * @return the number of questions calibrated
+   */
+  @Scheduled(cron = "${app.calibration.cron:0 0 4 * * *}")
+  public int calibrate() {
+    long start = System.currentTimeMillis();
+    itemStatsService.flush();
+    List<Item> items = new ArrayList<>();
+    jdbcTemplate.query(
+        "SELECT s.question_id, q.difficulty, s.attempts, s.correct"
+            + " FROM question_stats s JOIN questions q ON q.id = s.question_id"
+            + " WHERE s.attempts >= ?",
+        rs -> {
+          items.add(
+              new Item(
+                  rs.getObject("question_id", UUID.class),
+                  rs.getInt("difficulty"),
+                  rs.getLong("attempts"),
+                  rs.getLong("correct")));
+        },
+        appProperties.getCalibration().getMinAttempts());
+
+    double priorSd = appProperties.getCalibration().getPriorSd();
+    ForkJoinPool pool = new ForkJoinPool(appProperties.getCalibration().getParallelism());
+    Timestamp now = Timestamp.from(Instant.now());
+    List<Object[]> updates;
+    try {
+      updates =
+          pool.submit(
+                  () ->
+                      items.parallelStream()
+                          .map(item -> new Object[] {fit(item, priorSd), now, item.questionId()})
+                          .toList())
+              .get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 0;
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Difficulty calibration failed", e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+
+    jdbcTemplate.batchUpdate(
+        "UPDATE questions SET calibrated_difficulty = ?, calibrated_at = ? WHERE id = ?", updates);
+    questionPool.reload();
+    logger.info(
+        "Calibrated {} questions in {} ms", updates.size(), System.currentTimeMillis() - start);
+    return updates.size();
+  }
+
+  /** Newton's method on the log posterior of one question's difficulty. */
+  static double fit(Item item, double priorSd) {
+    double prior = QuestionPool.ratingToLogits(item.rating());
+    double priorPrecision = 1 / (priorSd * priorSd);
+    double b = prior;
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      double p = 1 / (1 + Math.exp(b / ABILITY_SCALE)); // P(correct) at difficulty b
+      double gradient =
+          -(item.correct() - item.attempts() * p) / ABILITY_SCALE - (b - prior) * priorPrecision;
+      double curvature =
+          -item.attempts() * p * (1 - p) / (ABILITY_SCALE * ABILITY_SCALE) - priorPrecision;
+      double step = gradient / curvature;
+      b = Math.max(-MAX_LOGITS, Math.min(MAX_LOGITS, b - step));
+      if (Math.abs(step) < 1e-6) {
+        break;
+      }
+    }
+    return b;
+  }
+}
@@ -0,0 +1,102 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.ExamAttempt;
+import com.tzavrishon.domain.ExamAttemptArchive;
+import com.tzavrishon.domain.ExamAttemptSnapshot;
+import com.tzavrishon.repository.*;
+import com.tzavrishon.util.ExamArchiveCodec;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves completed exam attempts out of the hot exam_sections / exam_user_answers tables. Each
+ * attempt is packed into a single exam_attempt_archives row and its normalized rows are deleted;
+ * ExamAttemptSnapshots reads either representation transparently.
+ */
+@Service
+public class ExamArchiveService {
+  private static final Logger logger = LoggerFactory.getLogger(ExamArchiveService.class);
+
+  private final ExamAttemptRepository attemptRepository;
+  private final ExamSectionRepository sectionRepository;
+  private final ExamUserAnswerRepository answerRepository;
+  private final ExamAttemptArchiveRepository archiveRepository;
+  private final ExamAttemptSnapshots snapshots;
+  private final TransactionTemplate transactionTemplate;
+  private final AppProperties appProperties;
+
+  public ExamArchiveService(
+      ExamAttemptRepository attemptRepository,
+      ExamSectionRepository sectionRepository,
+      ExamUserAnswerRepository answerRepository,
+      ExamAttemptArchiveRepository archiveRepository,
+      ExamAttemptSnapshots snapshots,
+      PlatformTransactionManager transactionManager,
+      AppProperties appProperties) {
+    this.attemptRepository = attemptRepository;
+    this.sectionRepository = sectionRepository;
+    this.answerRepository = answerRepository;
+    this.archiveRepository = archiveRepository;
+    this.snapshots = snapshots;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.appProperties = appProperties;
+  }
+
+  /** Archive one batch of eligible attempts, one transaction per attempt. */
+  @Scheduled(cron = "${app.exam.archive-cron:0 30 3 * * *}")
+  public void archiveCompletedAttempts() {
+    AppProperties.Exam config = appProperties.getExam();
+    Instant cutoff = Instant.now().minus(config.getArchiveAfterDays(), ChronoUnit.DAYS);
+    List<UUID> attemptIds =
+        attemptRepository.findArchivableIds(cutoff, PageRequest.of(0, config.getArchiveBatchSize()));
+
+    int archived = 0;
+    for (UUID attemptId : attemptIds) {
+      try {
+        transactionTemplate.executeWithoutResult(status -> archive(attemptId));
+        archived++;
+      } catch (Exception e) {
+        logger.error("Failed to archive exam attempt {}", attemptId, e);
+      }
+    }
+
+    if (!attemptIds.isEmpty()) {
+      logger.info("Archived {} of {} completed exam attempts", archived, attemptIds.size());
+    }
+  }
+
+  private void archive(UUID attemptId) {
+    ExamAttempt attempt =
+        attemptRepository
+            .findByIdForUpdate(attemptId)
+            .orElseThrow(() -> new RuntimeException("Attempt not found"));
+    if (Boolean.TRUE.equals(attempt.getArchived()) || attempt.getCompletedAt() == null) {
+      return;
+    }
+
+    ExamAttemptSnapshot snapshot = snapshots.load(attempt);
+
+    ExamAttemptArchive archive = new ExamAttemptArchive();
+    archive.setAttemptId(attemptId);
+    archive.setFormatVersion((short) ExamArchiveCodec.VERSION);
+    archive.setPayload(snapshots.encodeArchive(snapshot));
+    archiveRepository.save(archive);
+
+    answerRepository.deleteByAttemptId(attemptId);
+    sectionRepository.deleteByAttemptId(attemptId);
+
+    attempt.setSnapshot(null);
+    attempt.setArchived(true);
+    attemptRepository.save(attempt);
+  }
+}
@@ -0,0 +1,220 @@
+package com.tzavrishon.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.domain.*;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
+import com.tzavrishon.dto.ExamSummaryResponse;
+import com.tzavrishon.dto.SectionScore;
+import com.tzavrishon.repository.ExamAttemptArchiveRepository;
+import com.tzavrishon.repository.ExamSectionRepository;
+import com.tzavrishon.repository.ExamUserAnswerRepository;
+import com.tzavrishon.repository.QuestionRepository;
+import com.tzavrishon.util.ExamArchiveCodec;
+import java.time.Duration;
+import java.util.*;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads and writes the {@link ExamAttemptSnapshot} stored on each exam attempt. Archived attempts
+ * are decoded from their packed exam_attempt_archives row, and attempts created before the snapshot
+ * column existed are rebuilt from exam_sections and exam_user_answers on first access.
+ */
+@Component
+public class ExamAttemptSnapshots {
+  private final ObjectMapper objectMapper;
+  private final ExamSectionRepository sectionRepository;
+  private final ExamUserAnswerRepository answerRepository;
+  private final ExamAttemptArchiveRepository archiveRepository;
+  private final QuestionRepository questionRepository;
+
+  public ExamAttemptSnapshots(
+      ObjectMapper objectMapper,
+      ExamSectionRepository sectionRepository,
+      ExamUserAnswerRepository answerRepository,
+      ExamAttemptArchiveRepository archiveRepository,
+      QuestionRepository questionRepository) {
+    this.objectMapper = objectMapper;
+    this.sectionRepository = sectionRepository;
+    this.answerRepository = answerRepository;
+    this.archiveRepository = archiveRepository;
+    this.questionRepository = questionRepository;
+  }
+
+  /** Build the initial snapshot for a freshly created attempt. */
+  public ExamAttemptSnapshot create(List<ExamSection> sections) {
+    ExamAttemptSnapshot snapshot = new ExamAttemptSnapshot();
+    for (ExamSection section : sections) {
+      snapshot.getSections().add(toState(section));
+    }
+    return snapshot;
+  }
+
+  /**
+   * Load the attempt's snapshot from whichever representation it currently has: the JSONB column,
+   * the packed archive, or (for legacy attempts) the normalized tables.
+   */
+  public ExamAttemptSnapshot load(ExamAttempt attempt) {
+    if (attempt.getSnapshot() != null) {
+      try {
+        return objectMapper.readValue(attempt.getSnapshot(), ExamAttemptSnapshot.class);
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Corrupt snapshot for attempt " + attempt.getId(), e);
+      }
+    }
+    if (Boolean.TRUE.equals(attempt.getArchived())) {
+      return archiveRepository
+          .findById(attempt.getId())
+          .map(archive -> decodeArchive(archive.getPayload()))
+          .orElseThrow(() -> new IllegalStateException("Missing archive for attempt " + attempt.getId()));
+    }
+    return rebuild(attempt);
+  }
+
+  /**
+   * Load the snapshots of many attempts for statistics, keyed by attempt ID. The archives are read
+   * with one query and their catalog indices are not resolved, so archived answers have null
+   * question IDs; counts, correctness and times are complete.
+   */
+  public Map<UUID, ExamAttemptSnapshot> loadForStats(Collection<ExamAttempt> attempts) {
+    Set<UUID> archivedIds = new HashSet<>();
+    for (ExamAttempt attempt : attempts) {
+      if (attempt.getSnapshot() == null && Boolean.TRUE.equals(attempt.getArchived())) {
+        archivedIds.add(attempt.getId());
+      }
+    }
+    Map<UUID, byte[]> payloads = new HashMap<>();
+    if (!archivedIds.isEmpty()) {
+      for (ExamAttemptArchive archive : archiveRepository.findAllById(archivedIds)) {
+        payloads.put(archive.getAttemptId(), archive.getPayload());
+      }
+    }
+
+    Map<UUID, ExamAttemptSnapshot> snapshots = new HashMap<>();
+    for (ExamAttempt attempt : attempts) {
+      byte[] payload = payloads.get(attempt.getId());
+      if (payload != null) {
+        snapshots.put(attempt.getId(), ExamArchiveCodec.decode(payload, index -> null));
+      } else if (archivedIds.contains(attempt.getId())) {
+        throw new IllegalStateException("Missing archive for attempt " + attempt.getId());
+      } else {
+        snapshots.put(attempt.getId(), load(attempt));
+      }
+    }
+    return snapshots;
+  }
+
+  /** Pack a snapshot into the archive format, resolving question IDs to catalog indices. */
+  public byte[] encodeArchive(ExamAttemptSnapshot snapshot) {
+    Set<UUID> questionIds = new HashSet<>();
+    for (SectionState section : snapshot.getSections()) {
+      section.getAnsweredQuestionIds().stream().filter(Objects::nonNull).forEach(questionIds::add);
+    }
+    Map<UUID, Integer> indices = new HashMap<>();
+    if (!questionIds.isEmpty()) {
+      for (Object[] row : questionRepository.findCatalogIndicesByIdIn(questionIds)) {
+        indices.put((UUID) row[0], (Integer) row[1]);
+      }
+    }
+    return ExamArchiveCodec.encode(snapshot, id -> indices.getOrDefault(id, 0));
+  }
+
+  private ExamAttemptSnapshot decodeArchive(byte[] payload) {
+    Set<Integer> catalogIndices = new HashSet<>(ExamArchiveCodec.catalogIndices(payload));
+    catalogIndices.remove(0);
+    Map<Integer, UUID> ids = new HashMap<>();
+    if (!catalogIndices.isEmpty()) {
+      for (Object[] row : questionRepository.findIdsByCatalogIndexIn(catalogIndices)) {
+        ids.put((Integer) row[0], (UUID) row[1]);
+      }
+    }
+    return ExamArchiveCodec.decode(payload, ids::get);
+  }
+
+  /** Serialize the snapshot back onto the attempt; persisted when the transaction flushes. */
+  public void write(ExamAttempt attempt, ExamAttemptSnapshot snapshot) {
+    try {
+      attempt.setSnapshot(objectMapper.writeValueAsString(snapshot));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize snapshot for attempt " + attempt.getId(), e);
+    }
+  }
+
+  /** Build the exam summary purely from the snapshot, without touching the answer tables. */
+  public ExamSummaryResponse summarize(ExamAttempt attempt, ExamAttemptSnapshot snapshot) {
+    ExamSummaryResponse response = new ExamSummaryResponse();
+    response.setTotalScore90(attempt.getTotalScore90());
+    response.setTotalQuestions(snapshot.totalAnswered());
+    response.setCorrectAnswers(snapshot.totalCorrect());
+
+    if (attempt.getCreatedAt() != null && attempt.getCompletedAt() != null) {
+      response.setTotalTimeSeconds(
+          Duration.between(attempt.getCreatedAt(), attempt.getCompletedAt()).getSeconds());
+    }
+
+    for (SectionState section : snapshot.getSections()) {
+      int total = section.answeredCount();
+      int correct = section.correctCount();
+
+      SectionScore score = new SectionScore();
+      score.setCorrect(correct);
+      score.setTotal(total);
+      score.setAccuracy(total == 0 ? 0.0 : (double) correct / total * 100);
+      if (section.getStartedAt() != null && section.getEndedAt() != null) {
+        score.setTimeSpentSeconds(
+            Duration.between(section.getStartedAt(), section.getEndedAt()).getSeconds());
+      }
+
+      switch (section.getType()) {
+        case VERBAL_ANALOGY:
+          response.setVerbalAnalogy(score);
+          break;
+        case SHAPE_ANALOGY:
+          response.setShapeAnalogy(score);
+          break;
+        case INSTRUCTIONS_DIRECTIONS:
+          response.setInstructionsDirections(score);
+          break;
+        case QUANTITATIVE:
+          response.setQuantitative(score);
+          break;
+      }
+    }
+
+    return response;
+  }
+
+  private ExamAttemptSnapshot rebuild(ExamAttempt attempt) {
+    List<ExamSection> sections = sectionRepository.findByAttemptIdOrderByOrderIndex(attempt.getId());
+    ExamAttemptSnapshot snapshot = create(sections);
+
+    Map<UUID, SectionState> byId = new HashMap<>();
+    for (SectionState state : snapshot.getSections()) {
+      byId.put(state.getSectionId(), state);
+    }
+    for (ExamUserAnswer answer : answerRepository.findByAttemptIdOrderBySection(attempt.getId())) {
+      SectionState state = byId.get(answer.getSection().getId());
+      if (state != null) {
+        state.recordAnswer(
+            answer.getQuestion().getId(), Boolean.TRUE.equals(answer.getIsCorrect()), answer.getTimeMs());
+        if (answer.getSelectedOption() == null && answer.getUserAnswerRaw() == null) {
+          state.setSkippedCount(state.getSkippedCount() + 1);
+        }
+      }
+    }
+    return snapshot;
+  }
+
+  private SectionState toState(ExamSection section) {
+    SectionState state = new SectionState();
+    state.setSectionId(section.getId());
+    state.setType(section.getType());
+    state.setOrderIndex(section.getOrderIndex());
+    state.setDurationSeconds(section.getDurationSeconds());
+    state.setStartedAt(section.getStartedAt());
+    state.setEndedAt(section.getEndedAt());
+    state.setLocked(Boolean.TRUE.equals(section.getLocked()));
+    state.setScore(section.getScoreSection() != null ? section.getScoreSection() : 0);
+    return state;
+  }
+}
@@ -0,0 +1,32 @@
+package com.tzavrishon.service;
+
+import java.util.List;
+import java.util.UUID;
+import org.springframework.stereotype.Component;
+
+/**
+ * Balanced forms: one question from each of {@code count} equal difficulty strata of the pool (see
+ * {@link QuestionPool#stratifiedSample}), so every form has the same difficulty profile.
+ */
+@Component
+public class ExamFormSelector implements QuestionSelector {
+  private final QuestionPool questionPool;
+
+  public ExamFormSelector(QuestionPool questionPool) {
+    this.questionPool = questionPool;
+  }
+
+  @Override
+  public String name() {
+    return "exam-form";
+  }
+
+  @Override
+  public List<UUID> select(Request request) {
+    return QuestionPool.stratifiedSample(
+            questionPool.candidates(request.type(), request.exam()), request.count())
+        .stream()
+        .map(QuestionPool.Entry::id)
+        .toList();
+  }
+}
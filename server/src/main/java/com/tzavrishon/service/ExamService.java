@@ -2,6 +2,7 @@ package com.tzavrishon.service;
 
 import com.tzavrishon.config.AppProperties;
 import com.tzavrishon.domain.*;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
 import com.tzavrishon.dto.*;
 import com.tzavrishon.repository.*;
 import com.tzavrishon.security.UserPrincipal;
@@ -13,6 +14,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 public class ExamService {
@@ -24,6 +27,12 @@ public class ExamService {
   private final QuestionRepository questionRepository;
   private final QuestionOptionRepository optionRepository;
   private final UserRepository userRepository;
+  private final ExamAttemptSnapshots snapshots;
+  private final ImageWarmupService imageWarmupService;
+  private final AtlasService atlasService;
+  private final ItemStatsService itemStatsService;
+  private final QuestionSelectors questionSelectors;
+  private final AbilityService abilityService;
   private final AppProperties appProperties;
 
   public ExamService(
@@ -33,6 +42,12 @@ public class ExamService {
       QuestionRepository questionRepository,
       QuestionOptionRepository optionRepository,
       UserRepository userRepository,
+      ExamAttemptSnapshots snapshots,
+      ImageWarmupService imageWarmupService,
+      AtlasService atlasService,
+      ItemStatsService itemStatsService,
+      QuestionSelectors questionSelectors,
+      AbilityService abilityService,
       AppProperties appProperties) {
     this.attemptRepository = attemptRepository;
     this.sectionRepository = sectionRepository;
@@ -40,6 +55,12 @@ public class ExamService {
     this.questionRepository = questionRepository;
     this.optionRepository = optionRepository;
     this.userRepository = userRepository;
+    this.snapshots = snapshots;
+    this.imageWarmupService = imageWarmupService;
+    this.atlasService = atlasService;
+    this.itemStatsService = itemStatsService;
+    this.questionSelectors = questionSelectors;
+    this.abilityService = abilityService;
     this.appProperties = appProperties;
   }
 
@@ -57,7 +78,6 @@ public class ExamService {
     attempt = attemptRepository.save(attempt);
 
     // Parse section configurations
-    Map<QuestionType, Integer> sectionCounts = parseSectionCounts();
     Map<QuestionType, Integer> sectionDurations = parseSectionDurations();
 
     // Create sections in order
@@ -68,6 +88,7 @@ public class ExamService {
       QuestionType.QUANTITATIVE
     };
 
+    List<ExamSection> sections = new ArrayList<>();
     for (int i = 0; i < types.length; i++) {
       ExamSection section = new ExamSection();
       section.setAttempt(attempt);
@@ -75,70 +96,66 @@ public class ExamService {
       section.setOrderIndex(i);
       section.setDurationSeconds(sectionDurations.getOrDefault(types[i], 600));
       section.setLocked(false);
-      sectionRepository.save(section);
+      // Start the first section
+      if (i == 0) {
+        section.setStartedAt(Instant.now());
+      }
+      sections.add(sectionRepository.save(section));
     }
 
-    // Start the first section
-    List<ExamSection> sections = sectionRepository.findByAttemptIdOrderByOrderIndex(attempt.getId());
-    if (!sections.isEmpty()) {
-      ExamSection firstSection = sections.get(0);
-      firstSection.setStartedAt(Instant.now());
-      sectionRepository.save(firstSection);
-    }
+    // Draw the first section's questions and the next one's up front, so reads only serve them
+    ExamAttemptSnapshot snapshot = snapshots.create(sections);
+    SectionState first = snapshot.getSections().get(0);
+    pinExamQuestions(first);
+    pinUpcoming(snapshot, first);
+    snapshots.write(attempt, snapshot);
+    attemptRepository.save(attempt);
 
-    return mapToExamAttemptResponse(attempt);
+    return mapToExamAttemptResponse(attempt, sections);
   }
 
   @Transactional
   public CurrentSectionResponse getCurrentSection(UUID attemptId) {
-    ExamAttempt attempt =
-        attemptRepository.findById(attemptId).orElseThrow(() -> new RuntimeException("Attempt not found"));
+    ExamAttempt attempt = lockAttempt(attemptId);
+    ExamAttemptSnapshot snapshot = snapshots.load(attempt);
 
-    Optional<ExamSection> currentSectionOpt =
-        sectionRepository.findFirstByAttemptIdAndLockedFalseOrderByOrderIndexAsc(attemptId);
-
-    if (currentSectionOpt.isEmpty()) {
-      throw new RuntimeException("No unlocked sections available");
-    }
-
-    ExamSection section = currentSectionOpt.get();
+    SectionState section =
+        snapshot
+            .currentSection()
+            .orElseThrow(() -> new RuntimeException("No unlocked sections available"));
 
     // Check if section has expired
-    if (section.getStartedAt() != null) {
-      long elapsedSeconds = Duration.between(section.getStartedAt(), Instant.now()).getSeconds();
-      if (elapsedSeconds >= section.getDurationSeconds()) {
-        // Auto-lock expired section
-        section.setLocked(true);
-        section.setEndedAt(Instant.now());
-        sectionRepository.save(section);
-
-        // Start next section if available
-        Optional<ExamSection> nextSectionOpt =
-            sectionRepository.findFirstByAttemptIdAndLockedFalseOrderByOrderIndexAsc(attemptId);
-        if (nextSectionOpt.isPresent()) {
-          ExamSection nextSection = nextSectionOpt.get();
-          nextSection.setStartedAt(Instant.now());
-          sectionRepository.save(nextSection);
-          return buildCurrentSectionResponse(nextSection);
-        } else {
-          throw new RuntimeException("Exam completed");
-        }
-      }
+    Instant now = Instant.now();
+    if (section.isExpired(now)) {
+      // Auto-lock expired section and start the next one if available
+      lockSection(section, now);
+      section = startNextSection(snapshot, now).orElseThrow(() -> new RuntimeException("Exam completed"));
     }
 
-    return buildCurrentSectionResponse(section);
+    CurrentSectionResponse response = buildCurrentSectionResponse(section);
+    snapshots.write(attempt, snapshot);
+
+    // Have the images of this section and the next one cached before the user gets to them, once
+    // the attempt lock is released; the next section's questions were pinned when this one started
+    List<UUID> nextQuestionIds =
+        nextSection(snapshot, section).map(SectionState::getQuestionIds).orElse(null);
+    afterCommit(
+        () -> {
+          imageWarmupService.prefetch(response.getQuestions());
+          if (nextQuestionIds != null) {
+            imageWarmupService.prefetchQuestions(nextQuestionIds);
+          }
+        });
+    return response;
   }
 
   @Transactional
   public AnswerResponse submitExamUserAnswer(UUID attemptId, SubmitAnswerRequest request) {
-    Optional<ExamSection> currentSectionOpt =
-        sectionRepository.findFirstByAttemptIdAndLockedFalseOrderByOrderIndexAsc(attemptId);
+    ExamAttempt attempt = lockAttempt(attemptId);
+    ExamAttemptSnapshot snapshot = snapshots.load(attempt);
 
-    if (currentSectionOpt.isEmpty()) {
-      throw new RuntimeException("No active section");
-    }
-
-    ExamSection section = currentSectionOpt.get();
+    SectionState section =
+        snapshot.currentSection().orElseThrow(() -> new RuntimeException("No active section"));
 
     Question question =
         questionRepository
@@ -151,11 +168,7 @@ public class ExamService {
     }
 
     // Check if already answered
-    List<ExamUserAnswer> existingAnswers = answerRepository.findBySectionIdOrderByOrderIndex(section.getId());
-    boolean alreadyAnswered =
-        existingAnswers.stream()
-            .anyMatch(a -> a.getQuestion().getId().equals(request.getQuestionId()));
-    if (alreadyAnswered) {
+    if (section.hasAnswered(request.getQuestionId())) {
       throw new RuntimeException("Question already answered");
     }
 
@@ -164,7 +177,7 @@ public class ExamService {
 
     // Save answer
     ExamUserAnswer answer = new ExamUserAnswer();
-    answer.setSection(section);
+    answer.setSection(sectionRepository.getReferenceById(section.getSectionId()));
     answer.setQuestion(question);
     answer.setUserAnswerRaw(request.getTextAnswer());
     if (request.getSelectedOptionId() != null) {
@@ -172,8 +185,21 @@ public class ExamService {
     }
     answer.setIsCorrect(isCorrect);
     answer.setTimeMs(request.getTimeMs());
-    answer.setOrderIndex(existingAnswers.size());
+    answer.setOrderIndex(section.answeredCount());
     answerRepository.save(answer);
+    itemStatsService.record(
+        question.getId(), request.getSelectedOptionId(), isCorrect, request.getTimeMs());
+    abilityService.record(
+        attempt.getUser().getId(),
+        question.getType(),
+        QuestionPool.difficultyOf(question),
+        isCorrect);
+
+    section.recordAnswer(question.getId(), isCorrect, request.getTimeMs());
+    if (request.getSelectedOptionId() == null && request.getTextAnswer() == null) {
+      section.setSkippedCount(section.getSkippedCount() + 1);
+    }
+    snapshots.write(attempt, snapshot);
 
     AnswerResponse response = new AnswerResponse();
     response.setCorrect(isCorrect);
@@ -182,62 +208,116 @@ public class ExamService {
 
   @Transactional
   public void confirmFinishSection(UUID attemptId) {
-    Optional<ExamSection> currentSectionOpt =
-        sectionRepository.findFirstByAttemptIdAndLockedFalseOrderByOrderIndexAsc(attemptId);
+    ExamAttempt attempt = lockAttempt(attemptId);
+    ExamAttemptSnapshot snapshot = snapshots.load(attempt);
 
-    if (currentSectionOpt.isEmpty()) {
-      throw new RuntimeException("No active section");
-    }
-
-    ExamSection section = currentSectionOpt.get();
-    section.setLocked(true);
-    section.setEndedAt(Instant.now());
+    SectionState section =
+        snapshot.currentSection().orElseThrow(() -> new RuntimeException("No active section"));
 
-    // Calculate section score
-    List<ExamUserAnswer> answers = answerRepository.findBySectionIdOrderByOrderIndex(section.getId());
-    long correctCount = answers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-    section.setScoreSection((int) correctCount);
-    sectionRepository.save(section);
-
-    // Start next section if available
-    Optional<ExamSection> nextSectionOpt =
-        sectionRepository.findFirstByAttemptIdAndLockedFalseOrderByOrderIndexAsc(attemptId);
-    if (nextSectionOpt.isPresent()) {
-      ExamSection nextSection = nextSectionOpt.get();
-      nextSection.setStartedAt(Instant.now());
-      sectionRepository.save(nextSection);
-    }
+    Instant now = Instant.now();
+    lockSection(section, now);
+    startNextSection(snapshot, now);
+    snapshots.write(attempt, snapshot);
   }
 
   @Transactional
   public ExamSummaryResponse finishExam(UUID attemptId) {
-    ExamAttempt attempt =
-        attemptRepository.findById(attemptId).orElseThrow(() -> new RuntimeException("Attempt not found"));
+    ExamAttempt attempt = lockAttempt(attemptId);
+    ExamAttemptSnapshot snapshot = snapshots.load(attempt);
 
     // Lock any remaining sections
-    List<ExamSection> sections = sectionRepository.findByAttemptIdOrderByOrderIndex(attemptId);
-    for (ExamSection section : sections) {
-      if (!section.getLocked()) {
-        section.setLocked(true);
-        section.setEndedAt(Instant.now());
-        List<ExamUserAnswer> answers = answerRepository.findBySectionIdOrderByOrderIndex(section.getId());
-        long correctCount = answers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-        section.setScoreSection((int) correctCount);
-        sectionRepository.save(section);
+    Instant now = Instant.now();
+    for (SectionState section : snapshot.getSections()) {
+      if (!section.isLocked()) {
+        lockSection(section, now);
       }
     }
 
     // Calculate total score out of 90
-    List<ExamUserAnswer> allAnswers = answerRepository.findByAttemptIdOrderBySection(attemptId);
-    long totalCorrect = allAnswers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-    int totalQuestions = allAnswers.size();
+    int totalCorrect = snapshot.totalCorrect();
+    int totalQuestions = snapshot.totalAnswered();
     int score90 = totalQuestions > 0 ? (int) Math.round(90.0 * totalCorrect / totalQuestions) : 0;
 
-    attempt.setCompletedAt(Instant.now());
+    attempt.setCompletedAt(now);
     attempt.setTotalScore90(score90);
+    snapshots.write(attempt, snapshot);
     attemptRepository.save(attempt);
 
-    return buildExamSummary(attempt, sections);
+    return snapshots.summarize(attempt, snapshot);
+  }
+
+  /** Load an attempt whose snapshot is about to be changed, locking it against concurrent ones. */
+  private ExamAttempt lockAttempt(UUID attemptId) {
+    return attemptRepository
+        .findByIdForUpdate(attemptId)
+        .orElseThrow(() -> new RuntimeException("Attempt not found"));
+  }
+
+  /** Lock a section in both the snapshot and its exam_sections row, recording its score. */
+  private void lockSection(SectionState state, Instant now) {
+    state.setLocked(true);
+    state.setEndedAt(now);
+    state.setScore(state.correctCount());
+
+    ExamSection section =
+        sectionRepository
+            .findById(state.getSectionId())
+            .orElseThrow(() -> new RuntimeException("Section not found"));
+    section.setLocked(true);
+    section.setEndedAt(now);
+    section.setScoreSection(state.getScore());
+    sectionRepository.save(section);
+  }
+
+  /** Start the first unlocked section and draw the questions of the one after it. */
+  private Optional<SectionState> startNextSection(ExamAttemptSnapshot snapshot, Instant now) {
+    Optional<SectionState> next = snapshot.currentSection();
+    next.ifPresent(
+        state -> {
+          state.setStartedAt(now);
+          sectionRepository
+              .findById(state.getSectionId())
+              .ifPresent(
+                  section -> {
+                    section.setStartedAt(now);
+                    sectionRepository.save(section);
+                  });
+          pinUpcoming(snapshot, state);
+        });
+    return next;
+  }
+
+  /**
+   * Pin the questions of the section after {@code current} while the attempt is already being
+   * written, so reads of the current section never draw for another one.
+   */
+  private void pinUpcoming(ExamAttemptSnapshot snapshot, SectionState current) {
+    nextSection(snapshot, current)
+        .filter(next -> next.getQuestionIds() == null)
+        .ifPresent(this::pinExamQuestions);
+  }
+
+  private static Optional<SectionState> nextSection(
+      ExamAttemptSnapshot snapshot, SectionState current) {
+    int nextOrder = current.getOrderIndex() + 1;
+    return snapshot.getSections().stream()
+        .filter(s -> s.getOrderIndex() == nextOrder && !s.isLocked())
+        .findFirst();
+  }
+
+  /** Run once the surrounding transaction commits, or now outside of one. */
+  private static void afterCommit(Runnable task) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              task.run();
+            }
+          });
+    } else {
+      task.run();
+    }
   }
 
   private boolean validateAnswer(Question question, SubmitAnswerRequest request) {
@@ -251,9 +331,9 @@ public class ExamService {
         .orElse(false);
   }
 
-  private CurrentSectionResponse buildCurrentSectionResponse(ExamSection section) {
+  private CurrentSectionResponse buildCurrentSectionResponse(SectionState section) {
     CurrentSectionResponse response = new CurrentSectionResponse();
-    response.setSectionId(section.getId());
+    response.setSectionId(section.getSectionId());
     response.setType(section.getType().name());
     response.setOrderIndex(section.getOrderIndex());
 
@@ -267,84 +347,69 @@ public class ExamService {
       response.setExpired(false);
     }
 
-    // Get EXAM questions only for this section (is_exam_question = true)
-    Map<QuestionType, Integer> sectionCounts = parseSectionCounts();
-    int questionCount = sectionCounts.getOrDefault(section.getType(), 10);
-    List<Question> questions =
-        questionRepository.findRandomExamQuestionsByType(section.getType().name(), questionCount);
+    // Questions are drawn once per section and pinned in the snapshot so a resume shows the same set
+    List<Question> questions;
+    if (section.getQuestionIds() == null) {
+      questions = pinExamQuestions(section);
+    } else {
+      Map<UUID, Question> byId =
+          questionRepository.findAllById(section.getQuestionIds()).stream()
+              .collect(Collectors.toMap(Question::getId, q -> q));
+      questions =
+          section.getQuestionIds().stream()
+              .map(byId::get)
+              .filter(Objects::nonNull)
+              .collect(Collectors.toList());
+    }
+    // All the section's options in one query
+    Map<UUID, List<QuestionOption>> optionsByQuestion =
+        questions.isEmpty()
+            ? Map.of()
+            : optionRepository
+                .findByQuestionIdIn(questions.stream().map(Question::getId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(option -> option.getQuestion().getId()));
     response.setQuestions(
-        questions.stream().map(this::mapToQuestionResponse).collect(Collectors.toList()));
+        questions.stream()
+            .map(
+                question ->
+                    mapToQuestionResponse(
+                        question, optionsByQuestion.getOrDefault(question.getId(), List.of())))
+            .collect(Collectors.toList()));
 
-    // Get answered question IDs
-    List<ExamUserAnswer> answers = answerRepository.findBySectionIdOrderByOrderIndex(section.getId());
-    response.setAnsweredQuestionIds(
-        answers.stream().map(a -> a.getQuestion().getId()).collect(Collectors.toList()));
+    response.setAnsweredQuestionIds(new ArrayList<>(section.getAnsweredQuestionIds()));
 
     return response;
   }
 
-  private ExamSummaryResponse buildExamSummary(ExamAttempt attempt, List<ExamSection> sections) {
-    ExamSummaryResponse response = new ExamSummaryResponse();
-    response.setTotalScore90(attempt.getTotalScore90());
-
-    List<ExamUserAnswer> allAnswers = answerRepository.findByAttemptIdOrderBySection(attempt.getId());
-    long totalCorrect = allAnswers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-    response.setTotalQuestions(allAnswers.size());
-    response.setCorrectAnswers((int) totalCorrect);
-
-    // Calculate total time: createdAt to completedAt
-    if (attempt.getCreatedAt() != null && attempt.getCompletedAt() != null) {
-      long totalSeconds = java.time.Duration.between(
-          attempt.getCreatedAt(), 
-          attempt.getCompletedAt()
-      ).getSeconds();
-      response.setTotalTimeSeconds(totalSeconds);
-    }
-
-    for (ExamSection section : sections) {
-      List<ExamUserAnswer> sectionAnswers =
-          answerRepository.findBySectionIdOrderByOrderIndex(section.getId());
-      long sectionCorrect = sectionAnswers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-
-      SectionScore score = new SectionScore();
-      score.setCorrect((int) sectionCorrect);
-      score.setTotal(sectionAnswers.size());
-      score.setAccuracy(
-          sectionAnswers.isEmpty() ? 0.0 : (double) sectionCorrect / sectionAnswers.size() * 100);
-
-      // Calculate section time: startedAt to endedAt
-      if (section.getStartedAt() != null && section.getEndedAt() != null) {
-        long sectionSeconds = java.time.Duration.between(
-            section.getStartedAt(), 
-            section.getEndedAt()
-        ).getSeconds();
-        score.setTimeSpentSeconds(sectionSeconds);
-      }
-
-      switch (section.getType()) {
-        case VERBAL_ANALOGY:
-          response.setVerbalAnalogy(score);
-          break;
-        case SHAPE_ANALOGY:
-          response.setShapeAnalogy(score);
-          break;
-        case INSTRUCTIONS_DIRECTIONS:
-          response.setInstructionsDirections(score);
-          break;
-        case QUANTITATIVE:
-          response.setQuantitative(score);
-          break;
-      }
+  /** Draw EXAM questions (is_exam_question = true) for a section and pin them in the snapshot. */
+  private List<Question> pinExamQuestions(SectionState section) {
+    Map<QuestionType, Integer> sectionCounts = parseSectionCounts();
+    int questionCount = sectionCounts.getOrDefault(section.getType(), 10);
+    List<UUID> ids =
+        questionSelectors
+            .exam()
+            .select(
+                new QuestionSelector.Request(
+                    section.getType(), true, null, List.of(), questionCount));
+    List<Question> questions;
+    if (ids.isEmpty()) {
+      questions =
+          questionRepository.findRandomExamQuestionsByType(section.getType().name(), questionCount);
+    } else {
+      Map<UUID, Question> byId =
+          questionRepository.findAllById(ids).stream()
+              .collect(Collectors.toMap(Question::getId, q -> q));
+      questions = ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
-
-    return response;
+    section.setQuestionIds(questions.stream().map(Question::getId).collect(Collectors.toList()));
+    return questions;
   }
 
-  private ExamAttemptResponse mapToExamAttemptResponse(ExamAttempt attempt) {
+  private ExamAttemptResponse mapToExamAttemptResponse(
+      ExamAttempt attempt, List<ExamSection> sections) {
     ExamAttemptResponse response = new ExamAttemptResponse();
     response.setAttemptId(attempt.getId());
-
-    List<ExamSection> sections = sectionRepository.findByAttemptIdOrderByOrderIndex(attempt.getId());
     response.setSections(
         sections.stream()
             .map(
@@ -362,7 +427,7 @@ public class ExamService {
     return response;
   }
 
-  private QuestionResponse mapToQuestionResponse(Question question) {
+  private QuestionResponse mapToQuestionResponse(Question question, List<QuestionOption> options) {
     QuestionResponse response = new QuestionResponse();
     response.setId(question.getId());
     response.setType(question.getType().name());
@@ -370,9 +435,7 @@ public class ExamService {
     response.setPromptText(question.getPromptText());
     response.setPromptImageUrl(question.getPromptImageUrl());
 
-    // Load options for all question formats (now all questions have multiple-choice options)
-    List<QuestionOption> options =
-        optionRepository.findByQuestionIdOrderByOptionOrder(question.getId());
+    // All question formats have multiple-choice options
     if (!options.isEmpty()) {
       // Defensive validation: Check for data integrity issues
       validateQuestionIntegrity(question, options);
@@ -391,6 +454,7 @@ public class ExamService {
               .collect(Collectors.toList()));
     }
 
+    atlasService.apply(response);
     return response;
   }
 
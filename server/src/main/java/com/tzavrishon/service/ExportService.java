@@ -0,0 +1,485 @@
+package com.tzavrishon.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.ExamAttemptSnapshot;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.repository.QuestionRepository;
+import com.tzavrishon.util.ExamArchiveCodec;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams the question bank and answer logs out as NDJSON or CSV. Rows are read in keyset-ordered
+ * pages of {@code app.export.page-size}, each its own short auto-commit query, and written out
+ * before the next page is read: heap use stays flat however many rows there are, and no
+ * transaction stays open for the length of the download.
+ *
+ * <p>Exam answers of archived attempts no longer have rows of their own; they are decoded from
+ * exam_attempt_archives and follow the live answers, flagged {@code archived}. The archive keeps
+ * no answer id, timestamp or chosen option, so those are empty and the range is matched against
+ * the start of the answer's section.
+ */
+@Service
+public class ExportService {
+  private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+  public enum Format {
+    NDJSON,
+    CSV
+  }
+
+  public enum AnswerSource {
+    PRACTICE,
+    EXAM
+  }
+
+  /** CSV has one row per option, with the question columns repeated. */
+  private static final List<String> QUESTION_COLUMNS =
+      List.of(
+          "id",
+          "catalog_index",
+          "type",
+          "format",
+          "prompt_text",
+          "prompt_image_url",
+          "explanation",
+          "difficulty",
+          "is_exam_question",
+          "created_at");
+
+  private static final List<String> OPTION_COLUMNS =
+      List.of("option_id", "option_text", "option_image_url", "option_is_correct", "option_order");
+
+  private static final String QUESTION_PAGE =
+      "SELECT q.id, q.catalog_index, q.type, q.format, q.prompt_text, q.prompt_image_url,"
+          + " q.explanation, q.difficulty, q.is_exam_question, q.created_at,"
+          + " o.id AS option_id, o.text AS option_text, o.image_url AS option_image_url,"
+          + " o.is_correct AS option_is_correct, o.option_order"
+          + " FROM (SELECT * FROM questions WHERE catalog_index > ?%s"
+          + " ORDER BY catalog_index LIMIT ?) q"
+          + " LEFT JOIN question_options o ON o.question_id = q.id"
+          + " ORDER BY q.catalog_index, o.option_order";
+
+  private static final String PRACTICE_ANSWER_PAGE =
+      "SELECT a.id, a.answered_at, a.session_id, a.question_id, q.type AS question_type,"
+          + " a.is_correct, a.time_ms, a.selected_option_id, a.user_answer_raw, a.is_guest"
+          + " FROM practice_user_answers a JOIN questions q ON q.id = a.question_id"
+          + " WHERE (a.answered_at, a.id) > (?, ?) AND a.answered_at < ?%s"
+          + " ORDER BY a.answered_at, a.id LIMIT ?";
+
+  private static final String EXAM_ANSWER_PAGE =
+      "SELECT a.id, a.answered_at, s.attempt_id, a.section_id, a.question_id,"
+          + " q.type AS question_type, a.is_correct, a.time_ms, a.selected_option_id,"
+          + " a.user_answer_raw, a.order_index, FALSE AS archived"
+          + " FROM exam_user_answers a JOIN questions q ON q.id = a.question_id"
+          + " JOIN exam_sections s ON s.id = a.section_id"
+          + " WHERE (a.answered_at, a.id) > (?, ?) AND a.answered_at < ?%s"
+          + " ORDER BY a.answered_at, a.id LIMIT ?";
+
+  /** Archived attempts that may hold answers in the range: started before its end, ended after. */
+  private static final String EXAM_ARCHIVE_PAGE =
+      "SELECT ar.attempt_id, ar.payload FROM exam_attempt_archives ar"
+          + " JOIN exam_attempts t ON t.id = ar.attempt_id"
+          + " WHERE ar.attempt_id > ? AND t.created_at < ? AND t.completed_at >= ?"
+          + " ORDER BY ar.attempt_id LIMIT ?";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectMapper objectMapper;
+  private final QuestionRepository questionRepository;
+  private final AppProperties appProperties;
+
+  public ExportService(
+      JdbcTemplate jdbcTemplate,
+      ObjectMapper objectMapper,
+      QuestionRepository questionRepository,
+      AppProperties appProperties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.objectMapper = objectMapper;
+    this.questionRepository = questionRepository;
+    this.appProperties = appProperties;
+  }
+
+  /**
+   * Write every question, optionally of one type, in catalog order. NDJSON lines carry the
+   * options as an array; CSV has a row per option.
+   */
+  public long exportQuestions(QuestionType type, Format format, OutputStream out)
+      throws IOException {
+    int pageSize = appProperties.getExport().getPageSize();
+    String sql = QUESTION_PAGE.formatted(type != null ? " AND type = ?" : "");
+    List<String> columns = new ArrayList<>(QUESTION_COLUMNS);
+    columns.addAll(OPTION_COLUMNS);
+    long exported = 0;
+
+    try (RowWriter writer = rowWriter(format, columns, out)) {
+      int afterIndex = -1;
+      while (true) {
+        List<Object> args = new ArrayList<>();
+        args.add(afterIndex);
+        if (type != null) {
+          args.add(type.name());
+        }
+        args.add(pageSize);
+
+        QuestionPage page = new QuestionPage(writer, format);
+        jdbcTemplate.query(sql, page::row, args.toArray());
+        page.finish();
+        writer.flush();
+        exported += page.questions;
+        if (page.questions < pageSize) {
+          break;
+        }
+        afterIndex = page.lastIndex;
+      }
+    }
+    logger.info("Exported {} questions as {}", exported, format);
+    return exported;
+  }
+
+  /** Write the answers given in [from, to), optionally to questions of one type, oldest first. */
+  public long exportAnswers(
+      AnswerSource source,
+      Instant from,
+      Instant to,
+      QuestionType type,
+      Format format,
+      OutputStream out)
+      throws IOException {
+    int pageSize = appProperties.getExport().getPageSize();
+    String page = source == AnswerSource.PRACTICE ? PRACTICE_ANSWER_PAGE : EXAM_ANSWER_PAGE;
+    String sql = page.formatted(type != null ? " AND q.type = ?" : "");
+    long exported = 0;
+
+    try (RowWriter writer = rowWriter(format, null, out)) {
+      Timestamp afterAt = Timestamp.from(from);
+      UUID afterId = new UUID(0, 0); // sorts before every generated id
+      while (true) {
+        List<Object> args = new ArrayList<>(List.of(afterAt, afterId, Timestamp.from(to)));
+        if (type != null) {
+          args.add(type.name());
+        }
+        args.add(pageSize);
+
+        int[] rows = {0};
+        Timestamp[] lastAt = {afterAt};
+        UUID[] lastId = {afterId};
+        jdbcTemplate.query(
+            sql,
+            rs -> {
+              lastAt[0] = rs.getTimestamp("answered_at");
+              lastId[0] = rs.getObject("id", UUID.class);
+              writer.write(toMap(rs));
+              rows[0]++;
+            },
+            args.toArray());
+        writer.flush();
+        exported += rows[0];
+        if (rows[0] < pageSize) {
+          break;
+        }
+        afterAt = lastAt[0];
+        afterId = lastId[0];
+      }
+      if (source == AnswerSource.EXAM) {
+        exported += exportArchivedExamAnswers(from, to, type, writer, pageSize);
+      }
+    }
+    logger.info("Exported {} {} answers as {}", exported, source, format);
+    return exported;
+  }
+
+  /** Write the answers of archived exam attempts whose section started in [from, to). */
+  private long exportArchivedExamAnswers(
+      Instant from, Instant to, QuestionType type, RowWriter writer, int pageSize)
+      throws IOException {
+    long exported = 0;
+    UUID afterId = new UUID(0, 0);
+    while (true) {
+      Map<UUID, byte[]> payloads = new LinkedHashMap<>();
+      jdbcTemplate.query(
+          EXAM_ARCHIVE_PAGE,
+          rs -> {
+            payloads.put(rs.getObject("attempt_id", UUID.class), rs.getBytes("payload"));
+          },
+          afterId,
+          Timestamp.from(to),
+          Timestamp.from(from),
+          pageSize);
+
+      // One lookup resolves the question ids of the whole page
+      Set<Integer> catalogIndices = new HashSet<>();
+      for (byte[] payload : payloads.values()) {
+        catalogIndices.addAll(ExamArchiveCodec.catalogIndices(payload));
+      }
+      catalogIndices.remove(0);
+      Map<Integer, UUID> questionIds = new HashMap<>();
+      if (!catalogIndices.isEmpty()) {
+        for (Object[] row : questionRepository.findIdsByCatalogIndexIn(catalogIndices)) {
+          questionIds.put((Integer) row[0], (UUID) row[1]);
+        }
+      }
+
+      for (Map.Entry<UUID, byte[]> archive : payloads.entrySet()) {
+        afterId = archive.getKey();
+        ExamAttemptSnapshot snapshot =
+            ExamArchiveCodec.decode(archive.getValue(), questionIds::get);
+        for (SectionState section : snapshot.getSections()) {
+          Instant startedAt = section.getStartedAt();
+          if (startedAt == null
+              || startedAt.isBefore(from)
+              || !startedAt.isBefore(to)
+              || (type != null && section.getType() != type)) {
+            continue;
+          }
+          for (int i = 0; i < section.answeredCount(); i++) {
+            UUID questionId = section.getAnsweredQuestionIds().get(i);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", null);
+            row.put("answered_at", null);
+            row.put("attempt_id", archive.getKey().toString());
+            row.put("section_id", null);
+            row.put("question_id", questionId != null ? questionId.toString() : null);
+            row.put("question_type", section.getType().name());
+            row.put("is_correct", section.isCorrect(i));
+            row.put("time_ms", section.getTimesMs().get(i));
+            row.put("selected_option_id", null);
+            row.put("user_answer_raw", null);
+            row.put("order_index", i);
+            row.put("archived", true);
+            writer.write(row);
+            exported++;
+          }
+        }
+      }
+      writer.flush();
+      if (payloads.size() < pageSize) {
+        return exported;
+      }
+    }
+  }
+
+  /** Collects the joined question/option rows of one page back into questions. */
+  private static final class QuestionPage {
+    private final RowWriter writer;
+    private final Format format;
+    private Map<String, Object> question;
+    private final List<Map<String, Object>> options = new ArrayList<>();
+    private int questions;
+    private int lastIndex;
+
+    QuestionPage(RowWriter writer, Format format) {
+      this.writer = writer;
+      this.format = format;
+    }
+
+    void row(ResultSet rs) throws SQLException {
+      int index = rs.getInt("catalog_index");
+      if (question == null || index != lastIndex) {
+        finish();
+        question = new LinkedHashMap<>();
+        for (String column : QUESTION_COLUMNS) {
+          question.put(column, value(rs.getObject(column)));
+        }
+        questions++;
+        lastIndex = index;
+      }
+      if (rs.getObject("option_id") != null) {
+        Map<String, Object> option = new LinkedHashMap<>();
+        for (String column : OPTION_COLUMNS) {
+          option.put(column, value(rs.getObject(column)));
+        }
+        options.add(option);
+      }
+    }
+
+    void finish() {
+      if (question == null) {
+        return;
+      }
+      if (format == Format.NDJSON) {
+        List<Map<String, Object>> nested = new ArrayList<>();
+        for (Map<String, Object> option : options) {
+          Map<String, Object> unprefixed = new LinkedHashMap<>();
+          option.forEach((key, value) -> unprefixed.put(key.substring("option_".length()), value));
+          nested.add(unprefixed);
+        }
+        question.put("options", nested);
+        writer.write(question);
+      } else if (options.isEmpty()) {
+        writer.write(question);
+      } else {
+        for (Map<String, Object> option : options) {
+          Map<String, Object> row = new LinkedHashMap<>(question);
+          row.putAll(option);
+          writer.write(row);
+        }
+      }
+      question = null;
+      options.clear();
+    }
+  }
+
+  private static Map<String, Object> toMap(ResultSet rs) throws SQLException {
+    ResultSetMetaData meta = rs.getMetaData();
+    Map<String, Object> row = new LinkedHashMap<>();
+    for (int i = 1; i <= meta.getColumnCount(); i++) {
+      row.put(meta.getColumnLabel(i), value(rs.getObject(i)));
+    }
+    return row;
+  }
+
+  /** Timestamps as ISO-8601 instants, ids as strings; the rest as the driver returns them. */
+  private static Object value(Object value) {
+    if (value instanceof Timestamp timestamp) {
+      return timestamp.toInstant().toString();
+    }
+    if (value instanceof UUID id) {
+      return id.toString();
+    }
+    return value;
+  }
+
+  private RowWriter rowWriter(Format format, List<String> columns, OutputStream out)
+      throws IOException {
+    Writer writer =
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    if (format == Format.CSV) {
+      return new CsvWriter(writer, columns);
+    }
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    return new NdjsonWriter(writer, generator);
+  }
+
+  /** Output of one export. Row write errors surface as UncheckedIOException. */
+  private interface RowWriter extends AutoCloseable {
+    void write(Map<String, Object> row);
+
+    void flush() throws IOException;
+
+    @Override
+    void close() throws IOException;
+  }
+
+  private static final class NdjsonWriter implements RowWriter {
+    private final Writer writer;
+    private final JsonGenerator generator;
+
+    NdjsonWriter(Writer writer, JsonGenerator generator) {
+      this.writer = writer;
+      this.generator = generator;
+    }
+
+    @Override
+    public void write(Map<String, Object> row) {
+      try {
+        generator.writeObject(row);
+        generator.flush();
+        writer.write('\n');
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      generator.close();
+      writer.flush();
+    }
+  }
+
+  /** RFC 4180 CSV. The header is the given columns, or those of the first row. */
+  private static final class CsvWriter implements RowWriter {
+    private final Writer writer;
+    private List<String> columns;
+
+    CsvWriter(Writer writer, List<String> columns) {
+      this.writer = writer;
+      this.columns = columns;
+      if (columns != null) {
+        writeLine(columns);
+      }
+    }
+
+    @Override
+    public void write(Map<String, Object> row) {
+      if (columns == null) {
+        columns = List.copyOf(row.keySet());
+        writeLine(columns);
+      }
+      List<Object> values = new ArrayList<>(columns.size());
+      for (String column : columns) {
+        values.add(row.get(column));
+      }
+      writeLine(values);
+    }
+
+    private void writeLine(List<?> values) {
+      try {
+        for (int i = 0; i < values.size(); i++) {
+          if (i > 0) {
+            writer.write(',');
+          }
+          writer.write(escape(values.get(i)));
+        }
+        writer.write("\r\n");
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    static String escape(Object value) {
+      if (value == null) {
+        return "";
+      }
+      String text = value.toString();
+      if (text.indexOf(',') < 0
+          && text.indexOf('"') < 0
+          && text.indexOf('\n') < 0
+          && text.indexOf('\r') < 0) {
+        return text;
+      }
+      return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.flush();
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.*;
+import com.tzavrishon.domain.GuestPracticeState.Session;
+import com.tzavrishon.dto.*;
+import com.tzavrishon.repository.*;
+import com.tzavrishon.security.UserPrincipal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Guest practice in stateless mode ({@code app.guest.stateless}). The session, quota and recently
+ * seen questions live in a {@link GuestPracticeState} carried in the signed guest_state cookie, so
+ * guests only read from the database. Callers mutate the state through these methods and then write
+ * it back to the cookie.
+ */
+@Service
+public class GuestPracticeService {
+  private final PracticeService practiceService;
+  private final PracticeSessionRepository sessionRepository;
+  private final PracticeUserAnswerRepository answerRepository;
+  private final RecentQuestionRepository recentQuestionRepository;
+  private final QuestionRepository questionRepository;
+  private final UserRepository userRepository;
+  private final ItemStatsService itemStatsService;
+  private final JdbcTemplate jdbcTemplate;
+  private final AppProperties appProperties;
+
+  public GuestPracticeService(
+      PracticeService practiceService,
+      PracticeSessionRepository sessionRepository,
+      PracticeUserAnswerRepository answerRepository,
+      RecentQuestionRepository recentQuestionRepository,
+      QuestionRepository questionRepository,
+      UserRepository userRepository,
+      ItemStatsService itemStatsService,
+      JdbcTemplate jdbcTemplate,
+      AppProperties appProperties) {
+    this.practiceService = practiceService;
+    this.sessionRepository = sessionRepository;
+    this.answerRepository = answerRepository;
+    this.recentQuestionRepository = recentQuestionRepository;
+    this.questionRepository = questionRepository;
+    this.userRepository = userRepository;
+    this.itemStatsService = itemStatsService;
+    this.jdbcTemplate = jdbcTemplate;
+    this.appProperties = appProperties;
+  }
+
+  public boolean isEnabled() {
+    return appProperties.getGuest().isStateless();
+  }
+
+  public PracticeSessionResponse startSession(QuestionType type, GuestPracticeState state) {
+    int limit = appProperties.getGuest().getPracticeLimitPerType();
+    Instant now = Instant.now();
+    Instant windowStart = now.minus(GuestQuotaTracker.WINDOW);
+
+    PracticeSessionResponse response = new PracticeSessionResponse();
+    response.setType(type.name());
+    if (state.countStartsSince(type, windowStart) >= limit) {
+      response.setLimitReached(true);
+      response.setQuestionsAvailable(0);
+      return response;
+    }
+
+    state.startSession(type, now, windowStart);
+    response.setSessionId(state.getActiveSessionId());
+    response.setLimitReached(false);
+    response.setQuestionsAvailable(limit);
+    return response;
+  }
+
+  @Transactional(readOnly = true)
+  public List<QuestionResponse> getQuestions(GuestPracticeState state) {
+    Session session = activeSession(state);
+    List<Integer> recent = state.getRecent().getOrDefault(session.getType(), List.of());
+    List<UUID> excludeIds = new ArrayList<>(resolveQuestionIds(recent).values());
+    return practiceService.drawPracticeQuestions(
+        session.getType(), null, excludeIds, appProperties.getGuest().getPracticeLimitPerType());
+  }
+
+  @Transactional(readOnly = true)
+  public AnswerResponse submitAnswer(GuestPracticeState state, SubmitAnswerRequest request) {
+    Session session = activeSession(state);
+    Question question =
+        questionRepository
+            .findById(request.getQuestionId())
+            .orElseThrow(() -> new RuntimeException("Question not found"));
+    if (question.getType() != session.getType()) {
+      throw new RuntimeException("Question does not belong to current session");
+    }
+
+    boolean isCorrect = practiceService.validateAnswer(question, request);
+    session.recordAnswer(question.getCatalogIndex(), isCorrect, request.getTimeMs());
+    itemStatsService.record(
+        question.getId(), request.getSelectedOptionId(), isCorrect, request.getTimeMs());
+    state.addRecent(
+        question.getType(),
+        question.getCatalogIndex(),
+        appProperties.getGuest().getRecentQuestionsCacheSize());
+
+    AnswerResponse response = new AnswerResponse();
+    response.setCorrect(isCorrect);
+    response.setExplanation(question.getExplanation());
+    return response;
+  }
+
+  public PracticeSummaryResponse finishSession(GuestPracticeState state) {
+    Session session = activeSession(state);
+    if (session.getEndedAt() == null) {
+      session.setEndedAt(Instant.now());
+    }
+
+    int total = session.answeredCount();
+    int correct = session.correctCount();
+    PracticeSummaryResponse response = new PracticeSummaryResponse();
+    response.setTotalQuestions(total);
+    response.setCorrectAnswers(correct);
+    response.setAccuracy(total == 0 ? 0.0 : (double) correct / total * 100);
+    response.setTotalTimeMs(session.totalTimeMs());
+    return response;
+  }
+
+  /**
+   * Persist a guest's token-held practice under the signed-in user, so it counts towards their
+   * progress. Questions deleted since are skipped. Each guest state can be claimed once: its guest
+   * id is recorded in guest_claims, in the same transaction, and a replayed copy of the cookie is
+   * rejected.
+   *
+   * @return the number of answers saved
+   */
+  @Transactional
+  public int claim(UserPrincipal user, GuestPracticeState state) {
+    if (user == null) {
+      throw new RuntimeException("Only authenticated users can keep guest practice");
+    }
+    Instant expired =
+        Instant.now().minusSeconds(appProperties.getGuest().getStateTokenTtlHours() * 3600L);
+    jdbcTemplate.update("DELETE FROM guest_claims WHERE claimed_at < ?", Timestamp.from(expired));
+    int claimed =
+        jdbcTemplate.update(
+            "INSERT INTO guest_claims (guest_id, user_id) VALUES (?, ?)"
+                + " ON CONFLICT (guest_id) DO NOTHING",
+            state.getGuestId(),
+            user.getId());
+    if (claimed == 0) {
+      throw new RuntimeException("Guest practice already claimed");
+    }
+    User userEntity = userRepository.getReferenceById(user.getId());
+
+    Set<Integer> indices = new HashSet<>();
+    state.getSessions().forEach(s -> indices.addAll(s.getQuestionIndices()));
+    Map<Integer, UUID> questionIds = resolveQuestionIds(indices);
+
+    int saved = 0;
+    for (Session guestSession : state.getSessions()) {
+      if (guestSession.answeredCount() == 0) {
+        continue;
+      }
+      PracticeSession session = new PracticeSession();
+      session.setUser(userEntity);
+      session.setType(guestSession.getType());
+      session.setStartedAt(guestSession.getStartedAt());
+      session.setEndedAt(guestSession.getEndedAt());
+      session = sessionRepository.save(session);
+
+      // Answer times are not carried in the token; space them by their recorded durations
+      Instant answeredAt = guestSession.getStartedAt();
+      for (int i = 0; i < guestSession.answeredCount(); i++) {
+        Integer timeMs = guestSession.getTimesMs().get(i);
+        answeredAt = answeredAt.plusMillis(timeMs != null ? timeMs : 0);
+        UUID questionId = questionIds.get(guestSession.getQuestionIndices().get(i));
+        if (questionId == null) {
+          continue;
+        }
+        Question question = questionRepository.getReferenceById(questionId);
+
+        PracticeUserAnswer answer = new PracticeUserAnswer();
+        answer.setSession(session);
+        answer.setQuestion(question);
+        answer.setIsCorrect(guestSession.isCorrect(i));
+        answer.setTimeMs(timeMs);
+        answer.setAnsweredAt(answeredAt);
+        answerRepository.save(answer);
+
+        RecentQuestion recent = new RecentQuestion();
+        recent.setUser(userEntity);
+        recent.setQuestion(question);
+        recent.setQuestionType(guestSession.getType());
+        recent.setServedAt(answeredAt);
+        recentQuestionRepository.save(recent);
+        saved++;
+      }
+    }
+    return saved;
+  }
+
+  private Session activeSession(GuestPracticeState state) {
+    return state.activeSession().orElseThrow(() -> new RuntimeException("Session not found"));
+  }
+
+  private Map<Integer, UUID> resolveQuestionIds(Collection<Integer> catalogIndices) {
+    Map<Integer, UUID> ids = new HashMap<>();
+    if (!catalogIndices.isEmpty()) {
+      for (Object[] row : questionRepository.findIdsByCatalogIndexIn(catalogIndices)) {
+        ids.put((Integer) row[0], (UUID) row[1]);
+      }
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,166 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.repository.PracticeSessionRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Enforces the guest practice limit: at most {@code practiceLimitPerType} sessions per guest and
+ * question type in any 24 hour window.
+ *
+ * <p>In the default {@code memory} mode each (guest, type) pair keeps the start times of its last
+ * {@code limit} sessions in a ring, so the check reads one slot with no query; a start enters the
+ * ring once its session commits. A missing ring is rebuilt from practice_sessions on first use,
+ * which makes evicting an entry always safe. The {@code database} mode counts rows in
+ * practice_sessions on every check instead, for deployments running more than one node.
+ */
+@Component
+public class GuestQuotaTracker {
+  static final Duration WINDOW = Duration.ofHours(24);
+
+  private final PracticeSessionRepository sessionRepository;
+  private final AppProperties appProperties;
+  private final Map<Key, Window> windows = new ConcurrentHashMap<>();
+
+  public GuestQuotaTracker(
+      PracticeSessionRepository sessionRepository, AppProperties appProperties) {
+    this.sessionRepository = sessionRepository;
+    this.appProperties = appProperties;
+  }
+
+  /**
+   * Check that the guest has quota left for a session of this type and, if so, count its start.
+   * Inside a transaction the start is counted once that transaction commits, so a session that
+   * is never saved uses no quota, as in the {@code database} mode.
+   *
+   * @return false if the guest has already used its quota for this type
+   */
+  public boolean tryAcquire(UUID guestId, QuestionType type) {
+    AppProperties.Guest config = appProperties.getGuest();
+    int limit = config.getPracticeLimitPerType();
+    Instant now = Instant.now();
+    Instant windowStart = now.minus(WINDOW);
+
+    if ("database".equalsIgnoreCase(config.getQuotaMode())) {
+      return sessionRepository.countByGuestIdAndTypeAndStartedAtAfter(
+              guestId, type.name(), windowStart)
+          < limit;
+    }
+    if (limit <= 0) {
+      return false;
+    }
+
+    Key key = new Key(guestId, type);
+    Window window = windows.get(key);
+    if (window == null || window.capacity() != limit) {
+      Window loaded = new Window(limit);
+      loaded.load(sessionRepository.findGuestSessionStartsSince(guestId, type, windowStart));
+      // A concurrent miss may have installed a window first; keep it so no start is lost
+      window = windows.merge(key, loaded, (old, fresh) -> old.capacity() == limit ? old : fresh);
+      int maxSize = config.getQuotaCacheSize();
+      if (windows.size() > maxSize) {
+        // Down to 90% of the bound, so a full cache is swept once per tenth of its size in misses
+        evict(windowStart, maxSize - Math.max(1, maxSize / 10));
+      }
+    }
+    if (!window.hasRoom(windowStart.toEpochMilli())) {
+      return false;
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              recordStart(key, now);
+            }
+          });
+    } else {
+      recordStart(key, now);
+    }
+    return true;
+  }
+
+  /** Count a committed start in the key's current window; a missing one rebuilds with it. */
+  private void recordStart(Key key, Instant startedAt) {
+    Window window = windows.get(key);
+    if (window != null) {
+      window.record(startedAt.toEpochMilli());
+    }
+  }
+
+  /** Drop windows with no starts inside the last 24 hours; they rebuild as empty anyway. */
+  @Scheduled(fixedDelay = 3_600_000)
+  public void evictExpired() {
+    evict(Instant.now().minus(WINDOW), Integer.MAX_VALUE);
+  }
+
+  int size() {
+    return windows.size();
+  }
+
+  private void evict(Instant windowStart, int maxSize) {
+    long cutoff = windowStart.toEpochMilli();
+    windows.values().removeIf(window -> window.newest() <= cutoff);
+    // Still over the bound: shed arbitrary entries, each will be rebuilt from the database
+    Iterator<Key> keys = windows.keySet().iterator();
+    while (windows.size() > maxSize && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+    }
+  }
+
+  private record Key(UUID guestId, QuestionType type) {}
+
+  /** Ring of the last {@code capacity} session start times, in epoch millis. */
+  private static final class Window {
+    private final AtomicLongArray starts;
+    private final AtomicLong next = new AtomicLong();
+
+    Window(int capacity) {
+      starts = new AtomicLongArray(capacity);
+    }
+
+    int capacity() {
+      return starts.length();
+    }
+
+    void load(List<Instant> startedAt) {
+      // Only the most recent starts matter; older ones would be overwritten anyway
+      for (int i = Math.max(0, startedAt.size() - capacity()); i < startedAt.size(); i++) {
+        long seq = next.getAndIncrement();
+        starts.set((int) (seq % capacity()), startedAt.get(i).toEpochMilli());
+      }
+    }
+
+    /**
+     * The slot about to be overwritten holds the start {@code capacity} sessions ago. If that start
+     * is still inside the window the quota is used up.
+     */
+    boolean hasRoom(long windowStart) {
+      return starts.get((int) (next.get() % capacity())) <= windowStart;
+    }
+
+    void record(long startedAt) {
+      long seq = next.getAndIncrement();
+      starts.set((int) (seq % capacity()), startedAt);
+    }
+
+    long newest() {
+      long seq = next.get();
+      return seq == 0 ? 0 : starts.get((int) ((seq - 1) % capacity()));
+    }
+  }
+}
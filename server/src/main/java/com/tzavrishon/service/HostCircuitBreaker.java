@@ -0,0 +1,197 @@
+package com.tzavrishon.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-host circuit breaker for upstream image fetches. Each host starts CLOSED and records the
+ * outcome of its last {@code windowSize} calls; once at least {@code minimumCalls} are in and the
+ * failure rate reaches the threshold it goes OPEN and calls fail fast. After {@code openMillis} one
+ * trial call is let through (HALF_OPEN): success closes the circuit, failure opens it again.
+ */
+public class HostCircuitBreaker {
+  private static final Logger logger = LoggerFactory.getLogger(HostCircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int windowSize;
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final long openMillis;
+  private final LongSupplier clock;
+  private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+  private final LongAdder opened = new LongAdder();
+  private final LongAdder halfOpened = new LongAdder();
+  private final LongAdder closed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  public HostCircuitBreaker(
+      int windowSize, int minimumCalls, double failureRateThreshold, long openMillis) {
+    this(windowSize, minimumCalls, failureRateThreshold, openMillis, System::currentTimeMillis);
+  }
+
+  HostCircuitBreaker(
+      int windowSize,
+      int minimumCalls,
+      double failureRateThreshold,
+      long openMillis,
+      LongSupplier clock) {
+    this.windowSize = windowSize;
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.openMillis = openMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * Whether a call to the host may go ahead. A true result must be followed by exactly one of
+   * {@link #recordSuccess}, {@link #recordFailure} or {@link #release}.
+   */
+  public boolean tryAcquire(String host) {
+    if (circuit(host).tryAcquire()) {
+      return true;
+    }
+    rejected.increment();
+    return false;
+  }
+
+  public void recordSuccess(String host) {
+    circuit(host).record(false);
+  }
+
+  public void recordFailure(String host) {
+    circuit(host).record(true);
+  }
+
+  /** The call was abandoned before reaching the host; it counts neither way. */
+  public void release(String host) {
+    circuit(host).release();
+  }
+
+  public State state(String host) {
+    Circuit circuit = circuits.get(host);
+    return circuit == null ? State.CLOSED : circuit.state();
+  }
+
+  /** Hosts whose circuit is not closed, by name. */
+  public Map<String, String> openHosts() {
+    Map<String, String> hosts = new TreeMap<>();
+    circuits.forEach(
+        (host, circuit) -> {
+          State state = circuit.state();
+          if (state != State.CLOSED) {
+            hosts.put(host, state.name());
+          }
+        });
+    return hosts;
+  }
+
+  public long opened() {
+    return opened.sum();
+  }
+
+  public long halfOpened() {
+    return halfOpened.sum();
+  }
+
+  public long closed() {
+    return closed.sum();
+  }
+
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  private Circuit circuit(String host) {
+    return circuits.computeIfAbsent(host, Circuit::new);
+  }
+
+  private final class Circuit {
+    private final String host;
+    private final boolean[] outcomes = new boolean[windowSize]; // true = failure
+    private State state = State.CLOSED;
+    private int calls;
+    private int failures;
+    private int next;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    Circuit(String host) {
+      this.host = host;
+    }
+
+    synchronized State state() {
+      return state;
+    }
+
+    synchronized boolean tryAcquire() {
+      if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+        transition(State.HALF_OPEN);
+      }
+      if (state == State.CLOSED) {
+        return true;
+      }
+      if (state == State.HALF_OPEN && !trialInFlight) {
+        trialInFlight = true;
+        return true;
+      }
+      return false;
+    }
+
+    synchronized void record(boolean failure) {
+      switch (state) {
+        case HALF_OPEN -> {
+          trialInFlight = false;
+          transition(failure ? State.OPEN : State.CLOSED);
+        }
+        case CLOSED -> {
+          if (calls == windowSize) {
+            failures -= outcomes[next] ? 1 : 0;
+          } else {
+            calls++;
+          }
+          outcomes[next] = failure;
+          failures += failure ? 1 : 0;
+          next = (next + 1) % windowSize;
+          if (calls >= minimumCalls && (double) failures / calls >= failureRateThreshold) {
+            transition(State.OPEN);
+          }
+        }
+        case OPEN -> {
+          // A call that started before the circuit opened; the open period stands
+        }
+      }
+    }
+
+    synchronized void release() {
+      if (state == State.HALF_OPEN) {
+        trialInFlight = false;
+      }
+    }
+
+    private void transition(State to) {
+      logger.info("Image host {} circuit {} -> {}", host, state, to);
+      state = to;
+      switch (to) {
+        case OPEN -> {
+          openedAt = clock.getAsLong();
+          opened.increment();
+        }
+        case HALF_OPEN -> halfOpened.increment();
+        case CLOSED -> closed.increment();
+      }
+      calls = 0;
+      failures = 0;
+      next = 0;
+    }
+  }
+}
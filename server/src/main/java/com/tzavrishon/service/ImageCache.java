@@ -0,0 +1,113 @@
+package com.tzavrishon.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of proxied images bounded by their total size in bytes rather than entry count, with a
+ * per-entry TTL. An image larger than an eighth of the budget is not cached, so a single huge
+ * upstream file cannot flush everything else.
+ */
+public class ImageCache {
+  private final long maxBytes;
+  private final long ttlMillis;
+  private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long bytes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public ImageCache(long maxBytes, long ttlMillis) {
+    this.maxBytes = maxBytes;
+    this.ttlMillis = ttlMillis;
+  }
+
+  public CachedImage get(String url) {
+    synchronized (entries) {
+      CachedImage image = entries.get(url);
+      if (image != null && System.currentTimeMillis() - image.fetchedAt() >= ttlMillis) {
+        entries.remove(url);
+        bytes -= image.data().length;
+        image = null;
+      }
+      (image != null ? hits : misses).increment();
+      return image;
+    }
+  }
+
+  /** Whether a fresh entry exists, without counting a hit or miss. */
+  public boolean contains(String url) {
+    synchronized (entries) {
+      CachedImage image = entries.get(url);
+      return image != null && System.currentTimeMillis() - image.fetchedAt() < ttlMillis;
+    }
+  }
+
+  public void put(String url, CachedImage image) {
+    if (image.data().length > maxBytes / 8) {
+      return;
+    }
+    synchronized (entries) {
+      CachedImage previous = entries.put(url, image);
+      bytes += image.data().length - (previous != null ? previous.data().length : 0);
+
+      Iterator<Map.Entry<String, CachedImage>> eldest = entries.entrySet().iterator();
+      while (bytes > maxBytes && eldest.hasNext()) {
+        bytes -= eldest.next().getValue().data().length;
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long bytes() {
+    synchronized (entries) {
+      return bytes;
+    }
+  }
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  public record CachedImage(
+      byte[] data, String contentType, long fetchedAt, long lastModified, String hash)
+      implements ImageSource {
+    public CachedImage(byte[] data, String contentType, long fetchedAt) {
+      this(data, contentType, fetchedAt, fetchedAt, ImageDiskCache.sha256(data));
+    }
+
+    @Override
+    public long length() {
+      return data.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out, long offset, long length) throws IOException {
+      out.write(data, (int) offset, (int) length);
+    }
+  }
+}
@@ -0,0 +1,375 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.service.ImageCache.CachedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk tier of the image proxy cache. Image bytes are stored content-addressed under {@code
+ * blobs/<sha-256>}, so URLs serving identical images share one file, and each URL has a small
+ * {@code urls/<sha-256 of url>.properties} record pointing at its blob. The in-memory index is
+ * rebuilt from those records at startup, so the cache survives restarts.
+ *
+ * <p>Hits are served from a memory-mapped view of the blob: the bytes stay in the OS page cache
+ * rather than on the heap.
+ */
+public final class ImageDiskCache {
+  private static final Logger logger = LoggerFactory.getLogger(ImageDiskCache.class);
+
+  private final Path blobs;
+  private final Path urls;
+  private final long maxBytes;
+  private final long ttlMillis;
+  private final Map<String, DiskImage> index = new ConcurrentHashMap<>();
+  private final Map<String, BlobUse> blobUses = new HashMap<>(); // guarded by this
+  private volatile long totalBytes;
+
+  public ImageDiskCache(Path directory, long maxBytes, long ttlMillis) {
+    this.blobs = directory.resolve("blobs");
+    this.urls = directory.resolve("urls");
+    this.maxBytes = maxBytes;
+    this.ttlMillis = ttlMillis;
+    try {
+      Files.createDirectories(blobs);
+      Files.createDirectories(urls);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create image cache directory " + directory, e);
+    }
+    rebuildIndex();
+  }
+
+  public DiskImage get(String url) {
+    DiskImage image = index.get(url);
+    if (image == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - image.fetchedAt() >= ttlMillis) {
+      remove(url);
+      return null;
+    }
+    image.touch();
+    return image;
+  }
+
+  /** Store a freshly downloaded image and return its disk-backed view. */
+  public synchronized DiskImage put(String url, CachedImage image) {
+    String hash = image.hash();
+    Path blob = blobs.resolve(hash);
+    try {
+      if (!Files.exists(blob)) {
+        writeAtomically(blob, image.data());
+      }
+
+      Properties record = new Properties();
+      record.setProperty("url", url);
+      record.setProperty("blob", hash);
+      record.setProperty("contentType", image.contentType());
+      record.setProperty("fetchedAt", Long.toString(image.fetchedAt()));
+      record.setProperty("lastModified", Long.toString(image.lastModified()));
+      Path recordFile = urls.resolve(sha256(url.getBytes(StandardCharsets.UTF_8)) + ".properties");
+      Path temp = Files.createTempFile(urls, "record", ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        record.store(writer, null);
+      }
+      Files.move(temp, recordFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      logger.warn("Could not write image {} to disk cache", url, e);
+      return null;
+    }
+
+    DiskImage diskImage =
+        new DiskImage(
+            url,
+            hash,
+            blob,
+            image.contentType(),
+            image.data().length,
+            image.fetchedAt(),
+            image.lastModified());
+    reference(hash, image.data().length);
+    DiskImage previous = index.put(url, diskImage);
+    if (previous != null) {
+      release(previous);
+    }
+    evictIfNeeded(url);
+    return diskImage;
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  /** Bytes on disk; a blob shared by several URLs is counted once. */
+  public long bytes() {
+    return totalBytes;
+  }
+
+  private void rebuildIndex() {
+    boolean listed = false;
+    try (Stream<Path> records = Files.list(urls)) {
+      for (Path recordFile : (Iterable<Path>) records::iterator) {
+        try {
+          loadRecord(recordFile);
+        } catch (IOException | RuntimeException e) {
+          // One bad record costs only its own entry
+          logger.warn("Dropping unreadable image cache record {}", recordFile, e);
+          try {
+            Files.deleteIfExists(recordFile);
+          } catch (IOException deleteFailure) {
+            logger.warn("Could not delete image cache record {}", recordFile, deleteFailure);
+          }
+        }
+      }
+      listed = true;
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Image disk cache index could not be fully rebuilt", e);
+    }
+
+    // Blobs no record points at (e.g. a crash between writing a blob and its record). Skipped
+    // when the records could not all be listed, or blobs still in use would be deleted.
+    if (listed) {
+      try (Stream<Path> files = Files.list(blobs)) {
+        for (Path blob : (Iterable<Path>) files::iterator) {
+          if (!blobUses.containsKey(blob.getFileName().toString())) {
+            Files.deleteIfExists(blob);
+          }
+        }
+      } catch (IOException e) {
+        logger.warn("Could not clean orphaned image blobs", e);
+      }
+    }
+    logger.info("Image disk cache loaded {} entries ({} bytes)", index.size(), bytes());
+    evictIfNeeded(null);
+  }
+
+  private void loadRecord(Path recordFile) throws IOException {
+    if (!recordFile.toString().endsWith(".properties")) {
+      Files.deleteIfExists(recordFile); // interrupted write
+      return;
+    }
+    Properties record = new Properties();
+    try (Reader reader = Files.newBufferedReader(recordFile, StandardCharsets.UTF_8)) {
+      record.load(reader);
+    }
+    String hash = record.getProperty("blob");
+    Path blob = blobs.resolve(hash);
+    if (!Files.exists(blob)) {
+      Files.deleteIfExists(recordFile);
+      return;
+    }
+    long size = Files.size(blob);
+    String url = record.getProperty("url");
+    String fetchedAt = record.getProperty("fetchedAt");
+    DiskImage image =
+        new DiskImage(
+            url,
+            hash,
+            blob,
+            record.getProperty("contentType"),
+            size,
+            Long.parseLong(fetchedAt),
+            Long.parseLong(record.getProperty("lastModified", fetchedAt)));
+    reference(hash, size);
+    DiskImage previous = index.put(url, image);
+    if (previous != null) {
+      release(previous);
+    }
+  }
+
+  /** Evict least recently used entries until under budget, never the one just stored. */
+  private synchronized void evictIfNeeded(String keep) {
+    if (totalBytes <= maxBytes) {
+      return;
+    }
+    List<DiskImage> byAge = new ArrayList<>(index.values());
+    byAge.sort(Comparator.comparingLong(DiskImage::lastAccess));
+    for (DiskImage image : byAge) {
+      if (totalBytes <= maxBytes) {
+        break;
+      }
+      if (!image.url().equals(keep)) {
+        remove(image.url());
+      }
+    }
+  }
+
+  private synchronized void remove(String url) {
+    DiskImage image = index.remove(url);
+    if (image == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(
+          urls.resolve(sha256(url.getBytes(StandardCharsets.UTF_8)) + ".properties"));
+    } catch (IOException e) {
+      logger.warn("Could not delete cached image {}", url, e);
+    }
+    release(image);
+  }
+
+  /** Count one more URL pointing at a blob. */
+  private synchronized void reference(String hash, long size) {
+    BlobUse use = blobUses.get(hash);
+    if (use == null) {
+      use = new BlobUse(size);
+      blobUses.put(hash, use);
+      totalBytes += size;
+    }
+    use.references++;
+  }
+
+  /** Drop a URL's reference to its blob, deleting the blob once no URL points at it. */
+  private synchronized void release(DiskImage image) {
+    BlobUse use = blobUses.get(image.hash());
+    if (use == null || --use.references > 0) {
+      return;
+    }
+    blobUses.remove(image.hash());
+    totalBytes -= use.size;
+    try {
+      Files.deleteIfExists(image.path());
+    } catch (IOException e) {
+      logger.warn("Could not delete image blob {}", image.hash(), e);
+    }
+  }
+
+  private void writeAtomically(Path target, byte[] data) throws IOException {
+    Path temp = Files.createTempFile(target.getParent(), "blob", ".tmp");
+    Files.write(temp, data);
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Size of a blob and the number of indexed URLs pointing at it. */
+  private static final class BlobUse {
+    private final long size;
+    private int references;
+
+    BlobUse(long size) {
+      this.size = size;
+    }
+  }
+
+  static String sha256(byte[] data) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** A cached image on disk, served through a lazily created read-only mapping. */
+  public static final class DiskImage implements ImageSource {
+    private final String url;
+    private final String hash;
+    private final Path path;
+    private final String contentType;
+    private final long length;
+    private final long fetchedAt;
+    private final long lastModified;
+    private volatile long lastAccess = System.currentTimeMillis();
+    private volatile MappedByteBuffer mapped;
+
+    DiskImage(
+        String url,
+        String hash,
+        Path path,
+        String contentType,
+        long length,
+        long fetchedAt,
+        long lastModified) {
+      this.url = url;
+      this.hash = hash;
+      this.path = path;
+      this.contentType = contentType;
+      this.length = length;
+      this.fetchedAt = fetchedAt;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    public String contentType() {
+      return contentType;
+    }
+
+    @Override
+    public long length() {
+      return length;
+    }
+
+    @Override
+    public long lastModified() {
+      return lastModified;
+    }
+
+    @Override
+    public void writeTo(OutputStream out, long offset, long length) throws IOException {
+      ByteBuffer view = map().slice((int) offset, (int) length);
+      WritableByteChannel channel = Channels.newChannel(out);
+      while (view.hasRemaining()) {
+        channel.write(view);
+      }
+    }
+
+    public String url() {
+      return url;
+    }
+
+    @Override
+    public String hash() {
+      return hash;
+    }
+
+    Path path() {
+      return path;
+    }
+
+    long fetchedAt() {
+      return fetchedAt;
+    }
+
+    long lastAccess() {
+      return lastAccess;
+    }
+
+    void touch() {
+      lastAccess = System.currentTimeMillis();
+    }
+
+    private MappedByteBuffer map() throws IOException {
+      MappedByteBuffer buffer = mapped;
+      if (buffer == null) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+          buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        mapped = buffer;
+      }
+      return buffer;
+    }
+  }
+}
@@ -0,0 +1,518 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.dto.ImageCacheStats;
+import com.tzavrishon.service.ImageCache.CachedImage;
+import com.tzavrishon.util.ImageResizer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fetches images for the image proxy. With {@code app.image-proxy.disk-cache-dir} set, images are
+ * kept in the on-disk {@link ImageDiskCache} and served from mapped files; otherwise they are kept
+ * in the byte-bounded heap {@link ImageCache}. Concurrent misses for the same URL are coalesced so
+ * only one of them goes upstream; the others wait for its result.
+ *
+ * <p>Upstream requests share one pooled {@link HttpClient} and are limited per host. On a miss the
+ * body is streamed to the client as it arrives while being buffered for the cache, so the first
+ * response does not wait for the whole download. Failed URLs are remembered for a short while and
+ * each host has a {@link HostCircuitBreaker}, so a broken origin fails fast instead of tying up
+ * request threads for the full timeout.
+ */
+@Service
+public class ImageProxyService {
+  private static final Logger logger = LoggerFactory.getLogger(ImageProxyService.class);
+  private static final List<String> ALLOWED_CONTENT_TYPES =
+      List.of("image/jpeg", "image/png", "image/gif", "image/webp");
+  private static final String USER_AGENT = "Mozilla/5.0 (Tzav Rishon Image Proxy)";
+  private static final int CHUNK_SIZE = 16 * 1024;
+  private static final int MAX_REMEMBERED_FAILURES = 10_000;
+
+  /** Widths variants are produced at; requested widths are rounded up to one of these. */
+  static final int[] VARIANT_WIDTHS = {64, 128, 256, 384, 512, 768, 1024, 1536};
+
+  private final ImageCache cache;
+  private final ImageDiskCache diskCache;
+  private final HttpClient httpClient;
+  private final Duration requestTimeout;
+  private final long maxObjectBytes;
+  private final long maxPixels;
+  private final int maxConnectionsPerHost;
+  private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+  private final HostCircuitBreaker circuitBreaker;
+  private final long negativeTtlMillis;
+  private final ConcurrentHashMap<String, Failure> failures = new ConcurrentHashMap<>();
+  private final LongAdder negativeHits = new LongAdder();
+  private final LongAdder variantsCreated = new LongAdder();
+  private final ConcurrentHashMap<String, CompletableFuture<ImageSource>> inFlight =
+      new ConcurrentHashMap<>();
+  private final LongAdder upstreamFetches = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  public ImageProxyService(AppProperties appProperties) {
+    AppProperties.ImageProxy config = appProperties.getImageProxy();
+    this.cache = new ImageCache(config.getMaxCacheBytes(), config.getCacheTtlSeconds() * 1000L);
+    this.diskCache =
+        config.getDiskCacheDir() == null || config.getDiskCacheDir().isBlank()
+            ? null
+            : new ImageDiskCache(
+                Path.of(config.getDiskCacheDir()),
+                config.getDiskCacheMaxBytes(),
+                config.getDiskCacheTtlHours() * 3_600_000L);
+    this.httpClient =
+        HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(config.getConnectTimeoutMs()))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    this.requestTimeout = Duration.ofMillis(config.getReadTimeoutMs());
+    this.maxObjectBytes = config.getMaxObjectBytes();
+    this.maxPixels = config.getMaxPixels();
+    this.maxConnectionsPerHost = config.getMaxConnectionsPerHost();
+    this.circuitBreaker =
+        new HostCircuitBreaker(
+            config.getBreakerWindowSize(),
+            config.getBreakerMinimumCalls(),
+            config.getBreakerFailureRate(),
+            config.getBreakerOpenSeconds() * 1000L);
+    this.negativeTtlMillis = config.getNegativeCacheTtlSeconds() * 1000L;
+  }
+
+  /** Where {@link #serve} delivers an image. */
+  public interface ResponseSink {
+    /** A cached image, or one another request fetched, with all its metadata known. */
+    void send(ImageSource image) throws IOException;
+
+    /**
+     * A miss about to be streamed from upstream. Its hash is not known until the download ends;
+     * {@code length} is -1 when upstream did not send one.
+     *
+     * @return where to write the body
+     */
+    OutputStream stream(String contentType, long length, long lastModified) throws IOException;
+  }
+
+  /**
+   * Return the image at the URL, from cache or upstream.
+   *
+   * @throws ImageFetchException if the URL is not an allowed image or cannot be fetched
+   */
+  public ImageSource fetch(String url) {
+    return resolve(url, null);
+  }
+
+  /** Whether the image at the URL is cached, in whichever tier is in use. */
+  public boolean isCached(String url) {
+    return diskCache != null ? diskCache.get(url) != null : cache.contains(url);
+  }
+
+  /**
+   * Write the image at the URL to the sink. A cache miss is streamed through while it downloads;
+   * if the image turns out larger than the limit after streaming started, the response is cut off.
+   *
+   * @throws ImageFetchException if the URL is not an allowed image or cannot be fetched
+   */
+  public void serve(String url, ResponseSink sink) throws IOException {
+    ImageSource image = resolve(url, sink);
+    if (image != null) {
+      sink.send(image);
+    }
+  }
+
+  /** The image, or null when it was fetched from upstream and already streamed to the sink. */
+  private ImageSource resolve(String url, ResponseSink sink) {
+    if (!url.startsWith("http://") && !url.startsWith("https://")) {
+      throw new ImageFetchException("Invalid URL");
+    }
+
+    ImageSource cached = diskCache != null ? diskCache.get(url) : cache.get(url);
+    if (cached != null) {
+      return cached;
+    }
+    Failure failure = failures.get(url);
+    if (failure != null) {
+      if (failure.expiresAt() > System.currentTimeMillis()) {
+        negativeHits.increment();
+        throw new ImageFetchException(failure.message());
+      }
+      failures.remove(url, failure);
+    }
+
+    boolean[] streamed = new boolean[1];
+    ImageSource image =
+        coalesce(
+            url,
+            () -> {
+              streamed[0] = sink != null;
+              return download(url, sink);
+            });
+    return streamed[0] ? null : image;
+  }
+
+  /**
+   * Return a variant of the image at most {@code width} pixels wide (snapped up to one of {@link
+   * #VARIANT_WIDTHS}) in the requested type, or failing that one the client accepts, or else the
+   * original's type. Variants are cached alongside originals under their own key. When no variant
+   * is needed, or the original cannot be decoded, the original is returned.
+   *
+   * @param contentType the requested type, or null to negotiate from {@code accept}
+   * @throws ImageFetchException if the original cannot be fetched
+   */
+  public ImageSource fetchVariant(String url, Integer width, String contentType, String accept) {
+    ImageSource original = fetch(url);
+    String type = negotiateType(contentType, accept, original.contentType());
+    int snapped = snapWidth(width);
+    if (type.equals(original.contentType()) && snapped == Integer.MAX_VALUE) {
+      return original;
+    }
+
+    String key = url + "#w=" + (snapped == Integer.MAX_VALUE ? "orig" : snapped) + "&t=" + type;
+    ImageSource cached = diskCache != null ? diskCache.get(key) : cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    ImageSource variant = coalesce(key, () -> resize(original, snapped, type));
+    return variant != null ? variant : original;
+  }
+
+  private CachedImage resize(ImageSource original, int width, String type) {
+    try {
+      ByteArrayOutputStream source = new ByteArrayOutputStream((int) original.length());
+      original.writeTo(source);
+      byte[] resized = ImageResizer.resize(source.toByteArray(), width, type, maxPixels);
+      if (resized == null) {
+        return null;
+      }
+      variantsCreated.increment();
+      return new CachedImage(
+          resized,
+          type,
+          System.currentTimeMillis(),
+          original.lastModified(),
+          ImageDiskCache.sha256(resized));
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Could not resize image to {} {}", width, type, e);
+      return null;
+    }
+  }
+
+  private static String negotiateType(String requested, String accept, String originalType) {
+    if (requested != null && ImageResizer.canEncode(requested)) {
+      return requested;
+    }
+    if (accept != null && accept.contains("image/webp") && ImageResizer.canEncode("image/webp")) {
+      return "image/webp";
+    }
+    // No GIF animation survives resizing, and PNG compresses still frames better
+    if (originalType.equals("image/gif") || !ImageResizer.canEncode(originalType)) {
+      return "image/png";
+    }
+    return originalType;
+  }
+
+  private static int snapWidth(Integer width) {
+    if (width == null) {
+      return Integer.MAX_VALUE;
+    }
+    if (width <= 0) {
+      throw new ImageFetchException("Invalid width");
+    }
+    for (int allowed : VARIANT_WIDTHS) {
+      if (width <= allowed) {
+        return allowed;
+      }
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Run the loader for the key unless another request already is, in which case wait for its
+   * result. The loaded image is stored in the cache; a null from the loader is passed through.
+   */
+  private ImageSource coalesce(String key, Supplier<CachedImage> loader) {
+    CompletableFuture<ImageSource> flight = new CompletableFuture<>();
+    CompletableFuture<ImageSource> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalesced.increment();
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof ImageFetchException fetchError
+            ? fetchError
+            : new ImageFetchException("Failed to fetch image");
+      }
+    }
+
+    try {
+      CachedImage loaded = loader.get();
+      ImageSource image = loaded != null ? store(key, loaded) : null;
+      flight.complete(image);
+      return image;
+    } catch (RuntimeException e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  private ImageSource store(String url, CachedImage image) {
+    if (diskCache == null) {
+      cache.put(url, image);
+      return image;
+    }
+    // Serve this response from the downloaded bytes if the disk write failed
+    ImageSource onDisk = diskCache.put(url, image);
+    return onDisk != null ? onDisk : image;
+  }
+
+  public ImageCacheStats getStats() {
+    ImageCacheStats stats = new ImageCacheStats();
+    stats.setHits(cache.hits());
+    stats.setMisses(cache.misses());
+    stats.setEvictions(cache.evictions());
+    stats.setUpstreamFetches(upstreamFetches.sum());
+    stats.setCoalescedRequests(coalesced.sum());
+    stats.setEntries(cache.size());
+    stats.setBytes(cache.bytes());
+    stats.setMaxBytes(cache.maxBytes());
+    if (diskCache != null) {
+      stats.setDiskEntries(diskCache.size());
+      stats.setDiskBytes(diskCache.bytes());
+    }
+    stats.setVariantsCreated(variantsCreated.sum());
+    stats.setNegativeHits(negativeHits.sum());
+    stats.setNegativeEntries(failures.size());
+    stats.setCircuitsOpened(circuitBreaker.opened());
+    stats.setCircuitsHalfOpened(circuitBreaker.halfOpened());
+    stats.setCircuitsClosed(circuitBreaker.closed());
+    stats.setCircuitRejections(circuitBreaker.rejected());
+    stats.setOpenHosts(circuitBreaker.openHosts());
+    return stats;
+  }
+
+  /**
+   * Download the image, teeing the body into the sink (if any) as it arrives. Fails fast while the
+   * host's circuit is open; failures other than that are remembered for the URL.
+   */
+  private CachedImage download(String url, ResponseSink sink) {
+    URI uri;
+    try {
+      uri = URI.create(url);
+    } catch (IllegalArgumentException e) {
+      throw new ImageFetchException("Invalid URL");
+    }
+    String host = uri.getHost();
+    if (host == null) {
+      throw new ImageFetchException("Invalid URL");
+    }
+    if (!circuitBreaker.tryAcquire(host)) {
+      throw new ImageFetchException("Image host unavailable");
+    }
+
+    Semaphore permits =
+        hostPermits.computeIfAbsent(host, h -> new Semaphore(maxConnectionsPerHost));
+    try {
+      if (!permits.tryAcquire(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        circuitBreaker.release(host);
+        throw new ImageFetchException("Image host is busy");
+      }
+    } catch (InterruptedException e) {
+      circuitBreaker.release(host);
+      Thread.currentThread().interrupt();
+      throw new ImageFetchException("Failed to fetch image");
+    }
+
+    upstreamFetches.increment();
+    try {
+      Upstream upstream;
+      try {
+        upstream = openUpstream(uri);
+        circuitBreaker.recordSuccess(host);
+      } catch (UpstreamUnavailableException e) {
+        circuitBreaker.recordFailure(host);
+        throw e;
+      } catch (RuntimeException e) {
+        circuitBreaker.recordSuccess(host); // the host answered; the URL is the problem
+        throw e;
+      }
+      return transfer(upstream, sink);
+    } catch (ImageFetchException e) {
+      rememberFailure(url, e.getMessage());
+      throw e;
+    } finally {
+      permits.release();
+    }
+  }
+
+  private CachedImage transfer(Upstream upstream, ResponseSink sink) {
+    try (InputStream in = upstream.body()) {
+      if (upstream.length() > maxObjectBytes) {
+        throw new ImageFetchException("Image too large");
+      }
+      OutputStream out = open(sink, upstream);
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      ByteArrayOutputStream buffer =
+          new ByteArrayOutputStream(upstream.length() > 0 ? (int) upstream.length() : CHUNK_SIZE);
+      byte[] chunk = new byte[CHUNK_SIZE];
+      int n;
+      while ((n = in.read(chunk)) != -1) {
+        if (buffer.size() + n > maxObjectBytes) {
+          throw new ImageFetchException("Image too large");
+        }
+        buffer.write(chunk, 0, n);
+        digest.update(chunk, 0, n);
+        if (out != null) {
+          try {
+            out.write(chunk, 0, n);
+          } catch (IOException e) {
+            out = null; // client went away; finish the download for the cache and waiting requests
+          }
+        }
+      }
+      if (out != null) {
+        try {
+          out.flush();
+        } catch (IOException ignored) {
+        }
+      }
+      long now = System.currentTimeMillis();
+      return new CachedImage(
+          buffer.toByteArray(),
+          upstream.contentType(),
+          now,
+          upstream.lastModified() > 0 ? upstream.lastModified() : now,
+          HexFormat.of().formatHex(digest.digest()));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (IOException e) {
+      throw new ImageFetchException("Failed to fetch image");
+    }
+  }
+
+  private static OutputStream open(ResponseSink sink, Upstream upstream) {
+    if (sink == null) {
+      return null;
+    }
+    try {
+      return sink.stream(upstream.contentType(), upstream.length(), upstream.lastModified());
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void rememberFailure(String url, String message) {
+    long now = System.currentTimeMillis();
+    if (failures.size() >= MAX_REMEMBERED_FAILURES) {
+      failures.values().removeIf(failure -> failure.expiresAt() <= now);
+      if (failures.size() >= MAX_REMEMBERED_FAILURES) {
+        return;
+      }
+    }
+    failures.put(url, new Failure(message, now + negativeTtlMillis));
+  }
+
+  /**
+   * Send the request and return once the headers are in.
+   *
+   * @throws UpstreamUnavailableException if the host could not be reached or answered 5xx
+   */
+  Upstream openUpstream(URI uri) {
+    HttpRequest request =
+        HttpRequest.newBuilder(uri)
+            .timeout(requestTimeout)
+            .header("User-Agent", USER_AGENT)
+            .GET()
+            .build();
+    HttpResponse<InputStream> response;
+    try {
+      response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    } catch (IOException e) {
+      throw new UpstreamUnavailableException();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ImageFetchException("Failed to fetch image");
+    }
+
+    String contentType =
+        response
+            .headers()
+            .firstValue("Content-Type")
+            .map(value -> value.split(";", 2)[0].trim().toLowerCase(Locale.ROOT))
+            .orElse(null);
+    if (response.statusCode() != 200 || !ALLOWED_CONTENT_TYPES.contains(contentType)) {
+      try {
+        response.body().close();
+      } catch (IOException ignored) {
+      }
+      if (response.statusCode() >= 500) {
+        throw new UpstreamUnavailableException();
+      }
+      throw new ImageFetchException(
+          response.statusCode() != 200 ? "Failed to fetch image" : "Invalid content type");
+    }
+    long length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+    long lastModified =
+        response.headers().firstValue("Last-Modified").map(this::parseHttpDate).orElse(-1L);
+    return new Upstream(contentType, length, lastModified, response.body());
+  }
+
+  private long parseHttpDate(String value) {
+    try {
+      return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+          .toInstant()
+          .toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * An upstream response whose headers have been checked and whose body is still to be read.
+   * {@code length} and {@code lastModified} are -1 when upstream did not send them.
+   */
+  record Upstream(String contentType, long length, long lastModified, InputStream body) {}
+
+  private record Failure(String message, long expiresAt) {}
+
+  /** A proxied image could not be served; the message is safe to return to the client. */
+  public static class ImageFetchException extends RuntimeException {
+    public ImageFetchException(String message) {
+      super(message);
+    }
+  }
+
+  /** The host itself failed (unreachable, timed out or 5xx), which counts against its circuit. */
+  static class UpstreamUnavailableException extends ImageFetchException {
+    UpstreamUnavailableException() {
+      super("Failed to fetch image");
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.tzavrishon.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** A proxied image ready to be written to a response, wherever its bytes live. */
+public interface ImageSource {
+  String contentType();
+
+  long length();
+
+  /** Hex SHA-256 of the image bytes, used as its strong ETag. */
+  String hash();
+
+  /** Upstream Last-Modified in epoch millis, or when we fetched it if upstream sent none. */
+  long lastModified();
+
+  /** Write {@code length} bytes starting at {@code offset}. */
+  void writeTo(OutputStream out, long offset, long length) throws IOException;
+
+  default void writeTo(OutputStream out) throws IOException {
+    writeTo(out, 0, length());
+  }
+}
@@ -0,0 +1,177 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.dto.QuestionOptionResponse;
+import com.tzavrishon.dto.QuestionResponse;
+import com.tzavrishon.repository.QuestionOptionRepository;
+import com.tzavrishon.repository.QuestionRepository;
+import com.tzavrishon.service.ImageProxyService.ImageFetchException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fills the image proxy cache ahead of users. The whole catalog is warmed at startup and imported
+ * questions after each import; while an exam section or practice batch is served, the images it and
+ * the following section use are prefetched in the background. Upstream fetches run on virtual
+ * threads, at most {@code app.image-proxy.warmup-parallelism} at a time.
+ */
+@Service
+public class ImageWarmupService {
+  private static final Logger logger = LoggerFactory.getLogger(ImageWarmupService.class);
+
+  private final QuestionRepository questionRepository;
+  private final QuestionOptionRepository optionRepository;
+  private final ImageProxyService imageProxyService;
+  private final AssetStore assetStore;
+  private final AppProperties appProperties;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final Semaphore permits;
+
+  public ImageWarmupService(
+      QuestionRepository questionRepository,
+      QuestionOptionRepository optionRepository,
+      ImageProxyService imageProxyService,
+      AssetStore assetStore,
+      AppProperties appProperties) {
+    this.questionRepository = questionRepository;
+    this.optionRepository = optionRepository;
+    this.imageProxyService = imageProxyService;
+    this.assetStore = assetStore;
+    this.appProperties = appProperties;
+    this.permits = new Semaphore(appProperties.getImageProxy().getWarmupParallelism());
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmCatalogOnStartup() {
+    if (appProperties.getImageProxy().isWarmupOnStartup()) {
+      warmCatalogInBackground();
+    }
+  }
+
+  /**
+   * Fetch every image the question catalog references. Blocks until done.
+   *
+   * @return the number of images now cached
+   */
+  public int warmCatalog() {
+    Set<String> urls = new LinkedHashSet<>(questionRepository.findAllPromptImageUrls());
+    urls.addAll(optionRepository.findAllImageUrls());
+    return warm(urls);
+  }
+
+  /** Warm the whole catalog in the background, e.g. after a bulk import. */
+  public void warmCatalogInBackground() {
+    executor.execute(this::warmCatalog);
+  }
+
+  /** Warm the given URLs in the background, e.g. those of freshly imported questions. */
+  public void warmInBackground(Collection<String> urls) {
+    List<String> copy = new ArrayList<>(urls); // may hold nulls: questions without images
+    executor.execute(() -> warm(copy));
+  }
+
+  /** Prefetch the images of questions about to be shown. Returns immediately. */
+  public void prefetch(List<QuestionResponse> questions) {
+    if (appProperties.getImageProxy().isPrefetch()) {
+      imageUrls(questions).forEach(url -> executor.execute(() -> fetchQuietly(url)));
+    }
+  }
+
+  /** Prefetch the images of questions that will be shown later, looking them up off-thread. */
+  public void prefetchQuestions(Collection<UUID> questionIds) {
+    if (!appProperties.getImageProxy().isPrefetch() || questionIds.isEmpty()) {
+      return;
+    }
+    List<UUID> ids = List.copyOf(questionIds);
+    executor.execute(
+        () -> {
+          Set<String> urls = new LinkedHashSet<>(questionRepository.findPromptImageUrlsByIdIn(ids));
+          urls.addAll(optionRepository.findImageUrlsByQuestionIdIn(ids));
+          urls.stream().filter(this::isRemote).forEach(this::fetchQuietly);
+        });
+  }
+
+  int warm(Collection<String> urls) {
+    long start = System.currentTimeMillis();
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (String url : urls) {
+      if (isRemote(url)) {
+        results.add(executor.submit(() -> fetchQuietly(url)));
+      }
+    }
+
+    int cached = 0;
+    for (Future<Boolean> result : results) {
+      try {
+        cached += result.get() ? 1 : 0;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException e) {
+        logger.debug("Image warm-up task failed", e.getCause());
+      }
+    }
+    logger.info(
+        "Image warm-up cached {} of {} images in {} ms",
+        cached,
+        results.size(),
+        System.currentTimeMillis() - start);
+    return cached;
+  }
+
+  private boolean fetchQuietly(String url) {
+    if (imageProxyService.isCached(url)) {
+      return true;
+    }
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    try {
+      imageProxyService.fetch(url);
+      return true;
+    } catch (ImageFetchException e) {
+      logger.debug("Could not warm image {}: {}", url, e.getMessage());
+      return false;
+    } finally {
+      permits.release();
+    }
+  }
+
+  private Set<String> imageUrls(List<QuestionResponse> questions) {
+    Set<String> urls = new LinkedHashSet<>();
+    for (QuestionResponse question : questions) {
+      urls.add(question.getPromptImageUrl());
+      if (question.getOptions() != null) {
+        for (QuestionOptionResponse option : question.getOptions()) {
+          urls.add(option.getImageUrl());
+        }
+      }
+    }
+    urls.removeIf(url -> !isRemote(url));
+    return urls;
+  }
+
+  /** Only absolute URLs go through the proxy; relative ones and asset-store URLs are ours. */
+  private boolean isRemote(String url) {
+    return url != null
+        && (url.startsWith("http://") || url.startsWith("https://"))
+        && !assetStore.isAssetUrl(url);
+  }
+}
@@ -0,0 +1,265 @@
+package com.tzavrishon.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.dto.QuestionStatsResponse;
+import com.tzavrishon.util.TDigest;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Item analysis per question: attempts, correct answers, how often each option is picked and a
+ * t-digest of answer times, kept in {@code question_stats}. Answers are counted in memory as they
+ * are submitted, at constant cost, and folded into the table every {@code
+ * app.item-stats.flush-interval-ms}; the answer tables themselves are never scanned.
+ */
+@Service
+public class ItemStatsService {
+  private static final Logger logger = LoggerFactory.getLogger(ItemStatsService.class);
+  private static final int FLUSH_BATCH_SIZE = 500;
+  private static final TypeReference<Map<UUID, Long>> PICKS = new TypeReference<>() {};
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper objectMapper;
+  private final AppProperties appProperties;
+  // Answers take the read side, so they run concurrently; a flush takes the write side to swap maps
+  private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+  private Map<UUID, Tally> pending = new ConcurrentHashMap<>();
+
+  public ItemStatsService(
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      ObjectMapper objectMapper,
+      AppProperties appProperties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.objectMapper = objectMapper;
+    this.appProperties = appProperties;
+  }
+
+  /**
+   * Count an answer. Inside a transaction it is counted once that transaction commits, so a
+   * rolled-back submission leaves no trace.
+   */
+  public void record(UUID questionId, UUID selectedOptionId, boolean correct, Integer timeMs) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              tally(questionId, selectedOptionId, correct, timeMs);
+            }
+          });
+    } else {
+      tally(questionId, selectedOptionId, correct, timeMs);
+    }
+  }
+
+  private void tally(UUID questionId, UUID selectedOptionId, boolean correct, Integer timeMs) {
+    swapLock.readLock().lock();
+    try {
+      pending
+          .computeIfAbsent(questionId, id -> new Tally(compression()))
+          .add(selectedOptionId, correct, timeMs);
+    } finally {
+      swapLock.readLock().unlock();
+    }
+  }
+
+  /** Write the answers counted since the last flush. */
+  @Scheduled(fixedDelayString = "${app.item-stats.flush-interval-ms:10000}")
+  @PreDestroy
+  public synchronized void flush() {
+    Map<UUID, Tally> batch;
+    swapLock.writeLock().lock();
+    try {
+      batch = pending;
+      if (batch.isEmpty()) {
+        return;
+      }
+      pending = new ConcurrentHashMap<>();
+    } finally {
+      swapLock.writeLock().unlock();
+    }
+
+    List<UUID> ids = new ArrayList<>(batch.keySet());
+    Collections.sort(ids); // one lock order for every instance, so flushes cannot deadlock
+    for (int from = 0; from < ids.size(); from += FLUSH_BATCH_SIZE) {
+      List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + FLUSH_BATCH_SIZE));
+      try {
+        transactionTemplate.executeWithoutResult(status -> write(chunk, batch));
+      } catch (RuntimeException e) {
+        logger.warn("Could not write item stats for {} questions; will retry", chunk.size(), e);
+        swapLock.readLock().lock();
+        try {
+          chunk.forEach(id -> pending.merge(id, batch.get(id), Tally::merge));
+        } finally {
+          swapLock.readLock().unlock();
+        }
+      }
+    }
+  }
+
+  /** Merge the tallies into their rows, which are locked for the read-modify-write. */
+  private void write(List<UUID> ids, Map<UUID, Tally> batch) {
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO question_stats (question_id) SELECT id FROM questions WHERE id = ?"
+            + " ON CONFLICT (question_id) DO NOTHING",
+        ids.stream().map(id -> new Object[] {id}).toList());
+
+    String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+    List<Object[]> updates = new ArrayList<>();
+    jdbcTemplate.query(
+        "SELECT question_id, attempts, correct, option_picks::text AS option_picks, time_digest"
+            + " FROM question_stats WHERE question_id IN ("
+            + placeholders
+            + ") ORDER BY question_id FOR UPDATE",
+        rs -> {
+          UUID id = rs.getObject("question_id", UUID.class);
+          Tally tally = batch.get(id);
+          Map<UUID, Long> picks = readPicks(rs.getString("option_picks"));
+          tally.picks.forEach((option, count) -> picks.merge(option, count, Long::sum));
+          byte[] stored = rs.getBytes("time_digest");
+          TDigest times = stored != null ? TDigest.fromBytes(stored) : new TDigest(compression());
+          times.add(tally.times);
+          updates.add(
+              new Object[] {
+                rs.getLong("attempts") + tally.attempts,
+                rs.getLong("correct") + tally.correct,
+                writePicks(picks),
+                times.toBytes(),
+                id
+              });
+        },
+        ids.toArray());
+
+    jdbcTemplate.batchUpdate(
+        "UPDATE question_stats SET attempts = ?, correct = ?, option_picks = ?::jsonb,"
+            + " time_digest = ?, updated_at = CURRENT_TIMESTAMP WHERE question_id = ?",
+        updates);
+  }
+
+  /**
+   * Current statistics, optionally for one question type, hardest first. Pending answers are
+   * flushed first so the figures include them.
+   */
+  public List<QuestionStatsResponse> getStats(QuestionType type, long minAttempts) {
+    flush();
+    List<Object> args = new ArrayList<>(List.of(minAttempts));
+    String sql =
+        "SELECT s.question_id, q.type, q.difficulty, q.calibrated_difficulty, s.attempts,"
+            + " s.correct, s.option_picks::text AS option_picks, s.time_digest, s.updated_at"
+            + " FROM question_stats s JOIN questions q ON q.id = s.question_id"
+            + " WHERE s.attempts >= ?";
+    if (type != null) {
+      sql += " AND q.type = ?";
+      args.add(type.name());
+    }
+    sql += " ORDER BY s.correct::float / GREATEST(s.attempts, 1), s.question_id";
+
+    return jdbcTemplate.query(
+        sql,
+        (rs, rowNum) -> {
+          QuestionStatsResponse stats = new QuestionStatsResponse();
+          stats.setQuestionId(rs.getObject("question_id", UUID.class));
+          stats.setType(QuestionType.valueOf(rs.getString("type")));
+          stats.setDifficulty(rs.getInt("difficulty"));
+          stats.setCalibratedDifficulty(rs.getObject("calibrated_difficulty", Double.class));
+          stats.setAttempts(rs.getLong("attempts"));
+          stats.setCorrect(rs.getLong("correct"));
+          stats.setCorrectRate(
+              stats.getAttempts() > 0 ? (double) stats.getCorrect() / stats.getAttempts() : null);
+          stats.setOptionPicks(new TreeMap<>(readPicks(rs.getString("option_picks"))));
+          byte[] stored = rs.getBytes("time_digest");
+          if (stored != null) {
+            TDigest times = TDigest.fromBytes(stored);
+            if (times.count() > 0) {
+              stats.setTimedAnswers(times.count());
+              stats.setTimeP10Ms(Math.round(times.quantile(0.1)));
+              stats.setTimeMedianMs(Math.round(times.quantile(0.5)));
+              stats.setTimeP90Ms(Math.round(times.quantile(0.9)));
+            }
+          }
+          stats.setUpdatedAt(rs.getTimestamp("updated_at").toInstant());
+          return stats;
+        },
+        args.toArray());
+  }
+
+  private double compression() {
+    return appProperties.getItemStats().getDigestCompression();
+  }
+
+  private Map<UUID, Long> readPicks(String json) {
+    if (json == null) {
+      return new HashMap<>();
+    }
+    try {
+      return new HashMap<>(objectMapper.readValue(json, PICKS));
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException("Invalid option picks: " + json, e);
+    }
+  }
+
+  private String writePicks(Map<UUID, Long> picks) {
+    try {
+      return objectMapper.writeValueAsString(picks);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException("Could not serialize option picks", e);
+    }
+  }
+
+  /** Answers to one question since the last flush. */
+  private static final class Tally {
+    private long attempts;
+    private long correct;
+    private final Map<UUID, Long> picks = new HashMap<>();
+    private final TDigest times;
+
+    Tally(double compression) {
+      this.times = new TDigest(compression);
+    }
+
+    synchronized void add(UUID selectedOptionId, boolean isCorrect, Integer timeMs) {
+      attempts++;
+      correct += isCorrect ? 1 : 0;
+      if (selectedOptionId != null) {
+        picks.merge(selectedOptionId, 1L, Long::sum);
+      }
+      if (timeMs != null && timeMs >= 0) {
+        times.add(timeMs);
+      }
+    }
+
+    static Tally merge(Tally a, Tally b) {
+      synchronized (a) {
+        a.attempts += b.attempts;
+        a.correct += b.correct;
+        b.picks.forEach((option, count) -> a.picks.merge(option, count, Long::sum));
+        a.times.add(b.times);
+      }
+      return a;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.tzavrishon.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.springframework.stereotype.Component;
+
+/**
+ * Uniformly random questions the learner has not seen recently. Once every question of the type
+ * is recent, repeats are allowed again.
+ */
+@Component
+public class NoRepeatSelector implements QuestionSelector {
+  private final QuestionPool questionPool;
+
+  public NoRepeatSelector(QuestionPool questionPool) {
+    this.questionPool = questionPool;
+  }
+
+  @Override
+  public String name() {
+    return "no-repeat";
+  }
+
+  @Override
+  public List<UUID> select(Request request) {
+    return select(request, Set.of());
+  }
+
+  /**
+   * Like {@link #select(Request)} for topping up a set that already holds {@code picked}: those
+   * are never returned, not even once repeats of the recent questions are allowed again.
+   */
+  List<UUID> select(Request request, Collection<UUID> picked) {
+    List<QuestionPool.Entry> pool = questionPool.candidates(request.type(), request.exam());
+    List<UUID> picks =
+        QuestionPool.sample(pool, 0, pool.size(), request.count(), request.recent());
+    if (picks.isEmpty()) {
+      picks = QuestionPool.sample(pool, 0, pool.size(), request.count(), picked);
+    }
+    return picks;
+  }
+}
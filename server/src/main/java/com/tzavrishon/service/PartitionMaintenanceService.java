@@ -0,0 +1,193 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the monthly range partitions declared in schema.sql. Creates partitions for the
+ * current month and the configured number of months ahead, and enforces guest data retention by
+ * dropping whole guest partitions instead of deleting rows.
+ */
+@Service
+public class PartitionMaintenanceService {
+  private static final Logger logger = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+  /** Range-partitioned parent table -> its timestamp column, which the partitions split on. */
+  private static final Map<String, String> USER_PARENTS =
+      Map.of(
+          "practice_sessions_user", "started_at",
+          "practice_user_answers_user", "answered_at",
+          "recent_questions_user", "served_at",
+          "exam_user_answers", "answered_at");
+
+  private static final Map<String, String> GUEST_PARENTS =
+      Map.of(
+          "practice_sessions_guest", "started_at",
+          "practice_user_answers_guest", "answered_at",
+          "recent_questions_guest", "served_at");
+
+  private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+  private static final DateTimeFormatter BOUND =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd 00:00:00+00");
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final AppProperties appProperties;
+
+  public PartitionMaintenanceService(
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      AppProperties appProperties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.appProperties = appProperties;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onStartup() {
+    maintainPartitions();
+  }
+
+  @Scheduled(cron = "${app.partitions.maintenance-cron:0 15 2 * * *}")
+  public void maintainPartitions() {
+    AppProperties.Partitions config = appProperties.getPartitions();
+    YearMonth current = YearMonth.now(ZoneOffset.UTC);
+    for (int i = 0; i <= config.getMonthsAhead(); i++) {
+      createMonthlyPartitions(current.plusMonths(i));
+    }
+    dropExpiredGuestPartitions(
+        Instant.now().minus(config.getGuestRetentionDays(), ChronoUnit.DAYS));
+  }
+
+  /** Create the partition for the given month under every range-partitioned parent. */
+  public void createMonthlyPartitions(YearMonth month) {
+    USER_PARENTS.forEach((parent, column) -> createPartition(parent, column, month));
+    GUEST_PARENTS.forEach((parent, column) -> createPartition(parent, column, month));
+  }
+
+  /**
+   * Drop guest partitions whose whole month lies before the cutoff, and purge older guest rows that
+   * landed in the default partitions.
+   *
+   * @return the number of partitions dropped
+   */
+  public int dropExpiredGuestPartitions(Instant cutoff) {
+    int dropped = 0;
+    for (Map.Entry<String, String> entry : GUEST_PARENTS.entrySet()) {
+      String parent = entry.getKey();
+      for (String child : listPartitions(parent)) {
+        YearMonth month = parseMonth(parent, child);
+        if (month != null && !monthStart(month.plusMonths(1)).isAfter(cutoff)) {
+          try {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + child);
+            logger.info("Dropped expired guest partition {}", child);
+            dropped++;
+          } catch (Exception e) {
+            logger.error("Failed to drop guest partition {}", child, e);
+          }
+        }
+      }
+
+      int purged =
+          jdbcTemplate.update(
+              "DELETE FROM " + parent + "_default WHERE " + entry.getValue() + " < ?",
+              Timestamp.from(cutoff));
+      if (purged > 0) {
+        logger.info("Purged {} expired rows from {}_default", purged, parent);
+      }
+    }
+    return dropped;
+  }
+
+  /**
+   * Create a month's partition. Postgres refuses while rows of that month sit in the default
+   * partition, so those are moved: the default is detached, the partition created, the rows moved
+   * into it and the default reattached, all in one transaction. Any other failure propagates.
+   */
+  private void createPartition(String parent, String column, YearMonth month) {
+    String name = parent + "_" + month.format(SUFFIX);
+    if (listPartitions(parent).contains(name)) {
+      return;
+    }
+    String defaultPartition = parent + "_default";
+    String inMonth = " WHERE " + column + " >= ? AND " + column + " < ?";
+    Timestamp from = Timestamp.from(monthStart(month));
+    Timestamp to = Timestamp.from(monthStart(month.plusMonths(1)));
+    Integer stranded =
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM " + defaultPartition + inMonth, Integer.class, from, to);
+    if (stranded == null || stranded == 0) {
+      jdbcTemplate.execute(partitionDdl(parent, month));
+      return;
+    }
+
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          jdbcTemplate.execute("ALTER TABLE " + parent + " DETACH PARTITION " + defaultPartition);
+          jdbcTemplate.execute(partitionDdl(parent, month));
+          jdbcTemplate.update(
+              "INSERT INTO " + name + " SELECT * FROM " + defaultPartition + inMonth, from, to);
+          jdbcTemplate.update("DELETE FROM " + defaultPartition + inMonth, from, to);
+          jdbcTemplate.execute(
+              "ALTER TABLE " + parent + " ATTACH PARTITION " + defaultPartition + " DEFAULT");
+        });
+    logger.info("Created partition {}, moving {} rows out of {}", name, stranded, defaultPartition);
+  }
+
+  /** DDL creating the given month's partition of a range-partitioned parent, if missing. */
+  static String partitionDdl(String parent, YearMonth month) {
+    return "CREATE TABLE IF NOT EXISTS "
+        + parent
+        + "_"
+        + month.format(SUFFIX)
+        + " PARTITION OF "
+        + parent
+        + " FOR VALUES FROM ('"
+        + month.atDay(1).format(BOUND)
+        + "') TO ('"
+        + month.plusMonths(1).atDay(1).format(BOUND)
+        + "')";
+  }
+
+  private List<String> listPartitions(String parent) {
+    return jdbcTemplate.queryForList(
+        "SELECT c.relname FROM pg_inherits i "
+            + "JOIN pg_class c ON c.oid = i.inhrelid "
+            + "JOIN pg_class p ON p.oid = i.inhparent "
+            + "WHERE p.relname = ?",
+        String.class,
+        parent);
+  }
+
+  private YearMonth parseMonth(String parent, String child) {
+    if (!child.startsWith(parent + "_")) {
+      return null;
+    }
+    try {
+      return YearMonth.parse(child.substring(parent.length() + 1), SUFFIX);
+    } catch (DateTimeParseException e) {
+      return null; // e.g. the default partition
+    }
+  }
+
+  private Instant monthStart(YearMonth month) {
+    return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+  }
+}
@@ -0,0 +1,171 @@
+package com.tzavrishon.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Converts a database created before partitioning. Its plain recent_questions, practice_sessions,
+ * practice_user_answers and exam_user_answers tables are renamed to {@code *_legacy} (indexes
+ * included, so schema.sql can reuse their names), schema.sql creates the partitioned tables and
+ * monthly partitions covering the old rows, the rows are copied over and the legacy tables are
+ * dropped. Everything happens in one transaction: a failure leaves the database as it was.
+ */
+public final class PartitionMigration {
+  private static final Logger logger = LoggerFactory.getLogger(PartitionMigration.class);
+
+  /** A table to convert: its timestamp column, range-partitioned parents and copy statement. */
+  private record Legacy(String table, String column, List<String> parents, String copy) {}
+
+  /** In dependency order: answers take is_guest from their (already copied) session. */
+  private static final List<Legacy> TABLES =
+      List.of(
+          new Legacy(
+              "recent_questions",
+              "served_at",
+              List.of("recent_questions_user", "recent_questions_guest"),
+              "INSERT INTO recent_questions"
+                  + " (id, user_id, guest_id, question_id, question_type, is_guest, served_at)"
+                  + " SELECT id, user_id, guest_id, question_id, question_type,"
+                  + " guest_id IS NOT NULL, COALESCE(served_at, CURRENT_TIMESTAMP)"
+                  + " FROM recent_questions_legacy"),
+          new Legacy(
+              "practice_sessions",
+              "started_at",
+              List.of("practice_sessions_user", "practice_sessions_guest"),
+              "INSERT INTO practice_sessions"
+                  + " (id, user_id, guest_id, type, is_guest, started_at, ended_at)"
+                  + " SELECT id, user_id, guest_id, type, guest_id IS NOT NULL,"
+                  + " COALESCE(started_at, CURRENT_TIMESTAMP), ended_at"
+                  + " FROM practice_sessions_legacy"),
+          new Legacy(
+              "practice_user_answers",
+              "answered_at",
+              List.of("practice_user_answers_user", "practice_user_answers_guest"),
+              "INSERT INTO practice_user_answers (id, session_id, question_id, user_answer_raw,"
+                  + " selected_option_id, is_correct, time_ms, is_guest, answered_at)"
+                  + " SELECT a.id, a.session_id, a.question_id, a.user_answer_raw,"
+                  + " a.selected_option_id, a.is_correct, a.time_ms, COALESCE(s.is_guest, FALSE),"
+                  + " COALESCE(a.answered_at, CURRENT_TIMESTAMP)"
+                  + " FROM practice_user_answers_legacy a"
+                  + " LEFT JOIN practice_sessions s ON s.id = a.session_id"),
+          new Legacy(
+              "exam_user_answers",
+              "answered_at",
+              List.of("exam_user_answers"),
+              "INSERT INTO exam_user_answers (id, section_id, question_id, user_answer_raw,"
+                  + " selected_option_id, is_correct, time_ms, order_index, answered_at)"
+                  + " SELECT id, section_id, question_id, user_answer_raw, selected_option_id,"
+                  + " is_correct, time_ms, order_index, COALESCE(answered_at, CURRENT_TIMESTAMP)"
+                  + " FROM exam_user_answers_legacy"));
+
+  private final DataSource dataSource;
+  private final Resource schema;
+
+  public PartitionMigration(DataSource dataSource, Resource schema) {
+    this.dataSource = dataSource;
+    this.schema = schema;
+  }
+
+  /**
+   * Convert whichever of the tables are still plain; a no-op on new and already converted
+   * databases.
+   *
+   * @return the number of tables converted
+   */
+  public int migrate() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+      List<Legacy> legacy = new ArrayList<>();
+      for (Legacy table : TABLES) {
+        if (isPlainTable(jdbc, table.table())) {
+          legacy.add(table);
+        }
+      }
+      if (legacy.isEmpty()) {
+        return 0;
+      }
+
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        for (Legacy table : legacy) {
+          moveAside(jdbc, table.table());
+        }
+        ScriptUtils.executeSqlScript(connection, schema);
+        for (Legacy table : legacy) {
+          long rows = copy(jdbc, table);
+          logger.info("Migrated {} rows of {} into partitions", rows, table.table());
+        }
+        for (Legacy table : legacy.reversed()) {
+          jdbc.execute("DROP TABLE " + table.table() + "_legacy CASCADE");
+        }
+        connection.commit();
+      } catch (RuntimeException | SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+      return legacy.size();
+    }
+  }
+
+  private static boolean isPlainTable(JdbcTemplate jdbc, String table) {
+    List<String> kinds =
+        jdbc.queryForList(
+            "SELECT c.relkind::text FROM pg_class c"
+                + " JOIN pg_namespace n ON n.oid = c.relnamespace"
+                + " WHERE c.relname = ? AND n.nspname = current_schema()",
+            String.class,
+            table);
+    return kinds.contains("r");
+  }
+
+  /** Rename the table and its indexes (the primary key's too) out of schema.sql's way. */
+  private static void moveAside(JdbcTemplate jdbc, String table) {
+    jdbc.execute("LOCK TABLE " + table + " IN ACCESS EXCLUSIVE MODE");
+    List<String> indexes =
+        jdbc.queryForList(
+            "SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid"
+                + " WHERE i.indrelid = ?::regclass",
+            String.class,
+            table);
+    for (String index : indexes) {
+      jdbc.execute("ALTER INDEX \"" + index + "\" RENAME TO \"" + index + "_legacy\"");
+    }
+    jdbc.execute("ALTER TABLE " + table + " RENAME TO " + table + "_legacy");
+  }
+
+  /** Create the monthly partitions the legacy rows fall in, then copy them. */
+  private static long copy(JdbcTemplate jdbc, Legacy table) {
+    List<Timestamp[]> bounds =
+        jdbc.query(
+            "SELECT MIN(" + table.column() + "), MAX(" + table.column() + ")"
+                + " FROM " + table.table() + "_legacy",
+            (rs, rowNum) -> new Timestamp[] {rs.getTimestamp(1), rs.getTimestamp(2)});
+    Timestamp first = bounds.get(0)[0];
+    Timestamp last = bounds.get(0)[1];
+    if (first != null) {
+      YearMonth month = YearMonth.from(first.toInstant().atZone(ZoneOffset.UTC));
+      YearMonth end = YearMonth.from(last.toInstant().atZone(ZoneOffset.UTC));
+      for (; !month.isAfter(end); month = month.plusMonths(1)) {
+        for (String parent : table.parents()) {
+          jdbc.execute(PartitionMaintenanceService.partitionDdl(parent, month));
+        }
+      }
+    }
+    return jdbc.update(table.copy());
+  }
+}
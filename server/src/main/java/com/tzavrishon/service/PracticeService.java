@@ -6,7 +6,6 @@ import com.tzavrishon.dto.*;
 import com.tzavrishon.repository.*;
 import com.tzavrishon.security.UserPrincipal;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -17,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class PracticeService {
   private static final Logger logger = LoggerFactory.getLogger(PracticeService.class);
+  private static final String MIXED = "MIXED";
 
   private final PracticeSessionRepository sessionRepository;
   private final QuestionRepository questionRepository;
@@ -25,6 +25,13 @@ public class PracticeService {
   private final RecentQuestionRepository recentQuestionRepository;
   private final GuestIdentityRepository guestIdentityRepository;
   private final UserRepository userRepository;
+  private final GuestQuotaTracker guestQuotaTracker;
+  private final ImageWarmupService imageWarmupService;
+  private final AtlasService atlasService;
+  private final ItemStatsService itemStatsService;
+  private final AbilityService abilityService;
+  private final QuestionSelectors questionSelectors;
+  private final ReviewService reviewService;
   private final AppProperties appProperties;
 
   public PracticeService(
@@ -35,6 +42,13 @@ public class PracticeService {
       RecentQuestionRepository recentQuestionRepository,
       GuestIdentityRepository guestIdentityRepository,
       UserRepository userRepository,
+      GuestQuotaTracker guestQuotaTracker,
+      ImageWarmupService imageWarmupService,
+      AtlasService atlasService,
+      ItemStatsService itemStatsService,
+      AbilityService abilityService,
+      QuestionSelectors questionSelectors,
+      ReviewService reviewService,
       AppProperties appProperties) {
     this.sessionRepository = sessionRepository;
     this.questionRepository = questionRepository;
@@ -43,6 +57,13 @@ public class PracticeService {
     this.recentQuestionRepository = recentQuestionRepository;
     this.guestIdentityRepository = guestIdentityRepository;
     this.userRepository = userRepository;
+    this.guestQuotaTracker = guestQuotaTracker;
+    this.imageWarmupService = imageWarmupService;
+    this.atlasService = atlasService;
+    this.itemStatsService = itemStatsService;
+    this.abilityService = abilityService;
+    this.questionSelectors = questionSelectors;
+    this.reviewService = reviewService;
     this.appProperties = appProperties;
   }
 
@@ -67,14 +88,10 @@ public class PracticeService {
                     return guestIdentityRepository.save(newGuest);
                   });
       session.setGuest(guest);
+      session.setIsGuest(true);
 
       // Check guest limits
-      int limit = appProperties.getGuest().getPracticeLimitPerType();
-      Instant dayAgo = Instant.now().minus(24, ChronoUnit.HOURS);
-      long recentSessions =
-          sessionRepository.countByGuestIdAndTypeAndStartedAtAfter(guestId, type.name(), dayAgo);
-
-      if (recentSessions >= limit) {
+      if (!guestQuotaTracker.tryAcquire(guestId, type)) {
         PracticeSessionResponse response = new PracticeSessionResponse();
         response.setLimitReached(true);
         response.setQuestionsAvailable(0);
@@ -94,10 +111,57 @@ public class PracticeService {
     return response;
   }
 
+  /** Start a session over the user's questions of a type that are due for review. */
+  @Transactional
+  public PracticeSessionResponse startReviewSession(QuestionType type, UserPrincipal user) {
+    if (user == null) {
+      throw new RuntimeException("Only authenticated users can review");
+    }
+    PracticeSession session = new PracticeSession();
+    session.setType(type);
+    session.setUser(userRepository.getReferenceById(user.getId()));
+    session.setIsReview(true);
+    session = sessionRepository.save(session);
+
+    PracticeSessionResponse response = new PracticeSessionResponse();
+    response.setSessionId(session.getId());
+    response.setType(type.name());
+    response.setLimitReached(false);
+    response.setQuestionsAvailable(reviewService.countDue(user.getId(), type));
+    return response;
+  }
+
+  /**
+   * Start a session that mixes every type in the proportions of {@code
+   * app.practice.mixed-proportions}.
+   */
+  @Transactional
+  public PracticeSessionResponse startMixedSession(UserPrincipal user) {
+    if (user == null) {
+      throw new RuntimeException("Only authenticated users can practice mixed sessions");
+    }
+    PracticeSession session = new PracticeSession();
+    session.setUser(userRepository.getReferenceById(user.getId()));
+    session = sessionRepository.save(session);
+
+    PracticeSessionResponse response = new PracticeSessionResponse();
+    response.setSessionId(session.getId());
+    response.setType(MIXED);
+    response.setLimitReached(false);
+    response.setQuestionsAvailable(appProperties.getPractice().getMixedSize());
+    return response;
+  }
+
   @Transactional(readOnly = true)
   public List<QuestionResponse> getQuestions(UUID sessionId) {
     PracticeSession session =
         sessionRepository.findById(sessionId).orElseThrow(() -> new RuntimeException("Session not found"));
+    if (Boolean.TRUE.equals(session.getIsReview())) {
+      return drawDueQuestions(session.getUser().getId(), session.getType());
+    }
+    if (session.getType() == null) {
+      return drawMixedQuestions(session.getUser().getId());
+    }
 
     // Get recent question IDs to exclude
     List<UUID> excludeIds = new ArrayList<>();
@@ -119,25 +183,148 @@ public class PracticeService {
               .collect(Collectors.toList());
     }
 
-    // Get random PRACTICE questions only (is_exam_question = false)
     int limit =
         session.getUser() != null ? 10 : appProperties.getGuest().getPracticeLimitPerType();
+    UUID userId = session.getUser() != null ? session.getUser().getId() : null;
+    return drawPracticeQuestions(session.getType(), userId, excludeIds, limit);
+  }
+
+  /** The user's due review questions, most overdue first. */
+  private List<QuestionResponse> drawDueQuestions(UUID userId, QuestionType type) {
+    List<UUID> ids = reviewService.due(userId, type, appProperties.getReview().getSessionSize());
+    return toResponses(findInOrder(ids));
+  }
+
+  /**
+   * The whole mixed set in one go: the recent questions of every type come from one query, each
+   * type's share is picked from the in-memory pool by the practice selector (topped up from the
+   * database when it comes up short), and the questions are loaded together and shuffled.
+   */
+  private List<QuestionResponse> drawMixedQuestions(UUID userId) {
+    Map<QuestionType, Integer> counts =
+        apportion(
+            appProperties.getPractice().getMixedProportions(),
+            appProperties.getPractice().getMixedSize());
+    Map<QuestionType, List<UUID>> recent = new EnumMap<>(QuestionType.class);
+    for (Object[] row :
+        recentQuestionRepository.findRecentQuestionIdsByUserPerType(
+            userId, appProperties.getGuest().getRecentQuestionsCacheSize())) {
+      recent
+          .computeIfAbsent(QuestionType.valueOf((String) row[1]), type -> new ArrayList<>())
+          .add((UUID) row[0]);
+    }
+
+    List<UUID> ids = new ArrayList<>();
+    List<Question> fallback = new ArrayList<>();
+    QuestionSelector selector = questionSelectors.practice();
+    counts.forEach(
+        (type, count) -> {
+          List<UUID> excludeIds = recent.getOrDefault(type, List.of());
+          List<UUID> picks =
+              selector.select(new QuestionSelector.Request(type, false, userId, excludeIds, count));
+          if (picks.size() < count) {
+            // Top up a short pick (an empty or mostly excluded pool) with a random draw
+            List<UUID> excluded = new ArrayList<>(excludeIds);
+            excluded.addAll(picks);
+            randomPracticeQuestions(type, excluded, count - picks.size()).stream()
+                .filter(question -> !picks.contains(question.getId()))
+                .forEach(fallback::add);
+          }
+          ids.addAll(picks);
+        });
+    List<Question> questions = findInOrder(ids);
+    questions.addAll(fallback);
+    Collections.shuffle(questions);
+    return toResponses(questions);
+  }
+
+  /**
+   * Split {@code total} questions over the types in proportion to their weights in a {@code
+   * "TYPE:weight,..."} list, by largest remainder so the counts add up to {@code total}. Types
+   * with no or invalid weight get none.
+   */
+  static Map<QuestionType, Integer> apportion(String proportions, int total) {
+    Map<QuestionType, Double> weights = new EnumMap<>(QuestionType.class);
+    for (String pair : proportions.split(",")) {
+      String[] parts = pair.split(":");
+      if (parts.length == 2) {
+        try {
+          double weight = Double.parseDouble(parts[1].trim());
+          if (weight > 0) {
+            weights.put(QuestionType.valueOf(parts[0].trim()), weight);
+          }
+        } catch (IllegalArgumentException e) {
+          // Ignore invalid config
+        }
+      }
+    }
+    double sum = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+    Map<QuestionType, Integer> counts = new EnumMap<>(QuestionType.class);
+    if (sum == 0) {
+      return counts;
+    }
+    Map<QuestionType, Double> remainders = new EnumMap<>(QuestionType.class);
+    int assigned = 0;
+    for (Map.Entry<QuestionType, Double> entry : weights.entrySet()) {
+      double share = total * entry.getValue() / sum;
+      counts.put(entry.getKey(), (int) share);
+      remainders.put(entry.getKey(), share - (int) share);
+      assigned += (int) share;
+    }
+    List<QuestionType> byRemainder = new ArrayList<>(remainders.keySet());
+    byRemainder.sort((a, b) -> Double.compare(remainders.get(b), remainders.get(a)));
+    for (int i = 0; i < total - assigned; i++) {
+      counts.merge(byRemainder.get(i % byRemainder.size()), 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  /**
+   * Draw PRACTICE questions only (is_exam_question = false) with the selector configured for
+   * signed-in users, or for guests when {@code userId} is null. Falls back to a random draw from
+   * the database while the question pool is empty.
+   */
+  List<QuestionResponse> drawPracticeQuestions(
+      QuestionType type, UUID userId, List<UUID> excludeIds, int limit) {
+    QuestionSelector selector =
+        userId != null ? questionSelectors.practice() : questionSelectors.guest();
+    List<UUID> ids =
+        selector.select(new QuestionSelector.Request(type, false, userId, excludeIds, limit));
+    List<Question> questions =
+        ids.isEmpty() ? randomPracticeQuestions(type, excludeIds, limit) : findInOrder(ids);
+    return toResponses(questions);
+  }
+
+  private List<Question> findInOrder(List<UUID> ids) {
+    Map<UUID, Question> byId = new HashMap<>();
+    questionRepository.findAllById(ids).forEach(question -> byId.put(question.getId(), question));
+    return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+  }
+
+  private List<Question> randomPracticeQuestions(
+      QuestionType type, List<UUID> excludeIds, int limit) {
     List<Question> questions;
     if (excludeIds.isEmpty()) {
-      questions = questionRepository.findRandomPracticeQuestionsByType(session.getType().name(), limit);
+      questions = questionRepository.findRandomPracticeQuestionsByType(type.name(), limit);
     } else {
       questions =
           questionRepository.findRandomPracticeQuestionsByTypeExcluding(
-              session.getType().name(), excludeIds, limit);
+              type.name(), excludeIds, limit);
 
       // Fallback: If no practice questions available after exclusion, allow repetition
       // This handles cases where the user has seen all available practice questions
       if (questions.isEmpty()) {
-        questions = questionRepository.findRandomPracticeQuestionsByType(session.getType().name(), limit);
+        questions = questionRepository.findRandomPracticeQuestionsByType(type.name(), limit);
       }
     }
+    return questions;
+  }
 
-    return questions.stream().map(this::mapToQuestionResponse).collect(Collectors.toList());
+  private List<QuestionResponse> toResponses(List<Question> questions) {
+    List<QuestionResponse> responses =
+        questions.stream().map(this::mapToQuestionResponse).collect(Collectors.toList());
+    imageWarmupService.prefetch(responses);
+    return responses;
   }
 
   @Transactional
@@ -162,7 +349,23 @@ public class PracticeService {
     }
     answer.setIsCorrect(isCorrect);
     answer.setTimeMs(request.getTimeMs());
+    answer.setIsGuest(session.getIsGuest());
     answerRepository.save(answer);
+    itemStatsService.record(
+        question.getId(), request.getSelectedOptionId(), isCorrect, request.getTimeMs());
+    if (session.getUser() != null) {
+      abilityService.record(
+          session.getUser().getId(),
+          question.getType(),
+          QuestionPool.difficultyOf(question),
+          isCorrect);
+      reviewService.schedule(
+          session.getUser().getId(),
+          question.getId(),
+          question.getType(),
+          isCorrect,
+          request.getTimeMs());
+    }
 
     // Track recent question
     RecentQuestion recent = new RecentQuestion();
@@ -172,6 +375,7 @@ public class PracticeService {
       recent.setUser(session.getUser());
     } else {
       recent.setGuest(session.getGuest());
+      recent.setIsGuest(true);
     }
     recentQuestionRepository.save(recent);
 
@@ -200,7 +404,7 @@ public class PracticeService {
     return response;
   }
 
-  private boolean validateAnswer(Question question, SubmitAnswerRequest request) {
+  boolean validateAnswer(Question question, SubmitAnswerRequest request) {
     // All questions are now multiple choice (SINGLE_CHOICE_IMAGE format)
     if (request.getSelectedOptionId() == null) {
       return false;
@@ -240,6 +444,7 @@ public class PracticeService {
               .collect(Collectors.toList()));
     }
 
+    atlasService.apply(response);
     return response;
   }
 
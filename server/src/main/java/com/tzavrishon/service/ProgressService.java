@@ -1,6 +1,7 @@
 package com.tzavrishon.service;
 
 import com.tzavrishon.domain.*;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
 import com.tzavrishon.dto.*;
 import com.tzavrishon.dto.PracticeStatsResponse.DailyPracticeVolume;
 import com.tzavrishon.dto.PracticeStatsResponse.TypePracticeStats;
@@ -17,22 +18,19 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class ProgressService {
   private final ExamAttemptRepository attemptRepository;
-  private final ExamUserAnswerRepository examAnswerRepository;
-  private final ExamSectionRepository sectionRepository;
   private final PracticeSessionRepository sessionRepository;
   private final PracticeUserAnswerRepository practiceAnswerRepository;
+  private final ExamAttemptSnapshots snapshots;
 
   public ProgressService(
       ExamAttemptRepository attemptRepository,
-      ExamUserAnswerRepository examAnswerRepository,
-      ExamSectionRepository sectionRepository,
       PracticeSessionRepository sessionRepository,
-      PracticeUserAnswerRepository practiceAnswerRepository) {
+      PracticeUserAnswerRepository practiceAnswerRepository,
+      ExamAttemptSnapshots snapshots) {
     this.attemptRepository = attemptRepository;
-    this.examAnswerRepository = examAnswerRepository;
-    this.sectionRepository = sectionRepository;
     this.sessionRepository = sessionRepository;
     this.practiceAnswerRepository = practiceAnswerRepository;
+    this.snapshots = snapshots;
   }
 
   @Transactional(readOnly = true)
@@ -55,18 +53,28 @@ public class ProgressService {
     ProgressSummaryResponse response = new ProgressSummaryResponse();
     response.setTotalAttempts(attempts.size());
 
+    // Per-attempt answers come from the snapshot or archive, with all archives read in one query
+    Map<UUID, ExamAttemptSnapshot> attemptSnapshots = snapshots.loadForStats(attempts);
+
     // Calculate overall stats
-    List<ExamUserAnswer> allAnswers = new ArrayList<>();
-    for (ExamAttempt attempt : attempts) {
-      allAnswers.addAll(examAnswerRepository.findByAttemptIdOrderBySection(attempt.getId()));
+    int totalAnswered = 0;
+    int totalCorrect = 0;
+    long totalTime = 0;
+    Map<QuestionType, int[]> byType = new EnumMap<>(QuestionType.class); // [answered, correct]
+    for (ExamAttemptSnapshot snapshot : attemptSnapshots.values()) {
+      for (SectionState section : snapshot.getSections()) {
+        totalAnswered += section.answeredCount();
+        totalCorrect += section.correctCount();
+        totalTime += section.totalTimeMs();
+        int[] counts = byType.computeIfAbsent(section.getType(), t -> new int[2]);
+        counts[0] += section.answeredCount();
+        counts[1] += section.correctCount();
+      }
     }
 
-    if (!allAnswers.isEmpty()) {
-      long totalCorrect = allAnswers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-      response.setOverallAccuracy((double) totalCorrect / allAnswers.size() * 100);
-
-      int totalTime = allAnswers.stream().mapToInt(a -> a.getTimeMs() != null ? a.getTimeMs() : 0).sum();
-      response.setAvgTimePerQuestionMs(totalTime / allAnswers.size());
+    if (totalAnswered > 0) {
+      response.setOverallAccuracy((double) totalCorrect / totalAnswered * 100);
+      response.setAvgTimePerQuestionMs((int) (totalTime / totalAnswered));
     } else {
       response.setOverallAccuracy(0.0);
       response.setAvgTimePerQuestionMs(0);
@@ -76,23 +84,15 @@ public class ProgressService {
     response.setImprovementPercent(calculateImprovement(attempts));
 
     // Stats by type
-    Map<QuestionType, List<ExamUserAnswer>> byType = new HashMap<>();
-    for (QuestionType type : QuestionType.values()) {
-      byType.put(type, new ArrayList<>());
-    }
-    for (ExamUserAnswer answer : allAnswers) {
-      byType.get(answer.getQuestion().getType()).add(answer);
-    }
-
     List<TypeStats> statsByType = new ArrayList<>();
-    for (Map.Entry<QuestionType, List<ExamUserAnswer>> entry : byType.entrySet()) {
-      if (!entry.getValue().isEmpty()) {
+    for (Map.Entry<QuestionType, int[]> entry : byType.entrySet()) {
+      int[] counts = entry.getValue();
+      if (counts[0] > 0) {
         TypeStats stats = new TypeStats();
         stats.setType(entry.getKey().name());
-        stats.setTotalQuestions(entry.getValue().size());
-        long correct = entry.getValue().stream().filter(ExamUserAnswer::getIsCorrect).count();
-        stats.setCorrectAnswers((int) correct);
-        stats.setAccuracy((double) correct / entry.getValue().size() * 100);
+        stats.setTotalQuestions(counts[0]);
+        stats.setCorrectAnswers(counts[1]);
+        stats.setAccuracy((double) counts[1] / counts[0] * 100);
         statsByType.add(stats);
       }
     }
@@ -109,12 +109,9 @@ public class ProgressService {
                   summary.setCreatedAt(attempt.getCreatedAt().toString());
                   summary.setScore90(attempt.getTotalScore90());
 
-                  List<ExamUserAnswer> attemptAnswers =
-                      examAnswerRepository.findByAttemptIdOrderBySection(attempt.getId());
-                  long correct =
-                      attemptAnswers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-                  summary.setCorrectAnswers((int) correct);
-                  summary.setTotalQuestions(attemptAnswers.size());
+                  ExamAttemptSnapshot snapshot = attemptSnapshots.get(attempt.getId());
+                  summary.setCorrectAnswers(snapshot.totalCorrect());
+                  summary.setTotalQuestions(snapshot.totalAnswered());
                   return summary;
                 })
             .collect(Collectors.toList());
@@ -134,25 +131,14 @@ public class ProgressService {
     TrendResponse response = new TrendResponse();
     List<TrendPoint> trends = new ArrayList<>();
 
+    Map<UUID, ExamAttemptSnapshot> attemptSnapshots = snapshots.loadForStats(attempts);
     for (ExamAttempt attempt : attempts) {
-      List<ExamUserAnswer> answers =
-          examAnswerRepository.findByAttemptIdOrderBySection(attempt.getId());
-
-      Map<QuestionType, List<ExamUserAnswer>> byType = new HashMap<>();
-      for (QuestionType type : QuestionType.values()) {
-        byType.put(type, new ArrayList<>());
-      }
-      for (ExamUserAnswer answer : answers) {
-        byType.get(answer.getQuestion().getType()).add(answer);
-      }
-
-      for (Map.Entry<QuestionType, List<ExamUserAnswer>> entry : byType.entrySet()) {
-        if (!entry.getValue().isEmpty()) {
+      for (SectionState section : attemptSnapshots.get(attempt.getId()).getSections()) {
+        if (section.answeredCount() > 0) {
           TrendPoint point = new TrendPoint();
           point.setDate(attempt.getCreatedAt().toString());
-          point.setType(entry.getKey().name());
-          long correct = entry.getValue().stream().filter(ExamUserAnswer::getIsCorrect).count();
-          point.setAccuracy((double) correct / entry.getValue().size() * 100);
+          point.setType(section.getType().name());
+          point.setAccuracy((double) section.correctCount() / section.answeredCount() * 100);
           trends.add(point);
         }
       }
@@ -175,74 +161,8 @@ public class ProgressService {
       throw new RuntimeException("Unauthorized");
     }
 
-    // Build full exam summary with section details
-    return buildFullExamSummary(attempt);
-  }
-
-  private ExamSummaryResponse buildFullExamSummary(ExamAttempt attempt) {
-    ExamSummaryResponse response = new ExamSummaryResponse();
-    response.setTotalScore90(attempt.getTotalScore90());
-
-    List<ExamUserAnswer> allAnswers = examAnswerRepository.findByAttemptIdOrderBySection(attempt.getId());
-    long totalCorrect = allAnswers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-    response.setTotalQuestions(allAnswers.size());
-    response.setCorrectAnswers((int) totalCorrect);
-
-    // Calculate total time: createdAt to completedAt
-    if (attempt.getCreatedAt() != null && attempt.getCompletedAt() != null) {
-      long totalSeconds = java.time.Duration.between(
-          attempt.getCreatedAt(),
-          attempt.getCompletedAt()
-      ).getSeconds();
-      response.setTotalTimeSeconds(totalSeconds);
-    }
-
-    // Fetch sections from repository (don't rely on lazy loading)
-    List<ExamSection> sections = sectionRepository.findByAttemptIdOrderByOrderIndex(attempt.getId());
-
-    // Build section scores
-    for (ExamSection section : sections) {
-      List<ExamUserAnswer> sectionAnswers = allAnswers.stream()
-          .filter(a -> a.getQuestion().getType() == section.getType())
-          .collect(Collectors.toList());
-      long sectionCorrect = sectionAnswers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-
-      SectionScore score = new SectionScore();
-      score.setCorrect((int) sectionCorrect);
-      score.setTotal(sectionAnswers.size());
-      score.setAccuracy(
-          sectionAnswers.isEmpty() ? 0.0 : (double) sectionCorrect / sectionAnswers.size() * 100);
-
-      // Calculate section time: startedAt to endedAt
-      if (section.getStartedAt() != null && section.getEndedAt() != null) {
-        long sectionSeconds = java.time.Duration.between(
-            section.getStartedAt(),
-            section.getEndedAt()
-        ).getSeconds();
-        score.setTimeSpentSeconds(sectionSeconds);
-      }
-
-      setSectionScore(response, section.getType(), score);
-    }
-
-    return response;
-  }
-
-  private void setSectionScore(ExamSummaryResponse response, QuestionType type, SectionScore score) {
-    switch (type) {
-      case VERBAL_ANALOGY:
-        response.setVerbalAnalogy(score);
-        break;
-      case SHAPE_ANALOGY:
-        response.setShapeAnalogy(score);
-        break;
-      case INSTRUCTIONS_DIRECTIONS:
-        response.setInstructionsDirections(score);
-        break;
-      case QUANTITATIVE:
-        response.setQuantitative(score);
-        break;
-    }
+    // Served from the attempt snapshot; no joins over sections or answers
+    return snapshots.summarize(attempt, snapshots.load(attempt));
   }
 
   private Double calculateImprovement(List<ExamAttempt> attempts) {
@@ -271,25 +191,13 @@ public class ProgressService {
       throw new RuntimeException("Only authenticated users can view practice stats");
     }
 
-    // Get practice sessions
-    List<PracticeSession> sessions = sessionRepository.findByUser_IdOrderByStartedAtDesc(user.getId());
-    
-    // Filter by date range
-    if (startDate != null || endDate != null) {
-      Instant start = startDate != null ? startDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : Instant.MIN;
-      Instant end = endDate != null ? endDate.atTime(23, 59, 59).toInstant(ZoneOffset.UTC) : Instant.MAX;
-      sessions = sessions.stream()
-          .filter(s -> !s.getStartedAt().isBefore(start) && !s.getStartedAt().isAfter(end))
-          .collect(Collectors.toList());
-    }
+    // Get practice sessions in the date range
+    List<PracticeSession> sessions = findPracticeSessions(user.getId(), startDate, endDate);
 
     PracticeStatsResponse response = new PracticeStatsResponse();
     
-    // Get all practice answers
-    List<PracticeUserAnswer> allAnswers = new ArrayList<>();
-    for (PracticeSession session : sessions) {
-      allAnswers.addAll(practiceAnswerRepository.findBySession_IdOrderByAnsweredAt(session.getId()));
-    }
+    // Get all practice answers in one partition-pruned query
+    List<PracticeUserAnswer> allAnswers = findPracticeAnswers(sessions);
 
     if (allAnswers.isEmpty()) {
       response.setStatsByType(new HashMap<>());
@@ -379,22 +287,16 @@ public class ProgressService {
       throw new RuntimeException("Only authenticated users can view practice trends");
     }
 
-    List<PracticeSession> sessions = sessionRepository.findByUser_IdOrderByStartedAtDesc(user.getId());
-    
-    // Filter by date range
-    if (startDate != null || endDate != null) {
-      Instant start = startDate != null ? startDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : Instant.MIN;
-      Instant end = endDate != null ? endDate.atTime(23, 59, 59).toInstant(ZoneOffset.UTC) : Instant.MAX;
-      sessions = sessions.stream()
-          .filter(s -> !s.getStartedAt().isBefore(start) && !s.getStartedAt().isAfter(end))
-          .collect(Collectors.toList());
-    }
+    List<PracticeSession> sessions = findPracticeSessions(user.getId(), startDate, endDate);
+    Map<UUID, List<PracticeUserAnswer>> answersBySession =
+        findPracticeAnswers(sessions).stream()
+            .collect(Collectors.groupingBy(a -> a.getSession().getId()));
 
     TrendResponse response = new TrendResponse();
     List<TrendPoint> trends = new ArrayList<>();
 
     for (PracticeSession session : sessions) {
-      List<PracticeUserAnswer> answers = practiceAnswerRepository.findBySession_IdOrderByAnsweredAt(session.getId());
+      List<PracticeUserAnswer> answers = answersBySession.getOrDefault(session.getId(), List.of());
       
       if (!answers.isEmpty()) {
         // Group by type
@@ -431,23 +333,22 @@ public class ProgressService {
       throw new RuntimeException("Only authenticated users can view exam attempts");
     }
 
-    List<ExamAttempt> attempts = attemptRepository.findByUserIdOrderByCreatedAtDesc(user.getId());
-    
+    List<ExamAttempt> attempts =
+        attemptRepository.findByUserIdOrderByCreatedAtDesc(user.getId()).stream()
+            .limit(limit)
+            .collect(Collectors.toList());
+    Map<UUID, ExamAttemptSnapshot> attemptSnapshots = snapshots.loadForStats(attempts);
+
     List<ExamAttemptListItem> items = attempts.stream()
-        .limit(limit)
         .map(attempt -> {
           ExamAttemptListItem item = new ExamAttemptListItem();
           item.setAttemptId(attempt.getId());
           item.setCreatedAt(LocalDateTime.ofInstant(attempt.getCreatedAt(), ZoneId.systemDefault()));
           item.setScore90(attempt.getTotalScore90());
           
-          List<ExamUserAnswer> answers = examAnswerRepository.findByAttemptIdOrderBySection(attempt.getId());
-          if (!answers.isEmpty()) {
-            long correct = answers.stream().filter(ExamUserAnswer::getIsCorrect).count();
-            item.setAccuracy((double) correct / answers.size() * 100);
-          } else {
-            item.setAccuracy(0.0);
-          }
+          ExamAttemptSnapshot snapshot = attemptSnapshots.get(attempt.getId());
+          int answered = snapshot.totalAnswered();
+          item.setAccuracy(answered > 0 ? (double) snapshot.totalCorrect() / answered * 100 : 0.0);
           
           // Calculate duration
           if (attempt.getCompletedAt() != null) {
@@ -459,27 +360,19 @@ public class ProgressService {
           
           // Section breakdown
           Map<String, SectionBreakdown> sections = new HashMap<>();
-          Map<QuestionType, List<ExamUserAnswer>> byType = answers.stream()
-              .collect(Collectors.groupingBy(a -> a.getQuestion().getType()));
-          
-          for (Map.Entry<QuestionType, List<ExamUserAnswer>> entry : byType.entrySet()) {
+          for (SectionState section : snapshot.getSections()) {
+            if (section.answeredCount() == 0) {
+              continue;
+            }
             SectionBreakdown breakdown = new SectionBreakdown();
-            breakdown.setTotal(entry.getValue().size());
-            breakdown.setAnswered((int) entry.getValue().stream()
-                .filter(a -> a.getSelectedOption() != null || a.getUserAnswerRaw() != null)
-                .count());
-            breakdown.setSkipped(breakdown.getTotal() - breakdown.getAnswered());
+            breakdown.setTotal(section.answeredCount());
+            breakdown.setAnswered(section.answeredCount() - section.getSkippedCount());
+            breakdown.setSkipped(section.getSkippedCount());
             breakdown.setFlagged(0); // TODO: implement flagging
+            breakdown.setAccuracy((double) section.correctCount() / section.answeredCount() * 100);
+            breakdown.setTimeSpentSeconds(section.totalTimeMs() / 1000);
             
-            long sectionCorrect = entry.getValue().stream().filter(ExamUserAnswer::getIsCorrect).count();
-            breakdown.setAccuracy((double) sectionCorrect / entry.getValue().size() * 100);
-            
-            long timeSpent = entry.getValue().stream()
-                .mapToLong(a -> a.getTimeMs() != null ? a.getTimeMs() : 0)
-                .sum() / 1000;
-            breakdown.setTimeSpentSeconds(timeSpent);
-            
-            sections.put(entry.getKey().name(), breakdown);
+            sections.put(section.getType().name(), breakdown);
           }
           item.setSections(sections);
           
@@ -492,6 +385,27 @@ public class ProgressService {
     return response;
   }
 
+  private List<PracticeSession> findPracticeSessions(
+      UUID userId, LocalDate startDate, LocalDate endDate) {
+    if (startDate == null && endDate == null) {
+      return sessionRepository.findByUser_IdOrderByStartedAtDesc(userId);
+    }
+    // Open ends are clamped to finite instants that Postgres timestamptz can represent
+    Instant start = startDate != null ? startDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : Instant.EPOCH;
+    Instant end = endDate != null ? endDate.atTime(23, 59, 59).toInstant(ZoneOffset.UTC) : Instant.now();
+    return sessionRepository.findUserSessionsBetween(userId, start, end);
+  }
+
+  private List<PracticeUserAnswer> findPracticeAnswers(List<PracticeSession> sessions) {
+    if (sessions.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Instant since =
+        sessions.stream().map(PracticeSession::getStartedAt).min(Comparator.naturalOrder()).get();
+    List<UUID> sessionIds = sessions.stream().map(PracticeSession::getId).collect(Collectors.toList());
+    return practiceAnswerRepository.findUserAnswersForSessions(sessionIds, since);
+  }
+
   private double calculateRecencyWeight(List<PracticeUserAnswer> answers) {
     if (answers.isEmpty()) {
       return 1.0;
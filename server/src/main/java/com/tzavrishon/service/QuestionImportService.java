@@ -0,0 +1,469 @@
+package com.tzavrishon.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionFormat;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.dto.ImportQuestionRequest;
+import com.tzavrishon.dto.ImportReport;
+import com.tzavrishon.dto.OptionData;
+import com.tzavrishon.util.AnswerNormalizer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bulk question import that streams the uploaded JSON array: records are parsed one at a time,
+ * validated, and written {@code app.question-import.batch-size} at a time with batched JDBC
+ * inserts, one transaction per chunk. IDs are generated here, so inserts need no round trip per row
+ * and memory use does not grow with the upload. Invalid records are skipped and reported.
+ *
+ * <p>Imports are idempotent: each question is identified by a {@link #fingerprint} of its content,
+ * stored in the unique {@code questions.content_hash} column. A record whose fingerprint already
+ * exists updates the explanation, difficulty and correct option of that question if they changed
+ * and is otherwise skipped without a write.
+ */
+@Service
+public class QuestionImportService {
+  private static final Logger logger = LoggerFactory.getLogger(QuestionImportService.class);
+  private static final int MAX_REPORTED_ERRORS = 100;
+
+  private static final String INSERT_QUESTION =
+      "INSERT INTO questions (id, type, format, prompt_text, prompt_image_url, explanation,"
+          + " difficulty, is_exam_question, created_at, content_hash)"
+          + " VALUES (?, ?, ?, ?, ?, ?, ?, FALSE, ?, ?)";
+  private static final String INSERT_OPTION =
+      "INSERT INTO question_options (id, question_id, text, image_url, is_correct, option_order)"
+          + " VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String SELECT_EXISTING =
+      "SELECT q.id, q.content_hash, q.explanation, q.difficulty,"
+          + " (SELECT MIN(o.option_order) FROM question_options o"
+          + " WHERE o.question_id = q.id AND o.is_correct) AS correct_order"
+          + " FROM questions q WHERE q.content_hash IN (%s)";
+  private static final String UPDATE_QUESTION =
+      "UPDATE questions SET explanation = ?, difficulty = ? WHERE id = ?";
+  // Two steps: the single-correct index is checked row by row, so the old answer goes first
+  private static final String CLEAR_CORRECT =
+      "UPDATE question_options SET is_correct = FALSE WHERE question_id = ? AND is_correct";
+  private static final String SET_CORRECT =
+      "UPDATE question_options SET is_correct = TRUE WHERE question_id = ? AND option_order = ?";
+
+  /** What an import did with one record. */
+  public enum Outcome {
+    CREATED,
+    UPDATED,
+    UNCHANGED
+  }
+
+  /** The updatable state of a question already in the bank. */
+  private record Existing(UUID id, String explanation, int difficulty, Integer correctOrder) {}
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper objectMapper;
+  private final AnswerNormalizer answerNormalizer;
+  private final AppProperties appProperties;
+
+  public QuestionImportService(
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      ObjectMapper objectMapper,
+      AnswerNormalizer answerNormalizer,
+      AppProperties appProperties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.objectMapper = objectMapper;
+    this.answerNormalizer = answerNormalizer;
+    this.appProperties = appProperties;
+  }
+
+  /**
+   * Import a JSON array of {@link ImportQuestionRequest}. Records that do not bind or validate are
+   * rejected in the report; chunks committed before a malformed-JSON error stay imported.
+   *
+   * @throws RuntimeException if the body is not a JSON array
+   */
+  public ImportReport importStream(InputStream body) throws IOException {
+    long start = System.currentTimeMillis();
+    int batchSize = appProperties.getQuestionImport().getBatchSize();
+    ImportReport report = new ImportReport();
+    List<ImportQuestionRequest> chunk = new ArrayList<>(batchSize);
+
+    try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new RuntimeException("Expected a JSON array of questions");
+      }
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        long index = report.getReceived();
+        report.setReceived(index + 1);
+        // Bound from the tree so a bad field rejects this record, not the rest of the stream
+        JsonNode record = parser.readValueAsTree();
+        ImportQuestionRequest request;
+        try {
+          request = objectMapper.treeToValue(record, ImportQuestionRequest.class);
+          validate(request);
+        } catch (JsonProcessingException e) {
+          reject(report, index, e.getOriginalMessage());
+          continue;
+        } catch (IllegalArgumentException e) {
+          reject(report, index, e.getMessage());
+          continue;
+        }
+        chunk.add(request);
+        if (chunk.size() == batchSize) {
+          writeChunk(chunk, report);
+        }
+      }
+      writeChunk(chunk, report);
+    } finally {
+      report.setElapsedMs(System.currentTimeMillis() - start);
+      logger.info(
+          "Question import: {} received, {} new, {} updated, {} unchanged, {} rejected in {} ms",
+          report.getReceived(),
+          report.getImported(),
+          report.getUpdated(),
+          report.getUnchanged(),
+          report.getRejected(),
+          report.getElapsedMs());
+    }
+    return report;
+  }
+
+  /**
+   * Content fingerprint of an import record: SHA-256 over its type, format, prompt text, prompt
+   * image URL and options in {@code optionOrder}, with texts normalized by {@link AnswerNormalizer}
+   * so that punctuation, niqqud and whitespace differences do not make a new question. Explanation,
+   * difficulty and which option is correct are left out; those are what a re-import may update.
+   */
+  public String fingerprint(ImportQuestionRequest request) {
+    StringBuilder content = new StringBuilder();
+    content.append(request.getType()).append('\u001f');
+    content.append(request.getFormat()).append('\u001f');
+    content.append(answerNormalizer.normalize(request.getPromptText())).append('\u001f');
+    content.append(Objects.toString(request.getPromptImageUrl(), ""));
+    if (request.getOptions() != null) {
+      List<OptionData> options = new ArrayList<>(request.getOptions());
+      options.sort(
+          Comparator.comparing(
+              OptionData::getOptionOrder, Comparator.nullsLast(Comparator.naturalOrder())));
+      for (OptionData option : options) {
+        content.append('\u001e').append(option.getOptionOrder());
+        content.append('\u001f').append(answerNormalizer.normalize(option.getText()));
+        content.append('\u001f').append(Objects.toString(option.getImageUrl(), ""));
+      }
+    }
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(content.toString().getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Apply a record to the question with the same fingerprint, if there is one.
+   *
+   * @return UPDATED or UNCHANGED for an existing question, CREATED if none exists and the caller
+   *     should insert it
+   */
+  public Outcome applyToExisting(ImportQuestionRequest request, String fingerprint) {
+    Existing existing = findExisting(List.of(fingerprint)).get(fingerprint);
+    if (existing == null) {
+      return Outcome.CREATED;
+    }
+    List<Map.Entry<Existing, ImportQuestionRequest>> match = List.of(Map.entry(existing, request));
+    int updated = transactionTemplate.execute(status -> update(match));
+    return updated > 0 ? Outcome.UPDATED : Outcome.UNCHANGED;
+  }
+
+  /**
+   * Fingerprint questions created before fingerprints were stored. Questions that duplicate one
+   * already fingerprinted keep a null hash, since the column is unique.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillFingerprints() {
+    Map<UUID, ImportQuestionRequest> questions = new LinkedHashMap<>();
+    jdbcTemplate.query(
+        "SELECT id, type, format, prompt_text, prompt_image_url FROM questions"
+            + " WHERE content_hash IS NULL",
+        rs -> {
+          ImportQuestionRequest question = new ImportQuestionRequest();
+          question.setType(QuestionType.valueOf(rs.getString("type")));
+          question.setFormat(QuestionFormat.valueOf(rs.getString("format")));
+          question.setPromptText(rs.getString("prompt_text"));
+          question.setPromptImageUrl(rs.getString("prompt_image_url"));
+          question.setOptions(new ArrayList<>());
+          questions.put(rs.getObject("id", UUID.class), question);
+        });
+    if (questions.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.query(
+        "SELECT o.question_id, o.text, o.image_url, o.option_order FROM question_options o"
+            + " JOIN questions q ON q.id = o.question_id WHERE q.content_hash IS NULL",
+        rs -> {
+          ImportQuestionRequest question = questions.get(rs.getObject("question_id", UUID.class));
+          if (question != null) {
+            OptionData option = new OptionData();
+            option.setText(rs.getString("text"));
+            option.setImageUrl(rs.getString("image_url"));
+            option.setOptionOrder(rs.getInt("option_order"));
+            question.getOptions().add(option);
+          }
+        });
+
+    int duplicates = 0;
+    for (Map.Entry<UUID, ImportQuestionRequest> entry : questions.entrySet()) {
+      try {
+        jdbcTemplate.update(
+            "UPDATE questions SET content_hash = ? WHERE id = ?",
+            fingerprint(entry.getValue()),
+            entry.getKey());
+      } catch (DuplicateKeyException e) {
+        duplicates++;
+      }
+    }
+    logger.info(
+        "Fingerprinted {} existing questions ({} duplicates left unhashed)",
+        questions.size() - duplicates,
+        duplicates);
+  }
+
+  /**
+   * Check a record before it is written.
+   *
+   * @throws IllegalArgumentException describing the first problem found
+   */
+  public static void validate(ImportQuestionRequest request) {
+    if (request.getType() == null || request.getFormat() == null) {
+      throw new IllegalArgumentException("type and format are required");
+    }
+    if (request.getDifficulty() != null
+        && (request.getDifficulty() < 1 || request.getDifficulty() > 5)) {
+      throw new IllegalArgumentException("difficulty must be between 1 and 5");
+    }
+    if (request.getOptions() != null
+        && request.getOptions().stream().anyMatch(o -> o.getOptionOrder() == null)) {
+      throw new IllegalArgumentException("every option needs an optionOrder");
+    }
+    if (request.getFormat() == QuestionFormat.SINGLE_CHOICE_IMAGE) {
+      validateSingleCorrectAnswer(request.getOptions());
+    }
+  }
+
+  /**
+   * Validates that exactly one option is marked as correct for SINGLE_CHOICE_IMAGE questions.
+   *
+   * @param options List of options to validate
+   * @throws IllegalArgumentException if validation fails
+   */
+  private static void validateSingleCorrectAnswer(List<OptionData> options) {
+    if (options == null || options.isEmpty()) {
+      throw new IllegalArgumentException(
+          "SINGLE_CHOICE_IMAGE format requires at least one option");
+    }
+
+    long correctCount =
+        options.stream().filter(opt -> Boolean.TRUE.equals(opt.getIsCorrect())).count();
+
+    if (correctCount == 0) {
+      throw new IllegalArgumentException(
+          "SINGLE_CHOICE_IMAGE format requires exactly one correct answer. Found 0 correct answers.");
+    }
+
+    if (correctCount > 1) {
+      throw new IllegalArgumentException(
+          "SINGLE_CHOICE_IMAGE format requires exactly one correct answer. Found "
+              + correctCount
+              + " correct answers.");
+    }
+  }
+
+  private void writeChunk(List<ImportQuestionRequest> chunk, ImportReport report) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    // Later copies of a question within the chunk win, as they would across chunks
+    Map<String, ImportQuestionRequest> byFingerprint = new LinkedHashMap<>();
+    for (ImportQuestionRequest request : chunk) {
+      if (byFingerprint.put(fingerprint(request), request) != null) {
+        report.setUnchanged(report.getUnchanged() + 1);
+      }
+    }
+
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          Map<String, Existing> existing = findExisting(byFingerprint.keySet());
+          List<Map.Entry<Existing, ImportQuestionRequest>> matched = new ArrayList<>();
+          Map<String, ImportQuestionRequest> created = new LinkedHashMap<>();
+          byFingerprint.forEach(
+              (fingerprint, request) -> {
+                Existing current = existing.get(fingerprint);
+                if (current != null) {
+                  matched.add(Map.entry(current, request));
+                } else {
+                  created.put(fingerprint, request);
+                }
+              });
+          insert(created);
+          int updated = update(matched);
+          report.setImported(report.getImported() + created.size());
+          report.setUpdated(report.getUpdated() + updated);
+          report.setUnchanged(report.getUnchanged() + matched.size() - updated);
+        });
+    report.setChunks(report.getChunks() + 1);
+    logger.debug("Question import: {} records written so far", report.getReceived());
+    chunk.clear();
+  }
+
+  private void insert(Map<String, ImportQuestionRequest> requests) {
+    if (requests.isEmpty()) {
+      return;
+    }
+    Timestamp now = Timestamp.from(Instant.now());
+    List<Object[]> questions = new ArrayList<>(requests.size());
+    List<Object[]> options = new ArrayList<>(requests.size() * 4);
+    requests.forEach(
+        (fingerprint, request) -> {
+          UUID questionId = UUID.randomUUID();
+          questions.add(
+              new Object[] {
+                questionId,
+                request.getType().name(),
+                request.getFormat().name(),
+                request.getPromptText(),
+                request.getPromptImageUrl(),
+                request.getExplanation(),
+                difficulty(request),
+                now,
+                fingerprint
+              });
+          if (request.getOptions() != null) {
+            for (OptionData option : request.getOptions()) {
+              options.add(
+                  new Object[] {
+                    UUID.randomUUID(),
+                    questionId,
+                    option.getText(),
+                    option.getImageUrl(),
+                    Boolean.TRUE.equals(option.getIsCorrect()),
+                    option.getOptionOrder()
+                  });
+            }
+          }
+        });
+    jdbcTemplate.batchUpdate(INSERT_QUESTION, questions);
+    if (!options.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_OPTION, options);
+    }
+  }
+
+  /**
+   * Write the records that differ from the questions they match.
+   *
+   * @return how many questions were updated
+   */
+  private int update(List<Map.Entry<Existing, ImportQuestionRequest>> matched) {
+    List<Object[]> questions = new ArrayList<>();
+    List<Object[]> clearCorrect = new ArrayList<>();
+    List<Object[]> setCorrect = new ArrayList<>();
+    for (Map.Entry<Existing, ImportQuestionRequest> match : matched) {
+      Existing existing = match.getKey();
+      ImportQuestionRequest request = match.getValue();
+      boolean detailsChanged =
+          !Objects.equals(existing.explanation(), request.getExplanation())
+              || existing.difficulty() != difficulty(request);
+      Integer correctOrder = correctOrder(request);
+      boolean answerChanged = !Objects.equals(existing.correctOrder(), correctOrder);
+      if (detailsChanged || answerChanged) {
+        questions.add(
+            new Object[] {request.getExplanation(), difficulty(request), existing.id()});
+      }
+      if (answerChanged) {
+        clearCorrect.add(new Object[] {existing.id()});
+        if (correctOrder != null) {
+          setCorrect.add(new Object[] {existing.id(), correctOrder});
+        }
+      }
+    }
+    if (!questions.isEmpty()) {
+      jdbcTemplate.batchUpdate(UPDATE_QUESTION, questions);
+    }
+    if (!clearCorrect.isEmpty()) {
+      jdbcTemplate.batchUpdate(CLEAR_CORRECT, clearCorrect);
+    }
+    if (!setCorrect.isEmpty()) {
+      jdbcTemplate.batchUpdate(SET_CORRECT, setCorrect);
+    }
+    return questions.size();
+  }
+
+  private Map<String, Existing> findExisting(Collection<String> fingerprints) {
+    Map<String, Existing> existing = new HashMap<>();
+    String placeholders = String.join(", ", Collections.nCopies(fingerprints.size(), "?"));
+    jdbcTemplate.query(
+        SELECT_EXISTING.formatted(placeholders),
+        rs -> {
+          existing.put(
+              rs.getString("content_hash"),
+              new Existing(
+                  rs.getObject("id", UUID.class),
+                  rs.getString("explanation"),
+                  rs.getInt("difficulty"),
+                  rs.getObject("correct_order", Integer.class)));
+        },
+        fingerprints.toArray());
+    return existing;
+  }
+
+  private static int difficulty(ImportQuestionRequest request) {
+    return request.getDifficulty() != null ? request.getDifficulty() : 3;
+  }
+
+  private static Integer correctOrder(ImportQuestionRequest request) {
+    if (request.getOptions() == null) {
+      return null;
+    }
+    return request.getOptions().stream()
+        .filter(option -> Boolean.TRUE.equals(option.getIsCorrect()))
+        .map(OptionData::getOptionOrder)
+        .min(Comparator.naturalOrder())
+        .orElse(null);
+  }
+
+  private static void reject(ImportReport report, long index, String message) {
+    report.setRejected(report.getRejected() + 1);
+    if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+      report.getErrors().add(new ImportReport.RecordError(index, message));
+    }
+  }
+}
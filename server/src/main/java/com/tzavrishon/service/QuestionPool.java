@@ -0,0 +1,206 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.domain.Question;
+import com.tzavrishon.domain.QuestionType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory index of the question catalog: id, type, pool and difficulty of every question, per
+ * type and sorted by difficulty. Selection reads it without touching the database; it is reloaded
+ * after imports and calibration runs.
+ */
+@Service
+public class QuestionPool {
+  private static final Logger logger = LoggerFactory.getLogger(QuestionPool.class);
+
+  /**
+   * One question as selection sees it. {@code difficulty} is in logits: the calibrated value when
+   * there is one, otherwise the hand-set 1-5 rating mapped onto the same scale.
+   */
+  public record Entry(UUID id, QuestionType type, boolean examQuestion, double difficulty) {}
+
+  /** Both pools, swapped in together. */
+  private record Catalog(
+      Map<QuestionType, List<Entry>> practice, Map<QuestionType, List<Entry>> exam) {}
+
+  private static final int MIN_WINDOW = 20;
+  private static final int WINDOW_PER_PICK = 4;
+
+  private final JdbcTemplate jdbcTemplate;
+  private volatile Catalog catalog = new Catalog(Map.of(), Map.of());
+
+  public QuestionPool(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /** Hand-set rating 1-5 on the logit scale calibration uses: 3 is 0, each step one logit. */
+  public static double ratingToLogits(int rating) {
+    return rating - 3;
+  }
+
+  /** A question's difficulty in logits, as {@link Entry#difficulty()} has it. */
+  public static double difficultyOf(Question question) {
+    return question.getCalibratedDifficulty() != null
+        ? question.getCalibratedDifficulty()
+        : ratingToLogits(question.getDifficulty() != null ? question.getDifficulty() : 3);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void reload() {
+    List<Entry> entries = new ArrayList<>();
+    jdbcTemplate.query(
+        "SELECT id, type, is_exam_question, difficulty, calibrated_difficulty FROM questions",
+        rs -> {
+          double calibrated = rs.getDouble("calibrated_difficulty");
+          entries.add(
+              new Entry(
+                  rs.getObject("id", UUID.class),
+                  QuestionType.valueOf(rs.getString("type")),
+                  rs.getBoolean("is_exam_question"),
+                  rs.wasNull() ? ratingToLogits(rs.getInt("difficulty")) : calibrated));
+        });
+    load(entries);
+  }
+
+  /** Replace the pools with the given questions. */
+  public void load(Collection<Entry> entries) {
+    Map<QuestionType, List<Entry>> practiceByType = new EnumMap<>(QuestionType.class);
+    Map<QuestionType, List<Entry>> examByType = new EnumMap<>(QuestionType.class);
+    for (Entry entry : entries) {
+      (entry.examQuestion() ? examByType : practiceByType)
+          .computeIfAbsent(entry.type(), type -> new ArrayList<>())
+          .add(entry);
+    }
+    Catalog loaded = new Catalog(freeze(practiceByType), freeze(examByType));
+    catalog = loaded;
+    logger.info(
+        "Question pool loaded: {} practice, {} exam questions",
+        loaded.practice().values().stream().mapToInt(List::size).sum(),
+        loaded.exam().values().stream().mapToInt(List::size).sum());
+  }
+
+  /** Practice questions of a type, easiest first. */
+  public List<Entry> practice(QuestionType type) {
+    return catalog.practice().getOrDefault(type, List.of());
+  }
+
+  /** Exam questions of a type, easiest first. */
+  public List<Entry> exam(QuestionType type) {
+    return catalog.exam().getOrDefault(type, List.of());
+  }
+
+  /** The exam or the practice questions of a type, easiest first. */
+  public List<Entry> candidates(QuestionType type, boolean exam) {
+    return exam ? exam(type) : practice(type);
+  }
+
+  /**
+   * Pick {@code count} questions spread evenly over the difficulty range: the sorted pool is cut
+   * into {@code count} equal strata and one question is drawn at random from each. Every form then
+   * has the same difficulty profile, unlike a plain random draw.
+   *
+   * @return the picks in random order; fewer than {@code count} if the pool is smaller
+   */
+  public static List<Entry> stratifiedSample(List<Entry> sorted, int count) {
+    int n = sorted.size();
+    List<Entry> picks = new ArrayList<>(Math.min(count, n));
+    if (count >= n) {
+      picks.addAll(sorted);
+    } else {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      for (int stratum = 0; stratum < count; stratum++) {
+        int from = (int) ((long) stratum * n / count);
+        int to = (int) ((long) (stratum + 1) * n / count);
+        picks.add(sorted.get(random.nextInt(from, to)));
+      }
+    }
+    Collections.shuffle(picks);
+    return picks;
+  }
+
+  /**
+   * Pick up to {@code count} questions whose difficulty is close to {@code target}. The question
+   * nearest the target is found by binary search and the picks are drawn at random from the window
+   * of about {@code 4 * count} questions around it, so repeated sessions at the same level still
+   * vary.
+   *
+   * @return the picks, which may be fewer than {@code count} when most of the window is excluded
+   */
+  public static List<UUID> nearDifficulty(
+      List<Entry> sorted, double target, int count, Collection<UUID> excluded) {
+    int n = sorted.size();
+    int window = Math.min(n, Math.max(MIN_WINDOW, count * WINDOW_PER_PICK));
+    int from = Math.max(0, Math.min(nearest(sorted, target) - window / 2, n - window));
+    return sample(sorted, from, from + window, count, excluded);
+  }
+
+  /**
+   * Pick up to {@code count} distinct questions at random from {@code sorted[from, to)}, skipping
+   * {@code excluded}. Nothing is copied: the range is walked in a random order with a stride
+   * coprime to its length.
+   */
+  public static List<UUID> sample(
+      List<Entry> sorted, int from, int to, int count, Collection<UUID> excluded) {
+    int length = to - from;
+    if (length <= 0 || count <= 0) {
+      return List.of();
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int start = random.nextInt(length);
+    int stride = length == 1 ? 1 : random.nextInt(1, length);
+    while (gcd(stride, length) != 1) {
+      stride++;
+    }
+    List<UUID> picks = new ArrayList<>(Math.min(count, length));
+    for (int i = 0; i < length && picks.size() < count; i++) {
+      UUID id = sorted.get(from + (int) ((start + (long) i * stride) % length)).id();
+      if (!excluded.contains(id)) {
+        picks.add(id);
+      }
+    }
+    return picks;
+  }
+
+  /** Index of the first question at least as hard as {@code target}. */
+  private static int nearest(List<Entry> sorted, double target) {
+    int low = 0;
+    int high = sorted.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted.get(mid).difficulty() < target) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int gcd(int a, int b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+  private static Map<QuestionType, List<Entry>> freeze(Map<QuestionType, List<Entry>> byType) {
+    Map<QuestionType, List<Entry>> frozen = new EnumMap<>(QuestionType.class);
+    byType.forEach(
+        (type, entries) -> {
+          entries.sort(Comparator.comparingDouble(Entry::difficulty));
+          frozen.put(type, List.copyOf(entries));
+        });
+    return frozen;
+  }
+}
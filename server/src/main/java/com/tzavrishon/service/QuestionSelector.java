@@ -0,0 +1,37 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.domain.QuestionType;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Strategy that picks the questions a session is served. Selectors read the in-memory {@link
+ * QuestionPool} and return question ids, which the caller loads. Each kind of session is
+ * configured with one by name: {@code app.practice.selection} for signed-in practice, {@code
+ * app.guest.selection} for guests and {@code app.exam.selection} for exam sections (see {@link
+ * QuestionSelectors}).
+ */
+public interface QuestionSelector {
+
+  /** The name configuration refers to this selector by. */
+  String name();
+
+  /**
+   * Pick up to {@code request.count()} questions.
+   *
+   * @return question ids, fewer than requested when the pool runs short and empty when the pool is
+   *     not loaded
+   */
+  List<UUID> select(Request request);
+
+  /**
+   * What to select.
+   *
+   * @param exam draw from the exam pool rather than the practice pool
+   * @param userId the learner, or null for guests and exam forms
+   * @param recent questions the learner saw recently, to be avoided where the strategy does
+   */
+  record Request(
+      QuestionType type, boolean exam, UUID userId, Collection<UUID> recent, int count) {}
+}
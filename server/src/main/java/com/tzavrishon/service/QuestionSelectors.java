@@ -0,0 +1,54 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.stereotype.Service;
+
+/**
+ * The selector configured for each kind of session. Names are checked at startup, so a typo in
+ * configuration fails the boot rather than the first session.
+ */
+@Service
+public class QuestionSelectors {
+  private final Map<String, QuestionSelector> byName = new HashMap<>();
+  private final QuestionSelector practice;
+  private final QuestionSelector guest;
+  private final QuestionSelector exam;
+
+  public QuestionSelectors(List<QuestionSelector> selectors, AppProperties appProperties) {
+    selectors.forEach(selector -> byName.put(selector.name(), selector));
+    this.practice = lookup(byName, appProperties.getPractice().getSelection());
+    this.guest = lookup(byName, appProperties.getGuest().getSelection());
+    this.exam = lookup(byName, appProperties.getExam().getSelection());
+  }
+
+  public QuestionSelector get(String name) {
+    return lookup(byName, name);
+  }
+
+  private static QuestionSelector lookup(Map<String, QuestionSelector> byName, String name) {
+    QuestionSelector selector = byName.get(name);
+    if (selector == null) {
+      throw new RuntimeException(
+          "Unknown question selector '" + name + "'; expected one of " + byName.keySet());
+    }
+    return selector;
+  }
+
+  /** For signed-in practice sessions. */
+  public QuestionSelector practice() {
+    return practice;
+  }
+
+  /** For guest practice sessions. */
+  public QuestionSelector guest() {
+    return guest;
+  }
+
+  /** For exam sections. */
+  public QuestionSelector exam() {
+    return exam;
+  }
+}
@@ -0,0 +1,134 @@
+package com.tzavrishon.service;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Per-user spaced-repetition queue in {@code review_items}. A wrong or slow practice answer puts
+ * the question in the queue; every later answer to it reschedules it with SM-2, so questions the
+ * user keeps getting right come back at growing intervals and missed ones come back the next day.
+ * Review sessions take the due questions of one type with one range scan of the {@code (user_id,
+ * type, due_at)} index.
+ */
+@Service
+public class ReviewService {
+  private static final double INITIAL_EASE = 2.5;
+  private static final double MIN_EASE = 1.3;
+
+  /** SM-2 answer grades: 5 perfect, 3 right with difficulty, below 3 a lapse. */
+  static final int GRADE_RIGHT = 5;
+  static final int GRADE_SLOW = 3;
+  static final int GRADE_WRONG = 1;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final AppProperties appProperties;
+
+  public ReviewService(JdbcTemplate jdbcTemplate, AppProperties appProperties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.appProperties = appProperties;
+  }
+
+  /** SM-2 scheduling state of one queued question. */
+  record Schedule(int repetitions, int intervalDays, double ease, int lapses) {
+    static final Schedule NEW = new Schedule(0, 0, INITIAL_EASE, 0);
+
+    /** The state after an answer of the given grade (0-5). */
+    Schedule next(int grade) {
+      if (grade < 3) {
+        return new Schedule(0, 1, ease, lapses + 1);
+      }
+      int interval =
+          switch (repetitions) {
+            case 0 -> 1;
+            case 1 -> 6;
+            default -> (int) Math.round(intervalDays * ease);
+          };
+      double nextEase = ease + 0.1 - (5 - grade) * (0.08 + (5 - grade) * 0.02);
+      return new Schedule(repetitions + 1, interval, Math.max(MIN_EASE, nextEase), lapses);
+    }
+  }
+
+  /** SM-2 grade of a practice answer. */
+  int grade(boolean correct, Integer timeMs) {
+    if (!correct) {
+      return GRADE_WRONG;
+    }
+    return timeMs != null && timeMs > appProperties.getReview().getSlowAnswerMs()
+        ? GRADE_SLOW
+        : GRADE_RIGHT;
+  }
+
+  /**
+   * Reschedule a question after the user answered it. A quick right answer to a question that is
+   * not queued leaves the queue alone. Runs in the caller's transaction and locks the item's row.
+   */
+  public void schedule(
+      UUID userId, UUID questionId, QuestionType type, boolean correct, Integer timeMs) {
+    int grade = grade(correct, timeMs);
+    List<Schedule> current =
+        jdbcTemplate.query(
+            "SELECT repetitions, interval_days, ease, lapses FROM review_items"
+                + " WHERE user_id = ? AND question_id = ? FOR UPDATE",
+            (rs, rowNum) ->
+                new Schedule(
+                    rs.getInt("repetitions"),
+                    rs.getInt("interval_days"),
+                    rs.getDouble("ease"),
+                    rs.getInt("lapses")),
+            userId,
+            questionId);
+    if (current.isEmpty() && grade == GRADE_RIGHT) {
+      return;
+    }
+
+    Schedule next = (current.isEmpty() ? Schedule.NEW : current.get(0)).next(grade);
+    Instant dueAt = Instant.now().plus(Duration.ofDays(next.intervalDays()));
+    jdbcTemplate.update(
+        "INSERT INTO review_items"
+            + " (user_id, question_id, type, due_at, interval_days, ease, repetitions, lapses)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON CONFLICT (user_id, question_id) DO UPDATE SET due_at = EXCLUDED.due_at,"
+            + " interval_days = EXCLUDED.interval_days, ease = EXCLUDED.ease,"
+            + " repetitions = EXCLUDED.repetitions, lapses = EXCLUDED.lapses,"
+            + " updated_at = CURRENT_TIMESTAMP",
+        userId,
+        questionId,
+        type.name(),
+        Timestamp.from(dueAt),
+        next.intervalDays(),
+        next.ease(),
+        next.repetitions(),
+        next.lapses());
+  }
+
+  /** The user's questions of a type that are due now, most overdue first. */
+  public List<UUID> due(UUID userId, QuestionType type, int limit) {
+    return jdbcTemplate.queryForList(
+        "SELECT question_id FROM review_items WHERE user_id = ? AND due_at <= ? AND type = ?"
+            + " ORDER BY due_at LIMIT ?",
+        UUID.class,
+        userId,
+        Timestamp.from(Instant.now()),
+        type.name(),
+        limit);
+  }
+
+  /** How many of the user's questions of a type are due now. */
+  public int countDue(UUID userId, QuestionType type) {
+    Integer count =
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM review_items WHERE user_id = ? AND due_at <= ? AND type = ?",
+            Integer.class,
+            userId,
+            Timestamp.from(Instant.now()),
+            type.name());
+    return count != null ? count : 0;
+  }
+}
@@ -0,0 +1,27 @@
+package com.tzavrishon.service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.springframework.stereotype.Component;
+
+/** Uniformly random questions of the type, repeats allowed. */
+@Component
+public class UniformSelector implements QuestionSelector {
+  private final QuestionPool questionPool;
+
+  public UniformSelector(QuestionPool questionPool) {
+    this.questionPool = questionPool;
+  }
+
+  @Override
+  public String name() {
+    return "uniform";
+  }
+
+  @Override
+  public List<UUID> select(Request request) {
+    List<QuestionPool.Entry> pool = questionPool.candidates(request.type(), request.exam());
+    return QuestionPool.sample(pool, 0, pool.size(), request.count(), Set.of());
+  }
+}
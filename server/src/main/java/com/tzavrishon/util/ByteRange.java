@@ -0,0 +1,49 @@
+package com.tzavrishon.util;
+
+/** A single byte range from an HTTP {@code Range: bytes=...} header, inclusive at both ends. */
+public record ByteRange(long start, long end) {
+
+  /**
+   * Parse a Range header against a resource of the given length. Returns null when the header is
+   * absent, malformed or asks for several ranges, in which case the whole resource should be sent.
+   */
+  public static ByteRange parse(String header, long resourceLength) {
+    if (header == null || !header.startsWith("bytes=")) {
+      return null;
+    }
+    String spec = header.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0 || spec.indexOf(',') >= 0) {
+      return null;
+    }
+    String first = spec.substring(0, dash).trim();
+    String last = spec.substring(dash + 1).trim();
+    try {
+      if (first.isEmpty()) {
+        // Suffix range: the final N bytes
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0) {
+          return new ByteRange(resourceLength, resourceLength - 1);
+        }
+        return new ByteRange(Math.max(0, resourceLength - suffix), resourceLength - 1);
+      }
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+      if (start < 0 || end < start) {
+        return null;
+      }
+      return new ByteRange(start, Math.min(end, resourceLength - 1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /** False when the range starts past the end of the resource (416 Range Not Satisfiable). */
+  public boolean isSatisfiable(long resourceLength) {
+    return start < resourceLength && start <= end;
+  }
+
+  public long length() {
+    return end - start + 1;
+  }
+}
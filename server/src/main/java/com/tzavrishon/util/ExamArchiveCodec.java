@@ -0,0 +1,136 @@
+package com.tzavrishon.util;
+
+import static com.tzavrishon.util.VarInts.*;
+
+import com.tzavrishon.domain.ExamAttemptSnapshot;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
+import com.tzavrishon.domain.QuestionType;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bit-packed binary format for completed exam attempts, stored in exam_attempt_archives.
+ *
+ * <p>Layout (version 1): a version byte and a varint section count, then per section its type
+ * ordinal, order index, duration, started/ended epoch millis (0 = null), score, skipped count and
+ * answer count, followed by one varint catalog index per answer, a correctness bitset of
+ * ceil(n / 8) bytes, and zigzag varint deltas of (timeMs + 1) with 0 meaning no time recorded.
+ */
+public final class ExamArchiveCodec {
+  public static final int VERSION = 1;
+
+  private static final QuestionType[] TYPES = QuestionType.values();
+
+  private ExamArchiveCodec() {}
+
+  /**
+   * Encode a snapshot. Question IDs are replaced by their catalog index; IDs that no longer have
+   * one are stored as 0.
+   */
+  public static byte[] encode(ExamAttemptSnapshot snapshot, ToIntFunction<UUID> catalogIndex) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+    out.write(VERSION);
+    writeVarLong(out, snapshot.getSections().size());
+
+    for (SectionState section : snapshot.getSections()) {
+      out.write(section.getType().ordinal());
+      writeVarLong(out, section.getOrderIndex());
+      writeVarLong(out, section.getDurationSeconds());
+      writeVarLong(out, section.getStartedAt() != null ? section.getStartedAt().toEpochMilli() : 0);
+      writeVarLong(out, section.getEndedAt() != null ? section.getEndedAt().toEpochMilli() : 0);
+      writeVarLong(out, section.getScore());
+      writeVarLong(out, section.getSkippedCount());
+
+      int count = section.answeredCount();
+      writeVarLong(out, count);
+
+      for (UUID questionId : section.getAnsweredQuestionIds()) {
+        writeVarLong(out, questionId != null ? catalogIndex.applyAsInt(questionId) : 0);
+      }
+
+      byte[] bits = new byte[(count + 7) / 8];
+      for (int i = 0; i < count; i++) {
+        if (section.isCorrect(i)) {
+          bits[i >>> 3] |= (byte) (1 << (i & 7));
+        }
+      }
+      out.write(bits, 0, bits.length);
+
+      long previous = 0;
+      for (Integer time : section.getTimesMs()) {
+        long value = time != null ? time + 1L : 0;
+        writeVarLong(out, zigzag(value - previous));
+        previous = value;
+      }
+    }
+
+    return out.toByteArray();
+  }
+
+  /** Decode a payload, resolving catalog indices back to question IDs through the given lookup. */
+  public static ExamAttemptSnapshot decode(byte[] payload, IntFunction<UUID> questionId) {
+    ByteBuffer in = ByteBuffer.wrap(payload);
+    int version = in.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported exam archive version " + version);
+    }
+
+    ExamAttemptSnapshot snapshot = new ExamAttemptSnapshot();
+    int sectionCount = (int) readVarLong(in);
+    for (int s = 0; s < sectionCount; s++) {
+      SectionState section = new SectionState();
+      section.setType(TYPES[in.get()]);
+      section.setOrderIndex((int) readVarLong(in));
+      section.setDurationSeconds((int) readVarLong(in));
+      section.setStartedAt(toInstant(readVarLong(in)));
+      section.setEndedAt(toInstant(readVarLong(in)));
+      section.setScore((int) readVarLong(in));
+      section.setSkippedCount((int) readVarLong(in));
+      section.setLocked(true);
+
+      int count = (int) readVarLong(in);
+      int[] indices = new int[count];
+      for (int i = 0; i < count; i++) {
+        indices[i] = (int) readVarLong(in);
+      }
+
+      byte[] bits = new byte[(count + 7) / 8];
+      in.get(bits);
+
+      long previous = 0;
+      for (int i = 0; i < count; i++) {
+        long value = previous + unzigzag(readVarLong(in));
+        previous = value;
+        boolean correct = (bits[i >>> 3] & (1 << (i & 7))) != 0;
+        Integer timeMs = value == 0 ? null : (int) (value - 1);
+        section.recordAnswer(indices[i] != 0 ? questionId.apply(indices[i]) : null, correct, timeMs);
+      }
+
+      snapshot.getSections().add(section);
+    }
+
+    return snapshot;
+  }
+
+  /** Catalog indices referenced by a payload, so callers can resolve them in one query. */
+  public static List<Integer> catalogIndices(byte[] payload) {
+    List<Integer> indices = new ArrayList<>();
+    decode(
+        payload,
+        index -> {
+          indices.add(index);
+          return null;
+        });
+    return indices;
+  }
+
+  private static Instant toInstant(long epochMilli) {
+    return epochMilli == 0 ? null : Instant.ofEpochMilli(epochMilli);
+  }
+}
@@ -0,0 +1,127 @@
+package com.tzavrishon.util;
+
+import static com.tzavrishon.util.VarInts.*;
+
+import com.tzavrishon.domain.GuestPracticeState;
+import com.tzavrishon.domain.GuestPracticeState.Session;
+import com.tzavrishon.domain.QuestionType;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary form of {@link GuestPracticeState}, carried base64url-encoded in the guest token.
+ *
+ * <p>Layout (version 1): a version byte, the guest ID, a presence byte and the active session ID,
+ * a varint session count, then per session its type ordinal, started/ended epoch seconds (0 =
+ * null), answer count, one varint catalog index per answer, the correctness bits as a varint, and
+ * (timeMs + 1) per answer with 0 meaning no time recorded. Recent questions follow as a varint type
+ * count and, per type, its ordinal, a count and the catalog indices.
+ */
+public final class GuestStateCodec {
+  public static final int VERSION = 1;
+
+  private static final QuestionType[] TYPES = QuestionType.values();
+
+  private GuestStateCodec() {}
+
+  public static byte[] encode(GuestPracticeState state) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    out.write(VERSION);
+    writeUuid(out, state.getGuestId());
+    out.write(state.getActiveSessionId() != null ? 1 : 0);
+    if (state.getActiveSessionId() != null) {
+      writeUuid(out, state.getActiveSessionId());
+    }
+
+    writeVarLong(out, state.getSessions().size());
+    for (Session session : state.getSessions()) {
+      out.write(session.getType().ordinal());
+      writeVarLong(out, session.getStartedAt().getEpochSecond());
+      writeVarLong(out, session.getEndedAt() != null ? session.getEndedAt().getEpochSecond() : 0);
+      writeVarLong(out, session.answeredCount());
+      for (int index : session.getQuestionIndices()) {
+        writeVarLong(out, index);
+      }
+      writeVarLong(out, session.getCorrectBits());
+      for (Integer time : session.getTimesMs()) {
+        writeVarLong(out, time != null ? time + 1L : 0);
+      }
+    }
+
+    writeVarLong(out, state.getRecent().size());
+    for (Map.Entry<QuestionType, List<Integer>> entry : state.getRecent().entrySet()) {
+      out.write(entry.getKey().ordinal());
+      writeVarLong(out, entry.getValue().size());
+      for (int index : entry.getValue()) {
+        writeVarLong(out, index);
+      }
+    }
+
+    return out.toByteArray();
+  }
+
+  public static GuestPracticeState decode(byte[] payload) {
+    ByteBuffer in = ByteBuffer.wrap(payload);
+    int version = in.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported guest state version " + version);
+    }
+
+    GuestPracticeState state = new GuestPracticeState();
+    state.setGuestId(readUuid(in));
+    if (in.get() != 0) {
+      state.setActiveSessionId(readUuid(in));
+    }
+
+    int sessionCount = (int) readVarLong(in);
+    for (int s = 0; s < sessionCount; s++) {
+      Session session = new Session();
+      session.setType(TYPES[in.get()]);
+      session.setStartedAt(Instant.ofEpochSecond(readVarLong(in)));
+      long endedAt = readVarLong(in);
+      session.setEndedAt(endedAt == 0 ? null : Instant.ofEpochSecond(endedAt));
+      int count = (int) readVarLong(in);
+      List<Integer> indices = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        indices.add((int) readVarLong(in));
+      }
+      long bits = readVarLong(in);
+      for (int i = 0; i < count; i++) {
+        long time = readVarLong(in);
+        session.recordAnswer(indices.get(i), (bits & (1L << i)) != 0, time == 0 ? null : (int) (time - 1));
+      }
+      state.getSessions().add(session);
+    }
+
+    int typeCount = (int) readVarLong(in);
+    for (int t = 0; t < typeCount; t++) {
+      QuestionType type = TYPES[in.get()];
+      int count = (int) readVarLong(in);
+      List<Integer> indices = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        indices.add((int) readVarLong(in));
+      }
+      state.getRecent().put(type, indices);
+    }
+
+    return state;
+  }
+
+  private static void writeUuid(ByteArrayOutputStream out, UUID id) {
+    byte[] bytes =
+        ByteBuffer.allocate(16)
+            .putLong(id.getMostSignificantBits())
+            .putLong(id.getLeastSignificantBits())
+            .array();
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static UUID readUuid(ByteBuffer in) {
+    return new UUID(in.getLong(), in.getLong());
+  }
+}
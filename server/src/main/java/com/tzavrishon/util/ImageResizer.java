@@ -0,0 +1,141 @@
+package com.tzavrishon.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Downscales images with Java2D and re-encodes them through ImageIO, so it needs no native
+ * libraries. Which output types work depends on the ImageIO writers on the classpath: the JDK ships
+ * JPEG, PNG and GIF; a WebP writer plugin, if added, is picked up automatically.
+ */
+public final class ImageResizer {
+  private static final float JPEG_QUALITY = 0.85f;
+  private static final Map<String, Boolean> ENCODABLE = new ConcurrentHashMap<>();
+
+  private ImageResizer() {}
+
+  public static boolean canEncode(String contentType) {
+    return ENCODABLE.computeIfAbsent(
+        contentType, type -> ImageIO.getImageWritersByMIMEType(type).hasNext());
+  }
+
+  /**
+   * Decode an image, refusing it before any pixels are read if its header declares more than
+   * {@code maxPixels}: a few compressed megabytes can otherwise claim gigabytes of heap.
+   *
+   * @return the image, or null if no ImageIO reader understands the source
+   * @throws IOException if the image is too large or cannot be read
+   */
+  public static BufferedImage decode(byte[] source, long maxPixels) throws IOException {
+    try (ImageInputStream input =
+        ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        long width = reader.getWidth(0);
+        long height = reader.getHeight(0);
+        if (width * height > maxPixels) {
+          throw new IOException(
+              "Image is " + width + "x" + height + ", over " + maxPixels + " pixels");
+        }
+        return reader.read(0);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Scale the image down to at most {@code width} pixels wide, keeping its aspect ratio, and encode
+   * it as {@code contentType}. Images already narrower are only re-encoded.
+   *
+   * @return the encoded bytes, or null if the source cannot be decoded or the type encoded
+   * @throws IOException if the source declares more than {@code maxPixels}
+   */
+  public static byte[] resize(byte[] source, int width, String contentType, long maxPixels)
+      throws IOException {
+    if (!canEncode(contentType)) {
+      return null;
+    }
+    BufferedImage image = decode(source, maxPixels);
+    if (image == null) {
+      return null;
+    }
+
+    boolean opaque = contentType.equals("image/jpeg");
+    BufferedImage scaled = scale(image, Math.min(width, image.getWidth()), opaque);
+    return encode(scaled, contentType);
+  }
+
+  /** Step down by halves, then once more to the exact size: cheap and avoids aliasing. */
+  private static BufferedImage scale(BufferedImage image, int targetWidth, boolean opaque) {
+    int targetHeight =
+        Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+    BufferedImage current = image;
+    int w = image.getWidth();
+    int h = image.getHeight();
+    do {
+      w = Math.max(targetWidth, w / 2);
+      h = Math.max(targetHeight, h / 2);
+      current = draw(current, w, h, opaque);
+    } while (w != targetWidth || h != targetHeight);
+    return current;
+  }
+
+  private static BufferedImage draw(BufferedImage source, int width, int height, boolean opaque) {
+    BufferedImage target =
+        new BufferedImage(
+            width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = target.createGraphics();
+    try {
+      if (opaque) {
+        g.setColor(Color.WHITE); // JPEG has no alpha; transparent areas become white
+        g.fillRect(0, 0, width, height);
+      }
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(source, 0, 0, width, height, null);
+    } finally {
+      g.dispose();
+    }
+    return target;
+  }
+
+  private static byte[] encode(BufferedImage image, String contentType) throws IOException {
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(contentType);
+    ImageWriter writer = writers.next();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+      writer.setOutput(stream);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      if (contentType.equals("image/jpeg")) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+      }
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return out.toByteArray();
+  }
+}
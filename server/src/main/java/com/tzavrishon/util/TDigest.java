@@ -0,0 +1,197 @@
+package com.tzavrishon.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch (a merging t-digest). Values are kept as weighted centroids whose size
+ * is bounded by the k1 scale function, so the sketch stays small (about {@code compression}
+ * centroids) while quantiles near the tails stay accurate. Two digests merge into one that answers
+ * as if it had seen both inputs, which lets per-question timing be kept incrementally.
+ *
+ * <p>Not thread-safe.
+ */
+public final class TDigest {
+  private static final byte FORMAT_VERSION = 1;
+
+  private final double compression;
+  private double[] means;
+  private double[] weights;
+  private int centroids;
+  private final double[] bufferMeans;
+  private final double[] bufferWeights;
+  private int buffered;
+  private double totalWeight;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  public TDigest(double compression) {
+    this.compression = compression;
+    int capacity = (int) Math.ceil(compression) * 2 + 10;
+    this.means = new double[capacity];
+    this.weights = new double[capacity];
+    this.bufferMeans = new double[capacity * 4];
+    this.bufferWeights = new double[capacity * 4];
+  }
+
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  /** Add all of {@code other}'s values; {@code other} is unchanged. */
+  public void add(TDigest other) {
+    other.compress();
+    for (int i = 0; i < other.centroids; i++) {
+      add(other.means[i], other.weights[i]);
+    }
+    if (other.totalWeight > 0) {
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+  }
+
+  private void add(double mean, double weight) {
+    if (buffered == bufferMeans.length) {
+      compress();
+    }
+    bufferMeans[buffered] = mean;
+    bufferWeights[buffered] = weight;
+    buffered++;
+    totalWeight += weight;
+    min = Math.min(min, mean);
+    max = Math.max(max, mean);
+  }
+
+  public long count() {
+    return Math.round(totalWeight);
+  }
+
+  /**
+   * Estimate the value at quantile {@code q} (0..1), interpolating between centroid centres.
+   *
+   * @return the estimate, or NaN if nothing has been added
+   */
+  public double quantile(double q) {
+    compress();
+    if (centroids == 0) {
+      return Double.NaN;
+    }
+    if (centroids == 1) {
+      return means[0];
+    }
+    double target = Math.max(0, Math.min(1, q)) * totalWeight;
+    double firstHalf = weights[0] / 2;
+    if (target < firstHalf) {
+      return min + (means[0] - min) * target / firstHalf;
+    }
+    double cumulative = firstHalf;
+    for (int i = 0; i < centroids - 1; i++) {
+      double gap = (weights[i] + weights[i + 1]) / 2;
+      if (cumulative + gap >= target) {
+        return means[i] + (means[i + 1] - means[i]) * (target - cumulative) / gap;
+      }
+      cumulative += gap;
+    }
+    double lastHalf = weights[centroids - 1] / 2;
+    double fraction = Math.min(1, (target - cumulative) / lastHalf);
+    return means[centroids - 1] + (max - means[centroids - 1]) * fraction;
+  }
+
+  /** Fold the buffer into the centroids, merging neighbours while the scale function allows. */
+  private void compress() {
+    if (buffered == 0) {
+      return;
+    }
+    int n = centroids + buffered;
+    double[] allMeans = Arrays.copyOf(means, n);
+    double[] allWeights = Arrays.copyOf(weights, n);
+    System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered);
+    System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered);
+    buffered = 0;
+
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+    double[] merged = new double[n];
+    double[] mergedWeights = new double[n];
+    int count = 0;
+    double weightSoFar = 0;
+    double limit = weightLimit(0);
+    double mean = allMeans[order[0]];
+    double weight = allWeights[order[0]];
+    for (int i = 1; i < n; i++) {
+      double nextMean = allMeans[order[i]];
+      double nextWeight = allWeights[order[i]];
+      if (weightSoFar + weight + nextWeight <= limit) {
+        weight += nextWeight;
+        mean += (nextMean - mean) * nextWeight / weight;
+      } else {
+        merged[count] = mean;
+        mergedWeights[count] = weight;
+        count++;
+        weightSoFar += weight;
+        limit = weightLimit(weightSoFar);
+        mean = nextMean;
+        weight = nextWeight;
+      }
+    }
+    merged[count] = mean;
+    mergedWeights[count] = weight;
+    count++;
+
+    if (count > means.length) {
+      means = new double[count];
+      weights = new double[count];
+    }
+    System.arraycopy(merged, 0, means, 0, count);
+    System.arraycopy(mergedWeights, 0, weights, 0, count);
+    centroids = count;
+  }
+
+  /** Cumulative weight up to which a centroid starting at {@code weightSoFar} may grow. */
+  private double weightLimit(double weightSoFar) {
+    double q = weightSoFar / totalWeight;
+    double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+    double angle = (k + 1) * 2 * Math.PI / compression;
+    if (angle >= Math.PI / 2) {
+      return totalWeight; // the last step of the scale reaches the top
+    }
+    return (Math.sin(angle) + 1) / 2 * totalWeight;
+  }
+
+  public byte[] toBytes() {
+    compress();
+    ByteBuffer buffer = ByteBuffer.allocate(1 + 8 * 3 + 4 + centroids * 16);
+    buffer.put(FORMAT_VERSION);
+    buffer.putDouble(compression);
+    buffer.putDouble(min);
+    buffer.putDouble(max);
+    buffer.putInt(centroids);
+    for (int i = 0; i < centroids; i++) {
+      buffer.putDouble(means[i]);
+      buffer.putDouble(weights[i]);
+    }
+    return buffer.array();
+  }
+
+  public static TDigest fromBytes(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    byte version = buffer.get();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported t-digest format " + version);
+    }
+    TDigest digest = new TDigest(buffer.getDouble());
+    double min = buffer.getDouble();
+    double max = buffer.getDouble();
+    int count = buffer.getInt();
+    for (int i = 0; i < count; i++) {
+      digest.add(buffer.getDouble(), buffer.getDouble());
+    }
+    digest.min = min;
+    digest.max = max;
+    return digest;
+  }
+}
@@ -0,0 +1,37 @@
+package com.tzavrishon.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/** LEB128 varint and zigzag helpers shared by the compact binary codecs. */
+public final class VarInts {
+  private VarInts() {}
+
+  public static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  public static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public static void writeVarLong(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  public static long readVarLong(ByteBuffer in) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
@@ -33,10 +33,23 @@ CREATE TABLE IF NOT EXISTS guest_identities (
     last_seen_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Stateless guest states already claimed by a user, so a copy of the guest_state cookie cannot be
+-- claimed again; rows outlive the cookie's TTL only until the next claim purges them
+CREATE TABLE IF NOT EXISTS guest_claims (
+    guest_id UUID PRIMARY KEY,
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    claimed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_guest_claims_claimed_at ON guest_claims(claimed_at);
+
 -- ============================================
 -- QUESTIONS & OPTIONS
 -- ============================================
 
+-- Source of questions.catalog_index
+CREATE SEQUENCE IF NOT EXISTS questions_catalog_index_seq;
+
 -- Questions table (using VARCHAR instead of ENUM for JPA compatibility)
 CREATE TABLE IF NOT EXISTS questions (
     id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
@@ -47,9 +60,21 @@ CREATE TABLE IF NOT EXISTS questions (
     explanation TEXT,
     difficulty INTEGER NOT NULL DEFAULT 3 CHECK (difficulty >= 1 AND difficulty <= 5),
     is_exam_question BOOLEAN NOT NULL DEFAULT FALSE,
-    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    catalog_index INTEGER NOT NULL DEFAULT nextval('questions_catalog_index_seq')
 );
 
+ALTER TABLE questions ADD COLUMN IF NOT EXISTS catalog_index INTEGER NOT NULL DEFAULT nextval('questions_catalog_index_seq');
+CREATE UNIQUE INDEX IF NOT EXISTS idx_questions_catalog_index ON questions(catalog_index);
+
+-- Content fingerprint set on import (see QuestionImportService); re-imports match on it
+ALTER TABLE questions ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_questions_content_hash ON questions(content_hash);
+
+-- Empirical difficulty in logits, fitted from question_stats by DifficultyCalibrationService
+ALTER TABLE questions ADD COLUMN IF NOT EXISTS calibrated_difficulty DOUBLE PRECISION;
+ALTER TABLE questions ADD COLUMN IF NOT EXISTS calibrated_at TIMESTAMP WITH TIME ZONE;
+
 CREATE INDEX IF NOT EXISTS idx_questions_type ON questions(type);
 CREATE INDEX IF NOT EXISTS idx_questions_difficulty ON questions(difficulty);
 CREATE INDEX IF NOT EXISTS idx_questions_is_exam_question ON questions(is_exam_question);
@@ -71,23 +96,79 @@ CREATE UNIQUE INDEX IF NOT EXISTS idx_question_options_single_correct
 ON question_options (question_id) 
 WHERE is_correct = TRUE;
 
+-- Item analysis per question, maintained incrementally by ItemStatsService
+CREATE TABLE IF NOT EXISTS question_stats (
+    question_id UUID PRIMARY KEY REFERENCES questions(id) ON DELETE CASCADE,
+    attempts BIGINT NOT NULL DEFAULT 0,
+    correct BIGINT NOT NULL DEFAULT 0,
+    option_picks JSONB NOT NULL DEFAULT '{}',
+    time_digest BYTEA,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Per-user, per-type ability in logits, maintained incrementally by AbilityService
+CREATE TABLE IF NOT EXISTS user_abilities (
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    type VARCHAR(50) NOT NULL,
+    ability DOUBLE PRECISION NOT NULL DEFAULT 0,
+    answers INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, type)
+);
+
+-- Spaced-repetition queue: questions a user got wrong or answered slowly, with SM-2 state
+CREATE TABLE IF NOT EXISTS review_items (
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    question_id UUID NOT NULL REFERENCES questions(id) ON DELETE CASCADE,
+    type VARCHAR(50) NOT NULL,
+    due_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    interval_days INTEGER NOT NULL,
+    ease DOUBLE PRECISION NOT NULL,
+    repetitions INTEGER NOT NULL DEFAULT 0,
+    lapses INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, question_id)
+);
+
+-- Review sessions read one type's due items, so type comes before due_at
+CREATE INDEX IF NOT EXISTS idx_review_items_user_type_due ON review_items(user_id, type, due_at);
+DROP INDEX IF EXISTS idx_review_items_user_due;
+
 -- ============================================
 -- PRACTICE SESSIONS
 -- ============================================
 
+-- The answer and session tables below are partitioned: first by LIST (is_guest), so guest data
+-- can be expired by dropping whole partitions, then by monthly RANGE on their timestamp.
+-- Monthly partitions are created ahead of time (and expired guest ones dropped) by
+-- PartitionMaintenanceService; the *_default partitions only catch rows outside that window.
+-- Partition keys must be part of every unique constraint, so primary keys are (id, is_guest, ts)
+-- and these tables cannot be the target of foreign keys.
+-- Databases from before partitioning still have plain tables here; PartitionMigration converts
+-- them before this script runs.
+
 -- Recent questions cache (to avoid repeating questions)
 CREATE TABLE IF NOT EXISTS recent_questions (
-    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
     user_id UUID REFERENCES users(id) ON DELETE CASCADE,
     guest_id UUID REFERENCES guest_identities(guest_id) ON DELETE CASCADE,
     question_id UUID NOT NULL REFERENCES questions(id) ON DELETE CASCADE,
     question_type VARCHAR(50) NOT NULL,
-    served_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    is_guest BOOLEAN NOT NULL DEFAULT FALSE,
+    served_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, is_guest, served_at),
     CONSTRAINT chk_user_or_guest CHECK (
         (user_id IS NOT NULL AND guest_id IS NULL) OR 
         (user_id IS NULL AND guest_id IS NOT NULL)
     )
-);
+) PARTITION BY LIST (is_guest);
+
+CREATE TABLE IF NOT EXISTS recent_questions_user PARTITION OF recent_questions
+    FOR VALUES IN (FALSE) PARTITION BY RANGE (served_at);
+CREATE TABLE IF NOT EXISTS recent_questions_guest PARTITION OF recent_questions
+    FOR VALUES IN (TRUE) PARTITION BY RANGE (served_at);
+CREATE TABLE IF NOT EXISTS recent_questions_user_default PARTITION OF recent_questions_user DEFAULT;
+CREATE TABLE IF NOT EXISTS recent_questions_guest_default PARTITION OF recent_questions_guest DEFAULT;
 
 CREATE INDEX IF NOT EXISTS idx_recent_questions_user_type ON recent_questions(user_id, question_type);
 CREATE INDEX IF NOT EXISTS idx_recent_questions_guest_type ON recent_questions(guest_id, question_type);
@@ -95,36 +176,64 @@ CREATE INDEX IF NOT EXISTS idx_recent_questions_served_at ON recent_questions(se
 
 -- Practice sessions
 CREATE TABLE IF NOT EXISTS practice_sessions (
-    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
     user_id UUID REFERENCES users(id) ON DELETE CASCADE,
     guest_id UUID REFERENCES guest_identities(guest_id) ON DELETE CASCADE,
     type VARCHAR(50) NOT NULL,
-    started_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    is_guest BOOLEAN NOT NULL DEFAULT FALSE,
+    started_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
     ended_at TIMESTAMP WITH TIME ZONE,
+    PRIMARY KEY (id, is_guest, started_at),
     CONSTRAINT chk_practice_user_or_guest CHECK (
         (user_id IS NOT NULL AND guest_id IS NULL) OR 
         (user_id IS NULL AND guest_id IS NOT NULL)
     )
-);
+) PARTITION BY LIST (is_guest);
+
+CREATE TABLE IF NOT EXISTS practice_sessions_user PARTITION OF practice_sessions
+    FOR VALUES IN (FALSE) PARTITION BY RANGE (started_at);
+CREATE TABLE IF NOT EXISTS practice_sessions_guest PARTITION OF practice_sessions
+    FOR VALUES IN (TRUE) PARTITION BY RANGE (started_at);
+CREATE TABLE IF NOT EXISTS practice_sessions_user_default PARTITION OF practice_sessions_user DEFAULT;
+CREATE TABLE IF NOT EXISTS practice_sessions_guest_default PARTITION OF practice_sessions_guest DEFAULT;
 
 CREATE INDEX IF NOT EXISTS idx_practice_sessions_user ON practice_sessions(user_id);
-CREATE INDEX IF NOT EXISTS idx_practice_sessions_guest ON practice_sessions(guest_id);
+-- Also serves the guest quota lookup (guest_id, type, started_at window)
+CREATE INDEX IF NOT EXISTS idx_practice_sessions_guest_type_started
+    ON practice_sessions(guest_id, type, started_at);
 CREATE INDEX IF NOT EXISTS idx_practice_sessions_type ON practice_sessions(type);
 
+-- Review sessions serve the user's due review_items instead of fresh questions
+ALTER TABLE practice_sessions ADD COLUMN IF NOT EXISTS is_review BOOLEAN NOT NULL DEFAULT FALSE;
+-- Mixed sessions draw from every type and have no type of their own
+ALTER TABLE practice_sessions ALTER COLUMN type DROP NOT NULL;
+
 -- Practice user answers (renamed from practice_answers)
+-- session_id has no FK: practice_sessions is partitioned and its key includes started_at
 CREATE TABLE IF NOT EXISTS practice_user_answers (
-    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
-    session_id UUID NOT NULL REFERENCES practice_sessions(id) ON DELETE CASCADE,
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
+    session_id UUID NOT NULL,
     question_id UUID NOT NULL REFERENCES questions(id) ON DELETE CASCADE,
     user_answer_raw TEXT,
     selected_option_id UUID REFERENCES question_options(id) ON DELETE SET NULL,
     is_correct BOOLEAN NOT NULL,
     time_ms INTEGER,
-    answered_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
-);
+    is_guest BOOLEAN NOT NULL DEFAULT FALSE,
+    answered_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, is_guest, answered_at)
+) PARTITION BY LIST (is_guest);
+
+CREATE TABLE IF NOT EXISTS practice_user_answers_user PARTITION OF practice_user_answers
+    FOR VALUES IN (FALSE) PARTITION BY RANGE (answered_at);
+CREATE TABLE IF NOT EXISTS practice_user_answers_guest PARTITION OF practice_user_answers
+    FOR VALUES IN (TRUE) PARTITION BY RANGE (answered_at);
+CREATE TABLE IF NOT EXISTS practice_user_answers_user_default PARTITION OF practice_user_answers_user DEFAULT;
+CREATE TABLE IF NOT EXISTS practice_user_answers_guest_default PARTITION OF practice_user_answers_guest DEFAULT;
 
 CREATE INDEX IF NOT EXISTS idx_practice_user_answers_session ON practice_user_answers(session_id);
 CREATE INDEX IF NOT EXISTS idx_practice_user_answers_question ON practice_user_answers(question_id);
+-- Keyset order of answer exports (see ExportService)
+CREATE INDEX IF NOT EXISTS idx_practice_user_answers_answered ON practice_user_answers(answered_at, id);
 
 -- ============================================
 -- EXAM ATTEMPTS
@@ -136,11 +245,18 @@ CREATE TABLE IF NOT EXISTS exam_attempts (
     user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
     created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
     completed_at TIMESTAMP WITH TIME ZONE,
-    total_score_90 INTEGER
+    total_score_90 INTEGER,
+    snapshot JSONB,
+    archived BOOLEAN NOT NULL DEFAULT FALSE
 );
 
+-- Added after initial release; keeps existing databases in step with the entity
+ALTER TABLE exam_attempts ADD COLUMN IF NOT EXISTS snapshot JSONB;
+ALTER TABLE exam_attempts ADD COLUMN IF NOT EXISTS archived BOOLEAN NOT NULL DEFAULT FALSE;
+
 CREATE INDEX IF NOT EXISTS idx_exam_attempts_user ON exam_attempts(user_id);
 CREATE INDEX IF NOT EXISTS idx_exam_attempts_created ON exam_attempts(created_at);
+CREATE INDEX IF NOT EXISTS idx_exam_attempts_archivable ON exam_attempts(completed_at) WHERE archived = FALSE;
 
 -- Exam sections
 CREATE TABLE IF NOT EXISTS exam_sections (
@@ -158,9 +274,9 @@ CREATE TABLE IF NOT EXISTS exam_sections (
 CREATE INDEX IF NOT EXISTS idx_exam_sections_attempt ON exam_sections(attempt_id);
 CREATE INDEX IF NOT EXISTS idx_exam_sections_order ON exam_sections(attempt_id, order_index);
 
--- Exam user answers (renamed from exam_answers)
+-- Exam user answers (renamed from exam_answers), partitioned by month on answered_at
 CREATE TABLE IF NOT EXISTS exam_user_answers (
-    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
     section_id UUID NOT NULL REFERENCES exam_sections(id) ON DELETE CASCADE,
     question_id UUID NOT NULL REFERENCES questions(id) ON DELETE CASCADE,
     user_answer_raw TEXT,
@@ -168,11 +284,23 @@ CREATE TABLE IF NOT EXISTS exam_user_answers (
     is_correct BOOLEAN NOT NULL,
     time_ms INTEGER,
     order_index INTEGER NOT NULL,
-    answered_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
-);
+    answered_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, answered_at)
+) PARTITION BY RANGE (answered_at);
+
+CREATE TABLE IF NOT EXISTS exam_user_answers_default PARTITION OF exam_user_answers DEFAULT;
 
 CREATE INDEX IF NOT EXISTS idx_exam_user_answers_section ON exam_user_answers(section_id);
 CREATE INDEX IF NOT EXISTS idx_exam_user_answers_question ON exam_user_answers(question_id);
+CREATE INDEX IF NOT EXISTS idx_exam_user_answers_answered ON exam_user_answers(answered_at, id);
+
+-- Packed completed attempts; replaces their exam_sections and exam_user_answers rows
+CREATE TABLE IF NOT EXISTS exam_attempt_archives (
+    attempt_id UUID PRIMARY KEY REFERENCES exam_attempts(id) ON DELETE CASCADE,
+    format_version SMALLINT NOT NULL,
+    payload BYTEA NOT NULL,
+    archived_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
 
 -- ============================================
 -- COMMENTS
@@ -188,7 +316,13 @@ COMMENT ON TABLE practice_user_answers IS 'User answers submitted during practic
 COMMENT ON TABLE exam_attempts IS 'Full exam attempts by registered users';
 COMMENT ON TABLE exam_sections IS 'Individual sections within an exam attempt';
 COMMENT ON TABLE exam_user_answers IS 'User answers submitted during exam attempts';
+COMMENT ON TABLE question_stats IS 'Per-question attempts, correct answers, option picks and answer-time t-digest';
+COMMENT ON TABLE user_abilities IS 'Elo-style ability estimate per user and question type, used for adaptive practice';
+COMMENT ON TABLE review_items IS 'Per-user spaced-repetition queue (SM-2), popped by due_at for review sessions';
+COMMENT ON TABLE exam_attempt_archives IS 'Bit-packed completed exam attempts (see ExamArchiveCodec)';
 
 COMMENT ON COLUMN questions.is_exam_question IS 'If true, question is reserved for exams only. If false, question is for practice sessions only';
+COMMENT ON COLUMN exam_attempts.snapshot IS 'Denormalized section states, chosen questions and per-answer correctness/times; rebuilt from exam_sections/exam_user_answers when NULL';
+COMMENT ON COLUMN questions.catalog_index IS 'Dense integer question reference used by packed exam archives';
 COMMENT ON INDEX idx_question_options_single_correct IS 'Ensures that each question has exactly one correct answer';
 
@@ -0,0 +1,33 @@
+package com.tzavrishon.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.security.UserPrincipal;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+class SecurityConfigTest {
+
+  @Test
+  void testOnlyConfiguredEmailsAreAdmins() {
+    AppProperties properties = new AppProperties();
+    SecurityConfig config = new SecurityConfig(null, null, properties);
+    UserPrincipal admin = new UserPrincipal(UUID.randomUUID(), "Admin@Example.com", "A", false);
+    UsernamePasswordAuthenticationToken signedIn =
+        new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities());
+
+    // Nobody is an admin until some are configured
+    assertFalse(config.isAdmin(signedIn));
+
+    properties.getAdmin().setEmails(" other@example.com, admin@example.com ");
+    assertTrue(config.isAdmin(signedIn));
+    assertFalse(config.isAdmin(null));
+    assertFalse(
+        config.isAdmin(
+            new AnonymousAuthenticationToken(
+                "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"))));
+  }
+}
@@ -0,0 +1,70 @@
+package com.tzavrishon.domain;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ExamAttemptSnapshotTest {
+
+  @Test
+  void testCorrectBitsBeyondOneWord() {
+    SectionState section = new SectionState();
+    for (int i = 0; i < 70; i++) {
+      section.recordAnswer(UUID.randomUUID(), i % 2 == 0, 1000 + i);
+    }
+
+    assertEquals(70, section.answeredCount());
+    assertEquals(35, section.correctCount());
+    assertTrue(section.isCorrect(0));
+    assertFalse(section.isCorrect(1));
+    assertTrue(section.isCorrect(68));
+    assertFalse(section.isCorrect(69));
+    assertFalse(section.isCorrect(500));
+  }
+
+  @Test
+  void testCurrentSectionIsFirstUnlocked() {
+    ExamAttemptSnapshot snapshot = new ExamAttemptSnapshot();
+    for (int i = 0; i < 3; i++) {
+      SectionState section = new SectionState();
+      section.setOrderIndex(i);
+      section.setLocked(i == 0);
+      snapshot.getSections().add(section);
+    }
+
+    assertEquals(1, snapshot.currentSection().orElseThrow().getOrderIndex());
+
+    snapshot.getSections().forEach(s -> s.setLocked(true));
+    assertTrue(snapshot.currentSection().isEmpty());
+  }
+
+  @Test
+  void testJsonRoundTrip() throws Exception {
+    ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    SectionState section = new SectionState();
+    section.setSectionId(UUID.randomUUID());
+    section.setType(QuestionType.SHAPE_ANALOGY);
+    section.setDurationSeconds(480);
+    section.setStartedAt(Instant.parse("2025-01-01T10:00:00Z"));
+    section.setQuestionIds(List.of(UUID.randomUUID(), UUID.randomUUID()));
+    section.recordAnswer(section.getQuestionIds().get(0), true, 4200);
+    section.recordAnswer(section.getQuestionIds().get(1), false, null);
+
+    ExamAttemptSnapshot snapshot = new ExamAttemptSnapshot();
+    snapshot.getSections().add(section);
+
+    ExamAttemptSnapshot copy =
+        mapper.readValue(mapper.writeValueAsString(snapshot), ExamAttemptSnapshot.class);
+
+    assertEquals(snapshot, copy);
+    assertEquals(1, copy.totalCorrect());
+    assertEquals(2, copy.totalAnswered());
+  }
+}
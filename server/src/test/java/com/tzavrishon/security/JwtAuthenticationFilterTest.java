@@ -0,0 +1,92 @@
+package com.tzavrishon.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.User;
+import com.tzavrishon.repository.UserRepository;
+import jakarta.servlet.http.Cookie;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+class JwtAuthenticationFilterTest {
+  private AppProperties appProperties;
+  private UserRepository userRepository;
+  private JwtService jwtService;
+  private User user;
+
+  @BeforeEach
+  void setUp() {
+    appProperties = new AppProperties();
+    appProperties.getJwt().setSecret(Base64.getEncoder().encodeToString(new byte[32]));
+    appProperties.getJwt().setExpiration(3_600_000);
+    appProperties.getJwt().setCookieName("tzav_auth");
+    jwtService = new JwtService(appProperties);
+    userRepository = mock(UserRepository.class);
+
+    user = new User();
+    user.setId(UUID.randomUUID());
+    user.setEmail("student@example.com");
+    user.setDisplayName("Student");
+    when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+  }
+
+  @AfterEach
+  void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void testPrincipalCachedAcrossRequests() throws Exception {
+    JwtAuthenticationFilter filter = newFilter();
+    String token = jwtService.generateToken(user);
+
+    assertEquals(user.getId(), authenticate(filter, token).getId());
+    assertEquals(user.getId(), authenticate(filter, token).getId());
+    verify(userRepository, times(1)).findById(any());
+  }
+
+  @Test
+  void testPrincipalFromClaimsSkipsLookup() throws Exception {
+    appProperties.getJwt().setPrincipalFromClaims(true);
+    JwtAuthenticationFilter filter = newFilter();
+
+    UserPrincipal principal = authenticate(filter, jwtService.generateToken(user));
+
+    assertEquals("Student", principal.getDisplayName());
+    assertFalse(principal.getIsPremium());
+    verify(userRepository, never()).findById(any());
+  }
+
+  @Test
+  void testGuestTokenIsNotAUserToken() throws Exception {
+    JwtAuthenticationFilter filter = newFilter();
+
+    assertNull(authenticate(filter, jwtService.generateGuestToken(user.getId(), "", 60_000)));
+  }
+
+  private JwtAuthenticationFilter newFilter() {
+    return new JwtAuthenticationFilter(
+        jwtService, userRepository, new UserPrincipalCache(appProperties), appProperties);
+  }
+
+  private UserPrincipal authenticate(JwtAuthenticationFilter filter, String token)
+      throws Exception {
+    SecurityContextHolder.clearContext();
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setCookies(new Cookie("tzav_auth", token));
+    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    var authentication = SecurityContextHolder.getContext().getAuthentication();
+    return authentication != null ? (UserPrincipal) authentication.getPrincipal() : null;
+  }
+}
@@ -0,0 +1,52 @@
+package com.tzavrishon.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.User;
+import java.util.Base64;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class JwtServiceTest {
+
+  @Test
+  void testCachedTokenDoesNotAdmitTamperedToken() {
+    JwtService jwtService = new JwtService(properties(1000));
+    String token = jwtService.generateToken(user());
+
+    assertTrue(jwtService.validateToken(token).isPresent());
+    assertSame(jwtService.validateToken(token).get(), jwtService.validateToken(token).get());
+
+    String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+    assertTrue(jwtService.validateToken(tampered).isEmpty());
+  }
+
+  @Test
+  void testExpiredTokenRejectedFromCache() throws Exception {
+    AppProperties properties = properties(1000);
+    properties.getJwt().setExpiration(1000);
+    JwtService jwtService = new JwtService(properties);
+    String token = jwtService.generateToken(user());
+
+    assertTrue(jwtService.validateToken(token).isPresent());
+    Thread.sleep(1100);
+    assertTrue(jwtService.validateToken(token).isEmpty());
+  }
+
+  private AppProperties properties(int cacheSize) {
+    AppProperties properties = new AppProperties();
+    properties.getJwt().setSecret(Base64.getEncoder().encodeToString(new byte[32]));
+    properties.getJwt().setExpiration(3_600_000);
+    properties.getJwt().setCookieName("tzav_auth");
+    properties.getJwt().setVerifiedTokenCacheSize(cacheSize);
+    return properties;
+  }
+
+  private User user() {
+    User user = new User();
+    user.setId(UUID.randomUUID());
+    user.setEmail("student@example.com");
+    return user;
+  }
+}
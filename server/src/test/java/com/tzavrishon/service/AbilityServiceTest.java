@@ -0,0 +1,34 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AbilityServiceTest {
+
+  @Test
+  void testStepMovesTowardsOutcomeAndShrinks() {
+    // Even odds: a right answer moves up by K/2, a wrong one down by K/2
+    assertEquals(0.2, AbilityService.step(0, 0, 0, true, 0.4, 0.05), 1e-9);
+    assertEquals(-0.2, AbilityService.step(0, 0, 0, false, 0.4, 0.05), 1e-9);
+    // After ten answers K is halved, and it never drops below the floor
+    assertEquals(0.1, AbilityService.step(0, 10, 0, true, 0.4, 0.05), 1e-9);
+    assertEquals(0.025, AbilityService.step(0, 1000, 0, true, 0.4, 0.05), 1e-9);
+    // Getting an easy question right barely moves the estimate
+    assertTrue(AbilityService.step(0, 0, -4, true, 0.4, 0.05) < 0.01);
+  }
+
+  @Test
+  void testEstimateConvergesOnTrueAbility() {
+    Random random = new Random(7);
+    double trueAbility = 1.5;
+    double estimate = 0;
+    for (int answers = 0; answers < 400; answers++) {
+      double difficulty = estimate + random.nextGaussian() * 0.5;
+      boolean correct = random.nextDouble() < 1 / (1 + Math.exp(difficulty - trueAbility));
+      estimate = AbilityService.step(estimate, answers, difficulty, correct, 0.4, 0.05);
+    }
+    assertEquals(trueAbility, estimate, 0.5);
+  }
+}
@@ -0,0 +1,35 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.service.AssetStore.Asset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AssetStoreTest {
+
+  @Test
+  void testIdenticalImagesAreStoredOnce(@TempDir Path directory) throws Exception {
+    AppProperties properties = new AppProperties();
+    properties.getAssets().setDir(directory.toString());
+    AssetStore store = new AssetStore(properties);
+    byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3};
+
+    Asset first = store.put(png);
+    Asset second = store.put(png.clone());
+    assertEquals(first.hash(), second.hash());
+    assertEquals("image/png", first.contentType());
+    assertEquals("/api/v1/assets/" + first.hash(), store.urlFor(first));
+    try (var files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+
+    AssetStore reopened = new AssetStore(properties);
+    assertEquals(first, reopened.get(first.hash()).orElseThrow());
+    assertTrue(reopened.get("../" + first.hash()).isEmpty());
+    assertThrows(RuntimeException.class, () -> store.put("<svg/>".getBytes()));
+  }
+}
@@ -0,0 +1,58 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.dto.AtlasRegion;
+import com.tzavrishon.service.AtlasService.Atlas;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AtlasServiceTest {
+
+  @Test
+  void testAtlasPlacesPromptAboveOptions(@TempDir Path directory) throws Exception {
+    AppProperties properties = new AppProperties();
+    properties.getAssets().setDir(directory.toString());
+    AssetStore assets = new AssetStore(properties);
+    AtlasService atlasService =
+        new AtlasService(new ImageProxyService(properties), assets, properties);
+
+    String prompt = store(assets, 300, 100, 0xFF0000);
+    String a = store(assets, 80, 80, 0x00FF00);
+    String b = store(assets, 80, 60, 0x0000FF);
+    List<String> sources = AtlasService.sources(prompt, List.of(a, b, a));
+    assertEquals(List.of(prompt, a, b), sources);
+
+    Atlas atlas = atlasService.build(sources);
+    assertEquals(300, atlas.width());
+    assertEquals(182, atlas.height());
+    assertEquals(new AtlasRegion(0, 0, 300, 100), atlas.regions().get(prompt));
+    assertEquals(new AtlasRegion(0, 102, 80, 80), atlas.regions().get(a));
+    assertEquals(new AtlasRegion(82, 102, 80, 60), atlas.regions().get(b));
+
+    String hash = atlas.url().substring(atlas.url().lastIndexOf('/') + 1);
+    BufferedImage image =
+        ImageIO.read(Files.newInputStream(assets.get(hash).orElseThrow().path()));
+    assertEquals(0x0000FF, image.getRGB(100, 130) & 0xFFFFFF);
+  }
+
+  private static String store(AssetStore assets, int width, int height, int rgb)
+      throws Exception {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+        image.setRGB(x, y, rgb);
+      }
+    }
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", png);
+    return assets.urlFor(assets.put(png.toByteArray()));
+  }
+}
@@ -0,0 +1,49 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.service.DifficultyCalibrationService.Item;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class DifficultyCalibrationServiceTest {
+
+  @Test
+  void testFitMovesFromRatingToObservedDifficulty() {
+    UUID id = UUID.randomUUID();
+
+    // No answers: the hand-set rating (4 -> +1 logit) stands
+    assertEquals(1.0, DifficultyCalibrationService.fit(new Item(id, 4, 0, 0), 1.0), 1e-9);
+
+    // A "hard" question most learners get right ends up easier than average
+    double fewAnswers = DifficultyCalibrationService.fit(new Item(id, 4, 20, 18), 1.0);
+    double manyAnswers = DifficultyCalibrationService.fit(new Item(id, 4, 2000, 1800), 1.0);
+    assertTrue(fewAnswers < 1.0 && fewAnswers > manyAnswers);
+    // 90% correct under the marginal model: -logit(0.9) * sqrt(1 + pi/8)
+    assertEquals(-Math.log(9) * Math.sqrt(1 + Math.PI / 8), manyAnswers, 0.05);
+
+    // Half right is average difficulty
+    assertEquals(0.0, DifficultyCalibrationService.fit(new Item(id, 3, 500, 250), 1.0), 1e-6);
+  }
+
+  @Test
+  void testStratifiedSampleCoversDifficultyRange() {
+    List<QuestionPool.Entry> sorted = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      sorted.add(new QuestionPool.Entry(UUID.randomUUID(), QuestionType.QUANTITATIVE, true, i));
+    }
+
+    List<QuestionPool.Entry> picks = QuestionPool.stratifiedSample(sorted, 10);
+
+    assertEquals(10, picks.size());
+    Set<Integer> strata = new HashSet<>();
+    picks.forEach(pick -> strata.add((int) pick.difficulty() / 10));
+    assertEquals(10, strata.size());
+    assertEquals(5, QuestionPool.stratifiedSample(sorted.subList(0, 5), 10).size());
+  }
+}
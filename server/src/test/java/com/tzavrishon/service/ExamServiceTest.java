@@ -2,13 +2,17 @@ package com.tzavrishon.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tzavrishon.config.AppProperties;
 import com.tzavrishon.domain.*;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
 import com.tzavrishon.dto.*;
 import com.tzavrishon.repository.*;
-import com.tzavrishon.security.UserPrincipal;
+import java.time.Instant;
 import java.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,25 +20,48 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 class ExamServiceTest {
+  private static final QuestionType[] TYPES = {
+    QuestionType.VERBAL_ANALOGY,
+    QuestionType.SHAPE_ANALOGY,
+    QuestionType.INSTRUCTIONS_DIRECTIONS,
+    QuestionType.QUANTITATIVE
+  };
+
   @Mock private ExamAttemptRepository attemptRepository;
   @Mock private ExamSectionRepository sectionRepository;
   @Mock private ExamUserAnswerRepository answerRepository;
   @Mock private QuestionRepository questionRepository;
   @Mock private QuestionOptionRepository optionRepository;
   @Mock private UserRepository userRepository;
-  @Mock private AppProperties appProperties;
+  @Mock private ExamAttemptArchiveRepository archiveRepository;
+  @Mock private ImageWarmupService imageWarmupService;
+  @Mock private AtlasService atlasService;
+  @Mock private ItemStatsService itemStatsService;
+  @Mock private QuestionSelectors questionSelectors;
+  @Mock private QuestionSelector examSelector;
+  @Mock private AbilityService abilityService;
 
+  private ExamAttemptSnapshots snapshots;
   private ExamService examService;
+  private ExamAttempt attempt;
+  private List<ExamSection> sections;
 
   @BeforeEach
   void setUp() {
     MockitoAnnotations.openMocks(this);
 
-    AppProperties.Exam examConfig = new AppProperties.Exam();
-    examConfig.setSectionCounts("VERBAL_ANALOGY:10,SHAPE_ANALOGY:10,INSTRUCTIONS_DIRECTIONS:10,QUANTITATIVE:10");
-    examConfig.setSectionDurations("VERBAL_ANALOGY:480,SHAPE_ANALOGY:480,INSTRUCTIONS_DIRECTIONS:360,QUANTITATIVE:600");
-
-    when(appProperties.getExam()).thenReturn(examConfig);
+    AppProperties appProperties = new AppProperties();
+    appProperties.getExam().setSectionCounts("VERBAL_ANALOGY:2,SHAPE_ANALOGY:2");
+    snapshots =
+        new ExamAttemptSnapshots(
+            new ObjectMapper().findAndRegisterModules(),
+            sectionRepository,
+            answerRepository,
+            archiveRepository,
+            questionRepository);
+    when(questionSelectors.exam()).thenReturn(examSelector);
+    when(examSelector.select(any())).thenReturn(List.of());
+    when(optionRepository.findByQuestionIdIn(any())).thenReturn(List.of());
 
     examService =
         new ExamService(
@@ -44,38 +71,132 @@ class ExamServiceTest {
             questionRepository,
             optionRepository,
             userRepository,
-            null, // answerNormalizer not needed for this test
+            snapshots,
+            imageWarmupService,
+            atlasService,
+            itemStatsService,
+            questionSelectors,
+            abilityService,
             appProperties);
+
+    // An attempt in its first section, as startExam leaves it
+    User user = new User();
+    user.setId(UUID.randomUUID());
+    attempt = new ExamAttempt();
+    attempt.setId(UUID.randomUUID());
+    attempt.setUser(user);
+    sections = new ArrayList<>();
+    for (int i = 0; i < TYPES.length; i++) {
+      ExamSection section = new ExamSection();
+      section.setId(UUID.randomUUID());
+      section.setAttempt(attempt);
+      section.setType(TYPES[i]);
+      section.setOrderIndex(i);
+      section.setDurationSeconds(600);
+      section.setStartedAt(i == 0 ? Instant.now() : null);
+      sections.add(section);
+      when(sectionRepository.findById(section.getId())).thenReturn(Optional.of(section));
+    }
+    snapshots.write(attempt, snapshots.create(sections));
+    when(attemptRepository.findByIdForUpdate(attempt.getId())).thenReturn(Optional.of(attempt));
+  }
+
+  @Test
+  void testResumeServesTheQuestionsPinnedOnFirstVisit() {
+    List<Question> drawn = List.of(question(TYPES[0]), question(TYPES[0]));
+    when(questionRepository.findRandomExamQuestionsByType(anyString(), anyInt()))
+        .thenReturn(drawn);
+    CurrentSectionResponse first = examService.getCurrentSection(attempt.getId());
+
+    // The resume reads the pinned ids from the stored snapshot instead of drawing again
+    when(questionRepository.findAllById(any()))
+        .thenReturn(List.of(drawn.get(1), drawn.get(0)));
+    CurrentSectionResponse resumed = examService.getCurrentSection(attempt.getId());
+
+    assertEquals(sections.get(0).getId(), resumed.getSectionId());
+    assertEquals(ids(first.getQuestions()), ids(resumed.getQuestions()));
+    assertEquals(
+        List.of(drawn.get(0).getId(), drawn.get(1).getId()), ids(resumed.getQuestions()));
+    // One draw for the section, none for the next one, and each read loads options in one query
+    verify(questionRepository, times(1)).findRandomExamQuestionsByType(anyString(), anyInt());
+    verify(optionRepository, times(2)).findByQuestionIdIn(any());
+    verify(optionRepository, never()).findByQuestionIdOrderByOptionOrder(any());
+  }
+
+  @Test
+  void testStartingASectionPinsTheOneAfterIt() {
+    when(questionRepository.findRandomExamQuestionsByType(anyString(), anyInt()))
+        .thenReturn(List.of(question(TYPES[2])));
+
+    examService.confirmFinishSection(attempt.getId());
+
+    ExamAttemptSnapshot snapshot = snapshots.load(attempt);
+    assertTrue(snapshot.getSections().get(0).isLocked());
+    assertNotNull(snapshot.getSections().get(1).getStartedAt());
+    assertNotNull(snapshot.getSections().get(2).getQuestionIds());
+    assertNull(snapshot.getSections().get(3).getQuestionIds());
   }
 
   @Test
-  void testScoreCalculation() {
-    // Test scoring out of 90
-    UUID attemptId = UUID.randomUUID();
-    ExamAttempt attempt = new ExamAttempt();
-    attempt.setId(attemptId);
+  void testAnswerIsRecordedInTheSnapshotOnce() {
+    Question question = question(TYPES[0]);
+    QuestionOption option = new QuestionOption();
+    option.setId(UUID.randomUUID());
+    option.setIsCorrect(true);
+    when(questionRepository.findById(question.getId())).thenReturn(Optional.of(question));
+    when(optionRepository.findById(option.getId())).thenReturn(Optional.of(option));
+
+    SubmitAnswerRequest request = new SubmitAnswerRequest();
+    request.setQuestionId(question.getId());
+    request.setSelectedOptionId(option.getId());
+    request.setTimeMs(4000);
+    assertTrue(examService.submitExamUserAnswer(attempt.getId(), request).isCorrect());
 
-    when(attemptRepository.findById(attemptId)).thenReturn(Optional.of(attempt));
+    SectionState section = snapshots.load(attempt).getSections().get(0);
+    assertEquals(List.of(question.getId()), section.getAnsweredQuestionIds());
+    assertEquals(1, section.correctCount());
+    assertEquals(List.of(4000), section.getTimesMs());
+    verify(answerRepository).save(any(ExamUserAnswer.class));
 
-    // Mock sections
-    when(sectionRepository.findByAttemptIdOrderByOrderIndex(attemptId))
-        .thenReturn(new ArrayList<>());
+    RuntimeException duplicate =
+        assertThrows(
+            RuntimeException.class,
+            () -> examService.submitExamUserAnswer(attempt.getId(), request));
+    assertEquals("Question already answered", duplicate.getMessage());
+    assertEquals(1, snapshots.load(attempt).totalAnswered());
+    verify(answerRepository, times(1)).save(any(ExamUserAnswer.class));
+  }
 
-    // Mock 40 questions, 36 correct
-    List<ExamAnswer> answers = new ArrayList<>();
+  @Test
+  void testFinishScoresFromTheSnapshot() {
+    // 40 answers, 36 right: round(90 * 36 / 40) = 81
+    ExamAttemptSnapshot snapshot = snapshots.load(attempt);
     for (int i = 0; i < 40; i++) {
-      ExamAnswer answer = new ExamAnswer();
-      answer.setIsCorrect(i < 36);
-      answers.add(answer);
+      snapshot.getSections().get(i / 10).recordAnswer(UUID.randomUUID(), i < 36, 1000);
     }
-    when(answerRepository.findByAttemptIdOrderBySection(attemptId)).thenReturn(answers);
+    snapshots.write(attempt, snapshot);
 
-    // Expected: round(90 * 36 / 40) = round(81) = 81
-    ExamSummaryResponse summary = examService.finishExam(attemptId);
+    ExamSummaryResponse summary = examService.finishExam(attempt.getId());
 
     assertEquals(81, summary.getTotalScore90());
     assertEquals(36, summary.getCorrectAnswers());
     assertEquals(40, summary.getTotalQuestions());
+    assertNotNull(attempt.getCompletedAt());
+    assertTrue(snapshots.load(attempt).getSections().stream().allMatch(SectionState::isLocked));
+    assertTrue(sections.stream().allMatch(ExamSection::getLocked));
+    verifyNoInteractions(answerRepository);
+  }
+
+  private static Question question(QuestionType type) {
+    Question question = new Question();
+    question.setId(UUID.randomUUID());
+    question.setType(type);
+    question.setFormat(QuestionFormat.SINGLE_CHOICE_IMAGE);
+    question.setIsExamQuestion(true);
+    return question;
   }
-}
 
+  private static List<UUID> ids(List<QuestionResponse> questions) {
+    return questions.stream().map(QuestionResponse::getId).toList();
+  }
+}
@@ -0,0 +1,159 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.ExamAttemptSnapshot;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.repository.QuestionRepository;
+import com.tzavrishon.service.ExportService.AnswerSource;
+import com.tzavrishon.service.ExportService.Format;
+import com.tzavrishon.util.ExamArchiveCodec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+class ExportServiceTest {
+
+  /** One question with two options and one without any, as the paged join returns them. */
+  private static final List<Map<String, Object>> ROWS =
+      List.of(
+          row(1, "q1", "o1", "a, \"quoted\"", 1),
+          row(1, "q1", "o2", "b", 2),
+          row(2, "q2", null, null, null));
+
+  @Test
+  void testQuestionsAsNdjsonNestOptions() throws Exception {
+    String output = export(Format.NDJSON);
+
+    String[] lines = output.split("\n");
+    assertEquals(2, lines.length);
+    JsonNode first = new ObjectMapper().readTree(lines[0]);
+    assertEquals("q1", first.get("id").asText());
+    assertEquals(2, first.get("options").size());
+    assertEquals("a, \"quoted\"", first.get("options").get(0).get("text").asText());
+    assertEquals(0, new ObjectMapper().readTree(lines[1]).get("options").size());
+  }
+
+  @Test
+  void testQuestionsAsCsvHaveOneRowPerOption() throws Exception {
+    String output = export(Format.CSV);
+
+    String[] lines = output.split("\r\n");
+    assertEquals(4, lines.length);
+    assertTrue(lines[0].startsWith("id,catalog_index,type,"));
+    assertTrue(lines[1].contains(",o1,\"a, \"\"quoted\"\"\","));
+    assertTrue(lines[3].startsWith("q2,2,"));
+  }
+
+  @Test
+  void testExamAnswersIncludeArchivedAttempts() throws Exception {
+    UUID attemptId = UUID.randomUUID();
+    UUID questionId = UUID.randomUUID();
+    ExamAttemptSnapshot snapshot = new ExamAttemptSnapshot();
+    SectionState inRange = section(QuestionType.VERBAL_ANALOGY, "2024-03-10T10:00:00Z");
+    inRange.recordAnswer(questionId, true, 1200);
+    inRange.recordAnswer(questionId, false, null);
+    SectionState outOfRange = section(QuestionType.QUANTITATIVE, "2024-04-02T10:00:00Z");
+    outOfRange.recordAnswer(questionId, true, 900);
+    snapshot.getSections().addAll(List.of(inRange, outOfRange));
+    byte[] payload = ExamArchiveCodec.encode(snapshot, id -> 7);
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    doAnswer(
+            invocation -> {
+              if (invocation.<String>getArgument(0).contains("exam_attempt_archives")) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getObject("attempt_id", UUID.class)).thenReturn(attemptId);
+                when(rs.getBytes("payload")).thenReturn(payload);
+                invocation.<RowCallbackHandler>getArgument(1).processRow(rs);
+              }
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    QuestionRepository questionRepository = mock(QuestionRepository.class);
+    when(questionRepository.findIdsByCatalogIndexIn(any()))
+        .thenReturn(List.<Object[]>of(new Object[] {7, questionId}));
+
+    ExportService service =
+        new ExportService(
+            jdbcTemplate, new ObjectMapper(), questionRepository, new AppProperties());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long exported =
+        service.exportAnswers(
+            AnswerSource.EXAM,
+            Instant.parse("2024-03-01T00:00:00Z"),
+            Instant.parse("2024-04-01T00:00:00Z"),
+            null,
+            Format.NDJSON,
+            out);
+
+    // Only the section started inside the range is exported
+    assertEquals(2, exported);
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    JsonNode first = new ObjectMapper().readTree(lines[0]);
+    assertEquals(attemptId.toString(), first.get("attempt_id").asText());
+    assertEquals(questionId.toString(), first.get("question_id").asText());
+    assertTrue(first.get("archived").asBoolean());
+    assertEquals(1200, first.get("time_ms").asInt());
+    assertTrue(first.get("answered_at").isNull());
+    assertFalse(new ObjectMapper().readTree(lines[1]).get("is_correct").asBoolean());
+  }
+
+  private static SectionState section(QuestionType type, String startedAt) {
+    SectionState section = new SectionState();
+    section.setType(type);
+    section.setStartedAt(Instant.parse(startedAt));
+    return section;
+  }
+
+  private String export(Format format) throws Exception {
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    doAnswer(
+            invocation -> {
+              RowCallbackHandler handler = invocation.getArgument(1);
+              for (Map<String, Object> values : ROWS) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getObject(anyString())).thenAnswer(i -> values.get(i.getArgument(0)));
+                when(rs.getInt("catalog_index")).thenReturn((Integer) values.get("catalog_index"));
+                handler.processRow(rs);
+              }
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+    ExportService service =
+        new ExportService(
+            jdbcTemplate, new ObjectMapper(), mock(QuestionRepository.class), new AppProperties());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(2, service.exportQuestions(null, format, out));
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  private static Map<String, Object> row(
+      int index, String id, String optionId, String optionText, Integer optionOrder) {
+    Map<String, Object> row = new HashMap<>();
+    row.put("catalog_index", index);
+    row.put("id", id);
+    row.put("type", "VERBAL_ANALOGY");
+    row.put("option_id", optionId);
+    row.put("option_text", optionText);
+    row.put("option_order", optionOrder);
+    return row;
+  }
+}
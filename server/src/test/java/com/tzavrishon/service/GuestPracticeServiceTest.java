@@ -0,0 +1,74 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.GuestPracticeState;
+import com.tzavrishon.domain.Question;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.dto.SubmitAnswerRequest;
+import com.tzavrishon.repository.*;
+import com.tzavrishon.security.UserPrincipal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class GuestPracticeServiceTest {
+  private final PracticeSessionRepository sessionRepository = mock(PracticeSessionRepository.class);
+  private final QuestionRepository questionRepository = mock(QuestionRepository.class);
+  private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+  private GuestPracticeService service;
+  private GuestPracticeState state;
+
+  @BeforeEach
+  void setUp() {
+    service =
+        new GuestPracticeService(
+            mock(PracticeService.class),
+            sessionRepository,
+            mock(PracticeUserAnswerRepository.class),
+            mock(RecentQuestionRepository.class),
+            questionRepository,
+            mock(UserRepository.class),
+            mock(ItemStatsService.class),
+            jdbcTemplate,
+            new AppProperties());
+    state = GuestPracticeState.create();
+    Instant now = Instant.now();
+    state.startSession(QuestionType.VERBAL_ANALOGY, now, now.minus(Duration.ofDays(1)));
+  }
+
+  @Test
+  void testGuestStateCanBeClaimedOnce() {
+    UserPrincipal user = new UserPrincipal(UUID.randomUUID(), "a@example.com", "A", false);
+    when(jdbcTemplate.update(startsWith("INSERT INTO guest_claims"), any(Object[].class)))
+        .thenReturn(1)
+        .thenReturn(0);
+
+    assertEquals(0, service.claim(user, state));
+    RuntimeException replayed =
+        assertThrows(RuntimeException.class, () -> service.claim(user, state));
+    assertEquals("Guest practice already claimed", replayed.getMessage());
+    verify(jdbcTemplate, times(2))
+        .update(startsWith("INSERT INTO guest_claims"), eq(state.getGuestId()), eq(user.getId()));
+  }
+
+  @Test
+  void testAnswerToAnotherTypeIsRejected() {
+    Question question = new Question();
+    question.setId(UUID.randomUUID());
+    question.setType(QuestionType.QUANTITATIVE);
+    when(questionRepository.findById(question.getId())).thenReturn(Optional.of(question));
+    SubmitAnswerRequest request = new SubmitAnswerRequest();
+    request.setQuestionId(question.getId());
+
+    assertThrows(RuntimeException.class, () -> service.submitAnswer(state, request));
+    assertEquals(0, state.activeSession().orElseThrow().answeredCount());
+  }
+}
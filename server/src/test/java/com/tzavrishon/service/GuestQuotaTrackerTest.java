@@ -0,0 +1,99 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import com.tzavrishon.repository.PracticeSessionRepository;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class GuestQuotaTrackerTest {
+  private PracticeSessionRepository sessionRepository;
+  private AppProperties appProperties;
+  private GuestQuotaTracker tracker;
+
+  @BeforeEach
+  void setUp() {
+    sessionRepository = mock(PracticeSessionRepository.class);
+    appProperties = new AppProperties();
+    appProperties.getGuest().setPracticeLimitPerType(3);
+    tracker = new GuestQuotaTracker(sessionRepository, appProperties);
+  }
+
+  @Test
+  void testLimitEnforcedInMemoryAfterSingleLoad() {
+    UUID guestId = UUID.randomUUID();
+    when(sessionRepository.findGuestSessionStartsSince(eq(guestId), any(), any()))
+        .thenReturn(List.of());
+
+    assertTrue(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    assertTrue(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    assertTrue(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    assertFalse(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    assertTrue(tracker.tryAcquire(guestId, QuestionType.VERBAL_ANALOGY));
+
+    verify(sessionRepository, times(2)).findGuestSessionStartsSince(eq(guestId), any(), any());
+    verify(sessionRepository, never()).countByGuestIdAndTypeAndStartedAtAfter(any(), any(), any());
+  }
+
+  @Test
+  void testRolledBackStartUsesNoQuota() {
+    appProperties.getGuest().setPracticeLimitPerType(1);
+    UUID guestId = UUID.randomUUID();
+    when(sessionRepository.findGuestSessionStartsSince(eq(guestId), any(), any()))
+        .thenReturn(List.of());
+
+    // The session's transaction never commits: its start is not counted
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      assertTrue(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertTrue(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    assertFalse(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+  }
+
+  @Test
+  void testRebuildsFromDatabaseStarts() {
+    UUID guestId = UUID.randomUUID();
+    Instant now = Instant.now();
+    when(sessionRepository.findGuestSessionStartsSince(eq(guestId), any(), any()))
+        .thenReturn(List.of(now.minusSeconds(3600), now.minusSeconds(60)));
+
+    assertTrue(tracker.tryAcquire(guestId, QuestionType.SHAPE_ANALOGY));
+    assertFalse(tracker.tryAcquire(guestId, QuestionType.SHAPE_ANALOGY));
+  }
+
+  @Test
+  void testStartsOutsideWindowDoNotCount() {
+    UUID guestId = UUID.randomUUID();
+    Instant old = Instant.now().minus(GuestQuotaTracker.WINDOW).minusSeconds(1);
+    when(sessionRepository.findGuestSessionStartsSince(eq(guestId), any(), any()))
+        .thenReturn(List.of(old, old, old));
+
+    assertTrue(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    tracker.evictExpired();
+    assertEquals(1, tracker.size());
+  }
+
+  @Test
+  void testDatabaseModeCountsRows() {
+    appProperties.getGuest().setQuotaMode("database");
+    UUID guestId = UUID.randomUUID();
+    when(sessionRepository.countByGuestIdAndTypeAndStartedAtAfter(eq(guestId), eq("QUANTITATIVE"), any()))
+        .thenReturn(3L);
+
+    assertFalse(tracker.tryAcquire(guestId, QuestionType.QUANTITATIVE));
+    verify(sessionRepository, never()).findGuestSessionStartsSince(any(), any(), any());
+  }
+}
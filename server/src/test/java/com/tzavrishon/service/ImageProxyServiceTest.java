@@ -0,0 +1,303 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.service.ImageCache.CachedImage;
+import com.tzavrishon.service.ImageProxyService.ImageFetchException;
+import com.tzavrishon.service.ImageProxyService.UpstreamUnavailableException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageProxyServiceTest {
+
+  @Test
+  void testCacheEvictsLeastRecentlyUsedByBytes() {
+    ImageCache cache = new ImageCache(800, 60_000);
+    cache.put("a", image(100));
+    cache.put("b", image(100));
+    cache.get("a");
+    for (int i = 0; i < 7; i++) {
+      cache.put("c" + i, image(100));
+    }
+
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertTrue(cache.bytes() <= 800);
+    assertEquals(1, cache.evictions());
+
+    cache.put("huge", image(101));
+    assertNull(cache.get("huge"));
+  }
+
+  @Test
+  void testExpiredEntriesAreDropped() {
+    ImageCache cache = new ImageCache(1000, 0);
+    cache.put("a", image(10));
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.bytes());
+  }
+
+  @Test
+  void testConcurrentMissesShareOneFetch() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger downloads = new AtomicInteger();
+    ImageProxyService service =
+        new ImageProxyService(new AppProperties()) {
+          @Override
+          Upstream openUpstream(URI uri) {
+            downloads.incrementAndGet();
+            try {
+              release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return upstream(new byte[10], 10);
+          }
+        };
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<ImageSource>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      results.add(executor.submit(() -> service.fetch("https://example.com/a.png")));
+    }
+    Thread.sleep(200);
+    release.countDown();
+    for (Future<ImageSource> result : results) {
+      assertEquals(10, result.get(5, TimeUnit.SECONDS).length());
+    }
+    executor.shutdown();
+
+    assertEquals(1, downloads.get());
+    assertEquals(10, service.fetch("https://example.com/a.png").length());
+    assertEquals(1, service.getStats().getHits());
+  }
+
+  @Test
+  void testMissIsStreamedAndCached() throws Exception {
+    byte[] data = new byte[40_000];
+    data[39_999] = 7;
+    AppProperties properties = new AppProperties();
+    properties.getImageProxy().setMaxObjectBytes(50_000);
+    ImageProxyService service =
+        new ImageProxyService(properties) {
+          @Override
+          Upstream openUpstream(URI uri) {
+            return uri.getPath().endsWith("big.png")
+                ? upstream(new byte[60_000], -1)
+                : upstream(data, -1);
+          }
+        };
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    List<Long> lengths = new ArrayList<>();
+    service.serve(
+        "https://example.com/a.png",
+        new ImageProxyService.ResponseSink() {
+          @Override
+          public void send(ImageSource image) {
+            fail("a miss should be streamed");
+          }
+
+          @Override
+          public OutputStream stream(String contentType, long length, long lastModified) {
+            lengths.add(length);
+            return out;
+          }
+        });
+    assertArrayEquals(data, out.toByteArray());
+    assertEquals(List.of(-1L), lengths);
+    ImageSource cached = service.fetch("https://example.com/a.png");
+    assertEquals(data.length, cached.length());
+    assertEquals(ImageDiskCache.sha256(data), cached.hash());
+    assertEquals(1, service.getStats().getUpstreamFetches());
+
+    assertThrows(
+        ImageFetchException.class,
+        () -> service.fetch("https://example.com/big.png"));
+    assertEquals(1, service.getStats().getEntries());
+  }
+
+  @Test
+  void testVariantsAreResizedOnceAndCached() throws Exception {
+    BufferedImage source = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_ARGB);
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(source, "png", png);
+    AtomicInteger downloads = new AtomicInteger();
+    ImageProxyService service =
+        new ImageProxyService(new AppProperties()) {
+          @Override
+          Upstream openUpstream(URI uri) {
+            downloads.incrementAndGet();
+            return upstream(png.toByteArray(), png.size());
+          }
+        };
+
+    String url = "https://example.com/shape.png";
+    ImageSource small = service.fetchVariant(url, 200, null, "image/avif,image/webp,*/*");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    small.writeTo(out);
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(256, decoded.getWidth()); // snapped up to the next variant width
+    assertEquals(128, decoded.getHeight());
+    assertEquals("image/png", small.contentType());
+
+    ImageSource jpeg = service.fetchVariant(url, 200, "image/jpeg", null);
+    assertEquals("image/jpeg", jpeg.contentType());
+    assertSame(small, service.fetchVariant(url, 250, null, null));
+    assertEquals(1, downloads.get());
+    assertEquals(2, service.getStats().getVariantsCreated());
+  }
+
+  @Test
+  void testFailuresAreRememberedAndOpenTheCircuit() {
+    AtomicInteger calls = new AtomicInteger();
+    ImageProxyService service =
+        new ImageProxyService(new AppProperties()) {
+          @Override
+          Upstream openUpstream(URI uri) {
+            calls.incrementAndGet();
+            if (uri.getPath().endsWith(".txt")) {
+              throw new ImageFetchException("Invalid content type");
+            }
+            throw new UpstreamUnavailableException();
+          }
+        };
+
+    for (int i = 0; i < 3; i++) {
+      ImageFetchException e =
+          assertThrows(ImageFetchException.class, () -> service.fetch("https://a.example/x.txt"));
+      assertEquals("Invalid content type", e.getMessage());
+    }
+    assertEquals(1, calls.get());
+    assertEquals(2, service.getStats().getNegativeHits());
+
+    // A host that keeps failing is cut off after the minimum number of calls
+    for (int i = 0; i < 8; i++) {
+      String url = "https://down.example/" + i + ".png";
+      assertThrows(ImageFetchException.class, () -> service.fetch(url));
+    }
+    assertEquals(6, calls.get());
+    assertEquals(Map.of("down.example", "OPEN"), service.getStats().getOpenHosts());
+    assertTrue(service.getStats().getCircuitRejections() > 0);
+  }
+
+  @Test
+  void testCircuitHalfOpensAfterCoolDown() {
+    AtomicLong now = new AtomicLong();
+    HostCircuitBreaker breaker = new HostCircuitBreaker(4, 2, 0.5, 1000, now::get);
+    breaker.tryAcquire("h");
+    breaker.recordSuccess("h");
+    breaker.tryAcquire("h");
+    breaker.recordFailure("h");
+    assertEquals(HostCircuitBreaker.State.OPEN, breaker.state("h"));
+    assertFalse(breaker.tryAcquire("h"));
+
+    now.set(1000);
+    assertTrue(breaker.tryAcquire("h"));
+    assertFalse(breaker.tryAcquire("h")); // one trial at a time
+    breaker.recordFailure("h");
+    assertEquals(HostCircuitBreaker.State.OPEN, breaker.state("h"));
+
+    now.set(2000);
+    assertTrue(breaker.tryAcquire("h"));
+    breaker.recordSuccess("h");
+    assertEquals(HostCircuitBreaker.State.CLOSED, breaker.state("h"));
+    assertEquals(2, breaker.opened());
+    assertEquals(1, breaker.closed());
+  }
+
+  @Test
+  void testDiskCacheSurvivesRestartAndSharesBlobs(@TempDir Path directory) throws Exception {
+    byte[] data = "not really a png".getBytes();
+    ImageDiskCache cache = new ImageDiskCache(directory, 1 << 20, 60_000);
+    cache.put("https://a.example/x.png", new CachedImage(data, "image/png", System.currentTimeMillis()));
+    cache.put("https://b.example/x.png", new CachedImage(data, "image/png", System.currentTimeMillis()));
+    assertEquals(data.length, cache.bytes());
+
+    ImageDiskCache reopened = new ImageDiskCache(directory, 1 << 20, 60_000);
+    assertEquals(2, reopened.size());
+    ImageSource image = reopened.get("https://b.example/x.png");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    image.writeTo(out);
+    assertArrayEquals(data, out.toByteArray());
+    out.reset();
+    image.writeTo(out, 4, 6);
+    assertEquals("really", out.toString());
+    assertEquals("image/png", image.contentType());
+  }
+
+  @Test
+  void testDiskCacheDropsOnlyUnreadableRecords(@TempDir Path directory) throws Exception {
+    byte[] data = "not really a png".getBytes();
+    ImageDiskCache cache = new ImageDiskCache(directory, 1 << 20, 60_000);
+    cache.put("https://a.example/x.png", new CachedImage(data, "image/png", System.currentTimeMillis()));
+    Path broken = directory.resolve("urls").resolve("broken.properties");
+    Files.writeString(broken, "url=https://b.example/x.png\nblob=" + ImageDiskCache.sha256(data));
+
+    ImageDiskCache reopened = new ImageDiskCache(directory, 1 << 20, 60_000);
+    assertEquals(1, reopened.size());
+    assertNotNull(reopened.get("https://a.example/x.png"));
+    assertFalse(Files.exists(broken));
+    assertEquals(data.length, reopened.bytes());
+  }
+
+  @Test
+  void testDiskCacheCountsSharedBlobsUntilTheLastUrlMovesOn(@TempDir Path directory) {
+    byte[] shared = new byte[100];
+    byte[] other = new byte[40];
+    other[0] = 1;
+    long now = System.currentTimeMillis();
+    ImageDiskCache cache = new ImageDiskCache(directory, 1 << 20, 60_000);
+    cache.put("a", new CachedImage(shared, "image/png", now));
+    cache.put("b", new CachedImage(shared, "image/png", now));
+    cache.put("a", new CachedImage(other, "image/png", now));
+    assertEquals(140, cache.bytes());
+    assertTrue(Files.exists(directory.resolve("blobs").resolve(ImageDiskCache.sha256(shared))));
+
+    cache.put("b", new CachedImage(other, "image/png", now));
+    assertEquals(40, cache.bytes());
+    assertFalse(Files.exists(directory.resolve("blobs").resolve(ImageDiskCache.sha256(shared))));
+  }
+
+  @Test
+  void testDiskCacheEvictsToBudget(@TempDir Path directory) throws Exception {
+    ImageDiskCache cache = new ImageDiskCache(directory, 250, 60_000);
+    for (int i = 0; i < 5; i++) {
+      byte[] data = new byte[100];
+      data[0] = (byte) i;
+      cache.put("u" + i, new CachedImage(data, "image/png", System.currentTimeMillis()));
+      Thread.sleep(5);
+    }
+    assertTrue(cache.bytes() <= 250);
+    assertNotNull(cache.get("u4"));
+    assertNull(cache.get("u0"));
+  }
+
+  private static ImageProxyService.Upstream upstream(byte[] data, long length) {
+    return new ImageProxyService.Upstream(
+        "image/png", length, -1, new ByteArrayInputStream(data));
+  }
+
+  private static CachedImage image(int size) {
+    return new CachedImage(new byte[size], "image/png", System.currentTimeMillis());
+  }
+}
@@ -0,0 +1,53 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.repository.QuestionOptionRepository;
+import com.tzavrishon.repository.QuestionRepository;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+
+class ImageWarmupServiceTest {
+
+  @Test
+  void testWarmCatalogFetchesEachRemoteImageOnce() {
+    Set<String> fetched = ConcurrentHashMap.newKeySet();
+    ImageProxyService proxy =
+        new ImageProxyService(new AppProperties()) {
+          @Override
+          Upstream openUpstream(URI uri) {
+            assertTrue(fetched.add(uri.toString()), "fetched twice: " + uri);
+            if (uri.getPath().endsWith("broken.png")) {
+              throw new ImageFetchException("Invalid content type");
+            }
+            return new Upstream("image/png", 3, -1, new ByteArrayInputStream(new byte[3]));
+          }
+        };
+    QuestionRepository questions = mock(QuestionRepository.class);
+    QuestionOptionRepository options = mock(QuestionOptionRepository.class);
+    when(questions.findAllPromptImageUrls())
+        .thenReturn(List.of("https://img.example/q1.png", "/static/local.png"));
+    when(options.findAllImageUrls())
+        .thenReturn(
+            List.of(
+                "https://img.example/q1.png",
+                "https://img.example/o1.png",
+                "https://img.example/broken.png"));
+
+    ImageWarmupService warmup =
+        new ImageWarmupService(
+            questions, options, proxy, new AssetStore(new AppProperties()), new AppProperties());
+    assertEquals(2, warmup.warmCatalog());
+    assertEquals(3, fetched.size());
+    assertTrue(proxy.isCached("https://img.example/o1.png"));
+
+    // Already cached images are not fetched again
+    assertEquals(2, warmup.warmCatalog());
+  }
+}
@@ -0,0 +1,71 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.util.TDigest;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ItemStatsServiceTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testFlushMergesCountedAnswersIntoStoredRow() throws Exception {
+    UUID questionId = UUID.randomUUID();
+    UUID optionA = UUID.randomUUID();
+    UUID optionB = UUID.randomUUID();
+    TDigest storedTimes = new TDigest(100);
+    storedTimes.add(1_000);
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    ResultSet row = mock(ResultSet.class);
+    when(row.getObject("question_id", UUID.class)).thenReturn(questionId);
+    when(row.getLong("attempts")).thenReturn(1L);
+    when(row.getLong("correct")).thenReturn(1L);
+    when(row.getString("option_picks")).thenReturn("{\"" + optionA + "\":1}");
+    when(row.getBytes("time_digest")).thenReturn(storedTimes.toBytes());
+    doAnswer(
+            invocation -> {
+              invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(
+            startsWith("SELECT question_id"), any(RowCallbackHandler.class), any(Object[].class));
+
+    ItemStatsService service =
+        new ItemStatsService(
+            jdbcTemplate,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            new ObjectMapper(),
+            new AppProperties());
+    service.record(questionId, optionA, true, 2_000);
+    service.record(questionId, optionB, false, 3_000);
+    service.record(questionId, null, false, null);
+    service.flush();
+    service.flush(); // nothing new: no further writes
+
+    ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+    verify(jdbcTemplate).batchUpdate(startsWith("UPDATE question_stats"), updates.capture());
+    Object[] update = updates.getValue().get(0);
+    assertEquals(4L, update[0]);
+    assertEquals(2L, update[1]);
+    assertTrue(((String) update[2]).contains("\"" + optionA + "\":2"));
+    assertTrue(((String) update[2]).contains("\"" + optionB + "\":1"));
+    TDigest times = TDigest.fromBytes((byte[]) update[3]);
+    assertEquals(3, times.count());
+    assertEquals(2_000, times.quantile(0.5), 1);
+    assertEquals(questionId, update[4]);
+  }
+}
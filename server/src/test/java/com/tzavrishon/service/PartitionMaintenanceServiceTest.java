@@ -0,0 +1,108 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.config.AppProperties;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers(disabledWithoutDocker = true)
+class PartitionMaintenanceServiceTest {
+  @Container
+  private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+  private JdbcTemplate jdbcTemplate;
+  private PartitionMaintenanceService service;
+
+  @BeforeEach
+  void setUp() {
+    DriverManagerDataSource dataSource =
+        new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    service =
+        new PartitionMaintenanceService(
+            jdbcTemplate, new DataSourceTransactionManager(dataSource), new AppProperties());
+  }
+
+  @Test
+  void testTimeBoundedQueryPrunesToMonthAndUserPartitions() {
+    YearMonth current = YearMonth.now(ZoneOffset.UTC);
+    for (int i = -3; i <= 0; i++) {
+      service.createMonthlyPartitions(current.plusMonths(i));
+    }
+
+    List<String> plan =
+        jdbcTemplate.queryForList(
+            "EXPLAIN SELECT * FROM practice_user_answers "
+                + "WHERE is_guest = FALSE AND answered_at >= '"
+                + current.atDay(1)
+                + "'",
+            String.class);
+    String text = String.join("\n", plan);
+
+    assertTrue(text.contains("practice_user_answers_user_" + suffix(current)), text);
+    assertFalse(text.contains("practice_user_answers_user_" + suffix(current.minusMonths(1))), text);
+    assertFalse(text.contains("practice_user_answers_guest"), text);
+  }
+
+  @Test
+  void testDropsOnlyExpiredGuestPartitions() {
+    YearMonth current = YearMonth.now(ZoneOffset.UTC);
+    YearMonth old = current.minusMonths(6);
+    service.createMonthlyPartitions(old);
+    service.createMonthlyPartitions(current);
+
+    int dropped = service.dropExpiredGuestPartitions(Instant.now().minusSeconds(90L * 86400));
+
+    assertEquals(3, dropped);
+    assertFalse(tableExists("practice_sessions_guest_" + suffix(old)));
+    assertTrue(tableExists("practice_sessions_guest_" + suffix(current)));
+    assertTrue(tableExists("practice_sessions_user_" + suffix(old)));
+  }
+
+  @Test
+  void testMovesRowsOutOfDefaultWhenCreatingTheirMonth() {
+    YearMonth month = YearMonth.now(ZoneOffset.UTC).minusMonths(1);
+    UUID guestId = UUID.randomUUID();
+    jdbcTemplate.update("INSERT INTO guest_identities (guest_id) VALUES (?)", guestId);
+    jdbcTemplate.update(
+        "INSERT INTO practice_sessions (guest_id, type, is_guest, started_at)"
+            + " VALUES (?, 'QUANTITATIVE', TRUE, ?)",
+        guestId,
+        Timestamp.from(month.atDay(10).atStartOfDay(ZoneOffset.UTC).toInstant()));
+    assertEquals(1, count("practice_sessions_guest_default"));
+
+    service.createMonthlyPartitions(month);
+
+    assertEquals(0, count("practice_sessions_guest_default"));
+    assertEquals(1, count("practice_sessions_guest_" + suffix(month)));
+    assertEquals(1, count("practice_sessions"));
+  }
+
+  private int count(String table) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+  }
+
+  private boolean tableExists(String name) {
+    return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+  }
+
+  private String suffix(YearMonth month) {
+    return String.format("%d_%02d", month.getYear(), month.getMonthValue());
+  }
+}
@@ -0,0 +1,68 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers(disabledWithoutDocker = true)
+class PartitionMigrationTest {
+  @Container
+  private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+  @Test
+  void testConvertsPlainTablesKeepingTheirRows() throws Exception {
+    DriverManagerDataSource dataSource =
+        new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    ClassPathResource schema = new ClassPathResource("schema.sql");
+    new ResourceDatabasePopulator(schema).execute(dataSource);
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    // practice_sessions as it was before partitioning, with one user and one guest session
+    jdbcTemplate.execute("DROP TABLE practice_sessions CASCADE");
+    jdbcTemplate.execute(
+        "CREATE TABLE practice_sessions (id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),"
+            + " user_id UUID REFERENCES users(id) ON DELETE CASCADE,"
+            + " guest_id UUID REFERENCES guest_identities(guest_id) ON DELETE CASCADE,"
+            + " type VARCHAR(50) NOT NULL, started_at TIMESTAMP WITH TIME ZONE"
+            + " DEFAULT CURRENT_TIMESTAMP, ended_at TIMESTAMP WITH TIME ZONE)");
+    jdbcTemplate.execute("CREATE INDEX idx_practice_sessions_user ON practice_sessions(user_id)");
+    UUID userId = UUID.randomUUID();
+    UUID guestId = UUID.randomUUID();
+    jdbcTemplate.update(
+        "INSERT INTO users (id, email) VALUES (?, 'a@example.com')", userId);
+    jdbcTemplate.update("INSERT INTO guest_identities (guest_id) VALUES (?)", guestId);
+    jdbcTemplate.update(
+        "INSERT INTO practice_sessions (user_id, type, started_at)"
+            + " VALUES (?, 'QUANTITATIVE', '2024-01-15 10:00:00+00')",
+        userId);
+    jdbcTemplate.update(
+        "INSERT INTO practice_sessions (guest_id, type, started_at)"
+            + " VALUES (?, 'QUANTITATIVE', '2024-03-02 10:00:00+00')",
+        guestId);
+
+    assertEquals(1, new PartitionMigration(dataSource, schema).migrate());
+    assertEquals(0, new PartitionMigration(dataSource, schema).migrate());
+
+    assertEquals(
+        "p",
+        jdbcTemplate.queryForObject(
+            "SELECT relkind::text FROM pg_class WHERE relname = 'practice_sessions'", String.class));
+    assertEquals(
+        1, count(jdbcTemplate, "practice_sessions_user_2024_01 WHERE user_id = '" + userId + "'"));
+    assertEquals(1, count(jdbcTemplate, "practice_sessions_guest_2024_03 WHERE is_guest"));
+    assertEquals(0, count(jdbcTemplate, "practice_sessions_user_default"));
+    assertNull(jdbcTemplate.queryForObject("SELECT to_regclass('practice_sessions_legacy')", String.class));
+  }
+
+  private static int count(JdbcTemplate jdbcTemplate, String from) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Integer.class);
+  }
+}
@@ -0,0 +1,29 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.domain.QuestionType;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class PracticeServiceTest {
+
+  @Test
+  void testApportionMixedSession() {
+    Map<QuestionType, Integer> even =
+        PracticeService.apportion(
+            "VERBAL_ANALOGY:1,SHAPE_ANALOGY:1,INSTRUCTIONS_DIRECTIONS:1,QUANTITATIVE:1", 20);
+    even.values().forEach(count -> assertEquals(5, count));
+
+    // 10 * 2/3 = 6.67 and 10 * 1/3 = 3.33: the larger remainder gets the spare question
+    Map<QuestionType, Integer> weighted =
+        PracticeService.apportion("QUANTITATIVE:2, VERBAL_ANALOGY:1", 10);
+    assertEquals(Map.of(QuestionType.QUANTITATIVE, 7, QuestionType.VERBAL_ANALOGY, 3), weighted);
+
+    // Unknown types and non-positive weights are left out
+    Map<QuestionType, Integer> partial =
+        PracticeService.apportion("QUANTITATIVE:1,UNKNOWN:3,SHAPE_ANALOGY:0", 7);
+    assertEquals(Map.of(QuestionType.QUANTITATIVE, 7), partial);
+    assertTrue(PracticeService.apportion("", 10).isEmpty());
+  }
+}
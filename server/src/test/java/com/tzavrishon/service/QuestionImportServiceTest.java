@@ -0,0 +1,167 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.dto.ImportQuestionRequest;
+import com.tzavrishon.dto.ImportReport;
+import com.tzavrishon.util.AnswerNormalizer;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class QuestionImportServiceTest {
+
+  private static final String VALID =
+      "{\"type\":\"SHAPE_ANALOGY\",\"format\":\"SINGLE_CHOICE_IMAGE\",\"difficulty\":2,"
+          + "\"options\":[{\"text\":\"a\",\"isCorrect\":true,\"optionOrder\":1},"
+          + "{\"text\":\"b\",\"isCorrect\":false,\"optionOrder\":2}]}";
+  private static final String TWO_CORRECT =
+      "{\"type\":\"SHAPE_ANALOGY\",\"format\":\"SINGLE_CHOICE_IMAGE\","
+          + "\"options\":[{\"isCorrect\":true,\"optionOrder\":1},"
+          + "{\"isCorrect\":true,\"optionOrder\":2}]}";
+
+  @Test
+  void testImportsInChunksAndReportsInvalidRecords() throws Exception {
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    AppProperties properties = new AppProperties();
+    properties.getQuestionImport().setBatchSize(2);
+    QuestionImportService service =
+        new QuestionImportService(
+            jdbcTemplate,
+            new TransactionTemplate(transactionManager),
+            new ObjectMapper(),
+            new AnswerNormalizer(),
+            properties);
+
+    String body =
+        "[" + String.join(",", VALID, TWO_CORRECT, withPrompt("b"), withPrompt("c")) + "]";
+    ImportReport report =
+        service.importStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(4, report.getReceived());
+    assertEquals(3, report.getImported());
+    assertEquals(1, report.getRejected());
+    assertEquals(2, report.getChunks());
+    assertEquals(1, report.getErrors().get(0).getIndex());
+    assertTrue(report.getErrors().get(0).getMessage().contains("Found 2 correct answers"));
+    verify(transactionManager, times(2)).commit(any());
+    verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO questions"), anyList());
+    verify(jdbcTemplate, times(2))
+        .batchUpdate(startsWith("INSERT INTO question_options"), anyList());
+  }
+
+  @Test
+  void testRecordThatDoesNotBindIsRejectedAndTheStreamContinues() throws Exception {
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    String badType = VALID.replace("SHAPE_ANALOGY", "SHAPES");
+    String body = "[" + String.join(",", withPrompt("a"), badType, withPrompt("c")) + "]";
+
+    ImportReport report =
+        service(jdbcTemplate)
+            .importStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(3, report.getReceived());
+    assertEquals(2, report.getImported());
+    assertEquals(1, report.getRejected());
+    assertEquals(1, report.getErrors().get(0).getIndex());
+    assertTrue(report.getErrors().get(0).getMessage().contains("SHAPES"));
+  }
+
+  @Test
+  void testRejectsBodyThatIsNotAnArray() {
+    QuestionImportService service =
+        new QuestionImportService(
+            mock(JdbcTemplate.class),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            new ObjectMapper(),
+            new AnswerNormalizer(),
+            new AppProperties());
+
+    assertThrows(
+        RuntimeException.class,
+        () -> service.importStream(new ByteArrayInputStream(VALID.getBytes())));
+  }
+
+  @Test
+  void testFingerprintIgnoresPunctuationAndUpdatableFields() throws Exception {
+    QuestionImportService service = service(mock(JdbcTemplate.class));
+    ObjectMapper mapper = new ObjectMapper();
+    ImportQuestionRequest a =
+        mapper.readValue(
+            "{\"type\":\"VERBAL_ANALOGY\",\"format\":\"SINGLE_CHOICE_IMAGE\","
+                + "\"promptText\":\"כֶּלֶב : חתול\",\"difficulty\":1,"
+                + "\"options\":[{\"text\":\"x\",\"optionOrder\":1}]}",
+            ImportQuestionRequest.class);
+    ImportQuestionRequest b =
+        mapper.readValue(
+            "{\"type\":\"VERBAL_ANALOGY\",\"format\":\"SINGLE_CHOICE_IMAGE\","
+                + "\"promptText\":\"כלב  חתול.\",\"difficulty\":4,\"explanation\":\"e\","
+                + "\"options\":[{\"text\":\"x\",\"optionOrder\":1,\"isCorrect\":true}]}",
+            ImportQuestionRequest.class);
+
+    assertEquals(service.fingerprint(a), service.fingerprint(b));
+    b.getOptions().get(0).setText("y");
+    assertNotEquals(service.fingerprint(a), service.fingerprint(b));
+  }
+
+  @Test
+  void testReimportUpdatesChangedAndSkipsUnchanged() throws Exception {
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    QuestionImportService service = service(jdbcTemplate);
+    ImportQuestionRequest valid = new ObjectMapper().readValue(VALID, ImportQuestionRequest.class);
+    String fingerprint = service.fingerprint(valid);
+    UUID id = UUID.randomUUID();
+    ResultSet row = mock(ResultSet.class);
+    when(row.getString("content_hash")).thenReturn(fingerprint);
+    when(row.getObject("id", UUID.class)).thenReturn(id);
+    when(row.getInt("difficulty")).thenReturn(2);
+    when(row.getObject("correct_order", Integer.class)).thenReturn(1);
+    doAnswer(
+            invocation -> {
+              invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(startsWith("SELECT q.id"), any(RowCallbackHandler.class), any(Object[].class));
+
+    assertEquals(
+        QuestionImportService.Outcome.UNCHANGED, service.applyToExisting(valid, fingerprint));
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+
+    String harder = VALID.replace("\"difficulty\":2", "\"difficulty\":5");
+    String body = "[" + VALID + "," + harder + "]";
+    ImportReport report =
+        service.importStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(0, report.getImported());
+    assertEquals(1, report.getUpdated());
+    assertEquals(1, report.getUnchanged()); // the first copy, superseded within the chunk
+    verify(jdbcTemplate).batchUpdate(startsWith("UPDATE questions"), anyList());
+    verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT"), anyList());
+    verify(jdbcTemplate, never()).batchUpdate(startsWith("UPDATE question_options"), anyList());
+  }
+
+  private static String withPrompt(String prompt) {
+    return VALID.replaceFirst("\\{", "{\"promptText\":\"" + prompt + "\",");
+  }
+
+  private QuestionImportService service(JdbcTemplate jdbcTemplate) {
+    return new QuestionImportService(
+        jdbcTemplate,
+        new TransactionTemplate(mock(PlatformTransactionManager.class)),
+        new ObjectMapper(),
+        new AnswerNormalizer(),
+        new AppProperties());
+  }
+}
@@ -0,0 +1,99 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.domain.QuestionType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class QuestionSelectorsTest {
+
+  @Test
+  void testSelectorsHonourTheirStrategy() {
+    List<QuestionPool.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      // Difficulties -5.0 .. +4.95 logits
+      double difficulty = i / 20.0 - 5;
+      entries.add(
+          new QuestionPool.Entry(UUID.randomUUID(), QuestionType.VERBAL_ANALOGY, false, difficulty));
+    }
+    QuestionPool pool = new QuestionPool(null);
+    pool.load(entries);
+    Map<UUID, QuestionPool.Entry> byId =
+        entries.stream().collect(Collectors.toMap(QuestionPool.Entry::id, Function.identity()));
+
+    AppProperties properties = new AppProperties();
+    AbilityService abilityService = new AbilityService(new JdbcTemplate(), properties);
+    NoRepeatSelector noRepeat = new NoRepeatSelector(pool);
+    QuestionSelectors selectors =
+        new QuestionSelectors(
+            List.of(
+                new UniformSelector(pool),
+                noRepeat,
+                new AdaptiveSelector(pool, abilityService, noRepeat),
+                new ExamFormSelector(pool)),
+            properties);
+
+    // No repeats: the 195 recent questions are skipped while any others are left
+    List<UUID> recent = entries.subList(0, 195).stream().map(QuestionPool.Entry::id).toList();
+    List<UUID> fresh =
+        selectors
+            .get("no-repeat")
+            .select(
+                new QuestionSelector.Request(QuestionType.VERBAL_ANALOGY, false, null, recent, 10));
+    assertEquals(5, fresh.size());
+    assertTrue(fresh.stream().noneMatch(recent::contains));
+
+    // Adaptive: a learner at ability 2 gets questions around 2 - logit(0.7) = 1.15 logits
+    UUID userId = UUID.randomUUID();
+    abilityService.track(userId);
+    for (int i = 0; i < 200; i++) {
+      abilityService.record(userId, QuestionType.VERBAL_ANALOGY, 2, i % 2 == 0);
+    }
+    double target = abilityService.targetDifficulty(userId, QuestionType.VERBAL_ANALOGY);
+    List<UUID> picks =
+        selectors
+            .practice()
+            .select(
+                new QuestionSelector.Request(
+                    QuestionType.VERBAL_ANALOGY, false, userId, List.of(), 10));
+    assertEquals(10, new HashSet<>(picks).size());
+    picks.forEach(id -> assertEquals(target, byId.get(id).difficulty(), 1.0));
+
+    assertThrows(RuntimeException.class, () -> selectors.get("random"));
+  }
+
+  @Test
+  void testAdaptiveNeverRepeatsWithinASetFromASmallPool() {
+    List<QuestionPool.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      entries.add(new QuestionPool.Entry(UUID.randomUUID(), QuestionType.QUANTITATIVE, false, i));
+    }
+    QuestionPool pool = new QuestionPool(null);
+    pool.load(entries);
+    AbilityService abilityService = new AbilityService(new JdbcTemplate(), new AppProperties());
+    AdaptiveSelector adaptive =
+        new AdaptiveSelector(pool, abilityService, new NoRepeatSelector(pool));
+    UUID userId = UUID.randomUUID();
+    abilityService.track(userId);
+
+    // Five of the six are recent and ten are asked for: the pool is exhausted, never repeated
+    List<UUID> recent = entries.subList(0, 5).stream().map(QuestionPool.Entry::id).toList();
+    for (int run = 0; run < 100; run++) {
+      List<UUID> picks =
+          adaptive.select(
+              new QuestionSelector.Request(
+                  QuestionType.QUANTITATIVE, false, userId, recent, 10));
+      assertEquals(6, picks.size());
+      assertEquals(6, new HashSet<>(picks).size());
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.tzavrishon.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.config.AppProperties;
+import com.tzavrishon.service.ReviewService.Schedule;
+import org.junit.jupiter.api.Test;
+
+class ReviewServiceTest {
+
+  @Test
+  void testScheduleFollowsSm2() {
+    Schedule first = Schedule.NEW.next(ReviewService.GRADE_WRONG);
+    assertEquals(1, first.intervalDays());
+    assertEquals(0, first.repetitions());
+    assertEquals(1, first.lapses());
+    assertEquals(2.5, first.ease(), 1e-9);
+
+    Schedule second = first.next(ReviewService.GRADE_RIGHT);
+    Schedule third = second.next(ReviewService.GRADE_RIGHT);
+    Schedule fourth = third.next(ReviewService.GRADE_RIGHT);
+    assertEquals(1, second.intervalDays());
+    assertEquals(6, third.intervalDays());
+    assertEquals(2.8, fourth.ease(), 1e-9);
+    assertEquals(Math.round(6 * third.ease()), fourth.intervalDays());
+
+    // Slow answers lower the ease, down to the floor
+    Schedule slow = fourth;
+    for (int i = 0; i < 20; i++) {
+      slow = slow.next(ReviewService.GRADE_SLOW);
+    }
+    assertEquals(1.3, slow.ease(), 1e-9);
+
+    // A lapse starts the intervals over but keeps the ease
+    Schedule lapse = fourth.next(ReviewService.GRADE_WRONG);
+    assertEquals(1, lapse.intervalDays());
+    assertEquals(2.8, lapse.ease(), 1e-9);
+  }
+
+  @Test
+  void testGradeFromAnswer() {
+    ReviewService service = new ReviewService(null, new AppProperties());
+    assertEquals(ReviewService.GRADE_WRONG, service.grade(false, 1000));
+    assertEquals(ReviewService.GRADE_RIGHT, service.grade(true, 1000));
+    assertEquals(ReviewService.GRADE_RIGHT, service.grade(true, null));
+    assertEquals(ReviewService.GRADE_SLOW, service.grade(true, 60000));
+  }
+}
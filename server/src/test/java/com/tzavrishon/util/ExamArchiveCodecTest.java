@@ -0,0 +1,79 @@
+package com.tzavrishon.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.domain.ExamAttemptSnapshot;
+import com.tzavrishon.domain.ExamAttemptSnapshot.SectionState;
+import com.tzavrishon.domain.QuestionType;
+import java.time.Instant;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+class ExamArchiveCodecTest {
+
+  @Test
+  void testRoundTrip() {
+    Map<UUID, Integer> catalog = new HashMap<>();
+    Map<Integer, UUID> reverse = new HashMap<>();
+    ExamAttemptSnapshot snapshot = new ExamAttemptSnapshot();
+    Random random = new Random(42);
+
+    for (QuestionType type : QuestionType.values()) {
+      SectionState section = new SectionState();
+      section.setType(type);
+      section.setOrderIndex(type.ordinal());
+      section.setDurationSeconds(480);
+      section.setStartedAt(Instant.parse("2025-03-01T10:00:00.123Z"));
+      section.setEndedAt(Instant.parse("2025-03-01T10:07:59.456Z"));
+      section.setLocked(true);
+      section.setSkippedCount(1);
+      for (int i = 0; i < 10; i++) {
+        UUID questionId = UUID.randomUUID();
+        int index = catalog.size() + 1;
+        catalog.put(questionId, index);
+        reverse.put(index, questionId);
+        section.recordAnswer(questionId, random.nextBoolean(), i == 3 ? null : random.nextInt(60000));
+      }
+      section.setScore(section.correctCount());
+      snapshot.getSections().add(section);
+    }
+
+    byte[] payload = ExamArchiveCodec.encode(snapshot, catalog::get);
+    ExamAttemptSnapshot decoded = ExamArchiveCodec.decode(payload, reverse::get);
+
+    assertEquals(snapshot.getSections().size(), decoded.getSections().size());
+    for (int s = 0; s < snapshot.getSections().size(); s++) {
+      SectionState expected = snapshot.getSections().get(s);
+      SectionState actual = decoded.getSections().get(s);
+      assertEquals(expected.getType(), actual.getType());
+      assertEquals(expected.getStartedAt(), actual.getStartedAt());
+      assertEquals(expected.getEndedAt(), actual.getEndedAt());
+      assertEquals(expected.getScore(), actual.getScore());
+      assertEquals(expected.getSkippedCount(), actual.getSkippedCount());
+      assertEquals(expected.getAnsweredQuestionIds(), actual.getAnsweredQuestionIds());
+      assertEquals(expected.getTimesMs(), actual.getTimesMs());
+      assertArrayEquals(expected.getCorrectBits(), actual.getCorrectBits());
+    }
+
+    // 40 answers should pack into a few hundred bytes, versus 40 rows in exam_user_answers
+    assertTrue(payload.length < 300, "payload was " + payload.length + " bytes");
+    assertEquals(40, ExamArchiveCodec.catalogIndices(payload).size());
+  }
+
+  @Test
+  void testUnknownQuestionsDecodeAsNull() {
+    SectionState section = new SectionState();
+    section.setType(QuestionType.QUANTITATIVE);
+    section.recordAnswer(UUID.randomUUID(), true, 1000);
+    ExamAttemptSnapshot snapshot = new ExamAttemptSnapshot();
+    snapshot.getSections().add(section);
+
+    byte[] payload = ExamArchiveCodec.encode(snapshot, id -> 0);
+    ExamAttemptSnapshot decoded = ExamArchiveCodec.decode(payload, index -> UUID.randomUUID());
+
+    SectionState actual = decoded.getSections().get(0);
+    assertNull(actual.getAnsweredQuestionIds().get(0));
+    assertTrue(actual.isCorrect(0));
+    assertEquals(1000, actual.getTimesMs().get(0));
+  }
+}
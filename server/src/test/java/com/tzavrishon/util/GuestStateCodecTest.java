@@ -0,0 +1,53 @@
+package com.tzavrishon.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.tzavrishon.domain.GuestPracticeState;
+import com.tzavrishon.domain.GuestPracticeState.Session;
+import com.tzavrishon.domain.QuestionType;
+import java.time.Instant;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+class GuestStateCodecTest {
+
+  @Test
+  void testRoundTrip() {
+    GuestPracticeState state = GuestPracticeState.create();
+    Instant now = Instant.parse("2025-06-01T12:00:00Z");
+    Session session = state.startSession(QuestionType.SHAPE_ANALOGY, now, now.minusSeconds(86400));
+    session.recordAnswer(1200, true, 4500);
+    session.recordAnswer(87, false, null);
+    session.setEndedAt(now.plusSeconds(60));
+    state.addRecent(QuestionType.SHAPE_ANALOGY, 1200, 5);
+    state.addRecent(QuestionType.SHAPE_ANALOGY, 87, 5);
+
+    GuestPracticeState decoded = GuestStateCodec.decode(GuestStateCodec.encode(state));
+
+    assertEquals(state, decoded);
+    assertEquals(1, decoded.activeSession().orElseThrow().correctCount());
+    assertEquals(87, decoded.getRecent().get(QuestionType.SHAPE_ANALOGY).get(0));
+  }
+
+  @Test
+  void testFullDayOfGuestPracticeFitsInACookie() {
+    GuestPracticeState state = GuestPracticeState.create();
+    Instant now = Instant.now();
+    for (int s = 0; s < GuestPracticeState.MAX_SESSIONS; s++) {
+      QuestionType type = QuestionType.values()[s % QuestionType.values().length];
+      Session session = state.startSession(type, now.plusSeconds(s), now.minusSeconds(86400));
+      for (int q = 0; q < 5; q++) {
+        session.recordAnswer(100_000 + s * 5 + q, q % 2 == 0, 30_000 + q);
+        state.addRecent(type, 100_000 + s * 5 + q, 5);
+      }
+    }
+
+    String encoded =
+        Base64.getUrlEncoder().withoutPadding().encodeToString(GuestStateCodec.encode(state));
+
+    // Leaves room for the JWT header, claims and signature under the 4KB cookie limit
+    assertTrue(encoded.length() < 1500, "state was " + encoded.length() + " chars");
+    GuestPracticeState decoded = GuestStateCodec.decode(Base64.getUrlDecoder().decode(encoded));
+    assertEquals(GuestPracticeState.MAX_SESSIONS, decoded.getSessions().size());
+  }
+}
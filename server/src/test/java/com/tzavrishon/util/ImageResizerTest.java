@@ -0,0 +1,49 @@
+package com.tzavrishon.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+class ImageResizerTest {
+
+  @Test
+  void testResizeKeepsAspectRatio() throws IOException {
+    byte[] png = png(400, 200);
+
+    byte[] resized = ImageResizer.resize(png, 100, "image/png", 1_000_000);
+
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(resized));
+    assertEquals(100, decoded.getWidth());
+    assertEquals(50, decoded.getHeight());
+  }
+
+  @Test
+  void testOversizedHeaderIsRefusedBeforeDecoding() throws IOException {
+    // A 1x1 PNG whose header claims 30000x30000: a few bytes that would decode to gigabytes
+    byte[] bomb = png(1, 1);
+    ByteBuffer header = ByteBuffer.wrap(bomb);
+    header.putInt(16, 30_000).putInt(20, 30_000);
+    CRC32 crc = new CRC32();
+    crc.update(bomb, 12, 17); // chunk type and IHDR data
+    header.putInt(29, (int) crc.getValue());
+
+    IOException refused =
+        assertThrows(
+            IOException.class, () -> ImageResizer.resize(bomb, 100, "image/png", 25_000_000));
+    assertTrue(refused.getMessage().contains("30000x30000"));
+    assertThrows(IOException.class, () -> ImageResizer.decode(bomb, 25_000_000));
+  }
+
+  private static byte[] png(int width, int height) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,44 @@
+package com.tzavrishon.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TDigestTest {
+
+  @Test
+  void testQuantilesOfShuffledValues() {
+    TDigest digest = new TDigest(100);
+    Random random = new Random(7);
+    for (int i = 0; i < 100_000; i++) {
+      digest.add(random.nextInt(10_000));
+    }
+
+    assertEquals(100_000, digest.count());
+    assertEquals(5_000, digest.quantile(0.5), 100);
+    assertEquals(9_000, digest.quantile(0.9), 100);
+    assertEquals(9_990, digest.quantile(0.999), 20);
+    assertTrue(digest.toBytes().length < 4_000);
+  }
+
+  @Test
+  void testMergedAndRestoredDigestsAgree() {
+    TDigest fast = new TDigest(100);
+    TDigest slow = new TDigest(100);
+    for (int i = 0; i < 5_000; i++) {
+      fast.add(1_000 + i % 1_000);
+      slow.add(10_000 + i % 1_000);
+    }
+
+    TDigest merged = TDigest.fromBytes(fast.toBytes());
+    merged.add(TDigest.fromBytes(slow.toBytes()));
+
+    assertEquals(10_000, merged.count());
+    assertEquals(1_500, merged.quantile(0.25), 50);
+    assertEquals(10_500, merged.quantile(0.75), 50);
+    assertTrue(merged.quantile(0) >= 1_000);
+    assertTrue(merged.quantile(1) <= 10_999);
+    assertTrue(Double.isNaN(new TDigest(100).quantile(0.5)));
+  }
+}
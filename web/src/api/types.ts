@@ -19,6 +19,10 @@ export interface Question {
   promptText?: string;
   promptImageUrl?: string;
   options?: QuestionOption[];
+  atlasUrl?: string;
+  atlasWidth?: number;
+  atlasHeight?: number;
+  promptAtlasRegion?: AtlasRegion;
 }
 
 export interface QuestionOption {
@@ -26,6 +30,14 @@ export interface QuestionOption {
   text?: string;
   imageUrl?: string;
   optionOrder: number;
+  atlasRegion?: AtlasRegion;
+}
+
+export interface AtlasRegion {
+  x: number;
+  y: number;
+  width: number;
+  height: number;
 }
 
 export interface PracticeSessionResponse {